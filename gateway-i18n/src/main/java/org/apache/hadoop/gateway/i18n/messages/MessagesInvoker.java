@@ -23,15 +23,25 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.text.MessageFormat;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  *
  */
 public class MessagesInvoker extends ResourcesInvoker implements InvocationHandler {
 
+  /**
+   * System property that controls whether the location of the code that logged a message is captured.
+   * Capturing the location walks the stack for every logged message so it can be turned off with "false".
+   */
+  public static final String CAPTURE_CALLER_PROPERTY = "gateway.i18n.messages.capture.caller";
+
   private String codes;
   private MessageLogger logger;
   private String bundle;
+  private boolean captureCaller;
+  private ConcurrentMap<Method,MessageDescriptor> descriptors;
 
   public MessagesInvoker( Class<?> clazz, MessageLoggerFactory loggers ) {
     super( clazz );
@@ -39,28 +49,47 @@ public class MessagesInvoker extends ResourcesInvoker implements InvocationHandl
     codes = calcCodePattern( clazz, anno );
     bundle = calcBundleName( clazz, anno );
     logger = getLogger( clazz, anno, loggers );
+    captureCaller = Boolean.parseBoolean( System.getProperty( CAPTURE_CALLER_PROPERTY, "true" ) );
+    descriptors = new ConcurrentHashMap<Method,MessageDescriptor>();
   }
 
   @Override
   public Object invoke( final Object proxy, final Method method, final Object[] args ) throws Throwable {
     String message = null;
-    MessageLevel level = getLevel( method );
-    if( logger.isLoggable( level ) ) {
+    MessageDescriptor descriptor = getDescriptor( method );
+    if( logger.isLoggable( descriptor.level ) ) {
       message = getText( method, args );
-      String code = getCode( method );
-      Throwable throwable = findLoggableThrowable( logger, method, args );
-      // Supposedly this Throwable way is faster than the Thread way.
-      // From looking at the JRE code it looks this is probably the case.
-      // The second version ends up calling the first version after getting the current thread
-      // and then checking that it is being called from the current thread.
-      //TODO: Should probably only do this if the logger is at debug or finer to make sure there isn't a performance impact during production usage.
-      StackTraceElement caller = new Throwable().getStackTrace()[2];
-      // StackTraceElement caller = Thread.currentThread().getStackTrace()[3];
-      logger.log( caller, level, code, message, throwable );
+      Throwable throwable = findLoggableThrowable( logger, descriptor, args );
+      StackTraceElement caller = null;
+      if( captureCaller ) {
+        // Supposedly this Throwable way is faster than the Thread way.
+        // From looking at the JRE code it looks this is probably the case.
+        // The second version ends up calling the first version after getting the current thread
+        // and then checking that it is being called from the current thread.
+        caller = new Throwable().getStackTrace()[2];
+        // StackTraceElement caller = Thread.currentThread().getStackTrace()[3];
+      }
+      logger.log( caller, descriptor.level, descriptor.code, message, throwable );
     }
     return message;
   }
 
+  boolean isCaptureCaller() {
+    return captureCaller;
+  }
+
+  private MessageDescriptor getDescriptor( final Method method ) {
+    MessageDescriptor descriptor = descriptors.get( method );
+    if( descriptor == null ) {
+      descriptor = new MessageDescriptor( getLevel( method ), getCode( method ), getStackTraceAnnos( method ) );
+      MessageDescriptor existing = descriptors.putIfAbsent( method, descriptor );
+      if( existing != null ) {
+        descriptor = existing;
+      }
+    }
+    return descriptor;
+  }
+
   private final String getCode( final Method method ) {
     String code = null;
     Message anno = method.getAnnotation( Message.class );
@@ -73,23 +102,27 @@ public class MessagesInvoker extends ResourcesInvoker implements InvocationHandl
     return code;
   }
 
-  private final static StackTrace getStackTraceAnno( final Method method, final int param ) {
-    final Annotation[] annos = method.getParameterAnnotations()[ param ];
-    for( Annotation anno: annos ) {
-      if( anno instanceof StackTrace ) {
-        return (StackTrace)anno;
+  private final static StackTrace[] getStackTraceAnnos( final Method method ) {
+    final Annotation[][] params = method.getParameterAnnotations();
+    StackTrace[] stackTraces = new StackTrace[ params.length ];
+    for( int i=0; i<params.length; i++ ) {
+      for( Annotation anno: params[ i ] ) {
+        if( anno instanceof StackTrace ) {
+          stackTraces[ i ] = (StackTrace)anno;
+          break;
+        }
       }
     }
-    return null;
+    return stackTraces;
   }
 
-  private final static Throwable findLoggableThrowable( final MessageLogger logger, final Method method, final Object[] args ) {
+  private final static Throwable findLoggableThrowable( final MessageLogger logger, final MessageDescriptor descriptor, final Object[] args ) {
     Throwable throwable = null;
     if( args != null ) {
       for( int i=0; i<args.length; i++ ) {
         Object arg = args[i];
         if( arg instanceof Throwable ) {
-          StackTrace anno = getStackTraceAnno( method, i );
+          StackTrace anno = descriptor.stackTraces[ i ];
           if( anno != null ) {
             if( logger.isLoggable( anno.level() ) ) {
               throwable = (Throwable)arg;
@@ -166,6 +199,20 @@ public class MessagesInvoker extends ResourcesInvoker implements InvocationHandl
     return loggers.getLogger( calcLoggerName( clazz, anno ) );
   }
 
+  // Everything about a message method that does not depend on the arguments of a call.
+  private static class MessageDescriptor {
+
+    private final MessageLevel level;
+    private final String code;
+    private final StackTrace[] stackTraces;
+
+    private MessageDescriptor( MessageLevel level, String code, StackTrace[] stackTraces ) {
+      this.level = level;
+      this.code = code;
+      this.stackTraces = stackTraces;
+    }
+  }
+
   public String toString() {
     return "MessageInvoker["+bundle+"]";
   }
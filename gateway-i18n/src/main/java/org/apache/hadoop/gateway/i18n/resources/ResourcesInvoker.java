@@ -19,7 +19,9 @@ package org.apache.hadoop.gateway.i18n.resources;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.text.Format;
 import java.text.MessageFormat;
+import java.util.Date;
 import java.util.ListResourceBundle;
 import java.util.Locale;
 import java.util.MissingResourceException;
@@ -41,11 +43,13 @@ public class ResourcesInvoker implements InvocationHandler {
   private Class bundleClass;
   private String bundleName;
   private ConcurrentHashMap<Locale, ResourceBundle> bundles;
+  private ConcurrentHashMap<Locale, ConcurrentHashMap<Method, CompiledPattern>> patterns;
 
   public ResourcesInvoker( Class<?> bundleClass ) {
     this.bundleClass = bundleClass;
     this.bundleName = calcBundleName( bundleClass );
     this.bundles = new ConcurrentHashMap<Locale, ResourceBundle>();
+    this.patterns = new ConcurrentHashMap<Locale, ConcurrentHashMap<Method, CompiledPattern>>();
   }
 
   @Override
@@ -54,9 +58,26 @@ public class ResourcesInvoker implements InvocationHandler {
   }
 
   protected final String getText( final Method method, final Object[] args ) {
-    String pattern = getPattern( method );
-    String text = MessageFormat.format( pattern, args );
-    return text;
+    return getCompiledPattern( method ).format( args );
+  }
+
+  // The pattern of a method is resolved and parsed once per default locale.
+  private CompiledPattern getCompiledPattern( final Method method ) {
+    final Locale locale = Locale.getDefault();
+    ConcurrentHashMap<Method, CompiledPattern> methods = patterns.get( locale );
+    if( methods == null ) {
+      methods = new ConcurrentHashMap<Method, CompiledPattern>();
+      ConcurrentHashMap<Method, CompiledPattern> existing = patterns.putIfAbsent( locale, methods );
+      if( existing != null ) {
+        methods = existing;
+      }
+    }
+    CompiledPattern pattern = methods.get( method );
+    if( pattern == null ) {
+      pattern = new CompiledPattern( getPattern( method ) );
+      methods.put( method, pattern );
+    }
+    return pattern;
   }
 
   protected final String getPattern( final Method method ) {
@@ -159,4 +180,50 @@ public class ResourcesInvoker implements InvocationHandler {
     return bundle;
   }
 
+  /**
+   * A parsed pattern.  Patterns without arguments are formatted once up front and patterns that are just text around
+   * a plain {0} are formatted by concatenation unless the argument needs a number or date format.
+   * Anything else is formatted by a copy of the parsed MessageFormat since MessageFormat is not thread safe.
+   */
+  private static final class CompiledPattern {
+
+    private static final String PLACEHOLDER = "\uFFFF";
+
+    private final MessageFormat format;
+    private final String constant;
+    private final String prefix;
+    private final String suffix;
+
+    private CompiledPattern( final String pattern ) {
+      String constant = null;
+      String prefix = null;
+      String suffix = null;
+      format = new MessageFormat( pattern );
+      final Format[] formats = format.getFormats();
+      if( formats.length == 0 ) {
+        constant = format.format( new Object[ 0 ] );
+      } else if( formats.length == 1 && formats[ 0 ] == null && format.getFormatsByArgumentIndex().length == 1 ) {
+        final String text = format.format( new Object[]{ PLACEHOLDER } );
+        final int index = text.indexOf( PLACEHOLDER );
+        if( index == text.lastIndexOf( PLACEHOLDER ) ) {
+          prefix = text.substring( 0, index );
+          suffix = text.substring( index + PLACEHOLDER.length() );
+        }
+      }
+      this.constant = constant;
+      this.prefix = prefix;
+      this.suffix = suffix;
+    }
+
+    private String format( final Object[] args ) {
+      if( constant != null ) {
+        return constant;
+      }
+      if( prefix != null && args != null && args.length > 0 && !( args[ 0 ] instanceof Number ) && !( args[ 0 ] instanceof Date ) ) {
+        return prefix + String.valueOf( args[ 0 ] ) + suffix;
+      }
+      return ( (MessageFormat)format.clone() ).format( args, new StringBuffer(), null ).toString();
+    }
+  }
+
 }
@@ -25,8 +25,11 @@ import org.apache.hadoop.test.category.UnitTests;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.lang.reflect.Proxy;
+
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -51,4 +54,92 @@ public class MessagesTest {
 
   }
 
+  @Test
+  public void testMessageDetails() {
+    RecordingLogger logger = new RecordingLogger();
+    MessagesTestSubject log = createProxy( logger );
+    Exception failure = new Exception( "failure" );
+
+    for( int i=0; i<2; i++ ) {
+      logger.clear();
+      log.withEverything( "text", failure );
+      assertThat( logger.level, is( MessageLevel.INFO ) );
+      assertThat( logger.code, is( "ID:42" ) );
+      assertThat( logger.text, is( "str=text, t=" + failure ) );
+      assertThat( logger.thrown, is( (Throwable)failure ) );
+      assertThat( logger.caller.getMethodName(), is( "testMessageDetails" ) );
+
+      logger.clear();
+      log.withoutStackTrace( failure );
+      assertThat( logger.code, nullValue() );
+      assertThat( logger.thrown, nullValue() );
+
+      logger.clear();
+      log.withoutAnnotations( 3 );
+      assertThat( logger.level, is( MessageLevel.INFO ) );
+      assertThat( logger.text, is( "withoutAnnotations(\"3\")" ) );
+    }
+  }
+
+  @Test
+  public void testCallerCaptureCanBeDisabled() {
+    String previous = System.getProperty( MessagesInvoker.CAPTURE_CALLER_PROPERTY );
+    System.setProperty( MessagesInvoker.CAPTURE_CALLER_PROPERTY, "false" );
+    try {
+      RecordingLogger logger = new RecordingLogger();
+      MessagesTestSubject log = createProxy( logger );
+      log.withFullAnnotationAndParameter( 7 );
+      assertThat( logger.text, is( "p0=7" ) );
+      assertThat( logger.caller, nullValue() );
+    } finally {
+      if( previous == null ) {
+        System.clearProperty( MessagesInvoker.CAPTURE_CALLER_PROPERTY );
+      } else {
+        System.setProperty( MessagesInvoker.CAPTURE_CALLER_PROPERTY, previous );
+      }
+    }
+  }
+
+  private static MessagesTestSubject createProxy( final MessageLogger logger ) {
+    MessagesInvoker invoker = new MessagesInvoker( MessagesTestSubject.class, new MessageLoggerFactory() {
+      @Override
+      public MessageLogger getLogger( String name ) {
+        return logger;
+      }
+    } );
+    return (MessagesTestSubject)Proxy.newProxyInstance(
+        MessagesTestSubject.class.getClassLoader(), new Class[]{ MessagesTestSubject.class }, invoker );
+  }
+
+  private static class RecordingLogger implements MessageLogger {
+
+    private StackTraceElement caller;
+    private MessageLevel level;
+    private String code;
+    private String text;
+    private Throwable thrown;
+
+    @Override
+    public boolean isLoggable( MessageLevel level ) {
+      return true;
+    }
+
+    @Override
+    public void log( StackTraceElement caller, MessageLevel level, String code, String text, Throwable thrown ) {
+      this.caller = caller;
+      this.level = level;
+      this.code = code;
+      this.text = text;
+      this.thrown = thrown;
+    }
+
+    private void clear() {
+      caller = null;
+      level = null;
+      code = null;
+      text = null;
+      thrown = null;
+    }
+  }
+
 }
@@ -24,6 +24,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.text.MessageFormat;
 import java.util.Locale;
 
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -83,6 +84,29 @@ public class ResourcesTest {
     assertThat(
         res.withLessFormatParamsThanMethodParams( 7, 11 ),
         equalTo( "7" ) );
+
+    // The formats are cached so every case is checked twice.
+    for( int i=0; i<2; i++ ) {
+      assertThat(
+          res.withTextAndStringParam( "GET" ),
+          equalTo( "Request method: GET" ) );
+
+      assertThat(
+          res.withTextAndStringParam( null ),
+          equalTo( "Request method: null" ) );
+
+      assertThat(
+          res.withQuotedTextAndParam( new StringBuilder( "value" ) ),
+          equalTo( "{0} isn't a value" ) );
+
+      assertThat(
+          res.withQuotedTextAndParam( 1234 ),
+          equalTo( MessageFormat.format( "'{0}' isn''t a {0}", 1234 ) ) );
+
+      assertThat(
+          res.withConstantTextAndParam( "ignored" ),
+          equalTo( "It's constant" ) );
+    }
   }
 
   @Test
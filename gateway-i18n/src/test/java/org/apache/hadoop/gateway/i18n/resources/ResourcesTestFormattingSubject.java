@@ -44,4 +44,13 @@ public interface ResourcesTestFormattingSubject {
   @Resource(text="{0}")
   String withLessFormatParamsThanMethodParams( int x, int y );
 
+  @Resource(text="Request method: {0}")
+  String withTextAndStringParam( String method );
+
+  @Resource(text="'{0}' isn''t a {0}")
+  String withQuotedTextAndParam( Object value );
+
+  @Resource(text="It''s constant")
+  String withConstantTextAndParam( String ignored );
+
 }
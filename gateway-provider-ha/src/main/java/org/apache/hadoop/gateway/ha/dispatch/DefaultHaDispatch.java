@@ -21,9 +21,11 @@ import org.apache.hadoop.gateway.config.Configure;
 import org.apache.hadoop.gateway.config.Optional;
 import org.apache.hadoop.gateway.dispatch.DefaultDispatch;
 import org.apache.hadoop.gateway.filter.AbstractGatewayFilter;
+import org.apache.hadoop.gateway.filter.RequestUrl;
 import org.apache.hadoop.gateway.ha.dispatch.i18n.HaDispatchMessages;
 import org.apache.hadoop.gateway.ha.provider.HaProvider;
 import org.apache.hadoop.gateway.ha.provider.HaServiceConfig;
+import org.apache.hadoop.gateway.ha.provider.HealthAwareHaProvider;
 import org.apache.hadoop.gateway.ha.provider.impl.HaServiceConfigConstants;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.http.HttpResponse;
@@ -88,6 +90,9 @@ public class DefaultHaDispatch extends DefaultDispatch {
     HttpResponse inboundResponse = null;
     try {
       inboundResponse = executeOutboundRequest(outboundRequest);
+      if ( haProvider instanceof HealthAwareHaProvider ) {
+        ((HealthAwareHaProvider) haProvider).markSucceededURL(getServiceRole(), outboundRequest.getURI().toString());
+      }
       writeOutboundResponse(outboundRequest, inboundRequest, outboundResponse, inboundResponse);
     } catch ( IOException e ) {
       LOG.errorConnectingToServer(outboundRequest.getURI().toString(), e);
@@ -107,7 +112,7 @@ public class DefaultHaDispatch extends DefaultDispatch {
       haProvider.markFailedURL(getServiceRole(), outboundRequest.getURI().toString());
       //null out target url so that rewriters run again
       inboundRequest.setAttribute(AbstractGatewayFilter.TARGET_REQUEST_URL_ATTRIBUTE_NAME, null);
-      URI uri = getDispatchUrl(inboundRequest);
+      URI uri = RequestUrl.getDispatchUrl(inboundRequest);
       ((HttpRequestBase) outboundRequest).setURI(uri);
       if ( failoverSleep > 0 ) {
         try {
@@ -126,14 +131,4 @@ public class DefaultHaDispatch extends DefaultDispatch {
       }
     }
   }
-
-  private static URI getDispatchUrl(HttpServletRequest request) {
-    StringBuffer str = request.getRequestURL();
-    String query = request.getQueryString();
-    if ( query != null ) {
-      str.append('?');
-      str.append(query);
-    }
-    return URI.create(str.toString());
-  }
 }
@@ -50,4 +50,29 @@ public interface HaServiceConfig {
    public String getZookeeperNamespace();
 
    public void setZookeeperNamespace(String zookeeperNamespace);
+
+   /**
+    * Returns the path that is probed on each URL of the service to determine its health.
+    *
+    * @return the path or null if active health checking is disabled
+    */
+   public String getHealthCheckPath();
+
+   public void setHealthCheckPath(String healthCheckPath);
+
+   public int getHealthCheckInterval();
+
+   public void setHealthCheckInterval(int interval);
+
+   public int getHealthCheckTimeout();
+
+   public void setHealthCheckTimeout(int timeout);
+
+   public int getUnhealthyThreshold();
+
+   public void setUnhealthyThreshold(int threshold);
+
+   public int getHealthyThreshold();
+
+   public void setHealthyThreshold(int threshold);
 }
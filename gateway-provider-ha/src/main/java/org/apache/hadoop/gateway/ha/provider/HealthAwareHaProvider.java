@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.ha.provider;
+
+/**
+ * Optional extension of {@link HaProvider} that passes successes and shutdown on to the
+ * {@link HealthAwareURLManager}s of its services.
+ */
+public interface HealthAwareHaProvider extends HaProvider {
+
+   /**
+    * Mark the URL for the service as one that has successfully served a request. This clears any failures
+    * recorded against the URL by passive outlier detection.
+    *
+    * @param serviceName the name of the service
+    * @param url         the URL that served the request
+    */
+   public void markSucceededURL(String serviceName, String url);
+
+   /**
+    * Stops any background activity, such as health checks, started for the HA services.
+    */
+   public void destroy();
+
+}
@@ -0,0 +1,35 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.ha.provider;
+
+/**
+ * Optional extension of {@link URLManager} for managers that track the health of their URLs or run background
+ * activity. Managers that only implement {@link URLManager} keep working without these notifications.
+ */
+public interface HealthAwareURLManager extends URLManager {
+
+  /**
+   * Records that the URL has successfully served a request.
+   */
+  public void markSucceeded(String url);
+
+  /**
+   * Stops any background activity, such as health checks, started by the manager.
+   */
+  public void destroy();
+}
@@ -38,6 +38,10 @@ public class URLManagerLoader {
         }
       }
     }
-    return new DefaultURLManager();
+    DefaultURLManager urlManager = new DefaultURLManager();
+    if ( config != null ) {
+      urlManager.setConfig(config);
+    }
+    return urlManager;
   }
 }
@@ -18,8 +18,9 @@
 package org.apache.hadoop.gateway.ha.provider.impl;
 
 import org.apache.hadoop.gateway.ha.provider.HaDescriptor;
-import org.apache.hadoop.gateway.ha.provider.HaProvider;
 import org.apache.hadoop.gateway.ha.provider.HaServiceConfig;
+import org.apache.hadoop.gateway.ha.provider.HealthAwareHaProvider;
+import org.apache.hadoop.gateway.ha.provider.HealthAwareURLManager;
 import org.apache.hadoop.gateway.ha.provider.URLManager;
 import org.apache.hadoop.gateway.ha.provider.URLManagerLoader;
 import org.apache.hadoop.gateway.ha.provider.impl.i18n.HaMessages;
@@ -28,7 +29,7 @@ import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
-public class DefaultHaProvider implements HaProvider {
+public class DefaultHaProvider implements HealthAwareHaProvider {
 
   private static final HaMessages LOG = MessagesFactory.get(HaMessages.class);
 
@@ -83,4 +84,22 @@ public class DefaultHaProvider implements HaProvider {
       LOG.noServiceFound(serviceName);
     }
   }
+
+  @Override
+  public void markSucceededURL(String serviceName, String url) {
+    URLManager manager = haServices.get(serviceName);
+    if ( manager instanceof HealthAwareURLManager ) {
+      ((HealthAwareURLManager) manager).markSucceeded(url);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    for ( URLManager manager : haServices.values() ) {
+      if ( manager instanceof HealthAwareURLManager ) {
+        ((HealthAwareURLManager) manager).destroy();
+      }
+    }
+    haServices.clear();
+  }
 }
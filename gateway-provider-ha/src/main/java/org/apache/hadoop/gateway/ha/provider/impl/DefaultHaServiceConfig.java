@@ -37,6 +37,16 @@ public class DefaultHaServiceConfig implements HaServiceConfig, HaServiceConfigC
 
   private String zookeeperNamespace;
 
+  private String healthCheckPath;
+
+  private int healthCheckInterval = DEFAULT_HEALTH_CHECK_INTERVAL;
+
+  private int healthCheckTimeout = DEFAULT_HEALTH_CHECK_TIMEOUT;
+
+  private int unhealthyThreshold = DEFAULT_UNHEALTHY_THRESHOLD;
+
+  private int healthyThreshold = DEFAULT_HEALTHY_THRESHOLD;
+
   public DefaultHaServiceConfig(String name) {
     this.name = name;
   }
@@ -121,4 +131,54 @@ public class DefaultHaServiceConfig implements HaServiceConfig, HaServiceConfigC
   public void setZookeeperNamespace(String zookeeperNamespace) {
     this.zookeeperNamespace = zookeeperNamespace;
   }
+
+  @Override
+  public String getHealthCheckPath() {
+    return healthCheckPath;
+  }
+
+  @Override
+  public void setHealthCheckPath(String healthCheckPath) {
+    this.healthCheckPath = healthCheckPath;
+  }
+
+  @Override
+  public int getHealthCheckInterval() {
+    return healthCheckInterval;
+  }
+
+  @Override
+  public void setHealthCheckInterval(int healthCheckInterval) {
+    this.healthCheckInterval = healthCheckInterval;
+  }
+
+  @Override
+  public int getHealthCheckTimeout() {
+    return healthCheckTimeout;
+  }
+
+  @Override
+  public void setHealthCheckTimeout(int healthCheckTimeout) {
+    this.healthCheckTimeout = healthCheckTimeout;
+  }
+
+  @Override
+  public int getUnhealthyThreshold() {
+    return unhealthyThreshold;
+  }
+
+  @Override
+  public void setUnhealthyThreshold(int unhealthyThreshold) {
+    this.unhealthyThreshold = unhealthyThreshold;
+  }
+
+  @Override
+  public int getHealthyThreshold() {
+    return healthyThreshold;
+  }
+
+  @Override
+  public void setHealthyThreshold(int healthyThreshold) {
+    this.healthyThreshold = healthyThreshold;
+  }
 }
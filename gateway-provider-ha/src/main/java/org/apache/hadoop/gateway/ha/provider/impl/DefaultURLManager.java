@@ -19,20 +19,57 @@ package org.apache.hadoop.gateway.ha.provider.impl;
 
 import com.google.common.collect.Lists;
 import org.apache.hadoop.gateway.ha.provider.HaServiceConfig;
-import org.apache.hadoop.gateway.ha.provider.URLManager;
+import org.apache.hadoop.gateway.ha.provider.HealthAwareURLManager;
 import org.apache.hadoop.gateway.ha.provider.impl.i18n.HaMessages;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URI;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
-public class DefaultURLManager implements URLManager {
+/**
+ * Keeps the URLs of a service in preference order and hands out the first one that is currently
+ * considered healthy.
+ * <p/>
+ * A URL becomes unhealthy once it has failed {@code unhealthyThreshold} times in a row. Failures are
+ * reported passively by the dispatch through {@link #markFailed(String)}, which counts the failure against
+ * the URL with the same host and port and moves that URL to the bottom if it is the one currently handed out,
+ * and, when a health check path
+ * is configured, actively by probing each URL every {@code healthCheckInterval} milliseconds on a
+ * background thread. With active checks an unhealthy URL is only used again after
+ * {@code healthyThreshold} successful probes; without them it is ejected for one interval and then
+ * tried again. When no URL is healthy the head of the list is returned, as before.
+ */
+public class DefaultURLManager implements HealthAwareURLManager, HaServiceConfigConstants {
 
   private static final HaMessages LOG = MessagesFactory.get(HaMessages.class);
 
   private ConcurrentLinkedQueue<String> urls = new ConcurrentLinkedQueue<>();
 
+  private ConcurrentHashMap<String, URLHealth> health = new ConcurrentHashMap<>();
+
+  private String serviceName;
+
+  private String healthCheckPath;
+
+  private int healthCheckInterval = DEFAULT_HEALTH_CHECK_INTERVAL;
+
+  private int healthCheckTimeout = DEFAULT_HEALTH_CHECK_TIMEOUT;
+
+  private int unhealthyThreshold = DEFAULT_UNHEALTHY_THRESHOLD;
+
+  private int healthyThreshold = DEFAULT_HEALTHY_THRESHOLD;
+
+  private ScheduledExecutorService healthChecker;
+
   public DefaultURLManager() {
   }
 
@@ -42,13 +79,32 @@ public class DefaultURLManager implements URLManager {
   }
 
   @Override
-  public void setConfig(HaServiceConfig config) {
-    //no-op
+  public synchronized void setConfig(HaServiceConfig config) {
+    serviceName = config.getServiceName();
+    healthCheckPath = config.getHealthCheckPath();
+    healthCheckInterval = positiveOrDefault(config.getHealthCheckInterval(), DEFAULT_HEALTH_CHECK_INTERVAL);
+    healthCheckTimeout = positiveOrDefault(config.getHealthCheckTimeout(), DEFAULT_HEALTH_CHECK_TIMEOUT);
+    unhealthyThreshold = positiveOrDefault(config.getUnhealthyThreshold(), DEFAULT_UNHEALTHY_THRESHOLD);
+    healthyThreshold = positiveOrDefault(config.getHealthyThreshold(), DEFAULT_HEALTHY_THRESHOLD);
+    if ( healthCheckPath != null && healthChecker == null ) {
+      startHealthChecks();
+    }
   }
 
   @Override
   public String getActiveURL() {
-    return urls.peek();
+    String first = null;
+    long now = System.currentTimeMillis();
+    for ( String url : urls ) {
+      if ( first == null ) {
+        first = url;
+      }
+      URLHealth urlHealth = health.get(url);
+      if ( urlHealth == null || urlHealth.isAvailable(now) ) {
+        return url;
+      }
+    }
+    return first;
   }
 
   @Override
@@ -61,25 +117,247 @@ public class DefaultURLManager implements URLManager {
     if ( urls != null && !urls.isEmpty()) {
       this.urls.clear();
       this.urls.addAll(urls);
+      health.keySet().retainAll(urls);
+      for ( String url : urls ) {
+        if ( !health.containsKey(url) ) {
+          health.put(url, new URLHealth(url));
+        }
+      }
     }
   }
 
   @Override
   public synchronized void markFailed(String url) {
-    String top = urls.peek();
-    boolean pushToBottom = false;
-    URI topUri = URI.create(top);
-    URI incomingUri = URI.create(url);
-    String topHostPort = topUri.getHost() + ":" + topUri.getPort();
-    String incomingHostPort = incomingUri.getHost() + ":" + incomingUri.getPort();
-    if ( topHostPort.equals(incomingHostPort) ) {
-      pushToBottom = true;
-    }
-    //put the failed url at the bottom
-    if ( pushToBottom ) {
-      String failed = urls.poll();
+    String active = getActiveURL();
+    if ( active == null ) {
+      return;
+    }
+    // The active URL is not necessarily the head since ejected URLs are skipped.
+    String incomingHostPort = hostPort(url);
+    String failed = hostPort(active).equals(incomingHostPort) ? active : findURL(incomingHostPort);
+    if ( failed == null ) {
+      return;
+    }
+    URLHealth urlHealth = health.get(failed);
+    if ( urlHealth != null && urlHealth.recordFailure(unhealthyThreshold, ejectionTime()) ) {
+      LOG.markedUnhealthyUrl(failed, serviceName, unhealthyThreshold);
+    }
+    //put the failed url at the bottom, a late failure of a url that is no longer handed out is only counted
+    if ( failed.equals(active) ) {
+      urls.remove(failed);
       urls.offer(failed);
-      LOG.markedFailedUrl(failed, urls.peek());
+      LOG.markedFailedUrl(failed, getActiveURL());
+    }
+  }
+
+  @Override
+  public void markSucceeded(String url) {
+    if ( !isDegraded() ) {
+      return;
+    }
+    URLHealth urlHealth = findHealth(hostPort(url));
+    if ( urlHealth != null && urlHealth.recordSuccess(1) ) {
+      LOG.markedHealthyUrl(urlHealth.url, serviceName);
+    }
+  }
+
+  /**
+   * Forgets the failures reported through {@link #markFailed(String)}. Without active health checks this makes
+   * every URL available again; with them only a probe decides when an unhealthy URL comes back.
+   */
+  protected synchronized void clearFailures() {
+    if ( healthChecker == null ) {
+      for ( URLHealth urlHealth : health.values() ) {
+        urlHealth.reset();
+      }
+    }
+  }
+
+  @Override
+  public synchronized void destroy() {
+    if ( healthChecker != null ) {
+      healthChecker.shutdownNow();
+      healthChecker = null;
+    }
+  }
+
+  /**
+   * Probes every URL once and updates its health. Invoked periodically when a health check path is configured.
+   */
+  void checkHealth() {
+    for ( String url : urls ) {
+      URLHealth urlHealth = health.get(url);
+      if ( urlHealth == null ) {
+        continue;
+      }
+      if ( probe(url) ) {
+        if ( urlHealth.recordSuccess(healthyThreshold) ) {
+          LOG.markedHealthyUrl(url, serviceName);
+        }
+      } else if ( urlHealth.recordFailure(unhealthyThreshold, Long.MAX_VALUE) ) {
+        LOG.markedUnhealthyUrl(url, serviceName, unhealthyThreshold);
+      }
+    }
+  }
+
+  /**
+   * Issues a GET for the health check path, resolved against the URL. Any response below 500 counts as
+   * healthy since it proves the server is up and answering; connection failures, timeouts and server
+   * errors do not.
+   */
+  protected boolean probe(String url) {
+    HttpURLConnection connection = null;
+    try {
+      URI uri = URI.create(url).resolve(healthCheckPath);
+      connection = (HttpURLConnection) uri.toURL().openConnection();
+      connection.setConnectTimeout(healthCheckTimeout);
+      connection.setReadTimeout(healthCheckTimeout);
+      connection.setUseCaches(false);
+      connection.setInstanceFollowRedirects(false);
+      int status = connection.getResponseCode();
+      InputStream stream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+      if ( stream != null ) {
+        stream.close();
+      }
+      return status < 500;
+    } catch ( IOException | IllegalArgumentException e ) {
+      LOG.healthCheckFailed(url, e);
+      return false;
+    } finally {
+      if ( connection != null ) {
+        connection.disconnect();
+      }
+    }
+  }
+
+  private void startHealthChecks() {
+    LOG.startingHealthChecks(serviceName, healthCheckPath, healthCheckInterval);
+    final String threadName = "ha-health-check-" + serviceName;
+    healthChecker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, threadName);
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    healthChecker.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          checkHealth();
+        } catch ( RuntimeException e ) {
+          // A failure must not cancel the schedule.
+          LOG.healthCheckFailed(serviceName, e);
+        }
+      }
+    }, healthCheckInterval, healthCheckInterval, TimeUnit.MILLISECONDS);
+  }
+
+  private long ejectionTime() {
+    // With active checks only a probe can bring a URL back, otherwise it is retried after one interval.
+    if ( healthChecker != null ) {
+      return Long.MAX_VALUE;
+    }
+    return System.currentTimeMillis() + healthCheckInterval;
+  }
+
+  private boolean isDegraded() {
+    for ( URLHealth urlHealth : health.values() ) {
+      if ( urlHealth.isDegraded() ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private String findURL(String hostPort) {
+    for ( String url : urls ) {
+      if ( hostPort(url).equals(hostPort) ) {
+        return url;
+      }
+    }
+    return null;
+  }
+
+  private URLHealth findHealth(String hostPort) {
+    for ( URLHealth urlHealth : health.values() ) {
+      if ( urlHealth.hostPort.equals(hostPort) ) {
+        return urlHealth;
+      }
+    }
+    return null;
+  }
+
+  private static String hostPort(String url) {
+    URI uri = URI.create(url);
+    return uri.getHost() + ":" + uri.getPort();
+  }
+
+  private static int positiveOrDefault(int value, int defaultValue) {
+    return value > 0 ? value : defaultValue;
+  }
+
+  private static class URLHealth {
+
+    private final String url;
+
+    private final String hostPort;
+
+    private int failures;
+
+    private int successes;
+
+    private volatile long unavailableUntil;
+
+    URLHealth(String url) {
+      this.url = url;
+      this.hostPort = hostPort(url);
+    }
+
+    boolean isAvailable(long now) {
+      long until = unavailableUntil;
+      return until == 0 || now >= until;
+    }
+
+    synchronized boolean isDegraded() {
+      return failures > 0 || unavailableUntil != 0;
+    }
+
+    /**
+     * @return true if this failure made the URL unhealthy
+     */
+    synchronized boolean recordFailure(int threshold, long until) {
+      successes = 0;
+      failures++;
+      if ( failures >= threshold && isAvailable(System.currentTimeMillis()) ) {
+        unavailableUntil = until;
+        return true;
+      }
+      return false;
+    }
+
+    synchronized void reset() {
+      failures = 0;
+      successes = 0;
+      unavailableUntil = 0;
+    }
+
+    /**
+     * @return true if this success made the URL healthy again
+     */
+    synchronized boolean recordSuccess(int threshold) {
+      failures = 0;
+      if ( unavailableUntil == 0 ) {
+        return false;
+      }
+      successes++;
+      if ( successes >= threshold ) {
+        successes = 0;
+        unavailableUntil = 0;
+        return true;
+      }
+      return false;
     }
   }
 }
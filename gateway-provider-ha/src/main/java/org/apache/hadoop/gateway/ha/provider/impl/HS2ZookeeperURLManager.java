@@ -19,19 +19,34 @@ package org.apache.hadoop.gateway.ha.provider.impl;
 
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.api.CuratorWatcher;
+import org.apache.curator.framework.state.ConnectionState;
+import org.apache.curator.framework.state.ConnectionStateListener;
 import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.apache.hadoop.gateway.ha.provider.HaServiceConfig;
 import org.apache.hadoop.gateway.ha.provider.impl.i18n.HaMessages;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
 
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Discovers the HiveServer2 instances registered in ZooKeeper.
+ * <p/>
+ * A single ZooKeeper client is kept for the lifetime of the manager and a watch on the namespace node
+ * refreshes the URLs in the background whenever instances register or go away, so request threads never
+ * wait on ZooKeeper. Once every URL has been marked failed the list is reset to the latest ZooKeeper view.
+ */
 public class HS2ZookeeperURLManager extends DefaultURLManager {
 
   private static final HaMessages LOG = MessagesFactory.get(HaMessages.class);
@@ -44,6 +59,31 @@ public class HS2ZookeeperURLManager extends DefaultURLManager {
 
   private HashSet<String> failedSet;
 
+  private CuratorFramework zooKeeperClient;
+
+  private ExecutorService refresher;
+
+  private volatile List<String> zooKeeperURLs = new ArrayList<>();
+
+  private final CuratorWatcher childrenWatcher = new CuratorWatcher() {
+    @Override
+    public void process(WatchedEvent event) throws Exception {
+      if ( event.getType() == Watcher.Event.EventType.NodeChildrenChanged ) {
+        scheduleRefresh();
+      }
+    }
+  };
+
+  private final ConnectionStateListener connectionListener = new ConnectionStateListener() {
+    @Override
+    public void stateChanged(CuratorFramework client, ConnectionState newState) {
+      // The watch does not survive an expired session so it is set again after reconnecting.
+      if ( newState == ConnectionState.RECONNECTED ) {
+        scheduleRefresh();
+      }
+    }
+  };
+
   public HS2ZookeeperURLManager() {
     failedSet = new LinkedHashSet<>();
   }
@@ -62,20 +102,34 @@ public class HS2ZookeeperURLManager extends DefaultURLManager {
   }
 
   @Override
-  public void setConfig(HaServiceConfig config) {
+  public synchronized void setConfig(HaServiceConfig config) {
+    super.setConfig(config);
     zooKeeperEnsemble = config.getZookeeperEnsemble();
     zooKeeperNamespace = config.getZookeeperNamespace();
+    closeClient();
+    zooKeeperClient =
+        CuratorFrameworkFactory.builder().connectString(zooKeeperEnsemble)
+            .retryPolicy(new ExponentialBackoffRetry(1000, 3)).build();
+    zooKeeperClient.getConnectionStateListenable().addListener(connectionListener);
+    zooKeeperClient.start();
+    refresher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "hs2-zookeeper-refresh");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
     setURLs(lookupURLs());
   }
 
+  /**
+   * Reads the URLs of all registered instances and sets the watch for the next change.
+   */
   public List<String> lookupURLs() {
     List<String> serverHosts = new ArrayList<>();
-    CuratorFramework zooKeeperClient =
-        CuratorFrameworkFactory.builder().connectString(zooKeeperEnsemble)
-            .retryPolicy(new ExponentialBackoffRetry(1000, 3)).build();
     try {
-      zooKeeperClient.start();
-      List<String> serverNodes = zooKeeperClient.getChildren().forPath("/" + zooKeeperNamespace);
+      List<String> serverNodes = zooKeeperClient.getChildren().usingWatcher(childrenWatcher).forPath("/" + zooKeeperNamespace);
       for ( String serverNode : serverNodes ) {
         String serverInfo =
             new String(
@@ -87,15 +141,64 @@ public class HS2ZookeeperURLManager extends DefaultURLManager {
     } catch ( Exception e ) {
       LOG.failedToGetZookeeperUrls(e);
       throw new RuntimeException(e);
-    } finally {
-      // Close the client connection with ZooKeeper
-      if ( zooKeeperClient != null ) {
-        zooKeeperClient.close();
-      }
     }
+    zooKeeperURLs = serverHosts;
     return serverHosts;
   }
 
+  @Override
+  public synchronized void destroy() {
+    closeClient();
+    super.destroy();
+  }
+
+  private void scheduleRefresh() {
+    ExecutorService executor = refresher;
+    if ( executor != null && !executor.isShutdown() ) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            updateURLs(lookupURLs());
+          } catch ( RuntimeException e ) {
+            // Already logged, the next change or reconnect triggers another refresh.
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Applies a new ZooKeeper view while keeping the current failover order of the URLs that are still registered.
+   */
+  private synchronized void updateURLs(List<String> latest) {
+    List<String> merged = new ArrayList<>();
+    for ( String url : getURLs() ) {
+      if ( latest.contains(url) ) {
+        merged.add(url);
+      }
+    }
+    for ( String url : latest ) {
+      if ( !merged.contains(url) ) {
+        merged.add(url);
+      }
+    }
+    failedSet.retainAll(merged);
+    setURLs(merged);
+    LOG.zookeeperUrlsUpdated(zooKeeperNamespace, merged);
+  }
+
+  private void closeClient() {
+    if ( refresher != null ) {
+      refresher.shutdownNow();
+      refresher = null;
+    }
+    if ( zooKeeperClient != null ) {
+      zooKeeperClient.close();
+      zooKeeperClient = null;
+    }
+  }
+
   private String constructURL(String serverInfo) {
     Matcher matcher = kvPattern.matcher(serverInfo);
     String scheme = "http";
@@ -135,10 +238,11 @@ public class HS2ZookeeperURLManager extends DefaultURLManager {
   @Override
   public synchronized void markFailed(String url) {
     failedSet.add(url);
-    //refresh the list when we have hit all urls once
+    //reset the list to the latest zookeeper view when we have hit all urls once
     if (failedSet.size() >= getURLs().size()) {
       failedSet.clear();
-      setURLs(lookupURLs());
+      setURLs(zooKeeperURLs);
+      clearFailures();
     }
     super.markFailed(url);
   }
@@ -46,4 +46,14 @@ public interface HaDescriptorConstants {
 
    public static final String ZOOKEEPER_NAMESPACE = "zookeeperNamespace";
 
+   public static final String HEALTH_CHECK_PATH = "healthCheckPath";
+
+   public static final String HEALTH_CHECK_INTERVAL = "healthCheckInterval";
+
+   public static final String HEALTH_CHECK_TIMEOUT = "healthCheckTimeout";
+
+   public static final String UNHEALTHY_THRESHOLD = "unhealthyThreshold";
+
+   public static final String HEALTHY_THRESHOLD = "healthyThreshold";
+
 }
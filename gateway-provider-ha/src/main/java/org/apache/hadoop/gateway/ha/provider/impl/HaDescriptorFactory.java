@@ -38,20 +38,44 @@ public abstract class HaDescriptorFactory implements HaServiceConfigConstants {
       String retrySleep = configMap.get(CONFIG_PARAM_RETRY_SLEEP);
       String zookeeperEnsemble = configMap.get(CONFIG_PARAM_ZOOKEEPER_ENSEMBLE);
       String zookeeperNamespace = configMap.get(CONFIG_PARAM_ZOOKEEPER_NAMESPACE);
+      String healthCheckPath = configMap.get(CONFIG_PARAM_HEALTH_CHECK_PATH);
+      String healthCheckInterval = configMap.get(CONFIG_PARAM_HEALTH_CHECK_INTERVAL);
+      String healthCheckTimeout = configMap.get(CONFIG_PARAM_HEALTH_CHECK_TIMEOUT);
+      String unhealthyThreshold = configMap.get(CONFIG_PARAM_UNHEALTHY_THRESHOLD);
+      String healthyThreshold = configMap.get(CONFIG_PARAM_HEALTHY_THRESHOLD);
       return createServiceConfig(serviceName, enabledValue, maxFailoverAttempts,
           failoverSleep, maxRetryAttempts, retrySleep,
-          zookeeperEnsemble, zookeeperNamespace);
+          zookeeperEnsemble, zookeeperNamespace,
+          healthCheckPath, healthCheckInterval, healthCheckTimeout,
+          unhealthyThreshold, healthyThreshold);
    }
 
    public static HaServiceConfig createServiceConfig(String serviceName, String enabledValue,
                                                      String maxFailoverAttemptsValue, String failoverSleepValue,
                                                      String maxRetryAttemptsValue, String retrySleepValue,
                                                      String zookeeperEnsemble, String zookeeperNamespace) {
+      return createServiceConfig(serviceName, enabledValue, maxFailoverAttemptsValue,
+          failoverSleepValue, maxRetryAttemptsValue, retrySleepValue,
+          zookeeperEnsemble, zookeeperNamespace,
+          null, null, null, null, null);
+   }
+
+   public static HaServiceConfig createServiceConfig(String serviceName, String enabledValue,
+                                                     String maxFailoverAttemptsValue, String failoverSleepValue,
+                                                     String maxRetryAttemptsValue, String retrySleepValue,
+                                                     String zookeeperEnsemble, String zookeeperNamespace,
+                                                     String healthCheckPath, String healthCheckIntervalValue,
+                                                     String healthCheckTimeoutValue, String unhealthyThresholdValue,
+                                                     String healthyThresholdValue) {
       boolean enabled = DEFAULT_ENABLED;
       int maxFailoverAttempts = DEFAULT_MAX_FAILOVER_ATTEMPTS;
       int failoverSleep = DEFAULT_FAILOVER_SLEEP;
       int maxRetryAttempts = DEFAULT_MAX_RETRY_ATTEMPTS;
       int retrySleep = DEFAULT_RETRY_SLEEP;
+      int healthCheckInterval = DEFAULT_HEALTH_CHECK_INTERVAL;
+      int healthCheckTimeout = DEFAULT_HEALTH_CHECK_TIMEOUT;
+      int unhealthyThreshold = DEFAULT_UNHEALTHY_THRESHOLD;
+      int healthyThreshold = DEFAULT_HEALTHY_THRESHOLD;
       if (enabledValue != null && enabledValue.trim().length() > 0) {
          enabled = Boolean.parseBoolean(enabledValue);
       }
@@ -67,6 +91,21 @@ public abstract class HaDescriptorFactory implements HaServiceConfigConstants {
       if (retrySleepValue != null && retrySleepValue.trim().length() > 0) {
          retrySleep = Integer.parseInt(retrySleepValue);
       }
+      if (healthCheckPath != null && healthCheckPath.trim().length() == 0) {
+         healthCheckPath = null;
+      }
+      if (healthCheckIntervalValue != null && healthCheckIntervalValue.trim().length() > 0) {
+         healthCheckInterval = Integer.parseInt(healthCheckIntervalValue);
+      }
+      if (healthCheckTimeoutValue != null && healthCheckTimeoutValue.trim().length() > 0) {
+         healthCheckTimeout = Integer.parseInt(healthCheckTimeoutValue);
+      }
+      if (unhealthyThresholdValue != null && unhealthyThresholdValue.trim().length() > 0) {
+         unhealthyThreshold = Integer.parseInt(unhealthyThresholdValue);
+      }
+      if (healthyThresholdValue != null && healthyThresholdValue.trim().length() > 0) {
+         healthyThreshold = Integer.parseInt(healthyThresholdValue);
+      }
       DefaultHaServiceConfig serviceConfig = new DefaultHaServiceConfig(serviceName);
       serviceConfig.setEnabled(enabled);
       serviceConfig.setMaxFailoverAttempts(maxFailoverAttempts);
@@ -75,6 +114,11 @@ public abstract class HaDescriptorFactory implements HaServiceConfigConstants {
       serviceConfig.setRetrySleep(retrySleep);
       serviceConfig.setZookeeperEnsemble(zookeeperEnsemble);
       serviceConfig.setZookeeperNamespace(zookeeperNamespace);
+      serviceConfig.setHealthCheckPath(healthCheckPath);
+      serviceConfig.setHealthCheckInterval(healthCheckInterval);
+      serviceConfig.setHealthCheckTimeout(healthCheckTimeout);
+      serviceConfig.setUnhealthyThreshold(unhealthyThreshold);
+      serviceConfig.setHealthyThreshold(healthyThreshold);
       return serviceConfig;
    }
 
@@ -70,6 +70,13 @@ public class HaDescriptorManager implements HaDescriptorConstants {
                if (config.getZookeeperNamespace() != null) {
                  serviceElement.setAttribute(ZOOKEEPER_NAMESPACE, config.getZookeeperNamespace());
                }
+               if (config.getHealthCheckPath() != null) {
+                 serviceElement.setAttribute(HEALTH_CHECK_PATH, config.getHealthCheckPath());
+                 serviceElement.setAttribute(HEALTH_CHECK_INTERVAL, Integer.toString(config.getHealthCheckInterval()));
+                 serviceElement.setAttribute(HEALTH_CHECK_TIMEOUT, Integer.toString(config.getHealthCheckTimeout()));
+               }
+               serviceElement.setAttribute(UNHEALTHY_THRESHOLD, Integer.toString(config.getUnhealthyThreshold()));
+               serviceElement.setAttribute(HEALTHY_THRESHOLD, Integer.toString(config.getHealthyThreshold()));
                root.appendChild(serviceElement);
             }
          }
@@ -109,7 +116,12 @@ public class HaDescriptorManager implements HaDescriptorConstants {
                      element.getAttribute(MAX_RETRY_ATTEMPTS),
                      element.getAttribute(RETRY_SLEEP),
                      element.getAttribute(ZOOKEEPER_ENSEMBLE),
-                     element.getAttribute(ZOOKEEPER_NAMESPACE));
+                     element.getAttribute(ZOOKEEPER_NAMESPACE),
+                     element.getAttribute(HEALTH_CHECK_PATH),
+                     element.getAttribute(HEALTH_CHECK_INTERVAL),
+                     element.getAttribute(HEALTH_CHECK_TIMEOUT),
+                     element.getAttribute(UNHEALTHY_THRESHOLD),
+                     element.getAttribute(HEALTHY_THRESHOLD));
                descriptor.addServiceConfig(config);
             }
          }
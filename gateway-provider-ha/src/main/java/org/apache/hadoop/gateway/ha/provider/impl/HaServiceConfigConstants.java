@@ -37,6 +37,16 @@ public interface HaServiceConfigConstants {
 
    public static final String CONFIG_PARAM_ZOOKEEPER_NAMESPACE = "zookeeperNamespace";
 
+   public static final String CONFIG_PARAM_HEALTH_CHECK_PATH = "healthCheckPath";
+
+   public static final String CONFIG_PARAM_HEALTH_CHECK_INTERVAL = "healthCheckInterval";
+
+   public static final String CONFIG_PARAM_HEALTH_CHECK_TIMEOUT = "healthCheckTimeout";
+
+   public static final String CONFIG_PARAM_UNHEALTHY_THRESHOLD = "unhealthyThreshold";
+
+   public static final String CONFIG_PARAM_HEALTHY_THRESHOLD = "healthyThreshold";
+
    public static final int DEFAULT_MAX_FAILOVER_ATTEMPTS = 3;
 
    public static final int DEFAULT_FAILOVER_SLEEP = 1000;
@@ -47,4 +57,12 @@ public interface HaServiceConfigConstants {
 
    public static final boolean DEFAULT_ENABLED = true;
 
+   public static final int DEFAULT_HEALTH_CHECK_INTERVAL = 10000;
+
+   public static final int DEFAULT_HEALTH_CHECK_TIMEOUT = 2000;
+
+   public static final int DEFAULT_UNHEALTHY_THRESHOLD = 2;
+
+   public static final int DEFAULT_HEALTHY_THRESHOLD = 2;
+
 }
@@ -20,6 +20,9 @@ package org.apache.hadoop.gateway.ha.provider.impl.i18n;
 import org.apache.hadoop.gateway.i18n.messages.Message;
 import org.apache.hadoop.gateway.i18n.messages.MessageLevel;
 import org.apache.hadoop.gateway.i18n.messages.Messages;
+import org.apache.hadoop.gateway.i18n.messages.StackTrace;
+
+import java.util.List;
 
 @Messages(logger = "org.apache.hadoop.gateway")
 public interface HaMessages {
@@ -42,4 +45,19 @@ public interface HaMessages {
   @Message(level = MessageLevel.ERROR, text = "Failed to get Zookeeper URLs : {0}")
   void failedToGetZookeeperUrls(Exception e);
 
+  @Message(level = MessageLevel.INFO, text = "Zookeeper URLs under namespace {0} changed, now using {1}")
+  void zookeeperUrlsUpdated(String namespace, List<String> urls);
+
+  @Message(level = MessageLevel.INFO, text = "Starting health checks for service {0} using path {1} every {2}ms")
+  void startingHealthChecks(String serviceName, String path, int interval);
+
+  @Message(level = MessageLevel.DEBUG, text = "Health check failed for {0}: {1}")
+  void healthCheckFailed(String url, @StackTrace(level = MessageLevel.DEBUG) Exception e);
+
+  @Message(level = MessageLevel.WARN, text = "Marking URL {0} of service {1} unhealthy after {2} consecutive failures")
+  void markedUnhealthyUrl(String url, String serviceName, int failures);
+
+  @Message(level = MessageLevel.INFO, text = "Marking URL {0} of service {1} healthy")
+  void markedHealthyUrl(String url, String serviceName);
+
 }
@@ -74,4 +74,23 @@ public class DefaultHaProviderTest {
       provider.markFailedURL(serviceName, url2);
       assertEquals(url1, provider.getActiveURL(serviceName));
    }
+
+   @Test
+   public void testUrlManagerWithoutHealthHooks() {
+      HaDescriptor descriptor = new DefaultHaDescriptor();
+      descriptor.addServiceConfig(new DefaultHaServiceConfig("plain-test"));
+      DefaultHaProvider provider = new DefaultHaProvider(descriptor);
+      ArrayList<String> urls = new ArrayList<String>();
+      String url1 = "http://host1";
+      urls.add(url1);
+      String url2 = "http://host2";
+      urls.add(url2);
+      provider.addHaService("plain-test", urls);
+      provider.markFailedURL("plain-test", url1);
+      assertEquals(url2, provider.getActiveURL("plain-test"));
+      // The optional notifications are skipped for a manager that does not take them.
+      provider.markSucceededURL("plain-test", url2);
+      assertEquals(url2, provider.getActiveURL("plain-test"));
+      provider.destroy();
+   }
 }
@@ -17,11 +17,16 @@
  */
 package org.apache.hadoop.gateway.ha.provider.impl;
 
+import org.apache.hadoop.gateway.ha.provider.HaServiceConfig;
 import org.junit.Test;
 
+import java.net.ServerSocket;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class DefaultURLManagerTest {
@@ -70,4 +75,120 @@ public class DefaultURLManagerTest {
       assertEquals(url3, manager.getActiveURL());
    }
 
+   @Test
+   public void testPassiveOutlierDetection() {
+      ArrayList<String> urls = new ArrayList<>();
+      String url1 = "http://host1:1234";
+      urls.add(url1);
+      String url2 = "http://host2:1234";
+      urls.add(url2);
+      String url3 = "http://host3:1234";
+      urls.add(url3);
+      DefaultURLManager manager = new DefaultURLManager();
+      HaServiceConfig config = HaDescriptorFactory.createServiceConfig("foo", "healthCheckInterval=60000;unhealthyThreshold=1");
+      manager.setConfig(config);
+      manager.setURLs(urls);
+      manager.markFailed(url1 + "/path?op=LISTSTATUS");
+      assertEquals(url2, manager.getActiveURL());
+      manager.markFailed(url2);
+      assertEquals(url3, manager.getActiveURL());
+      //all ejected falls back to the head of the list
+      manager.markFailed(url3);
+      assertEquals(url1, manager.getActiveURL());
+      //a request that got through clears the ejection and the ejected head is skipped
+      manager.markSucceeded(url2 + "/path");
+      assertEquals(url1, manager.getURLs().get(0));
+      assertEquals(url2, manager.getActiveURL());
+   }
+
+   @Test
+   public void testFailureOfURLHandedOutInsteadOfEjectedHead() {
+      ArrayList<String> urls = new ArrayList<>();
+      String url1 = "http://host1:1234";
+      urls.add(url1);
+      String url2 = "http://host2:1234";
+      urls.add(url2);
+      String url3 = "http://host3:1234";
+      urls.add(url3);
+      ProbedURLManager manager = new ProbedURLManager();
+      HaServiceConfig config = HaDescriptorFactory.createServiceConfig("foo", "healthCheckPath=/jmx;healthCheckInterval=3600000;unhealthyThreshold=1;healthyThreshold=1");
+      manager.setConfig(config);
+      manager.setURLs(urls);
+      try {
+         manager.down.add(url1);
+         manager.checkHealth();
+         assertEquals(url1, manager.getURLs().get(0));
+         assertEquals(url2, manager.getActiveURL());
+         //the failure is counted against the url that was used and failover moves on to the next one
+         manager.markFailed(url2 + "/path?op=LISTSTATUS");
+         assertEquals(url3, manager.getActiveURL());
+         //a late failure of a url that is no longer handed out does not move the active url
+         manager.markFailed(url2);
+         assertEquals(url3, manager.getActiveURL());
+         manager.down.clear();
+         manager.checkHealth();
+         assertEquals(url1, manager.getActiveURL());
+      } finally {
+         manager.destroy();
+      }
+   }
+
+   @Test
+   public void testActiveHealthChecks() {
+      ArrayList<String> urls = new ArrayList<>();
+      String url1 = "http://host1:1234";
+      urls.add(url1);
+      String url2 = "http://host2:1234";
+      urls.add(url2);
+      ProbedURLManager manager = new ProbedURLManager();
+      HaServiceConfig config = HaDescriptorFactory.createServiceConfig("foo", "healthCheckPath=/jmx;healthCheckInterval=3600000;unhealthyThreshold=2;healthyThreshold=2");
+      manager.setConfig(config);
+      manager.setURLs(urls);
+      try {
+         manager.down.add(url1);
+         manager.checkHealth();
+         assertEquals(url1, manager.getActiveURL());
+         manager.checkHealth();
+         assertEquals(url2, manager.getActiveURL());
+         //all unhealthy falls back to the head of the list
+         manager.down.add(url2);
+         manager.checkHealth();
+         manager.checkHealth();
+         assertEquals(url1, manager.getActiveURL());
+         manager.down.clear();
+         manager.checkHealth();
+         assertEquals(url1, manager.getActiveURL());
+         manager.down.add(url1);
+         manager.checkHealth();
+         assertEquals(url2, manager.getActiveURL());
+      } finally {
+         manager.destroy();
+      }
+   }
+
+   @Test
+   public void testProbeOfUnreachableURL() throws Exception {
+      ServerSocket socket = new ServerSocket(0);
+      int port = socket.getLocalPort();
+      socket.close();
+      DefaultURLManager manager = new DefaultURLManager();
+      HaServiceConfig config = HaDescriptorFactory.createServiceConfig("foo", "healthCheckPath=/jmx;healthCheckInterval=3600000;healthCheckTimeout=500");
+      manager.setConfig(config);
+      try {
+         assertFalse(manager.probe("http://localhost:" + port + "/webhdfs"));
+      } finally {
+         manager.destroy();
+      }
+   }
+
+   private static class ProbedURLManager extends DefaultURLManager {
+
+      private Set<String> down = new HashSet<>();
+
+      @Override
+      protected boolean probe(String url) {
+         return !down.contains(url);
+      }
+   }
+
 }
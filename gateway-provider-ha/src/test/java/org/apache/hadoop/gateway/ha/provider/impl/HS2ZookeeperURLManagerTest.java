@@ -34,6 +34,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class HS2ZookeeperURLManagerTest {
@@ -76,6 +77,7 @@ public class HS2ZookeeperURLManagerTest {
 
   @After
   public void teardown() throws IOException {
+    manager.destroy();
     cluster.stop();
   }
 
@@ -130,5 +132,43 @@ public class HS2ZookeeperURLManagerTest {
     Assert.assertTrue(manager instanceof HS2ZookeeperURLManager);
   }
 
+  @Test
+  public void testURLsFollowZookeeperChanges() throws Exception {
+    List<String> urls = manager.getURLs();
+    assertEquals(4, urls.size());
+    String url1 = urls.get(0);
+    manager.markFailed(url1);
+    String active = manager.getActiveURL();
+
+    CuratorFramework zooKeeperClient =
+        CuratorFrameworkFactory.builder().connectString(cluster.getConnectString())
+            .retryPolicy(new ExponentialBackoffRetry(1000, 3)).build();
+    zooKeeperClient.start();
+    try {
+      String host5 = "hive.server2.authentication=NONE;hive.server2.transport.mode=http;hive.server2.thrift.http.path=cliservice;" +
+          "hive.server2.thrift.http.port=10005;hive.server2.thrift.bind.host=host5;hive.server2.use.SSL=false";
+      zooKeeperClient.create().forPath("/hiveServer2/host5", host5.getBytes());
+      String url5 = "http://host5:10005/cliservice";
+      waitForURLs(5);
+      assertTrue(manager.getURLs().contains(url5));
+      //the failover order is kept across updates
+      assertEquals(active, manager.getActiveURL());
+      assertEquals(url1, manager.getURLs().get(3));
+
+      zooKeeperClient.delete().forPath("/hiveServer2/host5");
+      waitForURLs(4);
+      assertFalse(manager.getURLs().contains(url5));
+    } finally {
+      zooKeeperClient.close();
+    }
+  }
+
+  private void waitForURLs(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (manager.getURLs().size() != count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+    assertEquals(count, manager.getURLs().size());
+  }
 
 }
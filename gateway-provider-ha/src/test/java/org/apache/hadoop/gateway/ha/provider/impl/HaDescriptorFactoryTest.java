@@ -48,6 +48,16 @@ public class HaDescriptorFactoryTest {
       assertEquals(1000, serviceConfig.getFailoverSleep());
       assertEquals(5, serviceConfig.getMaxRetryAttempts());
       assertEquals(3000, serviceConfig.getRetrySleep());
+      assertNull(serviceConfig.getHealthCheckPath());
+      assertEquals(HaServiceConfigConstants.DEFAULT_HEALTH_CHECK_INTERVAL, serviceConfig.getHealthCheckInterval());
+      assertEquals(HaServiceConfigConstants.DEFAULT_UNHEALTHY_THRESHOLD, serviceConfig.getUnhealthyThreshold());
+
+      serviceConfig = HaDescriptorFactory.createServiceConfig("baz", "healthCheckPath=/jmx;healthCheckInterval=5000;healthCheckTimeout=300;unhealthyThreshold=4;healthyThreshold=3");
+      assertEquals("/jmx", serviceConfig.getHealthCheckPath());
+      assertEquals(5000, serviceConfig.getHealthCheckInterval());
+      assertEquals(300, serviceConfig.getHealthCheckTimeout());
+      assertEquals(4, serviceConfig.getUnhealthyThreshold());
+      assertEquals(3, serviceConfig.getHealthyThreshold());
 
    }
 }
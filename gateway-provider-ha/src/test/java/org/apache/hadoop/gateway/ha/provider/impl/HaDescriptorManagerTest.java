@@ -85,5 +85,20 @@ public class HaDescriptorManagerTest {
       assertThat( the( xml ), hasXPath( "/ha/service[@enabled='true' and @failoverSleep='5000' and @maxFailoverAttempts='3' and @maxRetryAttempts='5' and @name='bar' and @retrySleep='8000']" ) );
    }
 
+   @Test
+   public void testHealthCheckRoundTrip() throws IOException {
+      HaDescriptor descriptor = HaDescriptorFactory.createDescriptor();
+      descriptor.addServiceConfig(HaDescriptorFactory.createServiceConfig("foo", "true", "3", "1000", "3", "1000", null, null, "/jmx", "5000", "700", "4", "3"));
+      StringWriter writer = new StringWriter();
+      HaDescriptorManager.store(descriptor, writer);
+      String descriptorXml = writer.toString();
+      assertThat( the( descriptorXml ), hasXPath( "/ha/service[@name='foo' and @healthCheckPath='/jmx' and @healthCheckInterval='5000' and @healthCheckTimeout='700' and @unhealthyThreshold='4' and @healthyThreshold='3']" ) );
+      HaServiceConfig config = HaDescriptorManager.load(new ByteArrayInputStream(descriptorXml.getBytes())).getServiceConfig("foo");
+      assertEquals("/jmx", config.getHealthCheckPath());
+      assertEquals(5000, config.getHealthCheckInterval());
+      assertEquals(700, config.getHealthCheckTimeout());
+      assertEquals(4, config.getUnhealthyThreshold());
+      assertEquals(3, config.getHealthyThreshold());
+   }
 
 }
@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.ha.provider.impl;
+
+import org.apache.hadoop.gateway.ha.provider.HaServiceConfig;
+import org.apache.hadoop.gateway.ha.provider.URLManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A URL manager that only implements {@link URLManager}, like one written against an earlier release.
+ */
+public class PlainURLManager implements URLManager {
+
+  private List<String> urls = new ArrayList<>();
+
+  @Override
+  public boolean supportsConfig(HaServiceConfig config) {
+    return config.getServiceName().equalsIgnoreCase("plain-test");
+  }
+
+  @Override
+  public void setConfig(HaServiceConfig config) {
+  }
+
+  @Override
+  public String getActiveURL() {
+    return urls.get(0);
+  }
+
+  @Override
+  public List<String> getURLs() {
+    return urls;
+  }
+
+  @Override
+  public void setURLs(List<String> urls) {
+    this.urls = new ArrayList<>(urls);
+  }
+
+  @Override
+  public void markFailed(String url) {
+    urls.remove(url);
+    urls.add(url);
+  }
+}
@@ -18,6 +18,7 @@
 package org.apache.hadoop.gateway.hostmap.impl;
 
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteEnvironment;
+import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteCacheableFunction;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteContext;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteFunctionProcessor;
 import org.apache.hadoop.gateway.hostmap.api.HostmapFunctionDescriptor;
@@ -31,7 +32,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class HostmapFunctionProcessor
-    implements UrlRewriteFunctionProcessor<HostmapFunctionDescriptor> {
+    implements UrlRewriteFunctionProcessor<HostmapFunctionDescriptor>, UrlRewriteCacheableFunction {
 
   public static final String DESCRIPTOR_DEFAULT_FILE_NAME = "hostmap.txt";
   public static final String DESCRIPTOR_DEFAULT_LOCATION = "/WEB-INF/" + DESCRIPTOR_DEFAULT_FILE_NAME;
@@ -66,6 +67,12 @@ public class HostmapFunctionProcessor
     }
   }
 
+  // The host map is read once from the topology so its results never change.
+  @Override
+  public boolean isCacheable( List<String> parameters ) {
+    return true;
+  }
+
   @Override
   public List<String> resolve( UrlRewriteContext context, List<String> parameters ) throws Exception {
     List<String> result = null;
@@ -19,13 +19,16 @@ package org.apache.hadoop.gateway.svcregfunc.impl;
 
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteEnvironment;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFunctionDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteCacheableFunction;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteFunctionProcessor;
 import org.apache.hadoop.gateway.ha.provider.HaProvider;
 import org.apache.hadoop.gateway.ha.provider.HaServletContextListener;
 import org.apache.hadoop.gateway.services.GatewayServices;
 import org.apache.hadoop.gateway.services.registry.ServiceRegistry;
 
-abstract class ServiceRegistryFunctionProcessorBase<T extends UrlRewriteFunctionDescriptor> implements UrlRewriteFunctionProcessor<T> {
+import java.util.List;
+
+abstract class ServiceRegistryFunctionProcessorBase<T extends UrlRewriteFunctionDescriptor> implements UrlRewriteFunctionProcessor<T>, UrlRewriteCacheableFunction {
 
   private String cluster;
   private GatewayServices services;
@@ -58,6 +61,19 @@ abstract class ServiceRegistryFunctionProcessorBase<T extends UrlRewriteFunction
     cluster = null;
   }
 
+  // The URL of an HA enabled service changes on failover so only the URLs from the registry may be shared.
+  @Override
+  public boolean isCacheable( List<String> parameters ) {
+    if( haProvider != null && parameters != null ) {
+      for( String role : parameters ) {
+        if( role != null && haProvider.isHaEnabled( role ) ) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   public String lookupServiceUrl( String role ) throws Exception {
     if (haProvider != null && haProvider.isHaEnabled(role)) {
        return haProvider.getActiveURL(role);
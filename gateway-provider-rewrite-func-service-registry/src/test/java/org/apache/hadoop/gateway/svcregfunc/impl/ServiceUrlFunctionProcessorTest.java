@@ -18,6 +18,8 @@
 package org.apache.hadoop.gateway.svcregfunc.impl;
 
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteEnvironment;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteProcessor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteRulesDescriptorFactory;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriter;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteContext;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteFunctionProcessor;
@@ -28,12 +30,17 @@ import org.apache.hadoop.gateway.services.hostmap.HostMapper;
 import org.apache.hadoop.gateway.services.hostmap.HostMapperService;
 import org.apache.hadoop.gateway.services.registry.ServiceRegistry;
 import org.apache.hadoop.gateway.svcregfunc.api.ServiceUrlFunctionDescriptor;
+import org.apache.hadoop.gateway.util.urltemplate.Parser;
+import org.apache.hadoop.gateway.util.urltemplate.Resolver;
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.StringReader;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.ServiceLoader;
 
 import static org.hamcrest.CoreMatchers.*;
@@ -150,4 +157,61 @@ public class ServiceUrlFunctionProcessorTest {
     func.destroy();
   }
 
+  @Test
+  public void testRewriteFollowsHaFailover() throws Exception {
+    final String[] active = new String[]{ "http://nn1:50070/webhdfs" };
+    HaProvider haProvider = EasyMock.createNiceMock( HaProvider.class );
+    EasyMock.expect( haProvider.isHaEnabled( "WEBHDFS" ) ).andReturn( Boolean.TRUE ).anyTimes();
+    EasyMock.expect( haProvider.getActiveURL( "WEBHDFS" ) ).andAnswer( new IAnswer<String>() {
+      @Override
+      public String answer() {
+        return active[ 0 ];
+      }
+    } ).anyTimes();
+    ServiceRegistry registry = EasyMock.createNiceMock( ServiceRegistry.class );
+    EasyMock.expect( registry.lookupServiceURL( "test-cluster", "OOZIE" ) ).andReturn( "http://oozie:11000/oozie" ).anyTimes();
+    GatewayServices services = EasyMock.createNiceMock( GatewayServices.class );
+    EasyMock.expect( services.getService( GatewayServices.SERVICE_REGISTRY_SERVICE ) ).andReturn( registry ).anyTimes();
+    UrlRewriteEnvironment environment = EasyMock.createNiceMock( UrlRewriteEnvironment.class );
+    EasyMock.expect( environment.getAttribute( GatewayServices.GATEWAY_SERVICES_ATTRIBUTE ) ).andReturn( services ).anyTimes();
+    EasyMock.expect( environment.getAttribute( GatewayServices.GATEWAY_CLUSTER_ATTRIBUTE ) ).andReturn( "test-cluster" ).anyTimes();
+    EasyMock.expect( environment.getAttribute( HaServletContextListener.PROVIDER_ATTRIBUTE_NAME ) ).andReturn( haProvider ).anyTimes();
+    EasyMock.expect( environment.resolve( UrlRewriteProcessor.CACHE_SIZE_PARAM ) ).andReturn( Arrays.asList( "1024" ) ).anyTimes();
+    EasyMock.replay( haProvider, registry, services, environment );
+
+    UrlRewriteProcessor processor = new UrlRewriteProcessor();
+    processor.initialize( environment, UrlRewriteRulesDescriptorFactory.load( "xml", new StringReader(
+        "<rules>" +
+        "<rule dir=\"IN\" name=\"WEBHDFS/webhdfs/inbound/namenode/file\" pattern=\"*://*:*/**/webhdfs/{version}/{path=**}?{**}\">" +
+        "<rewrite template=\"{$serviceUrl[WEBHDFS]}/{version}/{path=**}?{**}\"/></rule>" +
+        "<rule dir=\"IN\" name=\"OOZIE/oozie/inbound\" pattern=\"*://*:*/**/oozie/{**}?{**}\">" +
+        "<rewrite template=\"{$serviceUrl[OOZIE]}/{**}?{**}\"/></rule>" +
+        "</rules>" ) ) );
+    Resolver resolver = new Resolver() {
+      @Override
+      public List<String> resolve( String name ) {
+        return null;
+      }
+    };
+    String input = "https://gateway:8443/gateway/sandbox/webhdfs/v1/tmp?op=LISTSTATUS";
+
+    assertThat( processor.rewrite( resolver, Parser.parseLiteral( input ), UrlRewriter.Direction.IN, null ).toString(),
+        is( "http://nn1:50070/webhdfs/v1/tmp?op=LISTSTATUS" ) );
+    // The dispatch fails over and rewrites the same request URL again, which must now reach the new active URL.
+    active[ 0 ] = "http://nn2:50070/webhdfs";
+    assertThat( processor.rewrite( resolver, Parser.parseLiteral( input ), UrlRewriter.Direction.IN, null ).toString(),
+        is( "http://nn2:50070/webhdfs/v1/tmp?op=LISTSTATUS" ) );
+    assertThat( processor.getCache().getHitCount(), is( 0L ) );
+    assertThat( processor.getCache().getUncacheableCount(), is( 2L ) );
+
+    // Services without HA still share their results.
+    input = "https://gateway:8443/gateway/sandbox/oozie/v1/jobs?len=10";
+    processor.rewrite( resolver, Parser.parseLiteral( input ), UrlRewriter.Direction.IN, null );
+    assertThat( processor.rewrite( resolver, Parser.parseLiteral( input ), UrlRewriter.Direction.IN, null ).toString(),
+        is( "http://oozie:11000/oozie/v1/jobs?len=10" ) );
+    assertThat( processor.getCache().getHitCount(), is( 1L ) );
+
+    processor.destroy();
+  }
+
 }
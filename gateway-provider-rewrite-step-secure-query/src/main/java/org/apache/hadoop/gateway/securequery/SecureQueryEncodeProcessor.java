@@ -19,6 +19,7 @@ package org.apache.hadoop.gateway.securequery;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteEnvironment;
+import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteCacheableStep;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteContext;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteStepProcessor;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteStepStatus;
@@ -26,7 +27,7 @@ import org.apache.hadoop.gateway.util.urltemplate.Parser;
 import org.apache.hadoop.gateway.util.urltemplate.Template;
 
 public class SecureQueryEncodeProcessor
-    implements UrlRewriteStepProcessor<SecureQueryEncodeDescriptor> {
+    implements UrlRewriteStepProcessor<SecureQueryEncodeDescriptor>, UrlRewriteCacheableStep {
 
   private static final String ENCODED_PARAMETER_NAME = "_";
 
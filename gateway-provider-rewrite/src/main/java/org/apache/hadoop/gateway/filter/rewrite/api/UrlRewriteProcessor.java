@@ -18,11 +18,12 @@
 package org.apache.hadoop.gateway.filter.rewrite.api;
 
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteCache;
 import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteContextImpl;
 import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteFunctionProcessorFactory;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteParserFactories;
 import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteRuleProcessorHolder;
 import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteStepProcessorHolder;
-import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteContext;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteFunctionProcessor;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteStepStatus;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
@@ -32,6 +33,7 @@ import org.apache.hadoop.gateway.util.urltemplate.Template;
 
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriter.Direction.IN;
@@ -41,12 +43,18 @@ public class UrlRewriteProcessor implements UrlRewriter {
 
   private static final UrlRewriteMessages LOG = MessagesFactory.get( UrlRewriteMessages.class );
 
+  // The maximum number of rewrite results shared between requests.  The cache is disabled unless this is set.
+  // A size of 1024 covers the distinct links of the busiest UI pages.
+  public static final String CACHE_SIZE_PARAM = "rewrite.cache.size";
+
   UrlRewriteEnvironment environment;
   UrlRewriteRulesDescriptor descriptor;
   Map<String,UrlRewriteRuleProcessorHolder> rules = new HashMap<String,UrlRewriteRuleProcessorHolder>();
   Matcher<UrlRewriteRuleProcessorHolder> inbound = new Matcher<UrlRewriteRuleProcessorHolder>();
   Matcher<UrlRewriteRuleProcessorHolder> outbound = new Matcher<UrlRewriteRuleProcessorHolder>();
   Map<String,UrlRewriteFunctionProcessor> functions = new HashMap<String,UrlRewriteFunctionProcessor>();
+  UrlRewriteParserFactories parserFactories;
+  UrlRewriteCache cache;
 
   public UrlRewriteProcessor() {
   }
@@ -55,6 +63,8 @@ public class UrlRewriteProcessor implements UrlRewriter {
   public void initialize( UrlRewriteEnvironment environment, UrlRewriteRulesDescriptor descriptor ) {
     this.environment = environment;
     this.descriptor = descriptor;
+    this.parserFactories = new UrlRewriteParserFactories();
+    this.cache = createCache( environment );
     initializeFunctions( descriptor );
     initializeRules( descriptor );
   }
@@ -63,6 +73,29 @@ public class UrlRewriteProcessor implements UrlRewriter {
     return descriptor;
   }
 
+  // The parser factories shared by the filter readers that rewrite bodies with this processor.
+  public UrlRewriteParserFactories getParserFactories() {
+    return parserFactories;
+  }
+
+  // The cache of rewrite results shared between requests or null if it is disabled.
+  public UrlRewriteCache getCache() {
+    return cache;
+  }
+
+  private static UrlRewriteCache createCache( UrlRewriteEnvironment environment ) {
+    int size = 0;
+    List<String> values = environment == null ? null : environment.resolve( CACHE_SIZE_PARAM );
+    if( values != null && !values.isEmpty() && values.get( 0 ) != null ) {
+      try {
+        size = Integer.parseInt( values.get( 0 ).trim() );
+      } catch( NumberFormatException e ) {
+        LOG.invalidRewriteCacheSize( values.get( 0 ) );
+      }
+    }
+    return size > 0 ? new UrlRewriteCache( size ) : null;
+  }
+
   @SuppressWarnings("unchecked")
   private void initializeFunctions( UrlRewriteRulesDescriptor rules ) {
     for( String name : UrlRewriteFunctionDescriptorFactory.getNames() ) {
@@ -105,6 +138,10 @@ public class UrlRewriteProcessor implements UrlRewriter {
   }
 
   public void destroy() {
+    if( cache != null ) {
+      LOG.rewriteCacheStatistics( cache.getHitCount(), cache.getMissCount(), cache.getUncacheableCount() );
+      cache.clear();
+    }
     for( UrlRewriteStepProcessorHolder rule : rules.values() ) {
       try {
         rule.destroy();
@@ -123,9 +160,18 @@ public class UrlRewriteProcessor implements UrlRewriter {
 
   @Override
   public Template rewrite( Resolver resolver, Template inputUri, Direction direction, String ruleName ) {
+    String cacheKey = null;
+    if( cache != null ) {
+      cacheKey = UrlRewriteCache.key( inputUri, direction, ruleName );
+      Template cachedUri = cache.get( cacheKey, resolver );
+      if( cachedUri != null ) {
+        return cachedUri;
+      }
+    }
     Template outputUri = inputUri;
-    UrlRewriteStepProcessorHolder stepHolder = null;
+    UrlRewriteRuleProcessorHolder stepHolder = null;
     String effectiveRuleName = null;
+    UrlRewriteContextImpl context = null;
     if( ruleName == null || "*".equals( ruleName ) ) {
       ruleName = null; // Used for logging later.
       Matcher<UrlRewriteRuleProcessorHolder>.Match match = null;
@@ -146,7 +192,7 @@ public class UrlRewriteProcessor implements UrlRewriter {
       effectiveRuleName = ruleName;
     }
     if( stepHolder != null ) {
-      UrlRewriteContext context = new UrlRewriteContextImpl( environment, resolver, functions, direction, inputUri );
+      context = new UrlRewriteContextImpl( environment, resolver, functions, direction, inputUri );
       try {
         UrlRewriteStepStatus stepStatus = stepHolder.process( context );
         if( UrlRewriteStepStatus.SUCCESS == stepStatus ) {
@@ -167,6 +213,14 @@ public class UrlRewriteProcessor implements UrlRewriter {
     } else {
       LOG.noRuleMatchingUrl( inputUri, direction );
     }
+    if( cacheKey != null ) {
+      // Failures aren't cached since they may be caused by a transient problem.
+      if( outputUri == null || ( stepHolder != null && !( stepHolder.isCacheable() && context.isCacheable() ) ) ) {
+        cache.skip();
+      } else {
+        cache.put( cacheKey, outputUri, context == null ? null : context.getResolvedParameters() );
+      }
+    }
     return outputUri;
   }
 
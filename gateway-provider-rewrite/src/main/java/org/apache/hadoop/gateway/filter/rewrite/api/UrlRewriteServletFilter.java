@@ -42,6 +42,10 @@ public class UrlRewriteServletFilter extends AbstractGatewayFilter {
   public static final String RESPONSE_HEADERS_FILTER_PARAM = "response.headers";
   public static final String RESPONSE_COOKIES_FILTER_PARAM = "response.cookies";
   public static final String RESPONSE_BODY_FILTER_PARAM = "response.body";
+  public static final String RESPONSE_GZIP_LEVEL_PARAM = "response.gzip.level";
+  public static final String RESPONSE_GZIP_BUFFER_PARAM = "response.gzip.buffer";
+  public static final String RESPONSE_GZIP_COMPRESS_PARAM = "response.gzip.compress";
+  public static final String RESPONSE_GZIP_PARAM_PREFIX = "response.gzip.";
 
   public static final MimeType HEADERS_MIME_TYPE = MimeTypes.create( "application/x-http-headers", null );
   public static final MimeType COOKIES_MIME_TYPE = MimeTypes.create( "application/x-http-cookies", null );
@@ -57,7 +61,15 @@ public class UrlRewriteServletFilter extends AbstractGatewayFilter {
     FilterConfig config = getConfig();
     UrlRewriteRequest rewriteRequest = new UrlRewriteRequest( config, request );
     UrlRewriteResponse rewriteResponse = new UrlRewriteResponse( config, rewriteRequest, response );
-    chain.doFilter( rewriteRequest, rewriteResponse );
+    boolean completed = false;
+    try {
+      chain.doFilter( rewriteRequest, rewriteResponse );
+      completed = true;
+    } finally {
+      if( !completed ) {
+        rewriteResponse.abortOutputStream();
+      }
+    }
   }
 
 }
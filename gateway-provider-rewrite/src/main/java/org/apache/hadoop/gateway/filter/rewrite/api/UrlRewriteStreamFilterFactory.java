@@ -17,12 +17,14 @@
  */
 package org.apache.hadoop.gateway.filter.rewrite.api;
 
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteMemo;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteParserFactories;
+import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteByteStreamFilter;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteStreamFilter;
 import org.apache.hadoop.gateway.util.MimeTypes;
 import org.apache.hadoop.gateway.util.urltemplate.Resolver;
 
 import javax.activation.MimeType;
-import javax.activation.MimeTypeParseException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
@@ -36,6 +38,8 @@ public abstract class UrlRewriteStreamFilterFactory {
 
   private static Map<String,Map<String,UrlRewriteStreamFilter>> MAP = loadFactories();
 
+  private static Map<String,Map<String,UrlRewriteByteStreamFilter>> BYTE_MAP = loadByteFactories();
+
   private UrlRewriteStreamFilterFactory() {
   }
 
@@ -49,59 +53,98 @@ public abstract class UrlRewriteStreamFilterFactory {
       UrlRewriteFilterContentDescriptor config )
           throws IOException {
     InputStream filteredStream = null;
-    Map<String,UrlRewriteStreamFilter> nameMap = getNameMap( type );
-    UrlRewriteStreamFilter filter = getFilter( nameMap, name );
-    String charset = MimeTypes.getCharset( type, DEFAULT_CHARACTER_ENCODING );
-    if( filter != null ) {
-      filteredStream = filter.filter( stream, charset, rewriter, resolver, direction, config );
+    String declaredCharset = MimeTypes.getCharset( type, null );
+    String charset = declaredCharset == null ? DEFAULT_CHARACTER_ENCODING : declaredCharset;
+    UrlRewriteByteStreamFilter byteFilter = getFilter( getNameMap( BYTE_MAP, type ), name );
+    if( byteFilter != null && byteFilter.isEncodingSupported( declaredCharset ) ) {
+      filteredStream = byteFilter.filter( stream, charset, rewriter, resolver, direction, config );
+    } else {
+      UrlRewriteStreamFilter filter = getFilter( getNameMap( MAP, type ), name );
+      if( filter != null ) {
+        filteredStream = filter.filter( stream, charset, rewriter, resolver, direction, config );
+      }
     }
     return filteredStream;
   }
 
+  /**
+   * Returns the parser factories the filters should create their readers with.  These are the ones
+   * of the rewrite processor if the rewriter is an initialized processor and shared defaults otherwise.
+   */
+  public static UrlRewriteParserFactories getParserFactories( UrlRewriter rewriter ) {
+    UrlRewriteParserFactories factories = null;
+    if( rewriter instanceof UrlRewriteMemo ) {
+      rewriter = ((UrlRewriteMemo)rewriter).getRewriter();
+    }
+    if( rewriter instanceof UrlRewriteProcessor ) {
+      factories = ((UrlRewriteProcessor)rewriter).getParserFactories();
+    }
+    return factories == null ? UrlRewriteParserFactories.getDefault() : factories;
+  }
+
+  /**
+   * Returns true if a body of the given type would be passed through unchanged, i.e. only the
+   * filters registered without a type apply to it.
+   */
+  public static boolean isPassThrough( MimeType type, String name ) {
+    if( getFilter( getNameMap( BYTE_MAP, type ), name ) != null ) {
+      return false;
+    }
+    Map<String,UrlRewriteStreamFilter> nameMap = getNameMap( MAP, type );
+    return nameMap == null || nameMap == MAP.get( null ) || getFilter( nameMap, name ) == null;
+  }
+
   private static Map<String,Map<String,UrlRewriteStreamFilter>> loadFactories() {
     Map<String,Map<String,UrlRewriteStreamFilter>> typeMap = new HashMap<String,Map<String,UrlRewriteStreamFilter>>();
     ServiceLoader<UrlRewriteStreamFilter> filters = ServiceLoader.load( UrlRewriteStreamFilter.class );
     for( UrlRewriteStreamFilter filter : filters ) {
-      String[] types = filter.getTypes();
-      for( String type: types ) {
-        Map<String,UrlRewriteStreamFilter> nameMap = typeMap.get( type );
-        if( nameMap == null ) {
-          nameMap = new LinkedHashMap<String,UrlRewriteStreamFilter>();
-          typeMap.put( type, nameMap );
-        }
-        for( String name: filter.getNames() ) {
-          nameMap.put( name, filter );
-        }
-      }
+      addFilter( typeMap, filter, filter.getTypes(), filter.getNames() );
+    }
+    return typeMap;
+  }
+
+  private static Map<String,Map<String,UrlRewriteByteStreamFilter>> loadByteFactories() {
+    Map<String,Map<String,UrlRewriteByteStreamFilter>> typeMap = new HashMap<String,Map<String,UrlRewriteByteStreamFilter>>();
+    ServiceLoader<UrlRewriteByteStreamFilter> filters = ServiceLoader.load( UrlRewriteByteStreamFilter.class );
+    for( UrlRewriteByteStreamFilter filter : filters ) {
+      addFilter( typeMap, filter, filter.getTypes(), filter.getNames() );
     }
     return typeMap;
   }
 
-  private static Map<String,UrlRewriteStreamFilter> getNameMap( MimeType type ) {
+  private static <T> void addFilter( Map<String,Map<String,T>> typeMap, T filter, String[] types, String[] names ) {
+    for( String type: types ) {
+      Map<String,T> nameMap = typeMap.get( type );
+      if( nameMap == null ) {
+        nameMap = new LinkedHashMap<String,T>();
+        typeMap.put( type, nameMap );
+      }
+      for( String name: names ) {
+        nameMap.put( name, filter );
+      }
+    }
+  }
+
+  // Falls back from type/subtype to */subtype, */* and finally the filters registered without a type.
+  private static <T> Map<String,T> getNameMap( Map<String,Map<String,T>> map, MimeType type ) {
     if( type == null ) {
       type = new MimeType();
     }
-    Map<String,UrlRewriteStreamFilter> nameMap = MAP.get( type.getBaseType() );
-    try {
+    Map<String,T> nameMap = map.get( type.getBaseType() );
+    if( nameMap == null ) {
+      nameMap = map.get( "*/" + type.getSubType() );
       if( nameMap == null ) {
-        type.setPrimaryType( "*" );
-        nameMap = MAP.get( type.getBaseType() );
+        nameMap = map.get( "*/*" );
         if( nameMap == null ) {
-          type.setSubType( "*" );
-          nameMap = MAP.get( type.getBaseType() );
-          if( nameMap == null ) {
-            nameMap = MAP.get( null );
-          }
+          nameMap = map.get( null );
         }
       }
-    } catch( MimeTypeParseException e ) {
-      throw new IllegalArgumentException( type.toString(), e );
     }
     return nameMap;
   }
 
-  private static UrlRewriteStreamFilter getFilter( Map<String,UrlRewriteStreamFilter> map, String name ) {
-    UrlRewriteStreamFilter filter = null;
+  private static <T> T getFilter( Map<String,T> map, String name ) {
+    T filter = null;
     if( map != null ) {
       if( name == null && !map.isEmpty() ) {
         filter = map.values().iterator().next();
@@ -82,4 +82,16 @@ public interface UrlRewriteMessages {
   @Message( level = MessageLevel.TRACE, text = "No rule matching URL: {0}, direction: {1}" )
   void noRuleMatchingUrl( Template inputUri, UrlRewriter.Direction direction );
 
+  @Message( level = MessageLevel.DEBUG, text = "Failed to resolve host name {0}, using it as is" )
+  void failedToResolveHostName( String hostName );
+
+  @Message( level = MessageLevel.WARN, text = "Ignoring invalid value {1} of filter parameter {0}" )
+  void invalidFilterParameter( String name, String value );
+
+  @Message( level = MessageLevel.WARN, text = "Ignoring invalid rewrite cache size {0}" )
+  void invalidRewriteCacheSize( String value );
+
+  @Message( level = MessageLevel.DEBUG, text = "Rewrite cache hits {0}, misses {1}, uncacheable {2}" )
+  void rewriteCacheStatistics( long hits, long misses, long uncacheable );
+
 }
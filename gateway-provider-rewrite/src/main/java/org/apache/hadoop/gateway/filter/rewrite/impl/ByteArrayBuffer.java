@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A growable byte buffer backed by arrays from {@link ByteArrayPool}.
+ * Bytes are appended at the end and consumed from the front; the buffer rewinds once it has been drained.
+ */
+public final class ByteArrayBuffer extends OutputStream {
+
+  private byte[] data;
+  private int start;
+  private int end;
+
+  public ByteArrayBuffer() {
+    data = ByteArrayPool.acquire();
+  }
+
+  public byte[] array() {
+    return data;
+  }
+
+  public int start() {
+    return start;
+  }
+
+  public int end() {
+    return end;
+  }
+
+  public int available() {
+    return end - start;
+  }
+
+  @Override
+  public void write( int b ) {
+    ensureCapacity( 1 );
+    data[ end++ ] = (byte)b;
+  }
+
+  @Override
+  public void write( byte[] bytes, int offset, int length ) {
+    ensureCapacity( length );
+    System.arraycopy( bytes, offset, data, end, length );
+    end += length;
+  }
+
+  public int read( byte[] bytes, int offset, int length ) {
+    int count = Math.min( length, end - start );
+    System.arraycopy( data, start, bytes, offset, count );
+    skip( count );
+    return count;
+  }
+
+  public void skip( int count ) {
+    start += count;
+    if( start == end ) {
+      reset();
+    }
+  }
+
+  public void reset() {
+    start = 0;
+    end = 0;
+  }
+
+  /**
+   * Moves the unconsumed bytes to the front of the buffer and makes room for at least the given number of bytes.
+   */
+  public void compact( int capacity ) {
+    if( start > 0 ) {
+      System.arraycopy( data, start, data, 0, end - start );
+      end -= start;
+      start = 0;
+    }
+    ensureCapacity( capacity );
+  }
+
+  /**
+   * Appends the next bytes read from a stream, compacting or growing the buffer if it is full.
+   * @return the number of bytes read or -1 at the end of the stream
+   */
+  public int fill( InputStream stream ) throws IOException {
+    if( end == data.length ) {
+      compact( 1 );
+    }
+    int count = stream.read( data, end, data.length - end );
+    if( count > 0 ) {
+      end += count;
+    }
+    return count;
+  }
+
+  /**
+   * Returns the buffer's array to the pool.  The buffer must not be used afterwards.
+   */
+  @Override
+  public void close() {
+    ByteArrayPool.release( data );
+    data = null;
+  }
+
+  private void ensureCapacity( int length ) {
+    if( end + length > data.length ) {
+      byte[] grown = new byte[ Math.max( data.length * 2, end + length ) ];
+      System.arraycopy( data, 0, grown, 0, end );
+      ByteArrayPool.release( data );
+      data = grown;
+    }
+  }
+
+}
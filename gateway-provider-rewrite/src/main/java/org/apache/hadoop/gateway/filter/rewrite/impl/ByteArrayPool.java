@@ -0,0 +1,59 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small pool of fixed size byte arrays shared by the byte level rewrite filters
+ * so that every filtered response does not allocate its own buffers.
+ * Only arrays of {@link #BUFFER_SIZE} are pooled; arrays a filter had to grow are left to the garbage collector.
+ */
+public final class ByteArrayPool {
+
+  public static final int BUFFER_SIZE = 8 * 1024;
+
+  private static final int MAX_POOLED = 256;
+
+  private static final Queue<byte[]> POOL = new ConcurrentLinkedQueue<byte[]>();
+  private static final AtomicInteger SIZE = new AtomicInteger();
+
+  private ByteArrayPool() {
+  }
+
+  public static byte[] acquire() {
+    byte[] array = POOL.poll();
+    if( array == null ) {
+      array = new byte[ BUFFER_SIZE ];
+    } else {
+      SIZE.decrementAndGet();
+    }
+    return array;
+  }
+
+  public static void release( byte[] array ) {
+    if( array != null && array.length == BUFFER_SIZE && SIZE.incrementAndGet() <= MAX_POOLED ) {
+      POOL.offer( array );
+    } else if( array != null && array.length == BUFFER_SIZE ) {
+      SIZE.decrementAndGet();
+    }
+  }
+
+}
@@ -20,6 +20,7 @@ package org.apache.hadoop.gateway.filter.rewrite.impl;
 import org.apache.hadoop.gateway.filter.rewrite.api.FrontendFunctionDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteEnvironment;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteResources;
+import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteCacheableFunction;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteContext;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteFunctionProcessor;
 import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteResolver;
@@ -31,7 +32,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class FrontendFunctionProcessor implements UrlRewriteFunctionProcessor<FrontendFunctionDescriptor> {
+public class FrontendFunctionProcessor implements UrlRewriteFunctionProcessor<FrontendFunctionDescriptor>, UrlRewriteCacheableFunction {
 
   private static UrlRewriteResources RES = ResourcesFactory.get( UrlRewriteResources.class );
 
@@ -72,6 +73,12 @@ public class FrontendFunctionProcessor implements UrlRewriteFunctionProcessor<Fr
     resolvers.clear();
   }
 
+  // The frontend is either fixed or read from request parameters the rewrite cache keeps track of.
+  @Override
+  public boolean isCacheable( List<String> parameters ) {
+    return true;
+  }
+
   @Override
   public List<String> resolve( UrlRewriteContext context, List<String> parameters ) throws Exception {
     String parameter = "url";
@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the canonical host names of the local addresses the gateway is reached through.
+ * A name is resolved on the calling thread only the first time it is seen.  Once an entry
+ * expires the stale name keeps being returned while a background thread resolves it again,
+ * so a slow resolver never stalls a response more than once per name.  Names that fail to
+ * resolve are cached as themselves for a shorter time.  The default instance is shared by
+ * all topologies.
+ */
+public class HostNameCache {
+
+  private static final UrlRewriteMessages LOG = MessagesFactory.get( UrlRewriteMessages.class );
+
+  public static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis( 5 );
+  public static final long DEFAULT_NEGATIVE_TTL = TimeUnit.SECONDS.toMillis( 30 );
+  public static final int DEFAULT_MAX_SIZE = 1024;
+
+  public interface Resolver {
+    String resolve( String name ) throws UnknownHostException;
+  }
+
+  public static final Resolver DNS_RESOLVER = new Resolver() {
+    @Override
+    public String resolve( String name ) throws UnknownHostException {
+      return InetAddress.getByName( name ).getHostName();
+    }
+  };
+
+  private static final HostNameCache INSTANCE = new HostNameCache( DNS_RESOLVER, DEFAULT_TTL, DEFAULT_NEGATIVE_TTL, DEFAULT_MAX_SIZE, createRefresher() );
+
+  private final Resolver resolver;
+  private final long ttl;
+  private final long negativeTtl;
+  private final int maxSize;
+  private final Executor refresher;
+  private final ConcurrentMap<String,Entry> entries = new ConcurrentHashMap<String,Entry>();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong refreshes = new AtomicLong();
+
+  public HostNameCache( Resolver resolver, long ttl, long negativeTtl, int maxSize, Executor refresher ) {
+    this.resolver = resolver;
+    this.ttl = ttl;
+    this.negativeTtl = negativeTtl;
+    this.maxSize = maxSize;
+    this.refresher = refresher;
+  }
+
+  public static HostNameCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the canonical host name for the given name or address.
+   *
+   * @param name The host name or address to resolve, null or empty for the loopback address.
+   * @return The resolved host name or the given name if it could not be resolved.
+   */
+  public String getHostName( String name ) {
+    if( name == null ) {
+      name = "";
+    }
+    Entry entry = entries.get( name );
+    if( entry == null ) {
+      misses.incrementAndGet();
+      entry = resolve( name );
+      if( entries.size() >= maxSize ) {
+        evict();
+      }
+      entries.put( name, entry );
+    } else {
+      hits.incrementAndGet();
+      if( currentTimeMillis() >= entry.expires && entry.refreshing.compareAndSet( false, true ) ) {
+        refresh( name, entry );
+      }
+    }
+    return entry.hostName;
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public long getRefreshCount() {
+    return refreshes.get();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  private Entry resolve( String name ) {
+    try {
+      return new Entry( resolver.resolve( name ), currentTimeMillis() + ttl );
+    } catch( UnknownHostException e ) {
+      LOG.failedToResolveHostName( name );
+      return new Entry( name, currentTimeMillis() + negativeTtl );
+    }
+  }
+
+  private void refresh( final String name, final Entry stale ) {
+    try {
+      refresher.execute( new Runnable() {
+        @Override
+        public void run() {
+          refreshes.incrementAndGet();
+          Entry entry = resolve( name );
+          if( !entries.replace( name, stale, entry ) ) {
+            stale.refreshing.set( false );
+          }
+        }
+      } );
+    } catch( RejectedExecutionException e ) {
+      // Too many refreshes pending, keep serving the stale name and try again on a later lookup.
+      stale.refreshing.set( false );
+    }
+  }
+
+  // Prefer dropping expired entries but never let the cache grow past its bound.
+  private void evict() {
+    long now = currentTimeMillis();
+    Iterator<Entry> iterator = entries.values().iterator();
+    while( iterator.hasNext() ) {
+      if( now >= iterator.next().expires ) {
+        iterator.remove();
+      }
+    }
+    iterator = entries.values().iterator();
+    while( entries.size() >= maxSize && iterator.hasNext() ) {
+      iterator.next();
+      iterator.remove();
+    }
+  }
+
+  private static Executor createRefresher() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor( 1, 1, 1, TimeUnit.MINUTES,
+        new ArrayBlockingQueue<Runnable>( DEFAULT_MAX_SIZE ), new ThreadFactory() {
+      @Override
+      public Thread newThread( Runnable runnable ) {
+        Thread thread = new Thread( runnable, "hostname-cache-refresh" );
+        thread.setDaemon( true );
+        return thread;
+      }
+    } );
+    executor.allowCoreThreadTimeOut( true );
+    return executor;
+  }
+
+  private static class Entry {
+
+    private final String hostName;
+    private final long expires;
+    private final AtomicBoolean refreshing = new AtomicBoolean( false );
+
+    private Entry( String hostName, long expires ) {
+      this.hostName = hostName;
+      this.expires = expires;
+    }
+
+  }
+
+}
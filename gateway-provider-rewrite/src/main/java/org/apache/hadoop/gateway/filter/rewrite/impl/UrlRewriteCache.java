@@ -0,0 +1,180 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriter;
+import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteCacheableFunction;
+import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteCacheableStep;
+import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteFunctionProcessor;
+import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteStepProcessor;
+import org.apache.hadoop.gateway.util.urltemplate.Resolver;
+import org.apache.hadoop.gateway.util.urltemplate.Template;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded LRU cache of rewrite results shared by all requests rewritten by one processor.
+ * Each entry remembers the values of the request parameters (e.g. gateway.url) that were
+ * resolved while it was produced and is only returned for a request that resolves them to
+ * the same values.  Results of rules that depend on per-request state the parameters don't
+ * capture, such as the authenticated user, the active URL of an HA service or encrypted values,
+ * are never cached here.  Steps and functions opt in through {@link UrlRewriteCacheableStep} and
+ * {@link UrlRewriteCacheableFunction}.
+ */
+public class UrlRewriteCache {
+
+  private final Map<String,Entry> entries;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong uncacheable = new AtomicLong();
+
+  public UrlRewriteCache( final int maxSize ) {
+    this.entries = new LinkedHashMap<String,Entry>( 16, 0.75f, true ) {
+      @Override
+      protected boolean removeEldestEntry( Map.Entry<String,Entry> eldest ) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  public static String key( Template input, UrlRewriter.Direction direction, String ruleName ) {
+    StringBuilder key = new StringBuilder();
+    key.append( direction == null ? '-' : direction.name().charAt( 0 ) );
+    if( ruleName != null && !"*".equals( ruleName ) ) {
+      key.append( ruleName );
+    }
+    key.append( '\u0000' );
+    key.append( input.getPattern() );
+    return key.toString();
+  }
+
+  /**
+   * Returns true if the step processor declares that its results may be shared.
+   */
+  public static boolean isCacheable( UrlRewriteStepProcessor<?> step ) {
+    return step instanceof UrlRewriteCacheableStep;
+  }
+
+  /**
+   * Returns true if the function processor declares that its result for these parameters may be shared.
+   */
+  public static boolean isCacheable( UrlRewriteFunctionProcessor<?> function, List<String> parameters ) {
+    return function instanceof UrlRewriteCacheableFunction
+        && ((UrlRewriteCacheableFunction)function).isCacheable( parameters );
+  }
+
+  /**
+   * Returns the cached result for the key if the resolver still resolves every parameter the
+   * result was produced with to the same values, otherwise null.
+   */
+  public Template get( String key, Resolver resolver ) {
+    Entry entry;
+    synchronized( entries ) {
+      entry = entries.get( key );
+    }
+    if( entry != null && entry.matches( resolver ) ) {
+      hits.incrementAndGet();
+      return entry.output;
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  public void put( String key, Template output, Map<String,List<String>> parameters ) {
+    Entry entry = new Entry( output, parameters );
+    synchronized( entries ) {
+      entries.put( key, entry );
+    }
+  }
+
+  // Counts a rewrite whose result could not be cached so the hit rate reflects all lookups.
+  public void skip() {
+    uncacheable.incrementAndGet();
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public long getUncacheableCount() {
+    return uncacheable.get();
+  }
+
+  public double getHitRate() {
+    long h = hits.get();
+    long total = h + misses.get();
+    return total == 0 ? 0.0 : (double)h / total;
+  }
+
+  public int size() {
+    synchronized( entries ) {
+      return entries.size();
+    }
+  }
+
+  public void clear() {
+    synchronized( entries ) {
+      entries.clear();
+    }
+  }
+
+  private static class Entry {
+
+    private final Template output;
+    private final String[] names;
+    private final List<?>[] values;
+
+    private Entry( Template output, Map<String,List<String>> parameters ) {
+      this.output = output;
+      int size = parameters == null ? 0 : parameters.size();
+      this.names = new String[ size ];
+      this.values = new List<?>[ size ];
+      if( size > 0 ) {
+        int i = 0;
+        for( Map.Entry<String,List<String>> parameter : parameters.entrySet() ) {
+          names[ i ] = parameter.getKey();
+          values[ i ] = parameter.getValue();
+          i++;
+        }
+      }
+    }
+
+    private boolean matches( Resolver resolver ) {
+      try {
+        for( int i = 0; i < names.length; i++ ) {
+          List<String> current = resolver == null ? null : resolver.resolve( names[ i ] );
+          if( current == null ? values[ i ] != null : !current.equals( values[ i ] ) ) {
+            return false;
+          }
+        }
+        return true;
+      } catch( Exception e ) {
+        return false;
+      }
+    }
+
+  }
+
+}
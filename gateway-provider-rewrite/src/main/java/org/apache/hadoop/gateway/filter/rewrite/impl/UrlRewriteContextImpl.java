@@ -29,6 +29,7 @@ import org.apache.hadoop.gateway.util.urltemplate.Resolver;
 import org.apache.hadoop.gateway.util.urltemplate.Template;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -45,6 +46,8 @@ public class UrlRewriteContextImpl implements UrlRewriteContext {
   private UrlRewriter.Direction direction;
   private Template originalUrl;
   private Template currentUrl;
+  private Map<String,List<String>> resolvedParameters;
+  private boolean cacheable = true;
 
   public UrlRewriteContextImpl(
       UrlRewriteEnvironment environment,
@@ -97,6 +100,19 @@ public class UrlRewriteContextImpl implements UrlRewriteContext {
     return evaluator;
   }
 
+  /**
+   * Returns the parameters that were resolved through the resolver, and so may differ between
+   * requests, along with the values they resolved to.
+   */
+  public Map<String,List<String>> getResolvedParameters() {
+    return resolvedParameters;
+  }
+
+  // False once a function was evaluated whose result can't be shared between requests.
+  public boolean isCacheable() {
+    return cacheable;
+  }
+
   private class ContextParameters implements Params {
 
     Map<String,List<String>> map = new HashMap<String,List<String>>();
@@ -112,6 +128,10 @@ public class UrlRewriteContextImpl implements UrlRewriteContext {
       if( values == null ) {
         try {
           values = resolver.resolve( name );
+          if( resolvedParameters == null ) {
+            resolvedParameters = new LinkedHashMap<String,List<String>>();
+          }
+          resolvedParameters.put( name, values );
           if( values == null ) {
             values = environment.resolve( name ); // Try to find the name in the environment.
           }
@@ -138,6 +158,9 @@ public class UrlRewriteContextImpl implements UrlRewriteContext {
       List<String> results = null;
       UrlRewriteFunctionProcessor processor = functions.get( function );
       if( processor != null ) {
+        if( !UrlRewriteCache.isCacheable( processor, parameters ) ) {
+          cacheable = false;
+        }
         try {
           results = processor.resolve( UrlRewriteContextImpl.this, parameters );
         } catch( Exception e ) {
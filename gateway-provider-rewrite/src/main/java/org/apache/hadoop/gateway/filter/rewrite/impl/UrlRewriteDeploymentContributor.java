@@ -21,6 +21,7 @@ import org.apache.hadoop.gateway.deploy.DeploymentContext;
 import org.apache.hadoop.gateway.deploy.ProviderDeploymentContributorBase;
 import org.apache.hadoop.gateway.descriptor.FilterParamDescriptor;
 import org.apache.hadoop.gateway.descriptor.ResourceDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteProcessor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteRulesDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteRulesDescriptorFactory;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteServletContextListener;
@@ -33,7 +34,9 @@ import org.jboss.shrinkwrap.api.asset.StringAsset;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class UrlRewriteDeploymentContributor extends ProviderDeploymentContributorBase {
 
@@ -56,6 +59,14 @@ public class UrlRewriteDeploymentContributor extends ProviderDeploymentContribut
   }
 
   public void contributeProvider( DeploymentContext context, Provider provider ) {
+    // Let the topology size the cache of rewrite results shared between requests.
+    Map<String,String> providerParams = provider == null ? null : provider.getParams();
+    String cacheSize = providerParams == null ? null : providerParams.get( UrlRewriteProcessor.CACHE_SIZE_PARAM );
+    if( cacheSize != null ) {
+      context.getWebAppDescriptor().createContextParam()
+          .paramName( UrlRewriteProcessor.CACHE_SIZE_PARAM )
+          .paramValue( cacheSize );
+    }
   }
 
   public void finalizeContribution( DeploymentContext context ) {
@@ -90,6 +101,19 @@ public class UrlRewriteDeploymentContributor extends ProviderDeploymentContribut
       Service service,
       ResourceDescriptor resource,
       List<FilterParamDescriptor> params ) {
+    // Pass the response compression settings of the topology's rewrite provider on to the filter.
+    Map<String,String> providerParams = provider == null ? null : provider.getParams();
+    if( providerParams != null ) {
+      for( Map.Entry<String,String> entry : providerParams.entrySet() ) {
+        String name = entry.getKey().toLowerCase();
+        if( name.startsWith( UrlRewriteServletFilter.RESPONSE_GZIP_PARAM_PREFIX ) ) {
+          if( params == null ) {
+            params = new ArrayList<FilterParamDescriptor>();
+          }
+          params.add( resource.createFilterParam().name( name ).value( entry.getValue() ) );
+        }
+      }
+    }
     resource.addFilter().role( getRole() ).name( getName() ).impl( UrlRewriteServletFilter.class ).params( params );
   }
 
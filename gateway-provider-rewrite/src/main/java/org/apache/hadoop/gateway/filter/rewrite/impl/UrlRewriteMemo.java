@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteRulesDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriter;
+import org.apache.hadoop.gateway.util.urltemplate.Resolver;
+import org.apache.hadoop.gateway.util.urltemplate.Template;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the results of rewriting URLs while a single response is rewritten so that links
+ * repeated within a page are only rewritten once.  Only rewrites done with the resolver of that
+ * response are remembered.  Since every result depends on the same request, results of rules
+ * that can't be shared between requests are remembered too.  Not thread safe.
+ */
+public class UrlRewriteMemo implements UrlRewriter {
+
+  public static final int DEFAULT_MAX_SIZE = 1024;
+
+  private final UrlRewriter rewriter;
+  private final Resolver resolver;
+  private final int maxSize;
+  private final Map<String,Template> results = new HashMap<String,Template>();
+  private long hits;
+  private long misses;
+
+  public UrlRewriteMemo( UrlRewriter rewriter, Resolver resolver ) {
+    this( rewriter, resolver, DEFAULT_MAX_SIZE );
+  }
+
+  public UrlRewriteMemo( UrlRewriter rewriter, Resolver resolver, int maxSize ) {
+    this.rewriter = rewriter;
+    this.resolver = resolver;
+    this.maxSize = maxSize;
+  }
+
+  public UrlRewriter getRewriter() {
+    return rewriter;
+  }
+
+  @Override
+  public UrlRewriteRulesDescriptor getConfig() {
+    return rewriter.getConfig();
+  }
+
+  @Override
+  public Template rewrite( Resolver resolver, Template uri, Direction direction, String ruleName ) {
+    if( resolver != this.resolver ) {
+      return rewriter.rewrite( resolver, uri, direction, ruleName );
+    }
+    String key = UrlRewriteCache.key( uri, direction, ruleName );
+    Template output = results.get( key );
+    if( output != null ) {
+      hits++;
+    } else {
+      misses++;
+      output = rewriter.rewrite( resolver, uri, direction, ruleName );
+      if( output != null && results.size() < maxSize ) {
+        results.put( key, output );
+      }
+    }
+    return output;
+  }
+
+  public long getHitCount() {
+    return hits;
+  }
+
+  public long getMissCount() {
+    return misses;
+  }
+
+}
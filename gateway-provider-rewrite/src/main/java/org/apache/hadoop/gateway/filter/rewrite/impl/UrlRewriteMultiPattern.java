@@ -0,0 +1,369 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterApplyDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterGroupDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The regular expressions of a group's apply selectors compiled so that all of them can be found in
+ * one pass over the input.  Where several selectors match at the same position the first configured
+ * one wins, and text produced by a rewrite is never matched again.
+ * <p>
+ * When every expression starts with a literal, as URL paths do, the input is scanned once for the
+ * first characters of those literals and an expression is only tried where its literal occurs.
+ * Otherwise the expressions are combined into a single alternation.  If that isn't possible either,
+ * e.g. because of back references, {@link #isCombined()} is false and the selectors have to be
+ * applied one after the other.
+ */
+public class UrlRewriteMultiPattern {
+
+  // Back references would refer to the wrong groups once the expressions are combined.
+  private static final Pattern BACK_REFERENCE = Pattern.compile( "\\\\[1-9k]" );
+
+  private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+  private final int selectorCount;
+  private final Pattern[] patterns;
+  private final String[] rules;
+  private final String[] literals;
+  private final BitSet firstChars;
+  private final Pattern combined;
+  private final int[] groups;
+
+  private UrlRewriteMultiPattern(
+      int selectorCount, Pattern[] patterns, String[] rules, String[] literals, BitSet firstChars, Pattern combined, int[] groups ) {
+    this.selectorCount = selectorCount;
+    this.patterns = patterns;
+    this.rules = rules;
+    this.literals = literals;
+    this.firstChars = firstChars;
+    this.combined = combined;
+    this.groups = groups;
+  }
+
+  /**
+   * Returns the compiled expressions of the group's selectors.
+   * The result is kept with the group so the expressions are only compiled once.
+   */
+  public static UrlRewriteMultiPattern get(
+      UrlRewriteFilterGroupDescriptor group, UrlRewriteFilterPathDescriptor.Compiler<Pattern> regexCompiler ) {
+    List<UrlRewriteFilterPathDescriptor> selectors = group.getSelectors();
+    Object compiled = group.compiledPath();
+    if( compiled instanceof UrlRewriteMultiPattern && ((UrlRewriteMultiPattern)compiled).selectorCount == selectors.size() ) {
+      return (UrlRewriteMultiPattern)compiled;
+    }
+    UrlRewriteMultiPattern pattern = compile( selectors, regexCompiler );
+    group.compiledPath( pattern );
+    return pattern;
+  }
+
+  public static UrlRewriteMultiPattern compile(
+      List<UrlRewriteFilterPathDescriptor> selectors, UrlRewriteFilterPathDescriptor.Compiler<Pattern> regexCompiler ) {
+    List<Pattern> patterns = new ArrayList<Pattern>();
+    List<String> rules = new ArrayList<String>();
+    for( UrlRewriteFilterPathDescriptor selector : selectors ) {
+      if( selector instanceof UrlRewriteFilterApplyDescriptor ) {
+        UrlRewriteFilterApplyDescriptor apply = (UrlRewriteFilterApplyDescriptor)selector;
+        patterns.add( apply.compiledPath( regexCompiler ) );
+        rules.add( apply.rule() );
+      }
+    }
+    int count = patterns.size();
+    String[] literals = new String[ count ];
+    BitSet firstChars = new BitSet();
+    for( int i = 0; i < count && firstChars != null; i++ ) {
+      literals[ i ] = prefixLiteral( patterns.get( i ) );
+      if( literals[ i ] == null ) {
+        firstChars = null;
+      } else {
+        firstChars.set( literals[ i ].charAt( 0 ) );
+      }
+    }
+    Pattern combined = null;
+    int[] groups = new int[ count ];
+    if( firstChars == null ) {
+      combined = combine( patterns, groups );
+    }
+    return new UrlRewriteMultiPattern( selectors.size(), patterns.toArray( new Pattern[ count ] ),
+        rules.toArray( new String[ count ] ), literals, firstChars, combined, groups );
+  }
+
+  public boolean isCombined() {
+    return firstChars != null || combined != null;
+  }
+
+  // True if there are no apply selectors so nothing would ever be rewritten.
+  public boolean isEmpty() {
+    return rules.length == 0;
+  }
+
+  // Returns a scanner that finds the matches of all the expressions, only valid if isCombined().
+  public Scanner scanner() {
+    return firstChars != null ? new LiteralScanner() : new CombinedScanner();
+  }
+
+  /**
+   * Finds the matches of all the expressions in an input, one after the other.
+   * A scanner can be reused for other inputs but isn't thread safe.
+   */
+  public abstract class Scanner {
+
+    public abstract Scanner reset( CharSequence input );
+
+    public abstract boolean find();
+
+    public abstract int start();
+
+    public abstract int end();
+
+    public abstract String group();
+
+    // The rule of the selector whose expression produced the current match.
+    public abstract String rule();
+
+  }
+
+  private class LiteralScanner extends Scanner {
+
+    private final Matcher[] matchers = new Matcher[ patterns.length ];
+    private final CharSequence[] inputs = new CharSequence[ patterns.length ];
+    private CharSequence input;
+    private int position;
+    private Matcher match;
+    private int selector;
+
+    @Override
+    public Scanner reset( CharSequence input ) {
+      this.input = input;
+      this.position = 0;
+      this.match = null;
+      return this;
+    }
+
+    @Override
+    public boolean find() {
+      int length = input.length();
+      for( int index = position; index < length; index++ ) {
+        if( firstChars.get( input.charAt( index ) ) ) {
+          for( int i = 0; i < literals.length; i++ ) {
+            if( startsWith( input, index, literals[ i ] ) ) {
+              Matcher matcher = matcher( i );
+              matcher.region( index, length );
+              if( matcher.lookingAt() ) {
+                match = matcher;
+                selector = i;
+                position = Math.max( matcher.end(), index + 1 );
+                return true;
+              }
+            }
+          }
+        }
+      }
+      position = length;
+      match = null;
+      return false;
+    }
+
+    private Matcher matcher( int i ) {
+      Matcher matcher = matchers[ i ];
+      if( matcher == null ) {
+        matcher = patterns[ i ].matcher( input );
+        // Let lookbehinds and anchors see the whole input as they would without the region.
+        matcher.useTransparentBounds( true );
+        matcher.useAnchoringBounds( false );
+        matchers[ i ] = matcher;
+        inputs[ i ] = input;
+      } else if( inputs[ i ] != input ) {
+        matcher.reset( input );
+        inputs[ i ] = input;
+      }
+      return matcher;
+    }
+
+    @Override
+    public int start() {
+      return match.start();
+    }
+
+    @Override
+    public int end() {
+      return match.end();
+    }
+
+    @Override
+    public String group() {
+      return match.group();
+    }
+
+    @Override
+    public String rule() {
+      return rules[ selector ];
+    }
+
+  }
+
+  private class CombinedScanner extends Scanner {
+
+    private Matcher matcher;
+
+    @Override
+    public Scanner reset( CharSequence input ) {
+      if( matcher == null ) {
+        matcher = combined.matcher( input );
+      } else {
+        matcher.reset( input );
+      }
+      return this;
+    }
+
+    @Override
+    public boolean find() {
+      return matcher.find();
+    }
+
+    @Override
+    public int start() {
+      return matcher.start();
+    }
+
+    @Override
+    public int end() {
+      return matcher.end();
+    }
+
+    @Override
+    public String group() {
+      return matcher.group();
+    }
+
+    @Override
+    public String rule() {
+      for( int i = 0; i < rules.length; i++ ) {
+        if( matcher.start( groups[ i ] ) != -1 ) {
+          return rules[ i ];
+        }
+      }
+      return null;
+    }
+
+  }
+
+  private static boolean startsWith( CharSequence input, int index, String literal ) {
+    int length = literal.length();
+    if( index + length > input.length() ) {
+      return false;
+    }
+    for( int i = 0; i < length; i++ ) {
+      if( input.charAt( index + i ) != literal.charAt( i ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Returns the literal every match of the expression starts with or null if there isn't one.
+  static String prefixLiteral( Pattern pattern ) {
+    if( pattern.flags() != 0 ) {
+      return null;
+    }
+    String source = pattern.pattern();
+    if( hasTopLevelAlternation( source ) ) {
+      return null;
+    }
+    StringBuilder literal = new StringBuilder();
+    int index = 0;
+    while( index < source.length() ) {
+      char c = source.charAt( index );
+      int next = index + 1;
+      if( c == '\\' ) {
+        if( next >= source.length() || Character.isLetterOrDigit( source.charAt( next ) ) ) {
+          break;
+        }
+        c = source.charAt( next );
+        next++;
+      } else if( METACHARACTERS.indexOf( c ) >= 0 ) {
+        break;
+      }
+      if( next < source.length() && "?*+{".indexOf( source.charAt( next ) ) >= 0 ) {
+        break; // The character is optional or repeated.
+      }
+      literal.append( c );
+      index = next;
+    }
+    return literal.length() > 0 ? literal.toString() : null;
+  }
+
+  private static boolean hasTopLevelAlternation( String source ) {
+    int depth = 0;
+    boolean inClass = false;
+    for( int i = 0; i < source.length(); i++ ) {
+      char c = source.charAt( i );
+      if( c == '\\' ) {
+        i++;
+      } else if( inClass ) {
+        inClass = c != ']';
+      } else if( c == '[' ) {
+        inClass = true;
+      } else if( c == '(' ) {
+        depth++;
+      } else if( c == ')' ) {
+        depth--;
+      } else if( c == '|' && depth == 0 ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Pattern combine( List<Pattern> patterns, int[] groups ) {
+    if( patterns.isEmpty() ) {
+      return null;
+    }
+    int flags = patterns.get( 0 ).flags();
+    StringBuilder expression = new StringBuilder();
+    int group = 1;
+    for( int i = 0; i < patterns.size(); i++ ) {
+      Pattern pattern = patterns.get( i );
+      if( pattern.flags() != flags || BACK_REFERENCE.matcher( pattern.pattern() ).find() ) {
+        return null;
+      }
+      if( i > 0 ) {
+        expression.append( '|' );
+      }
+      expression.append( '(' ).append( pattern.pattern() ).append( ')' );
+      groups[ i ] = group;
+      group += 1 + pattern.matcher( "" ).groupCount();
+    }
+    try {
+      return Pattern.compile( expression.toString(), flags );
+    } catch( PatternSyntaxException e ) {
+      // Duplicate group names for example, the selectors have to be applied one by one.
+      return null;
+    }
+  }
+
+}
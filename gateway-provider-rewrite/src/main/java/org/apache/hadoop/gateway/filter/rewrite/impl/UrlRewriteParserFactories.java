@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The parser infrastructure used by the rewrite filter readers.
+ * Looking up and configuring the JSON and XML factories is expensive compared to filtering a small
+ * body, so they are created once per rewrite processor and shared by all the readers it creates.
+ * The JSON and StAX factories are thread safe once configured.  Document builders and transformers
+ * are not, so they are pooled.
+ */
+public class UrlRewriteParserFactories {
+
+  private static final int POOL_SIZE = 32;
+
+  private static final UrlRewriteParserFactories DEFAULT = new UrlRewriteParserFactories();
+
+  private final JsonFactory jsonFactory;
+  private final ObjectMapper objectMapper;
+  private final XMLInputFactory xmlInputFactory;
+  private final DocumentBuilderFactory documentBuilderFactory;
+  private final TransformerFactory transformerFactory;
+  private final BlockingQueue<DocumentBuilder> documentBuilders = new ArrayBlockingQueue<DocumentBuilder>( POOL_SIZE );
+  private final BlockingQueue<Transformer> transformers = new ArrayBlockingQueue<Transformer>( POOL_SIZE );
+
+  public UrlRewriteParserFactories() {
+    jsonFactory = new JsonFactory();
+    objectMapper = new ObjectMapper( jsonFactory );
+    xmlInputFactory = XMLInputFactory.newFactory();
+    //KNOX-620 xmlInputFactory.setProperty( XMLConstants.ACCESS_EXTERNAL_DTD, "false" );
+    //KNOX-620 xmlInputFactory.setProperty( XMLConstants.ACCESS_EXTERNAL_SCHEMA, "false" );
+    xmlInputFactory.setProperty( "javax.xml.stream.isReplacingEntityReferences", Boolean.FALSE );
+    documentBuilderFactory = DocumentBuilderFactory.newInstance();
+    transformerFactory = TransformerFactory.newInstance();
+  }
+
+  /**
+   * @return The instance used by readers that are not created through a rewrite processor.
+   */
+  public static UrlRewriteParserFactories getDefault() {
+    return DEFAULT;
+  }
+
+  public JsonFactory getJsonFactory() {
+    return jsonFactory;
+  }
+
+  public ObjectMapper getObjectMapper() {
+    return objectMapper;
+  }
+
+  public XMLInputFactory getXmlInputFactory() {
+    return xmlInputFactory;
+  }
+
+  public Document newDocument() throws ParserConfigurationException {
+    DocumentBuilder builder = documentBuilders.poll();
+    if( builder == null ) {
+      synchronized( documentBuilderFactory ) {
+        builder = documentBuilderFactory.newDocumentBuilder();
+      }
+    }
+    try {
+      return builder.newDocument();
+    } finally {
+      builder.reset();
+      documentBuilders.offer( builder );
+    }
+  }
+
+  /**
+   * Serializes a node without an XML declaration.
+   */
+  public void transform( Node node, Writer writer ) throws TransformerException {
+    Transformer transformer = transformers.poll();
+    if( transformer == null ) {
+      synchronized( transformerFactory ) {
+        transformer = transformerFactory.newTransformer();
+      }
+    }
+    try {
+      transformer.setOutputProperty( OutputKeys.OMIT_XML_DECLARATION, "yes" );
+      transformer.transform( new DOMSource( node ), new StreamResult( writer ) );
+    } finally {
+      transformer.reset();
+      transformers.offer( transformer );
+    }
+  }
+
+}
@@ -19,6 +19,7 @@ package org.apache.hadoop.gateway.filter.rewrite.impl;
 
 import org.apache.hadoop.gateway.filter.AbstractGatewayFilter;
 import org.apache.hadoop.gateway.filter.GatewayRequestWrapper;
+import org.apache.hadoop.gateway.filter.RequestUrl;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteRulesDescriptor;
@@ -50,7 +51,6 @@ import static org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteUtil.pickF
 public class UrlRewriteRequest extends GatewayRequestWrapper implements Resolver {
 
   private static final UrlRewriteMessages LOG = MessagesFactory.get( UrlRewriteMessages.class );
-  private static final String[] EMPTY_STRING_ARRAY = new String[]{};
 
   private UrlRewriter rewriter;
   private String urlRuleName;
@@ -120,13 +120,14 @@ public class UrlRewriteRequest extends GatewayRequestWrapper implements Resolver
     return targetUrl;
   }
 
-  private String[] splitTargetUrl( Template url ) {
-    if( url == null ) {
-      return EMPTY_STRING_ARRAY;
-    } else {
-      String s = url.toString();
-      return s.split( "\\?" );
+  // The target url view caches the rendered and split target url in the request attributes so it
+  // is only built once per rewrite no matter how often the url and query string are asked for.
+  private RequestUrl getTargetRequestUrl() {
+    RequestUrl url = null;
+    if( getTargetUrl() != null ) {
+      url = RequestUrl.getTargetUrl( this );
     }
+    return url;
   }
 
   @Override
@@ -138,9 +139,9 @@ public class UrlRewriteRequest extends GatewayRequestWrapper implements Resolver
   // It should not include the scheme or authority parts.
   @Override
   public String getRequestURI() {
-    String[] split = splitTargetUrl( getTargetUrl() );
-    if( split.length > 0 ) {
-      return split[0];
+    RequestUrl url = getTargetRequestUrl();
+    if( url != null ) {
+      return url.getPath();
     } else {
       return "";
     }
@@ -148,9 +149,9 @@ public class UrlRewriteRequest extends GatewayRequestWrapper implements Resolver
 
   @Override
   public String getQueryString() {
-    String[] split = splitTargetUrl( getTargetUrl() );
-    if( split.length > 1 ) {
-      return split[1];
+    RequestUrl url = getTargetRequestUrl();
+    if( url != null ) {
+      return url.getQuery();
     } else {
       return null;
     }
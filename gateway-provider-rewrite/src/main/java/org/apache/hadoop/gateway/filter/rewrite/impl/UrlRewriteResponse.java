@@ -38,21 +38,19 @@ import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.InetAddress;
 import java.net.URISyntaxException;
-import java.net.UnknownHostException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
-import java.util.zip.ZipException;
 
 import static org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteUtil.getRewriteFilterConfig;
 import static org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteUtil.pickFirstRuleWithEqualsIgnoreCasePathMatch;
@@ -73,10 +71,15 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
     IGNORE_HEADER_NAMES.add( "Content-Length" );
   }
 
+  private static final String CONTENT_ENCODING = "Content-Encoding";
+  private static final String GZIP_ENCODING = "gzip";
+
   private static final String REQUEST_PARAM_PREFIX = "request.";
   private static final String CLUSTER_PARAM_PREFIX = "cluster.";
   private static final String GATEWAY_PARAM_PREFIX = "gateway.";
 
+  private static HostNameCache hostNames = HostNameCache.getInstance();
+
   private UrlRewriter rewriter;
   private FilterConfig config;
   private HttpServletRequest request;
@@ -90,11 +93,16 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
   private String xForwardedHostname;
   private String xForwardedPort;
   private String xForwardedScheme;
+  private String contentEncoding;
+  private int gzipLevel;
+  private int gzipBufferSize;
+  private boolean gzipCompress;
 
   public UrlRewriteResponse( FilterConfig config, HttpServletRequest request, HttpServletResponse response )
       throws IOException {
     super( response );
-    this.rewriter = UrlRewriteServletContextListener.getUrlRewriter( config.getServletContext() );
+    // Pages often repeat the same links so remember what each one was rewritten to for this response.
+    this.rewriter = new UrlRewriteMemo( UrlRewriteServletContextListener.getUrlRewriter( config.getServletContext() ), this );
     this.config = config;
     this.request = request;
     this.response = response;
@@ -105,6 +113,25 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
     this.headersFilterConfig = getRewriteFilterConfig( rewriter.getConfig(), headersFilterName, UrlRewriteServletFilter.HEADERS_MIME_TYPE );
     this.cookiesFilterName = config.getInitParameter( UrlRewriteServletFilter.RESPONSE_COOKIES_FILTER_PARAM );
     this.cookiesFilterConfig = getRewriteFilterConfig( rewriter.getConfig(), cookiesFilterName, UrlRewriteServletFilter.COOKIES_MIME_TYPE );
+    this.gzipLevel = getIntInitParameter( config, UrlRewriteServletFilter.RESPONSE_GZIP_LEVEL_PARAM, Deflater.DEFAULT_COMPRESSION );
+    this.gzipBufferSize = getIntInitParameter( config, UrlRewriteServletFilter.RESPONSE_GZIP_BUFFER_PARAM, STREAM_BUFFER_SIZE );
+    this.gzipCompress = Boolean.parseBoolean( config.getInitParameter( UrlRewriteServletFilter.RESPONSE_GZIP_COMPRESS_PARAM ) );
+  }
+
+  private static int getIntInitParameter( FilterConfig config, String name, int defaultValue ) {
+    String value = config.getInitParameter( name );
+    if( value != null ) {
+      try {
+        return Integer.parseInt( value.trim() );
+      } catch( NumberFormatException e ) {
+        LOG.invalidFilterParameter( name, value );
+      }
+    }
+    return defaultValue;
+  }
+
+  static void setHostNameCache( HostNameCache cache ) {
+    hostNames = cache;
   }
 
   protected boolean ignoreHeader( String name ) {
@@ -127,6 +154,9 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
   // Ignore the Content-Length from the dispatch respond since the respond body may be rewritten.
   @Override
   public void setHeader( String name, String value ) {
+    if( CONTENT_ENCODING.equalsIgnoreCase( name ) ) {
+      contentEncoding = value;
+    }
     if( !ignoreHeader( name) ) {
       value = rewriteValue( value, pickFirstRuleWithEqualsIgnoreCasePathMatch( headersFilterConfig, name ) );
       super.setHeader( name, value );
@@ -136,6 +166,9 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
   // Ignore the Content-Length from the dispatch respond since the respond body may be rewritten.
   @Override
   public void addHeader( String name, String value ) {
+    if( CONTENT_ENCODING.equalsIgnoreCase( name ) ) {
+      contentEncoding = value;
+    }
     if( !ignoreHeader( name ) ) {
       String rule = pickFirstRuleWithEqualsIgnoreCasePathMatch( headersFilterConfig, name );
       value = rewriteValue( value, rule );
@@ -148,39 +181,56 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
     return response.getOutputStream();
   }
 
+  // The Content-Encoding of the dispatched response decides whether the body is compressed.
+  // Bodies that no rewrite filter applies to, or that use an encoding other than gzip, are copied as they are.
+  // Rewritten gzip bodies are compressed again and rewritten plain bodies are only compressed if enabled
+  // and the client accepts gzip.
   @Override
   public void streamResponse( InputStream input, OutputStream output ) throws IOException {
-    InputStream inStream;
-    OutputStream outStream;
-    boolean isGzip = false;
-    BufferedInputStream inBuffer = new BufferedInputStream(input);
-    try {
-      // Use this way to check whether the input stream is gzip compressed, in case
-      // the content encoding header is unknown, as it could be unset in inbound response
-      inBuffer.mark(STREAM_BUFFER_SIZE);
-      inStream = new GZIPInputStream(inBuffer);
-      isGzip = true;
-    } catch (ZipException e) {
-      inBuffer.reset();
-      inStream = inBuffer;
-    } catch (IOException e) {
-      inBuffer.reset();
-      inStream = inBuffer;
-    }
-
     MimeType mimeType = getMimeType();
+    String encoding = contentEncoding == null ? null : contentEncoding.trim();
+    if( "identity".equalsIgnoreCase( encoding ) || "".equals( encoding ) ) {
+      encoding = null;
+    }
+    boolean isGzip = GZIP_ENCODING.equalsIgnoreCase( encoding );
+    if( UrlRewriteStreamFilterFactory.isPassThrough( mimeType, null ) || ( encoding != null && !isGzip ) ) {
+      IOUtils.copyBytes( input, output, STREAM_BUFFER_SIZE );
+      output.flush();
+      output.close();
+      return;
+    }
+    InputStream inStream = isGzip ? new GZIPInputStream( input, gzipBufferSize ) : input;
+    boolean compress = isGzip;
+    if( !compress && gzipCompress && encoding == null && acceptsGzip() && !response.isCommitted() ) {
+      response.setHeader( CONTENT_ENCODING, GZIP_ENCODING );
+      response.addHeader( "Vary", "Accept-Encoding" );
+      compress = true;
+    }
     UrlRewriteFilterContentDescriptor filterContentConfig =
         getRewriteFilterConfig( rewriter.getConfig(), bodyFilterName, mimeType );
     InputStream filteredInput = UrlRewriteStreamFilterFactory.create(
         mimeType, null, inStream, rewriter, this, UrlRewriter.Direction.OUT, filterContentConfig );
-    outStream = (isGzip) ? new GZIPOutputStream(output) : output;
+    OutputStream outStream = compress ? new LevelGZIPOutputStream( output, gzipBufferSize, gzipLevel ) : output;
     IOUtils.copyBytes( filteredInput, outStream, STREAM_BUFFER_SIZE );
     outStream.flush();
     outStream.close();
   }
 
-  //TODO: Need to buffer the output here and when it is closed, rewrite it and then write the result to the stream.
-  // This should only happen if the caller isn't using the streaming model.
+  private boolean acceptsGzip() {
+    Enumeration<String> values = request.getHeaders( "Accept-Encoding" );
+    while( values != null && values.hasMoreElements() ) {
+      for( String coding : values.nextElement().split( "," ) ) {
+        String[] parts = coding.split( ";" );
+        if( GZIP_ENCODING.equalsIgnoreCase( parts[ 0 ].trim() ) ) {
+          return parts.length < 2 || !parts[ 1 ].replace( " ", "" ).matches( "q=0(\\.0*)?" );
+        }
+      }
+    }
+    return false;
+  }
+
+  // Only used by callers that write the body instead of using the streaming model.
+  // The written body is rewritten as it arrives, see UrlRewriteResponseStream.
   @Override
   public ServletOutputStream getOutputStream() throws IOException {
     if( output == null ) {
@@ -189,6 +239,13 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
     return output;
   }
 
+  // Called when the request failed so a body that was written but never closed stops being rewritten.
+  public void abortOutputStream() {
+    if( output instanceof UrlRewriteResponseStream ) {
+      ((UrlRewriteResponseStream)output).abort();
+    }
+  }
+
   @Override
   public Set<String> getNames() {
     return Collections.emptySet();
@@ -209,17 +266,12 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
   }
 
   // KNOX-464: Doing this because Jetty only returns the string version of the IP address for request.getLocalName().
-  // Hopefully the local hostname will be cached so this will not be a significant performance hit.
+  // The local hostname is resolved through a cache shared by all topologies so that the reverse lookup
+  // is not done on every response.
   // Previously this was an inline request.getServerName() but this ended up mixing the hostname from the Host header
   // and the local port which was making load balancer configuration difficult if not impossible.
   private String getRequestLocalHostName() {
-    String hostName = request.getLocalName();
-    try {
-      hostName = InetAddress.getByName( hostName ).getHostName();
-    } catch( UnknownHostException e ) {
-      // Ignore it and use the original hostname.
-    }
-    return hostName;
+    return hostNames.getHostName( request.getLocalName() );
   }
 
   private String getGatewayParam( String name ) {
@@ -305,4 +357,13 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
     }
   }
 
+  private static class LevelGZIPOutputStream extends GZIPOutputStream {
+
+    private LevelGZIPOutputStream( OutputStream output, int bufferSize, int level ) throws IOException {
+      super( output, bufferSize );
+      def.setLevel( level );
+    }
+
+  }
+
 }
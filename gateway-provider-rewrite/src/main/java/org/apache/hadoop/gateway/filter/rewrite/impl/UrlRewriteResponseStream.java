@@ -17,37 +17,337 @@
  */
 package org.apache.hadoop.gateway.filter.rewrite.impl;
 
+import org.apache.hadoop.gateway.dispatch.DispatchThreadContext;
 import org.apache.hadoop.gateway.filter.GatewayResponse;
 
 import javax.servlet.ServletOutputStream;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.security.PrivilegedExceptionAction;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-//TODO: This needs to be coded much more efficiently!
+/**
+ * The output stream handed out by {@link UrlRewriteResponse#getOutputStream()}.
+ * Small bodies are buffered and rewritten on the writing thread when the stream is closed.
+ * Once a body outgrows the buffer it is fed through a bounded pipe to a pump thread that runs
+ * {@link GatewayResponse#streamResponse(InputStream)} while the body is still being written.
+ * Writers block while the pipe is full so memory use stays bounded whatever the size of the body.
+ * At most {@link #MAX_PUMPS} pump threads run at once and idle ones exit after {@link #PUMP_IDLE_TIMEOUT}.
+ * When all of them are busy the writer blocks until one is free, and fails after {@link #PUMP_WAIT_TIMEOUT}.
+ * A writer that fails before closing the stream must call {@link #abort()} so the pump stops waiting for the body.
+ */
 public class UrlRewriteResponseStream extends ServletOutputStream {
 
-  private static int DEFAULT_BUFFER_SIZE = 1024;
+  static final int INLINE_BUFFER_SIZE = 8 * 1024;
+  static final int PIPE_BUFFER_SIZE = 64 * 1024;
+
+  static final int MAX_PUMPS = 32;
+  static final long PUMP_IDLE_TIMEOUT = 60 * 1000;
+  static final long PUMP_WAIT_TIMEOUT = 60 * 1000;
+
+  // A writer that neither closes nor aborts the stream must not strand the pump thread.
+  static final long PIPE_READ_TIMEOUT = 5 * 60 * 1000;
+
+  // A pump holds a slot until its rewrite is done, so at most MAX_PUMPS tasks are ever queued or running.
+  private static final Semaphore PUMP_SLOTS = new Semaphore( MAX_PUMPS );
+
+  private static final ThreadPoolExecutor PUMPS = new ThreadPoolExecutor(
+      MAX_PUMPS, MAX_PUMPS, PUMP_IDLE_TIMEOUT, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+    private final AtomicInteger count = new AtomicInteger();
+    @Override
+    public Thread newThread( Runnable runnable ) {
+      Thread thread = new Thread( runnable, "UrlRewriteResponseStream-" + count.incrementAndGet() );
+      thread.setDaemon( true );
+      return thread;
+    }
+  } );
+
+  static {
+    PUMPS.allowCoreThreadTimeOut( true );
+  }
 
   private GatewayResponse response;
-  private ByteArrayOutputStream buffer;
+  private byte[] buffer;
+  private int count;
+  private Pipe pipe;
+  private Future<Void> pump;
+  private boolean closed;
 
   public UrlRewriteResponseStream( GatewayResponse response ) {
     this.response = response;
-    this.buffer = new ByteArrayOutputStream( DEFAULT_BUFFER_SIZE );
+    this.buffer = new byte[ INLINE_BUFFER_SIZE ];
   }
 
   @Override
   public void write( int b ) throws IOException {
-    buffer.write( b );
+    if( pipe == null && !closed && count < buffer.length ) {
+      buffer[ count++ ] = (byte)b;
+    } else {
+      write( new byte[]{ (byte)b }, 0, 1 );
+    }
+  }
+
+  @Override
+  public void write( byte[] bytes, int offset, int length ) throws IOException {
+    if( closed ) {
+      throw new IOException( "Stream closed" );
+    }
+    if( pipe == null ) {
+      if( count + length <= buffer.length ) {
+        System.arraycopy( bytes, offset, buffer, count, length );
+        count += length;
+        return;
+      }
+      startPump();
+    }
+    pipe.write( bytes, offset, length );
   }
 
   @Override
   public void close() throws IOException {
-    InputStream stream = new ByteArrayInputStream( buffer.toByteArray() );
-    response.streamResponse( stream ) ;
-    stream.close();
+    if( closed ) {
+      return;
+    }
+    closed = true;
+    if( pipe == null ) {
+      InputStream stream = new ByteArrayInputStream( buffer, 0, count );
+      buffer = null;
+      response.streamResponse( stream );
+      stream.close();
+    } else {
+      pipe.closeWriter();
+      awaitPump();
+    }
+  }
+
+  /**
+   * Discards the body after the writer failed. A pump that is rewriting the body fails instead of waiting for the rest.
+   */
+  public void abort() {
+    if( closed ) {
+      return;
+    }
+    closed = true;
+    buffer = null;
+    if( pipe != null ) {
+      pipe.abortWriter();
+    }
+  }
+
+  boolean isPiped() {
+    return pipe != null;
+  }
+
+  // Waits while all pumps are busy so that a burst of large bodies slows the writers down instead of being buffered.
+  private void startPump() throws IOException {
+    try {
+      if( !PUMP_SLOTS.tryAcquire( PUMP_WAIT_TIMEOUT, TimeUnit.MILLISECONDS ) ) {
+        throw new InterruptedIOException( "Timed out waiting for a thread to rewrite the response body" );
+      }
+    } catch( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+    Pipe pipe = new Pipe( PIPE_BUFFER_SIZE );
+    try {
+      pump = PUMPS.submit( new Pump( pipe, response ) );
+    } catch( RejectedExecutionException e ) {
+      PUMP_SLOTS.release();
+      throw new IOException( "Failed to start rewriting the response body", e );
+    }
+    this.pipe = pipe;
+    pipe.write( buffer, 0, count );
+    buffer = null;
+  }
+
+  private void awaitPump() throws IOException {
+    try {
+      pump.get();
+    } catch( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch( ExecutionException e ) {
+      Throwable cause = e.getCause();
+      if( cause instanceof IOException ) {
+        throw (IOException)cause;
+      } else if( cause instanceof RuntimeException ) {
+        throw (RuntimeException)cause;
+      } else if( cause instanceof Error ) {
+        throw (Error)cause;
+      } else {
+        throw new IOException( cause );
+      }
+    }
+  }
+
+  /**
+   * Runs the rewrite of a piped body.
+   * The thread bound state of the writing thread is restored on the pump thread since rewrite functions and
+   * logging may depend on it.
+   */
+  private static class Pump implements Callable<Void> {
+
+    private final Pipe pipe;
+    private final GatewayResponse response;
+    private final DispatchThreadContext context;
+
+    private Pump( Pipe pipe, GatewayResponse response ) {
+      this.pipe = pipe;
+      this.response = response;
+      this.context = DispatchThreadContext.capture();
+    }
+
+    @Override
+    public Void call() throws Exception {
+      Throwable failure = null;
+      try {
+        context.execute( new PrivilegedExceptionAction<Void>() {
+          @Override
+          public Void run() throws IOException {
+            response.streamResponse( pipe.input );
+            return null;
+          }
+        } );
+        return null;
+      } catch( Exception e ) {
+        failure = e;
+        throw e;
+      } catch( Error e ) {
+        failure = e;
+        throw e;
+      } finally {
+        pipe.closeReader( failure );
+        PUMP_SLOTS.release();
+      }
+    }
+  }
+
+  /**
+   * A bounded byte ring buffer with a single writer and a single reader.
+   */
+  static class Pipe {
+
+    private final byte[] ring;
+    private int head;
+    private int size;
+    private boolean writerClosed;
+    private boolean writerAborted;
+    private boolean readerClosed;
+    private Throwable failure;
+
+    final InputStream input = new InputStream() {
+      @Override
+      public int read() throws IOException {
+        byte[] single = new byte[ 1 ];
+        int n;
+        do {
+          n = read( single, 0, 1 );
+        } while( n == 0 );
+        return n < 0 ? -1 : single[ 0 ] & 0xFF;
+      }
+
+      @Override
+      public int read( byte[] bytes, int offset, int length ) throws IOException {
+        return Pipe.this.read( bytes, offset, length );
+      }
+
+      @Override
+      public int available() {
+        synchronized( Pipe.this ) {
+          return size;
+        }
+      }
+    };
+
+    Pipe( int capacity ) {
+      ring = new byte[ capacity ];
+    }
+
+    synchronized void write( byte[] bytes, int offset, int length ) throws IOException {
+      while( length > 0 ) {
+        while( size == ring.length && !readerClosed ) {
+          await( 0 );
+        }
+        if( readerClosed ) {
+          if( failure != null ) {
+            throw new IOException( "Failed to rewrite response", failure );
+          }
+          // The rewrite finished without needing the rest of the body.
+          return;
+        }
+        int tail = ( head + size ) % ring.length;
+        int n = Math.min( length, Math.min( ring.length - size, ring.length - tail ) );
+        System.arraycopy( bytes, offset, ring, tail, n );
+        size += n;
+        offset += n;
+        length -= n;
+        notifyAll();
+      }
+    }
+
+    synchronized int read( byte[] bytes, int offset, int length ) throws IOException {
+      if( length == 0 ) {
+        return 0;
+      }
+      long deadline = System.currentTimeMillis() + PIPE_READ_TIMEOUT;
+      while( size == 0 && !writerClosed && !writerAborted ) {
+        long remaining = deadline - System.currentTimeMillis();
+        if( remaining <= 0 ) {
+          throw new InterruptedIOException( "Timed out waiting for the response body" );
+        }
+        await( remaining );
+      }
+      if( writerAborted ) {
+        throw new IOException( "Response body was abandoned by the writer" );
+      }
+      if( size == 0 ) {
+        return -1;
+      }
+      int n = Math.min( length, Math.min( size, ring.length - head ) );
+      System.arraycopy( ring, head, bytes, offset, n );
+      head = ( head + n ) % ring.length;
+      size -= n;
+      notifyAll();
+      return n;
+    }
+
+    synchronized void closeWriter() {
+      writerClosed = true;
+      notifyAll();
+    }
+
+    synchronized void abortWriter() {
+      writerAborted = true;
+      size = 0;
+      notifyAll();
+    }
+
+    synchronized void closeReader( Throwable failure ) {
+      readerClosed = true;
+      this.failure = failure;
+      size = 0;
+      notifyAll();
+    }
+
+    private void await( long timeout ) throws InterruptedIOException {
+      try {
+        wait( timeout );
+      } catch( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
   }
 
 }
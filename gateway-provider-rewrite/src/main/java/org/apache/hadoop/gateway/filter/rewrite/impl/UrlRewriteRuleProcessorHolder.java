@@ -23,14 +23,21 @@ import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteRuleDescriptor;
 public class UrlRewriteRuleProcessorHolder extends UrlRewriteStepProcessorHolder {
 
   private String ruleName;
+  private boolean cacheable;
 
   public void initialize( UrlRewriteEnvironment environment, UrlRewriteRuleDescriptor descriptor ) throws Exception {
     super.initialize( environment, descriptor );
     ruleName = descriptor.name();
+    cacheable = super.isCacheable();
   }
 
   public String getRuleName() {
     return ruleName;
   }
 
+  // Whether results of this rule may be shared between requests.
+  public boolean isCacheable() {
+    return cacheable;
+  }
+
 }
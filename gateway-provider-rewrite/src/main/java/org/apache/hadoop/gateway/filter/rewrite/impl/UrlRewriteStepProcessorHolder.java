@@ -83,6 +83,21 @@ public class UrlRewriteStepProcessorHolder implements UrlRewriteStepProcessor {
     }
   }
 
+  /**
+   * Returns true if this step and all the steps nested in it declare that their results may be shared.
+   */
+  public boolean isCacheable() {
+    if( !UrlRewriteCache.isCacheable( processor ) ) {
+      return false;
+    }
+    for( UrlRewriteStepProcessorHolder child : childProcessors ) {
+      if( !child.isCacheable() ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   // For unit testing.
   UrlRewriteStepDescriptor getDescriptor() {
     return descriptor;
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.gateway.filter.rewrite.impl;
 
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -60,11 +61,54 @@ public class UrlRewriteUtil {
 
   public static String filterJavaScript( String inputValue, UrlRewriteFilterContentDescriptor config,
       UrlRewriteFilterReader filterReader, UrlRewriteFilterPathDescriptor.Compiler<Pattern> regexCompiler ) {
+    if( config != null ) {
+      UrlRewriteMultiPattern selectors = UrlRewriteMultiPattern.get( config, regexCompiler );
+      if( selectors.isCombined() ) {
+        inputValue = filterJavaScript( inputValue, selectors, filterReader );
+      } else if( !selectors.isEmpty() ) {
+        inputValue = filterJavaScript( inputValue, config.getSelectors(), filterReader, regexCompiler );
+      }
+    }
+    return inputValue;
+  }
+
+  /**
+   * Rewrites the values all selectors match in a single pass over the input.
+   * The input is returned as is when nothing matches.
+   */
+  public static String filterJavaScript( String inputValue, UrlRewriteMultiPattern selectors, UrlRewriteFilterReader filterReader ) {
+    UrlRewriteMultiPattern.Scanner scanner = selectors.scanner().reset( inputValue );
+    if( !scanner.find() ) {
+      return inputValue;
+    }
+    StringBuilder output = new StringBuilder( inputValue.length() + 64 );
+    filterJavaScript( inputValue, scanner, filterReader, output );
+    return output.toString();
+  }
+
+  /**
+   * Appends the input to the output with the values all selectors match rewritten in a single pass.
+   * The scanner must be positioned at its first match in the input.
+   */
+  public static void filterJavaScript( CharSequence inputValue, UrlRewriteMultiPattern.Scanner scanner,
+      UrlRewriteFilterReader filterReader, StringBuilder output ) {
+    int index = 0;
+    do {
+      output.append( inputValue, index, scanner.start() );
+      output.append( filterReader.filterValueString( null, scanner.group(), scanner.rule() ) );
+      index = scanner.end();
+    } while( scanner.find() );
+    output.append( inputValue, index, inputValue.length() );
+  }
+
+  // Applies the selectors one after the other, each to the output of the previous one.
+  public static String filterJavaScript( String inputValue, List<UrlRewriteFilterPathDescriptor> selectors,
+      UrlRewriteFilterReader filterReader, UrlRewriteFilterPathDescriptor.Compiler<Pattern> regexCompiler ) {
     StringBuffer tbuff = new StringBuffer();
     StringBuffer sbuff = new StringBuffer();
     sbuff.append( inputValue );
-    if( config != null && !config.getSelectors().isEmpty() ) {
-      for( UrlRewriteFilterPathDescriptor selector : config.getSelectors() ) {
+    if( !selectors.isEmpty() ) {
+      for( UrlRewriteFilterPathDescriptor selector : selectors ) {
         if ( selector instanceof UrlRewriteFilterApplyDescriptor ) {
           UrlRewriteFilterApplyDescriptor apply = (UrlRewriteFilterApplyDescriptor)selector;
           Matcher matcher = apply.compiledPath( regexCompiler ).matcher( sbuff );
@@ -21,6 +21,7 @@ import javax.xml.namespace.QName;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteParserFactories;
 
 import java.io.IOException;
 import java.io.Reader;
@@ -44,6 +45,10 @@ public abstract class HtmlFilterReader extends HtmlFilterReaderBase {
     super( reader, config );
   }
 
+  public HtmlFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config, UrlRewriteParserFactories factories ) throws IOException, ParserConfigurationException {
+    super( reader, config, factories );
+  }
+
   protected abstract String filterAttribute( String tagName, String attributeName, String attributeValue, String ruleName );
 
   protected abstract String filterText( String tagName, String text, String ruleName );
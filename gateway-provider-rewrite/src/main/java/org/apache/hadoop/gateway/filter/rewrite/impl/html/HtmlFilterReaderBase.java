@@ -29,13 +29,13 @@ import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescr
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
 import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteFilterReader;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteParserFactories;
 import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteUtil;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 import javax.xml.namespace.QName;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.io.Reader;
@@ -69,8 +69,12 @@ public abstract class HtmlFilterReaderBase extends Reader implements UrlRewriteF
   private UrlRewriteFilterContentDescriptor config = null;
 
   protected HtmlFilterReaderBase( Reader reader ) throws IOException, ParserConfigurationException {
+    this( reader, UrlRewriteParserFactories.getDefault() );
+  }
+
+  protected HtmlFilterReaderBase( Reader reader, UrlRewriteParserFactories factories ) throws IOException, ParserConfigurationException {
     this.reader = reader;
-    document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+    document = factories.newDocument();
     stack = new Stack<Level>();
     parser = new StreamedSource( reader );
     iterator = parser.iterator();
@@ -84,6 +88,11 @@ public abstract class HtmlFilterReaderBase extends Reader implements UrlRewriteF
     this.config = config;
   }
 
+  protected HtmlFilterReaderBase( Reader reader, UrlRewriteFilterContentDescriptor config, UrlRewriteParserFactories factories ) throws IOException, ParserConfigurationException {
+    this(reader, factories);
+    this.config = config;
+  }
+
   protected abstract String filterAttribute( QName elementName, QName attributeName, String attributeValue, String ruleName );
 
   protected abstract String filterText( QName elementName, String text, String ruleName );
@@ -18,6 +18,7 @@
 package org.apache.hadoop.gateway.filter.rewrite.impl.html;
 
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteStreamFilterFactory;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriter;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
@@ -40,7 +41,7 @@ public class HtmlUrlRewriteFilterReader extends HtmlFilterReader {
 
   public HtmlUrlRewriteFilterReader( Reader reader, UrlRewriter rewriter, Resolver resolver, UrlRewriter.Direction direction, UrlRewriteFilterContentDescriptor config )
       throws IOException, ParserConfigurationException {
-    super( reader, config );
+    super( reader, config, UrlRewriteStreamFilterFactory.getParserFactories( rewriter ) );
     this.resolver = resolver;
     this.rewriter = rewriter;
     this.direction = direction;
@@ -0,0 +1,217 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl.javascript;
+
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.impl.ByteArrayBuffer;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteFilterReader;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteMultiPattern;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.regex.Pattern;
+
+/**
+ * The byte level counterpart of {@link JavaScriptFilterReader}.
+ * Lines are split and matched directly in pooled byte buffers: all selectors are matched in one pass over an
+ * ISO-8859-1 view of the bytes, only matched values are decoded and re-encoded and the rest of each line is
+ * copied through untouched.  That view is exact for ISO-8859-1 and for ASCII lines, so lines of other
+ * encodings that contain non ASCII bytes are decoded and filtered as characters instead.
+ * Like the reader every line is terminated with '\n' in the output.
+ */
+public abstract class JavaScriptFilterInputStream extends InputStream implements UrlRewriteFilterReader {
+
+  private static final UrlRewriteFilterPathDescriptor.Compiler<Pattern> REGEX_COMPILER = new RegexCompiler();
+
+  private static final Charset ISO_8859_1 = Charset.forName( "ISO-8859-1" );
+
+  private InputStream stream;
+  private Charset charset;
+  private boolean latin1;
+  private UrlRewriteFilterContentDescriptor config;
+  private UrlRewriteMultiPattern selectors;
+  private UrlRewriteMultiPattern.Scanner scanner;
+  private ByteArrayBuffer input;
+  private ByteArrayBuffer output;
+  private boolean eof;
+  private boolean closed;
+
+  protected JavaScriptFilterInputStream( InputStream stream, String encoding, UrlRewriteFilterContentDescriptor config ) {
+    this.stream = stream;
+    this.charset = Charset.forName( encoding );
+    this.latin1 = ISO_8859_1.equals( charset );
+    this.config = config;
+    if( config != null ) {
+      this.selectors = UrlRewriteMultiPattern.get( config, REGEX_COMPILER );
+    }
+    input = new ByteArrayBuffer();
+    output = new ByteArrayBuffer();
+  }
+
+  @Override
+  public abstract String filterValueString( String name, String value, String rule );
+
+  @Override
+  public int read() throws IOException {
+    byte[] single = new byte[ 1 ];
+    int count = read( single, 0, 1 );
+    return count < 0 ? -1 : single[ 0 ] & 0xFF;
+  }
+
+  @Override
+  public int read( byte[] bytes, int offset, int length ) throws IOException {
+    if( closed ) {
+      throw new IOException( "Stream closed" );
+    }
+    if( length == 0 ) {
+      return 0;
+    }
+    while( output.available() == 0 ) {
+      if( !nextLine() ) {
+        return -1;
+      }
+    }
+    return output.read( bytes, offset, length );
+  }
+
+  @Override
+  public int available() {
+    return closed ? 0 : output.available();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if( !closed ) {
+      closed = true;
+      stream.close();
+      input.close();
+      output.close();
+    }
+  }
+
+  // Line terminators are recognized the same way as BufferedReader.readLine() does: \n, \r or \r\n.
+  private boolean nextLine() throws IOException {
+    int index = input.start();
+    while( true ) {
+      byte[] data = input.array();
+      int end = input.end();
+      for( ; index < end; index++ ) {
+        byte b = data[ index ];
+        if( b == '\n' || b == '\r' ) {
+          if( b == '\r' && index + 1 == end && !eof ) {
+            break; // Need to see the next byte to tell \r from \r\n.
+          }
+          filterLine( data, input.start(), index );
+          int terminator = ( b == '\r' && index + 1 < end && data[ index + 1 ] == '\n' ) ? 2 : 1;
+          input.skip( index - input.start() + terminator );
+          return true;
+        }
+      }
+      if( eof ) {
+        if( input.available() == 0 ) {
+          return false;
+        }
+        filterLine( data, input.start(), end );
+        input.reset();
+        return true;
+      }
+      int scanned = index - input.start();
+      if( input.fill( stream ) < 0 ) {
+        eof = true;
+      }
+      index = input.start() + scanned;
+    }
+  }
+
+  // All selectors are matched in one pass and the line is rewritten straight into the output.
+  private void filterLine( byte[] bytes, int start, int end ) {
+    if( selectors == null || selectors.isEmpty() ) {
+      output.write( bytes, start, end - start );
+    } else if( selectors.isCombined() && ( latin1 || isAscii( bytes, start, end ) ) ) {
+      if( scanner == null ) {
+        scanner = selectors.scanner();
+      }
+      scanner.reset( new ByteSequence( bytes, start, end ) );
+      int copied = start;
+      while( scanner.find() ) {
+        output.write( bytes, copied, start + scanner.start() - copied );
+        byte[] value = filterValueString( null, scanner.group(), scanner.rule() ).getBytes( charset );
+        output.write( value, 0, value.length );
+        copied = start + scanner.end();
+      }
+      output.write( bytes, copied, end - copied );
+    } else {
+      String value = new String( bytes, start, end - start, charset );
+      if( selectors.isCombined() ) {
+        value = UrlRewriteUtil.filterJavaScript( value, selectors, this );
+      } else {
+        value = UrlRewriteUtil.filterJavaScript( value, config.getSelectors(), this, REGEX_COMPILER );
+      }
+      byte[] encoded = value.getBytes( charset );
+      output.write( encoded, 0, encoded.length );
+    }
+    output.write( '\n' );
+  }
+
+  private static boolean isAscii( byte[] bytes, int start, int end ) {
+    for( int i = start; i < end; i++ ) {
+      if( bytes[ i ] < 0 ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // An ISO-8859-1 view of a range of bytes so expressions can be matched without decoding.
+  private static class ByteSequence implements CharSequence {
+
+    private final byte[] bytes;
+    private final int start;
+    private final int end;
+
+    private ByteSequence( byte[] bytes, int start, int end ) {
+      this.bytes = bytes;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public int length() {
+      return end - start;
+    }
+
+    @Override
+    public char charAt( int index ) {
+      return (char)( bytes[ start + index ] & 0xFF );
+    }
+
+    @Override
+    public CharSequence subSequence( int from, int to ) {
+      return new ByteSequence( bytes, start + from, start + to );
+    }
+
+    @Override
+    public String toString() {
+      return new String( bytes, start, end - start, ISO_8859_1 );
+    }
+  }
+
+}
@@ -21,13 +21,13 @@ import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescr
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
 import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteFilterReader;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteMultiPattern;
 import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteUtil;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringWriter;
 import java.util.regex.Pattern;
 
 public abstract class JavaScriptFilterReader extends Reader implements UrlRewriteFilterReader {
@@ -38,15 +38,18 @@ public abstract class JavaScriptFilterReader extends Reader implements UrlRewrit
 
   private BufferedReader reader;
   private int offset;
-  private StringWriter writer;
-  private StringBuffer buffer;
+  private StringBuilder buffer;
   private UrlRewriteFilterContentDescriptor config;
+  private UrlRewriteMultiPattern selectors;
+  private UrlRewriteMultiPattern.Scanner scanner;
 
   protected JavaScriptFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config ) throws IOException {
     this.reader = new BufferedReader( reader );
     this.config = config;
-    writer = new StringWriter();
-    buffer = writer.getBuffer();
+    if( config != null ) {
+      selectors = UrlRewriteMultiPattern.get( config, REGEX_COMPILER );
+    }
+    buffer = new StringBuilder();
     offset = 0;
   }
 
@@ -62,8 +65,8 @@ public abstract class JavaScriptFilterReader extends Reader implements UrlRewrit
       cbuff = reader.readLine();
       if( cbuff != null ) {
         count = cbuff.length();
-        writer.write( UrlRewriteUtil.filterJavaScript( cbuff, config, this, REGEX_COMPILER ) );
-        writer.write( '\n' );
+        filterLine( cbuff );
+        buffer.append( '\n' );
         available = buffer.length() - offset;
       } else {
         count = -1;
@@ -83,9 +86,26 @@ public abstract class JavaScriptFilterReader extends Reader implements UrlRewrit
     return count;
   }
 
+  // All selectors are matched in one pass and the line is rewritten straight into the buffer.
+  private void filterLine( String line ) {
+    if( selectors == null || selectors.isEmpty() ) {
+      buffer.append( line );
+    } else if( selectors.isCombined() ) {
+      if( scanner == null ) {
+        scanner = selectors.scanner();
+      }
+      if( scanner.reset( line ).find() ) {
+        UrlRewriteUtil.filterJavaScript( line, scanner, this, buffer );
+      } else {
+        buffer.append( line );
+      }
+    } else {
+      buffer.append( UrlRewriteUtil.filterJavaScript( line, config.getSelectors(), this, REGEX_COMPILER ) );
+    }
+  }
+
   @Override
   public void close() throws IOException {
     reader.close();
-    writer.close();
   }
 }
@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl.json;
+
+import org.apache.hadoop.gateway.filter.rewrite.impl.ByteArrayBuffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Exposes a {@link JsonFilterReader} created to write UTF-8 bytes into the given buffer as an input stream.
+ * The document is parsed and generated directly as bytes so no decoding, encoding or intermediate characters are involved.
+ */
+class JsonFilterInputStream extends InputStream {
+
+  private JsonFilterReader filter;
+  private ByteArrayBuffer output;
+  private boolean eof;
+  private boolean closed;
+
+  JsonFilterInputStream( JsonFilterReader filter, ByteArrayBuffer output ) {
+    this.filter = filter;
+    this.output = output;
+    this.eof = false;
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] single = new byte[ 1 ];
+    int count = read( single, 0, 1 );
+    return count < 0 ? -1 : single[ 0 ] & 0xFF;
+  }
+
+  @Override
+  public int read( byte[] bytes, int offset, int length ) throws IOException {
+    if( closed ) {
+      throw new IOException( "Stream closed" );
+    }
+    if( length == 0 ) {
+      return 0;
+    }
+    // The generator buffers its output and only writes through in blocks so this processes many tokens at a time.
+    while( output.available() == 0 && !eof ) {
+      eof = !filter.processNextToken();
+    }
+    if( output.available() == 0 ) {
+      return -1;
+    }
+    return output.read( bytes, offset, length );
+  }
+
+  @Override
+  public int available() {
+    return closed ? 0 : output.available();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if( !closed ) {
+      closed = true;
+      filter.close();
+      output.close();
+    }
+  }
+
+}
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.gateway.filter.rewrite.impl.json;
 
+import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
@@ -26,6 +27,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.TextNode;
+import org.apache.commons.io.output.StringBuilderWriter;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterApplyDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterBufferDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
@@ -33,12 +35,14 @@ import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterDetectDescri
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterGroupDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteParserFactories;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.util.JsonPath;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
-import java.io.StringWriter;
 import java.util.List;
 import java.util.Stack;
 import java.util.regex.Pattern;
@@ -56,9 +60,11 @@ class JsonFilterReader extends Reader {
   private ObjectMapper mapper;
 
   private Reader reader;
+  private InputStream stream;
+  private boolean eof;
   private int offset;
-  private StringWriter writer;
-  private StringBuffer buffer;
+  private StringBuilderWriter writer;
+  private StringBuilder buffer;
   private Stack<Level> stack;
   private Level bufferingLevel;
   private UrlRewriteFilterBufferDescriptor bufferingConfig;
@@ -66,13 +72,18 @@ class JsonFilterReader extends Reader {
 
 
   public JsonFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config ) throws IOException {
+    this( reader, config, UrlRewriteParserFactories.getDefault() );
+  }
+
+  public JsonFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config, UrlRewriteParserFactories factories ) throws IOException {
     this.reader = reader;
-    factory = new JsonFactory();
-    mapper = new ObjectMapper();
+    factory = factories.getJsonFactory();
+    mapper = factories.getObjectMapper();
     parser = factory.createParser( reader );
-    writer = new StringWriter();
-    buffer = writer.getBuffer();
+    writer = new StringBuilderWriter();
+    buffer = writer.getBuilder();
     offset = 0;
+    eof = false;
     generator = factory.createGenerator( writer );
     stack = new Stack<Level>();
     bufferingLevel = null;
@@ -80,19 +91,56 @@ class JsonFilterReader extends Reader {
     this.config = config;
   }
 
+  // Parses UTF-8 (or UTF-16/32) bytes and writes the filtered document as UTF-8 bytes to the output.
+  // Used by JsonFilterInputStream which drives the filter with processNextToken() instead of read().
+  JsonFilterReader( InputStream stream, OutputStream output, UrlRewriteFilterContentDescriptor config ) throws IOException {
+    this( stream, output, config, UrlRewriteParserFactories.getDefault() );
+  }
+
+  JsonFilterReader( InputStream stream, OutputStream output, UrlRewriteFilterContentDescriptor config, UrlRewriteParserFactories factories ) throws IOException {
+    this.stream = stream;
+    factory = factories.getJsonFactory();
+    mapper = factories.getObjectMapper();
+    parser = factory.createParser( stream );
+    offset = 0;
+    eof = false;
+    generator = factory.createGenerator( output, JsonEncoding.UTF8 );
+    stack = new Stack<Level>();
+    bufferingLevel = null;
+    bufferingConfig = null;
+    this.config = config;
+  }
+
+  /**
+   * Processes the next token of the document.
+   * @return false once the end of the document has been reached and the generator has been flushed
+   */
+  boolean processNextToken() throws IOException {
+    if( !eof ) {
+      if( parser.nextToken() == null ) {
+        generator.flush();
+        eof = true;
+      } else {
+        processCurrentToken();
+      }
+    }
+    return !eof;
+  }
+
   @Override
   public int read( char[] destBuffer, int destOffset, int destCount ) throws IOException {
     int count = 0;
     int available = buffer.length() - offset;
 
-    if( available == 0 ) {
-      JsonToken token = parser.nextToken();
-      if( token == null ) {
-        count = -1;
-      } else {
-        processCurrentToken();
-        available = buffer.length() - offset;
+    // Process tokens until enough output is available to fill the caller's buffer.
+    // The generator is only flushed at the end of the document so output is written through in larger blocks.
+    if( available == 0 && !eof ) {
+      while( buffer.length() < destCount && processNextToken() ) {
       }
+      available = buffer.length() - offset;
+    }
+    if( available == 0 && eof ) {
+      count = -1;
     }
 
     if( available > 0 ) {
@@ -143,7 +191,6 @@ class JsonFilterReader extends Reader {
         // Ignore it.
         break;
     }
-    generator.flush();
   }
 
   private Level pushLevel( String field, JsonNode node, JsonNode scopeNode, UrlRewriteFilterGroupDescriptor scopeConfig ) {
@@ -477,7 +524,7 @@ class JsonFilterReader extends Reader {
   protected boolean startBuffering( Level node ) {
     boolean buffered = false;
     UrlRewriteFilterGroupDescriptor scope = node.scopeConfig;
-    if( scope != null ) {
+    if( scope != null && hasBufferSelector( scope ) ) {
       for( UrlRewriteFilterPathDescriptor selector : scope.getSelectors() ) {
         JsonPath.Expression path = (JsonPath.Expression)selector.compiledPath( JPATH_COMPILER );
         List<JsonPath.Match> matches = path.evaluate( node.scopeNode );
@@ -494,6 +541,16 @@ class JsonFilterReader extends Reader {
     return buffered;
   }
 
+  // Path evaluation can be skipped entirely for the common case of a scope that never buffers.
+  private static boolean hasBufferSelector( UrlRewriteFilterGroupDescriptor scope ) {
+    for( UrlRewriteFilterPathDescriptor selector : scope.getSelectors() ) {
+      if( selector instanceof UrlRewriteFilterBufferDescriptor ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   protected String filterStreamValue( Level node ) {
     String value;
     if( node.isArray() ) {
@@ -596,9 +653,16 @@ class JsonFilterReader extends Reader {
   @Override
   public void close() throws IOException {
     generator.close();
-    writer.close();
     parser.close();
-    reader.close();
+    if( writer != null ) {
+      writer.close();
+    }
+    if( reader != null ) {
+      reader.close();
+    }
+    if( stream != null ) {
+      stream.close();
+    }
   }
 
   private static class Level {
@@ -620,7 +684,11 @@ class JsonFilterReader extends Reader {
   private static class JsonPathCompiler implements UrlRewriteFilterPathDescriptor.Compiler<JsonPath.Expression> {
     @Override
     public JsonPath.Expression compile( String expression, JsonPath.Expression compiled ) {
-      return JsonPath.compile( expression );
+      if( compiled != null ) {
+        return compiled;
+      } else {
+        return JsonPath.compile( expression );
+      }
     }
   }
 
@@ -18,6 +18,7 @@
 package org.apache.hadoop.gateway.filter.rewrite.impl.json;
 
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteStreamFilterFactory;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriter;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
@@ -26,6 +27,8 @@ import org.apache.hadoop.gateway.util.urltemplate.Resolver;
 import org.apache.hadoop.gateway.util.urltemplate.Template;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.net.URISyntaxException;
 
@@ -44,7 +47,21 @@ public class JsonUrlRewriteFilterReader extends JsonFilterReader {
       UrlRewriter.Direction direction,
       UrlRewriteFilterContentDescriptor config )
           throws IOException {
-    super( reader, config );
+    super( reader, config, UrlRewriteStreamFilterFactory.getParserFactories( rewriter ) );
+    this.resolver = resolver;
+    this.rewriter = rewriter;
+    this.direction = direction;
+  }
+
+  JsonUrlRewriteFilterReader(
+      InputStream stream,
+      OutputStream output,
+      UrlRewriter rewriter,
+      Resolver resolver,
+      UrlRewriter.Direction direction,
+      UrlRewriteFilterContentDescriptor config )
+          throws IOException {
+    super( stream, output, config, UrlRewriteStreamFilterFactory.getParserFactories( rewriter ) );
     this.resolver = resolver;
     this.rewriter = rewriter;
     this.direction = direction;
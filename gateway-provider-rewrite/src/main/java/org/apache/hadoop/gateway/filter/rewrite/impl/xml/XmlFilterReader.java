@@ -27,6 +27,7 @@ import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterPathDescript
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterScopeDescriptor;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteResources;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteParserFactories;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.i18n.resources.ResourcesFactory;
 import org.w3c.dom.Attr;
@@ -37,7 +38,6 @@ import org.w3c.dom.Text;
 
 import javax.xml.XMLConstants;
 import javax.xml.namespace.QName;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
@@ -50,13 +50,7 @@ import javax.xml.stream.events.Namespace;
 import javax.xml.stream.events.StartDocument;
 import javax.xml.stream.events.StartElement;
 import javax.xml.stream.events.XMLEvent;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
@@ -69,6 +63,8 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.util.Iterator;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
 public abstract class XmlFilterReader extends Reader {
@@ -80,29 +76,46 @@ public abstract class XmlFilterReader extends Reader {
   private static final UrlRewriteMessages LOG = MessagesFactory.get( UrlRewriteMessages.class );
   private static final UrlRewriteFilterPathDescriptor.Compiler<XPathExpression> XPATH_COMPILER = new XmlPathCompiler();
   private static final UrlRewriteFilterPathDescriptor.Compiler<Pattern> REGEX_COMPILER = new RegexCompiler();
+  private static final ConcurrentMap<String,StreamPath> STREAM_PATHS = new ConcurrentHashMap<String,StreamPath>();
 
   private Reader reader;
   private UrlRewriteFilterContentDescriptor config;
   private int offset;
   private StringWriter writer;
   private StringBuffer buffer;
+  private UrlRewriteParserFactories factories;
   private XMLInputFactory factory;
   private XMLEventReader parser;
   private Document document;
   private Stack<Level> stack;
+  private boolean streaming;
 
   protected XmlFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config ) throws IOException, XMLStreamException {
+    this( reader, config, UrlRewriteParserFactories.getDefault() );
+  }
+
+  protected XmlFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config, UrlRewriteParserFactories factories ) throws IOException, XMLStreamException {
+    this( reader, config, isStreamable( config ), factories );
+  }
+
+  XmlFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config, boolean streaming ) throws IOException, XMLStreamException {
+    this( reader, config, streaming, UrlRewriteParserFactories.getDefault() );
+  }
+
+  // When streaming the selectors are matched against the stack of open elements and a DOM is only built for the
+  // subtree of an element selected by a buffer descriptor.  Otherwise the whole document is mirrored into a DOM
+  // so that arbitrary XPath expressions can be evaluated.
+  XmlFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config, boolean streaming, UrlRewriteParserFactories factories ) throws IOException, XMLStreamException {
     this.reader = reader;
+    this.factories = factories;
     this.config = config;
+    this.streaming = streaming;
     writer = new StringWriter();
     buffer = writer.getBuffer();
     offset = 0;
     document = null;
     stack = new Stack<Level>();
-    factory = XMLInputFactory.newFactory();
-    //KNOX-620 factory.setProperty( XMLConstants.ACCESS_EXTERNAL_DTD, "false" );
-    //KNOX-620 factory.setProperty( XMLConstants.ACCESS_EXTERNAL_SCHEMA, "false" );
-    factory.setProperty( "javax.xml.stream.isReplacingEntityReferences", Boolean.FALSE );
+    factory = factories.getXmlInputFactory();
     parser = factory.createXMLEventReader( reader );
   }
 
@@ -183,8 +196,12 @@ public abstract class XmlFilterReader extends Reader {
     //System.out.println( "SD=" + event );
     String s;
 
-    document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-    pushLevel( null, event, document, document, config );
+    if( streaming ) {
+      pushLevel( null, event, null, null, config );
+    } else {
+      document = createDocument();
+      pushLevel( null, event, document, document, config );
+    }
 
     writer.write( "<?xml" );
 
@@ -215,8 +232,16 @@ public abstract class XmlFilterReader extends Reader {
     document = null;
   }
 
-  private void processStartElement( StartElement event ) throws XPathExpressionException {
+  private Document createDocument() throws ParserConfigurationException {
+    return factories.newDocument();
+  }
+
+  private void processStartElement( StartElement event ) throws XPathExpressionException, ParserConfigurationException {
     //System.out.println( "SE=" + event );
+    if( streaming ) {
+      streamStartElement( event );
+      return;
+    }
 
     // Create a new "empty" element and add it to the document.
     Element element = bufferElement( event );
@@ -256,6 +281,43 @@ public abstract class XmlFilterReader extends Reader {
     }
   }
 
+  private void streamStartElement( StartElement event ) throws XPathExpressionException, ParserConfigurationException {
+    Level parent = stack.peek();
+    if( parent.buffered ) {
+      Element element = bufferElement( event );
+      parent.node.appendChild( element );
+      pushLevel( parent, event, element, parent.scopeNode, parent.scopeConfig );
+      bufferAttributes( event, element );
+    } else {
+      // The element is pushed before matching because, like the DOM evaluation, the selectors see the new element.
+      Level level = pushLevel( parent, event, null, null, parent.scopeConfig );
+      UrlRewriteFilterPathDescriptor descriptor = pickFirstStreamingPath( level, null );
+      if( descriptor instanceof UrlRewriteFilterBufferDescriptor ) {
+        stack.pop();
+        Element element = bufferAncestors( event );
+        pushLevel( parent, event, element, element, (UrlRewriteFilterBufferDescriptor)descriptor );
+        bufferAttributes( event, element );
+      } else {
+        streamElement( event, null );
+      }
+    }
+  }
+
+  // Starts a DOM for a buffered element.  The open ancestors are recreated (without content) so that namespace
+  // declarations are in scope for the buffered subtree.
+  private Element bufferAncestors( StartElement event ) throws ParserConfigurationException {
+    document = createDocument();
+    Node node = document;
+    for( int i = 1, n = stack.size(); i < n; i++ ) {
+      Element ancestor = bufferElement( stack.get( i ).event.asStartElement() );
+      node.appendChild( ancestor );
+      node = ancestor;
+    }
+    Element element = bufferElement( event );
+    node.appendChild( element );
+    return element;
+  }
+
   private void processEndElement( EndElement event ) throws XPathExpressionException, IOException {
     //System.out.println( "EE=" + event );
     boolean buffering = currentlyBuffering();
@@ -263,6 +325,12 @@ public abstract class XmlFilterReader extends Reader {
     if( buffering ) {
       if( child.node == child.scopeNode ) {
         processBufferedElement( child );
+        // Once written the buffered element must not be visible to the selectors of later elements.
+        if( streaming ) {
+          document = null;
+        } else {
+          child.node.getParentNode().removeChild( child.node );
+        }
       }
     } else {
       QName n = event.getName();
@@ -274,7 +342,9 @@ public abstract class XmlFilterReader extends Reader {
       }
       writer.write( n.getLocalPart() );
       writer.write( ">" );
-      child.node.getParentNode().removeChild( child.node );
+      if( !streaming ) {
+        child.node.getParentNode().removeChild( child.node );
+      }
     }
   }
 
@@ -398,6 +468,26 @@ public abstract class XmlFilterReader extends Reader {
     return qname;
   }
 
+  // Produces the same names as extractQName( Node ) would for the DOM node created from the event.
+  private QName extractQName( XMLEvent event ) {
+    QName qname;
+    if( event.isStartElement() ) {
+      QName name = event.asStartElement().getName();
+      String uri = name.getNamespaceURI();
+      String prefix = name.getPrefix();
+      if( uri == null || uri.isEmpty() ) {
+        qname = new QName( name.getLocalPart() );
+      } else if( prefix == null || prefix.isEmpty() ) {
+        qname = new QName( uri, name.getLocalPart() );
+      } else {
+        qname = new QName( uri, name.getLocalPart(), prefix );
+      }
+    } else {
+      qname = new QName( "#document" );
+    }
+    return qname;
+  }
+
   private void bufferAttributes( StartElement event, Element element ) {
     Iterator attributes = event.getAttributes();
     while( attributes.hasNext() ) {
@@ -449,11 +539,13 @@ public abstract class XmlFilterReader extends Reader {
   }
 
   private void streamAttribute( Element element, Attribute attribute ) throws XPathExpressionException {
-    Attr node;
+    Attr node = null;
     QName name = attribute.getName();
     String prefix = name.getPrefix();
     String uri = name.getNamespaceURI();
-    if( uri == null || uri.isEmpty() ) {
+    if( element == null ) {
+      // Streaming so there is no DOM to attach the attribute to.
+    } else if( uri == null || uri.isEmpty() ) {
       node = document.createAttribute( name.getLocalPart() );
       element.setAttributeNode( node );
     } else {
@@ -468,13 +560,11 @@ public abstract class XmlFilterReader extends Reader {
     Level level = stack.peek();
     if( ( level.scopeConfig ) == null || ( level.scopeConfig.getSelectors().isEmpty() ) ) {
       value = filterAttribute( null, attribute.getName(), value, null );
-      node.setValue( value );
     } else {
-      UrlRewriteFilterPathDescriptor path = pickFirstMatchingPath( level );
+      UrlRewriteFilterPathDescriptor path = element == null ? pickFirstStreamingPath( level, attribute ) : pickFirstMatchingPath( level );
       if( path instanceof UrlRewriteFilterApplyDescriptor ) {
         String rule = ((UrlRewriteFilterApplyDescriptor)path).rule();
         value = filterAttribute( null, attribute.getName(), value, rule );
-        node.setValue( value );
       }
     }
 
@@ -492,14 +582,18 @@ public abstract class XmlFilterReader extends Reader {
     writer.write( "=\"" );
     writer.write( value );
     writer.write( "\"" );
-    element.removeAttributeNode( node );
+    if( node != null ) {
+      element.removeAttributeNode( node );
+    }
   }
 
   private void processCharacters( Characters event ) throws XPathExpressionException {
     //System.out.println( "T[" + event.isCData() + "," + event.isWhiteSpace() + "," + event.isIgnorableWhiteSpace() + "]=" + event );
     Level level = stack.peek();
     Node node = stack.peek().node;
-    if( event.isCData() ) {
+    if( node == null ) {
+      level.hasText = true;
+    } else if( event.isCData() ) {
       node.appendChild( document.createCDATASection( event.getData() ) );
     } else {
       node.appendChild( document.createTextNode( event.getData() ) );
@@ -507,13 +601,14 @@ public abstract class XmlFilterReader extends Reader {
     if( !currentlyBuffering() ) {
       String value = event.getData();
       if( !event.isWhiteSpace() ) {
+        QName name = node == null ? extractQName( level.event ) : extractQName( node );
         if( level.scopeConfig == null || level.scopeConfig.getSelectors().isEmpty() ) {
-          value = filterText( extractQName( node ), value, null );
+          value = filterText( name, value, null );
         } else {
-          UrlRewriteFilterPathDescriptor path = pickFirstMatchingPath( level );
+          UrlRewriteFilterPathDescriptor path = node == null ? pickFirstStreamingPath( level, null ) : pickFirstMatchingPath( level );
           if( path instanceof UrlRewriteFilterApplyDescriptor ) {
             String rule = ((UrlRewriteFilterApplyDescriptor)path).rule();
-            value = filterText( extractQName( node ), value, rule );
+            value = filterText( name, value, rule );
           }
         }
       }
@@ -563,6 +658,58 @@ public abstract class XmlFilterReader extends Reader {
     return match;
   }
 
+  private UrlRewriteFilterPathDescriptor pickFirstStreamingPath( Level level, Attribute attribute ) {
+    UrlRewriteFilterPathDescriptor match = null;
+    if( level.scopeConfig != null ) {
+      for( UrlRewriteFilterPathDescriptor selector : level.scopeConfig.getSelectors() ) {
+        if( compileStreamPath( selector.path() ).matches( stack, attribute ) ) {
+          match = selector;
+          break;
+        }
+      }
+    }
+    return match;
+  }
+
+  // Streaming is only possible when every top level selector can be matched against the open element stack and
+  // any buffered selectors stay within the buffered element.
+  private static boolean isStreamable( UrlRewriteFilterGroupDescriptor config ) {
+    if( config != null ) {
+      for( UrlRewriteFilterPathDescriptor selector : config.getSelectors() ) {
+        if( selector instanceof UrlRewriteFilterScopeDescriptor || !compileStreamPath( selector.path() ).isSupported() ) {
+          return false;
+        }
+        if( selector instanceof UrlRewriteFilterBufferDescriptor && !isRelative( (UrlRewriteFilterGroupDescriptor)selector ) ) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static boolean isRelative( UrlRewriteFilterGroupDescriptor group ) {
+    for( UrlRewriteFilterPathDescriptor selector : group.getSelectors() ) {
+      String path = selector.path();
+      if( path == null || path.trim().startsWith( "/" ) || path.contains( ".." ) ) {
+        return false;
+      }
+      if( selector instanceof UrlRewriteFilterGroupDescriptor && !isRelative( (UrlRewriteFilterGroupDescriptor)selector ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static StreamPath compileStreamPath( String expression ) {
+    String key = expression == null ? "" : expression;
+    StreamPath path = STREAM_PATHS.get( key );
+    if( path == null ) {
+      path = StreamPath.compile( key );
+      STREAM_PATHS.putIfAbsent( key, path );
+    }
+    return path;
+  }
+
   private boolean currentlyBuffering() {
     return stack.peek().buffered;
   }
@@ -575,15 +722,16 @@ public abstract class XmlFilterReader extends Reader {
 
   private static class Level {
 //    private Level parent;
-//    private XMLEvent event;
+    private XMLEvent event;
     private Node node;
     private UrlRewriteFilterGroupDescriptor scopeConfig;
     private Node scopeNode;
     private boolean buffered;
+    private boolean hasText;
 
     private Level( Level parent, XMLEvent event, Node node, Node scopeNode, UrlRewriteFilterGroupDescriptor scopeConfig ) {
 //      this.parent = parent;
-//      this.event = event;
+      this.event = event;
       this.node = node;
       this.scopeConfig = scopeConfig;
       this.scopeNode = scopeNode;
@@ -592,6 +740,91 @@ public abstract class XmlFilterReader extends Reader {
     }
   }
 
+  // The subset of XPath that can be matched without a DOM: an absolute location path of child element steps
+  // (unprefixed names or *) optionally ending in an @name or text() step.  Matching mirrors what the XPath would
+  // select from the pruned DOM the non-streaming mode maintains: the open elements, their text and the attribute
+  // being streamed.
+  private static class StreamPath {
+    private static final StreamPath UNSUPPORTED = new StreamPath( null, null, false );
+    private static final Pattern NAME = Pattern.compile( "[A-Za-z_][A-Za-z0-9_.\\-]*" );
+
+    private String[] elements;
+    private String attribute;
+    private boolean text;
+
+    private StreamPath( String[] elements, String attribute, boolean text ) {
+      this.elements = elements;
+      this.attribute = attribute;
+      this.text = text;
+    }
+
+    private static StreamPath compile( String expression ) {
+      String path = expression.trim();
+      if( !path.startsWith( "/" ) || path.startsWith( "//" ) || path.endsWith( "/" ) ) {
+        return UNSUPPORTED;
+      }
+      String[] steps = path.substring( 1 ).split( "/", -1 );
+      String attribute = null;
+      boolean text = false;
+      int count = steps.length;
+      String last = steps[ count - 1 ];
+      if( last.startsWith( "@" ) ) {
+        attribute = last.substring( 1 );
+        if( !NAME.matcher( attribute ).matches() || "xmlns".equals( attribute ) ) {
+          return UNSUPPORTED;
+        }
+        count--;
+      } else if( "text()".equals( last ) ) {
+        text = true;
+        count--;
+      }
+      if( count == 0 ) {
+        return UNSUPPORTED;
+      }
+      String[] elements = new String[ count ];
+      for( int i = 0; i < count; i++ ) {
+        String step = steps[ i ];
+        if( "*".equals( step ) ) {
+          elements[ i ] = null;
+        } else if( NAME.matcher( step ).matches() ) {
+          elements[ i ] = step;
+        } else {
+          return UNSUPPORTED;
+        }
+      }
+      return new StreamPath( elements, attribute, text );
+    }
+
+    private boolean isSupported() {
+      return elements != null;
+    }
+
+    // The stack holds the document level at index 0 followed by the open elements.
+    private boolean matches( Stack<Level> stack, Attribute streamed ) {
+      int depth = stack.size() - 1;
+      int count = elements.length;
+      if( attribute != null ) {
+        if( streamed == null || depth != count || !isUnqualified( streamed.getName(), attribute ) ) {
+          return false;
+        }
+      } else if( depth < count ) {
+        return false;
+      }
+      for( int i = 0; i < count; i++ ) {
+        QName name = stack.get( i + 1 ).event.asStartElement().getName();
+        if( elements[ i ] != null && !isUnqualified( name, elements[ i ] ) ) {
+          return false;
+        }
+      }
+      return !text || stack.get( count ).hasText;
+    }
+
+    private static boolean isUnqualified( QName name, String localName ) {
+      String uri = name.getNamespaceURI();
+      return ( uri == null || uri.isEmpty() ) && localName.equals( name.getLocalPart() );
+    }
+  }
+
   private static class XmlPathCompiler implements UrlRewriteFilterPathDescriptor.Compiler<XPathExpression> {
     private static XPath XPATH = XPathFactory.newInstance().newXPath();
     @Override
@@ -615,19 +848,12 @@ public abstract class XmlFilterReader extends Reader {
     }
   }
 
-  private static final void writeBufferedElement( Node node, Writer writer ) throws IOException {
+  private void writeBufferedElement( Node node, Writer writer ) throws IOException {
     try {
-      getTransformer().transform( new DOMSource( node ), new StreamResult( writer ) );
+      factories.transform( node, writer );
     } catch( TransformerException e ) {
       throw new IOException( e );
     }
   }
 
-  private static final Transformer getTransformer() throws TransformerConfigurationException {
-    TransformerFactory tf = TransformerFactory.newInstance();
-    Transformer t = tf.newTransformer();
-    t.setOutputProperty( OutputKeys.OMIT_XML_DECLARATION, "yes" );
-    return t;
-  }
-
 }
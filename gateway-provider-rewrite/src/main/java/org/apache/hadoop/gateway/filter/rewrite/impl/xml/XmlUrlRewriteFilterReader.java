@@ -18,6 +18,7 @@
 package org.apache.hadoop.gateway.filter.rewrite.impl.xml;
 
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteStreamFilterFactory;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriter;
 import org.apache.hadoop.gateway.filter.rewrite.i18n.UrlRewriteMessages;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
@@ -44,7 +45,7 @@ public class XmlUrlRewriteFilterReader extends XmlFilterReader {
 
   public XmlUrlRewriteFilterReader( Reader reader, UrlRewriter rewriter, Resolver resolver, Direction direction, UrlRewriteFilterContentDescriptor config )
       throws IOException, ParserConfigurationException, XMLStreamException {
-    super( reader, config );
+    super( reader, config, UrlRewriteStreamFilterFactory.getParserFactories( rewriter ) );
     this.resolver = resolver;
     this.rewriter = rewriter;
     this.direction = direction;
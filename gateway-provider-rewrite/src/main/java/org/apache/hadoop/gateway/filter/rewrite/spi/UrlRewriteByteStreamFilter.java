@@ -0,0 +1,55 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.spi;
+
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriter;
+import org.apache.hadoop.gateway.util.urltemplate.Resolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriter.Direction;
+
+/**
+ * A stream filter that rewrites content directly as bytes instead of decoding it into characters first.
+ * When a byte filter is registered for the mime/type and name and supports the content's encoding it is
+ * preferred over the {@link UrlRewriteStreamFilter} registered for the same mime/type and name.
+ */
+public interface UrlRewriteByteStreamFilter {
+
+  String[] getTypes();
+
+  String[] getNames();
+
+  /**
+   * @param encoding the charset declared by the content's mime/type or null if none was declared
+   * @return true if content in the encoding can be filtered as bytes
+   */
+  boolean isEncodingSupported( String encoding );
+
+  InputStream filter(
+      InputStream stream,
+      String encoding,
+      UrlRewriter rewriter,
+      Resolver resolver,
+      Direction direction,
+      UrlRewriteFilterContentDescriptor config )
+          throws IOException;
+
+}
@@ -0,0 +1,34 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.spi;
+
+import java.util.List;
+
+/**
+ * Implemented by function processors whose results may be shared between requests by the rewrite cache.
+ * A rewrite that calls a function processor not implementing it is never cached.
+ */
+public interface UrlRewriteCacheableFunction {
+
+  /**
+   * @param parameters the parameters the function is called with
+   * @return true if the result for these parameters only depends on values resolved through the rewrite context
+   */
+  boolean isCacheable( List<String> parameters );
+
+}
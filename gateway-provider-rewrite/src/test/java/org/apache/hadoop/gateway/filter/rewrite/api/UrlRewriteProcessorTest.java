@@ -17,7 +17,11 @@
  */
 package org.apache.hadoop.gateway.filter.rewrite.api;
 
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteMemo;
+import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteContext;
+import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteFunctionProcessor;
 import org.apache.hadoop.gateway.util.urltemplate.Parser;
+import org.apache.hadoop.gateway.util.urltemplate.Resolver;
 import org.apache.hadoop.gateway.util.urltemplate.Template;
 import org.easymock.EasyMock;
 import org.junit.Test;
@@ -31,9 +35,13 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 public class UrlRewriteProcessorTest {
@@ -212,4 +220,114 @@ public class UrlRewriteProcessorTest {
     processor.destroy();
   }
 
+  @Test
+  public void testCachedRewriteDependsOnResolvedParameters() throws Exception {
+    UrlRewriteProcessor processor = createCacheTestProcessor( "1024" );
+    Resolver first = new GatewayUrlResolver( "https://first:8443/gateway/sandbox" );
+    Resolver second = new GatewayUrlResolver( "https://second:8443/gateway/sandbox" );
+    Template inputUrl = Parser.parseLiteral( "/cluster/app/application_1" );
+
+    Template outputUrl = processor.rewrite( first, inputUrl, UrlRewriter.Direction.OUT, null );
+    assertThat( outputUrl.toString(), is( "https://first:8443/gateway/sandbox/yarn/cluster/app/application_1" ) );
+    assertThat( processor.rewrite( first, Parser.parseLiteral( "/cluster/app/application_1" ), UrlRewriter.Direction.OUT, null ),
+        sameInstance( outputUrl ) );
+    assertThat( processor.getCache().getHitCount(), is( 1L ) );
+
+    // A request reaching the gateway through another address must not see the first request's result.
+    outputUrl = processor.rewrite( second, inputUrl, UrlRewriter.Direction.OUT, null );
+    assertThat( outputUrl.toString(), is( "https://second:8443/gateway/sandbox/yarn/cluster/app/application_1" ) );
+    assertThat( processor.getCache().getHitCount(), is( 1L ) );
+
+    // Explicit rules are cached separately from implicit matching.
+    outputUrl = processor.rewrite( second, inputUrl, UrlRewriter.Direction.OUT, "YARNUI/yarn/outbound/cluster" );
+    assertThat( outputUrl.toString(), is( "https://second:8443/gateway/sandbox/yarn/cluster/app/application_1" ) );
+    assertThat( processor.getCache().getHitCount(), is( 1L ) );
+
+    // URLs no rule matches are cached as is.
+    inputUrl = Parser.parseLiteral( "/other/path" );
+    assertThat( processor.rewrite( first, inputUrl, UrlRewriter.Direction.OUT, null ), sameInstance( inputUrl ) );
+    assertThat( processor.rewrite( second, Parser.parseLiteral( "/other/path" ), UrlRewriter.Direction.OUT, null ), sameInstance( inputUrl ) );
+    assertThat( processor.getCache().getHitCount(), is( 2L ) );
+    processor.destroy();
+  }
+
+  @Test
+  public void testRequestDependentRewriteNotCached() throws Exception {
+    UrlRewriteProcessor processor = createCacheTestProcessor( "1024" );
+    final String[] user = new String[]{ "alice" };
+    processor.functions.put( "username", new UrlRewriteFunctionProcessor<UrlRewriteFunctionDescriptor>() {
+      @Override
+      public String name() {
+        return "username";
+      }
+      @Override
+      public void initialize( UrlRewriteEnvironment environment, UrlRewriteFunctionDescriptor descriptor ) {
+      }
+      @Override
+      public void destroy() {
+      }
+      @Override
+      public List<String> resolve( UrlRewriteContext context, List<String> parameters ) {
+        return Arrays.asList( user[ 0 ] );
+      }
+    } );
+    Resolver resolver = new GatewayUrlResolver( "https://host:8443/gateway/sandbox" );
+    Template inputUrl = Parser.parseLiteral( "/user/history" );
+
+    assertThat( processor.rewrite( resolver, inputUrl, UrlRewriter.Direction.OUT, null ).toString(),
+        is( "https://host:8443/gateway/sandbox/yarn/user/alice/history" ) );
+    user[ 0 ] = "bob";
+    assertThat( processor.rewrite( resolver, inputUrl, UrlRewriter.Direction.OUT, null ).toString(),
+        is( "https://host:8443/gateway/sandbox/yarn/user/bob/history" ) );
+    assertThat( processor.getCache().getHitCount(), is( 0L ) );
+    assertThat( processor.getCache().getUncacheableCount(), is( 2L ) );
+    assertThat( processor.getCache().size(), is( 0 ) );
+
+    // Within one response the user can't change so the memo may remember it.
+    UrlRewriteMemo memo = new UrlRewriteMemo( processor, resolver );
+    Template outputUrl = memo.rewrite( resolver, inputUrl, UrlRewriter.Direction.OUT, null );
+    assertThat( memo.rewrite( resolver, Parser.parseLiteral( "/user/history" ), UrlRewriter.Direction.OUT, null ), sameInstance( outputUrl ) );
+    assertThat( memo.getHitCount(), is( 1L ) );
+    processor.destroy();
+  }
+
+  @Test
+  public void testCacheDisabled() throws Exception {
+    // The cache is off unless a size is configured.
+    assertThat( createCacheTestProcessor( null ).getCache(), nullValue() );
+    UrlRewriteProcessor processor = createCacheTestProcessor( "0" );
+    assertThat( processor.getCache(), nullValue() );
+    Template outputUrl = processor.rewrite(
+        new GatewayUrlResolver( "https://host:8443/gateway/sandbox" ), Parser.parseLiteral( "/static/yarn.css" ), UrlRewriter.Direction.OUT, null );
+    assertThat( outputUrl.toString(), is( "https://host:8443/gateway/sandbox/yarn/static/yarn.css" ) );
+    processor.destroy();
+  }
+
+  private static UrlRewriteProcessor createCacheTestProcessor( String cacheSize ) throws IOException {
+    UrlRewriteEnvironment environment = EasyMock.createNiceMock( UrlRewriteEnvironment.class );
+    EasyMock.expect( environment.resolve( UrlRewriteProcessor.CACHE_SIZE_PARAM ) )
+        .andReturn( cacheSize == null ? null : Arrays.asList( cacheSize ) ).anyTimes();
+    EasyMock.replay( environment );
+    UrlRewriteProcessor processor = new UrlRewriteProcessor();
+    UrlRewriteRulesDescriptor config = UrlRewriteRulesDescriptorFactory.load(
+        "xml", getTestResourceReader( "rewrite-cache.xml", "UTF-8" ) );
+    processor.initialize( environment, config );
+    return processor;
+  }
+
+  private static class GatewayUrlResolver implements Resolver {
+
+    private String gatewayUrl;
+
+    private GatewayUrlResolver( String gatewayUrl ) {
+      this.gatewayUrl = gatewayUrl;
+    }
+
+    @Override
+    public List<String> resolve( String name ) {
+      return "gateway.url".equals( name ) ? Arrays.asList( gatewayUrl ) : null;
+    }
+
+  }
+
 }
@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import org.junit.Test;
+
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class HostNameCacheTest {
+
+  @Test
+  public void testResolvesOncePerTtl() throws Exception {
+    StubResolver resolver = new StubResolver();
+    resolver.names.put( "10.0.0.1", "gateway.example.com" );
+    QueuedExecutor refresher = new QueuedExecutor();
+    TestCache cache = new TestCache( resolver, refresher, 10 );
+
+    for( int i = 0; i < 100; i++ ) {
+      assertThat( cache.getHostName( "10.0.0.1" ), is( "gateway.example.com" ) );
+    }
+    assertThat( resolver.count( "10.0.0.1" ), is( 1 ) );
+    assertThat( cache.getMissCount(), is( 1L ) );
+    assertThat( cache.getHitCount(), is( 99L ) );
+
+    // Once expired the stale name is returned and only a single refresh is scheduled.
+    resolver.names.put( "10.0.0.1", "renamed.example.com" );
+    cache.now += 1000;
+    assertThat( cache.getHostName( "10.0.0.1" ), is( "gateway.example.com" ) );
+    assertThat( cache.getHostName( "10.0.0.1" ), is( "gateway.example.com" ) );
+    assertThat( refresher.tasks.size(), is( 1 ) );
+    assertThat( resolver.count( "10.0.0.1" ), is( 1 ) );
+
+    refresher.runAll();
+    assertThat( resolver.count( "10.0.0.1" ), is( 2 ) );
+    assertThat( cache.getRefreshCount(), is( 1L ) );
+    assertThat( cache.getHostName( "10.0.0.1" ), is( "renamed.example.com" ) );
+    assertThat( refresher.tasks.size(), is( 0 ) );
+  }
+
+  @Test
+  public void testCachesFailedLookups() throws Exception {
+    StubResolver resolver = new StubResolver();
+    QueuedExecutor refresher = new QueuedExecutor();
+    TestCache cache = new TestCache( resolver, refresher, 10 );
+
+    assertThat( cache.getHostName( "unknown-host" ), is( "unknown-host" ) );
+    assertThat( cache.getHostName( "unknown-host" ), is( "unknown-host" ) );
+    assertThat( resolver.count( "unknown-host" ), is( 1 ) );
+
+    // Failures expire after the shorter negative ttl.
+    resolver.names.put( "unknown-host", "known-host" );
+    cache.now += 100;
+    assertThat( cache.getHostName( "unknown-host" ), is( "unknown-host" ) );
+    refresher.runAll();
+    assertThat( cache.getHostName( "unknown-host" ), is( "known-host" ) );
+    assertThat( resolver.count( "unknown-host" ), is( 2 ) );
+  }
+
+  @Test
+  public void testBounded() throws Exception {
+    StubResolver resolver = new StubResolver();
+    TestCache cache = new TestCache( resolver, new QueuedExecutor(), 3 );
+    for( int i = 0; i < 10; i++ ) {
+      cache.getHostName( "host-" + i );
+      assertThat( cache.size() <= 3, is( true ) );
+    }
+    assertThat( cache.getHostName( "host-9" ), is( "host-9" ) );
+    assertThat( resolver.count( "host-9" ), is( 1 ) );
+  }
+
+  private static class TestCache extends HostNameCache {
+
+    private long now = 0;
+
+    private TestCache( Resolver resolver, Executor refresher, int maxSize ) {
+      super( resolver, 1000, 100, maxSize, refresher );
+    }
+
+    @Override
+    protected long currentTimeMillis() {
+      return now;
+    }
+
+  }
+
+  private static class StubResolver implements HostNameCache.Resolver {
+
+    private Map<String,String> names = new HashMap<String,String>();
+    private Map<String,Integer> counts = new HashMap<String,Integer>();
+
+    @Override
+    public synchronized String resolve( String name ) throws UnknownHostException {
+      counts.put( name, count( name ) + 1 );
+      String hostName = names.get( name );
+      if( hostName == null ) {
+        throw new UnknownHostException( name );
+      }
+      return hostName;
+    }
+
+    private synchronized int count( String name ) {
+      Integer count = counts.get( name );
+      return count == null ? 0 : count;
+    }
+
+  }
+
+  private static class QueuedExecutor implements Executor {
+
+    private List<Runnable> tasks = new ArrayList<Runnable>();
+
+    @Override
+    public void execute( Runnable task ) {
+      tasks.add( task );
+    }
+
+    private void runAll() {
+      List<Runnable> run = tasks;
+      tasks = new ArrayList<Runnable>();
+      for( Runnable task : run ) {
+        task.run();
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.impl.javascript.JavaScriptFilterReader;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class UrlRewriteMultiPatternTest {
+
+  private static final UrlRewriteFilterPathDescriptor.Compiler<Pattern> REGEX_COMPILER = new UrlRewriteFilterPathDescriptor.Compiler<Pattern>() {
+    @Override
+    public Pattern compile( String expression, Pattern compiled ) {
+      return compiled != null ? compiled : Pattern.compile( expression );
+    }
+  };
+
+  // Rewrites values the way the gateway would, tagging them with the rule so a wrong rule shows up in the output.
+  private static final UrlRewriteFilterReader PREFIX_REWRITER = new UrlRewriteFilterReader() {
+    @Override
+    public String filterValueString( String name, String value, String rule ) {
+      return "https://knoxhost:8443/gateway/sandbox/hdfs" + value + "#" + rule;
+    }
+  };
+
+  private static final String[] INPUTS = new String[]{
+      "",
+      "function load_page() {}",
+      "var url = '/jmx?qry=Hadoop:service=NameNode,name=NameNodeInfo';",
+      "$.get('/conf', function(data) { $.get('/startupProgress', render); });",
+      "var url = '/webhdfs/v1' + abs_path + '?op=LISTSTATUS'; load('/jmx'); load('/jmx');",
+      "  var url = http://testhost:8088/cluster/app/application_1436831599487_0001; '/WebHDFS/v1'",
+      "/jmx/conf/startupProgress/webhdfs",
+      "no selectors match here at all, just a long line of script that has to be scanned once",
+      "var s = 'café'; var url = '/webhdfs/v1'; // 漢字 /conf"
+  };
+
+  @Test
+  public void testSameOutputAsSequentialFilter() throws IOException {
+    UrlRewriteFilterContentDescriptor[] configs = new UrlRewriteFilterContentDescriptor[]{
+        createHdfsUiConfig(),
+        createConfig( "(https?://[^/':,]+:[\\d]+)?/cluster/app", "/webhdfs/v1" ),
+        createConfig( "(?i)/webhdfs/v1", "/jmx(\\?qry=[^']*)?", "/conf" ),
+        createConfig( "/jmx(\\?qry=[^']*)?", "/con?f", "/web\\.?hdfs", "(?<=')/startupProgress" ),
+        createConfig( "/jmx" ),
+        new UrlRewriteFilterContentDescriptorImpl()
+    };
+    for( UrlRewriteFilterContentDescriptor config : configs ) {
+      for( String input : INPUTS ) {
+        String expect = UrlRewriteUtil.filterJavaScript( input, config.getSelectors(), PREFIX_REWRITER, REGEX_COMPILER );
+        assertThat( UrlRewriteUtil.filterJavaScript( input, config, PREFIX_REWRITER, REGEX_COMPILER ), is( expect ) );
+        String lines = input + "\n" + input + "\n";
+        assertThat( IOUtils.toString( new PrefixJavaScriptFilterReader( new StringReader( lines ), config ) ),
+            is( expect + "\n" + expect + "\n" ) );
+      }
+    }
+  }
+
+  @Test
+  public void testRewrittenValuesAreNotMatchedAgain() {
+    // Applied one after the other the second selector would rewrite the output of the first once more.
+    UrlRewriteFilterContentDescriptor config = createConfig( "/jmx", "/hdfs" );
+    String input = "load('/jmx'); load('/hdfs');";
+    assertThat( UrlRewriteUtil.filterJavaScript( input, config, PREFIX_REWRITER, REGEX_COMPILER ),
+        is( "load('https://knoxhost:8443/gateway/sandbox/hdfs/jmx#rule-0'); load('https://knoxhost:8443/gateway/sandbox/hdfs/hdfs#rule-1');" ) );
+
+    // Where selectors match at the same position the first configured one wins.
+    config = createConfig( "/webhdfs", "/webhdfs/v1" );
+    assertThat( UrlRewriteUtil.filterJavaScript( "'/webhdfs/v1'", config, PREFIX_REWRITER, REGEX_COMPILER ),
+        is( "'https://knoxhost:8443/gateway/sandbox/hdfs/webhdfs#rule-0/v1'" ) );
+  }
+
+  @Test
+  public void testExpressionsThatCannotBeCombined() {
+    UrlRewriteFilterContentDescriptor config = createConfig( "(['\"])/jmx\\1", "/conf" );
+    assertThat( UrlRewriteMultiPattern.get( config, REGEX_COMPILER ).isCombined(), is( false ) );
+    for( String input : INPUTS ) {
+      assertThat( UrlRewriteUtil.filterJavaScript( input, config, PREFIX_REWRITER, REGEX_COMPILER ),
+          is( UrlRewriteUtil.filterJavaScript( input, config.getSelectors(), PREFIX_REWRITER, REGEX_COMPILER ) ) );
+    }
+
+    config = createConfig( "(?<path>/jmx)", "(?<path>/conf)" );
+    assertThat( UrlRewriteMultiPattern.get( config, REGEX_COMPILER ).isCombined(), is( false ) );
+  }
+
+  @Test
+  public void testPrefixLiterals() {
+    assertThat( UrlRewriteMultiPattern.prefixLiteral( Pattern.compile( "/webhdfs/v1" ) ), is( "/webhdfs/v1" ) );
+    assertThat( UrlRewriteMultiPattern.prefixLiteral( Pattern.compile( "/jmx(\\?qry=[^']*)?" ) ), is( "/jmx" ) );
+    assertThat( UrlRewriteMultiPattern.prefixLiteral( Pattern.compile( "/con?f" ) ), is( "/co" ) );
+    assertThat( UrlRewriteMultiPattern.prefixLiteral( Pattern.compile( "\\.\\./conf" ) ), is( "../conf" ) );
+    assertThat( UrlRewriteMultiPattern.prefixLiteral( Pattern.compile( "(https?://[^/':,]+:[\\d]+)?/cluster/app" ) ), nullValue() );
+    assertThat( UrlRewriteMultiPattern.prefixLiteral( Pattern.compile( "/jmx|/conf" ) ), nullValue() );
+    assertThat( UrlRewriteMultiPattern.prefixLiteral( Pattern.compile( "/jmx", Pattern.CASE_INSENSITIVE ) ), nullValue() );
+    assertThat( UrlRewriteMultiPattern.prefixLiteral( Pattern.compile( "\\d+/jmx" ) ), nullValue() );
+
+    // Back references are fine as long as the expressions don't have to be combined.
+    UrlRewriteFilterContentDescriptor config = createConfig( "/jmx(['\"])x\\1", "/conf" );
+    assertThat( UrlRewriteMultiPattern.get( config, REGEX_COMPILER ).isCombined(), is( true ) );
+    assertThat( UrlRewriteUtil.filterJavaScript( "'/jmx'x'/conf'", config, PREFIX_REWRITER, REGEX_COMPILER ),
+        is( "'https://knoxhost:8443/gateway/sandbox/hdfs/jmx'x'#rule-0https://knoxhost:8443/gateway/sandbox/hdfs/conf#rule-1'" ) );
+  }
+
+  @Test
+  public void testCombinedOncePerGroup() {
+    UrlRewriteFilterContentDescriptor config = createHdfsUiConfig();
+    UrlRewriteMultiPattern pattern = UrlRewriteMultiPattern.get( config, REGEX_COMPILER );
+    assertThat( pattern.isCombined(), is( true ) );
+    assertThat( UrlRewriteMultiPattern.get( config, REGEX_COMPILER ), sameInstance( pattern ) );
+    config.addApply( "/logs", "rule-logs" );
+    assertThat( UrlRewriteMultiPattern.get( config, REGEX_COMPILER ), not( sameInstance( pattern ) ) );
+  }
+
+  private static UrlRewriteFilterContentDescriptor createHdfsUiConfig() {
+    return createConfig( "/jmx", "/conf", "/startupProgress", "/webhdfs" );
+  }
+
+  private static UrlRewriteFilterContentDescriptor createConfig( String... paths ) {
+    UrlRewriteFilterContentDescriptor config = new UrlRewriteFilterContentDescriptorImpl();
+    for( int i = 0; i < paths.length; i++ ) {
+      config.addApply( paths[ i ], "rule-" + i );
+    }
+    return config;
+  }
+
+  private static class PrefixJavaScriptFilterReader extends JavaScriptFilterReader {
+
+    private PrefixJavaScriptFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config ) throws IOException {
+      super( reader, config );
+    }
+
+    @Override
+    public String filterValueString( String name, String value, String rule ) {
+      return PREFIX_REWRITER.filterValueString( name, value, rule );
+    }
+
+  }
+
+}
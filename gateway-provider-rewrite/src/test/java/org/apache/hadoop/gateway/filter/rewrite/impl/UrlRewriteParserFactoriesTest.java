@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteEnvironment;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteProcessor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteRulesDescriptorFactory;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteStreamFilterFactory;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriter;
+import org.easymock.EasyMock;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class UrlRewriteParserFactoriesTest {
+
+  @Test
+  public void testProcessorFactoriesAreHandedToFilters() throws Exception {
+    UrlRewriteProcessor processor = new UrlRewriteProcessor();
+    assertThat( UrlRewriteStreamFilterFactory.getParserFactories( processor ), sameInstance( UrlRewriteParserFactories.getDefault() ) );
+
+    initialize( processor );
+    UrlRewriteParserFactories factories = processor.getParserFactories();
+    assertThat( factories, not( sameInstance( UrlRewriteParserFactories.getDefault() ) ) );
+    assertThat( UrlRewriteStreamFilterFactory.getParserFactories( processor ), sameInstance( factories ) );
+
+    UrlRewriter rewriter = EasyMock.createNiceMock( UrlRewriter.class );
+    assertThat( UrlRewriteStreamFilterFactory.getParserFactories( rewriter ), sameInstance( UrlRewriteParserFactories.getDefault() ) );
+  }
+
+  @Test
+  public void testConcurrentUse() throws Exception {
+    final UrlRewriteParserFactories factories = new UrlRewriteParserFactories();
+    ExecutorService executor = Executors.newFixedThreadPool( 8 );
+    try {
+      List<Future<String>> results = new ArrayList<Future<String>>();
+      for( int i = 0; i < 200; i++ ) {
+        final int n = i;
+        results.add( executor.submit( new Callable<String>() {
+          @Override
+          public String call() throws Exception {
+            Document document = factories.newDocument();
+            Element element = document.createElement( "e" + n );
+            element.setAttribute( "href", "http://host:" + n + "/path" );
+            StringWriter writer = new StringWriter();
+            factories.transform( element, writer );
+            return writer.toString();
+          }
+        } ) );
+      }
+      for( int i = 0; i < results.size(); i++ ) {
+        assertThat( results.get( i ).get(), is( "<e" + i + " href=\"http://host:" + i + "/path\"/>" ) );
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void initialize( UrlRewriteProcessor processor ) {
+    UrlRewriteEnvironment environment = EasyMock.createNiceMock( UrlRewriteEnvironment.class );
+    EasyMock.replay( environment );
+    processor.initialize( environment, UrlRewriteRulesDescriptorFactory.create() );
+  }
+
+}
@@ -0,0 +1,243 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.gateway.filter.GatewayResponse;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UrlRewriteResponseStreamTest {
+
+  @Test
+  public void testSmallBodyIsRewrittenInline() throws Exception {
+    Recorder recorder = new Recorder( null, null );
+    UrlRewriteResponseStream stream = new UrlRewriteResponseStream( recorder.response );
+    byte[] body = createBody( 100 );
+    stream.write( body );
+    stream.close();
+
+    assertThat( stream.isPiped(), is( false ) );
+    assertThat( Arrays.equals( recorder.output.toByteArray(), body ), is( true ) );
+    assertThat( recorder.thread.get(), is( Thread.currentThread().getName() ) );
+  }
+
+  @Test
+  public void testLargeBodyIsPiped() throws Exception {
+    Recorder recorder = new Recorder( null, null );
+    UrlRewriteResponseStream stream = new UrlRewriteResponseStream( recorder.response );
+    byte[] body = createBody( 1024 * 1024 + 17 );
+    Random random = new Random( 7 );
+    int offset = 0;
+    while( offset < body.length ) {
+      if( random.nextInt( 10 ) == 0 ) {
+        stream.write( body[ offset++ ] );
+      } else {
+        int length = Math.min( body.length - offset, random.nextInt( 20000 ) );
+        stream.write( body, offset, length );
+        offset += length;
+      }
+    }
+    stream.close();
+
+    assertThat( stream.isPiped(), is( true ) );
+    assertThat( Arrays.equals( recorder.output.toByteArray(), body ), is( true ) );
+    assertThat( recorder.thread.get(), startsWith( "UrlRewriteResponseStream-" ) );
+  }
+
+  @Test
+  public void testWriterBlocksWhilePipeIsFull() throws Exception {
+    CountDownLatch release = new CountDownLatch( 1 );
+    Recorder recorder = new Recorder( release, null );
+    final UrlRewriteResponseStream stream = new UrlRewriteResponseStream( recorder.response );
+    final byte[] body = createBody( UrlRewriteResponseStream.INLINE_BUFFER_SIZE + UrlRewriteResponseStream.PIPE_BUFFER_SIZE * 2 );
+    final CountDownLatch written = new CountDownLatch( 1 );
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          stream.write( body );
+          written.countDown();
+          stream.close();
+        } catch( IOException e ) {
+          // Reported by the assertions below.
+        }
+      }
+    };
+    writer.start();
+
+    assertThat( written.await( 500, TimeUnit.MILLISECONDS ), is( false ) );
+    release.countDown();
+    assertThat( written.await( 10, TimeUnit.SECONDS ), is( true ) );
+    writer.join( 10000 );
+    assertThat( Arrays.equals( recorder.output.toByteArray(), body ), is( true ) );
+  }
+
+  @Test
+  public void testRewriteFailureIsReportedToWriter() throws Exception {
+    Recorder recorder = new Recorder( null, new IOException( "test-failure" ) );
+    UrlRewriteResponseStream stream = new UrlRewriteResponseStream( recorder.response );
+    byte[] body = createBody( 1024 * 1024 );
+    try {
+      stream.write( body );
+      stream.close();
+      fail( "Expected IOException" );
+    } catch( IOException e ) {
+      Throwable cause = e;
+      while( cause.getCause() != null ) {
+        cause = cause.getCause();
+      }
+      assertThat( cause.getMessage(), is( "test-failure" ) );
+    }
+  }
+
+  @Test
+  public void testAbortReleasesPump() throws Exception {
+    Recorder recorder = new Recorder( null, null );
+    UrlRewriteResponseStream stream = new UrlRewriteResponseStream( recorder.response );
+    stream.write( createBody( UrlRewriteResponseStream.INLINE_BUFFER_SIZE * 2 ) );
+    assertThat( stream.isPiped(), is( true ) );
+
+    // The writer failed so the stream is never closed.
+    stream.abort();
+    assertThat( recorder.done.await( 10, TimeUnit.SECONDS ), is( true ) );
+    assertThat( recorder.error.get(), instanceOf( IOException.class ) );
+    try {
+      stream.write( 0 );
+      fail( "Expected IOException" );
+    } catch( IOException e ) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testWriterWaitsWhileAllPumpsAreBusy() throws Exception {
+    CountDownLatch release = new CountDownLatch( 1 );
+    List<UrlRewriteResponseStream> busy = new ArrayList<UrlRewriteResponseStream>();
+    try {
+      for( int i = 0; i < UrlRewriteResponseStream.MAX_PUMPS; i++ ) {
+        UrlRewriteResponseStream stream = new UrlRewriteResponseStream( new Recorder( release, null ).response );
+        stream.write( createBody( UrlRewriteResponseStream.INLINE_BUFFER_SIZE + 1 ) );
+        assertThat( stream.isPiped(), is( true ) );
+        busy.add( stream );
+      }
+
+      final Recorder recorder = new Recorder( null, null );
+      final UrlRewriteResponseStream stream = new UrlRewriteResponseStream( recorder.response );
+      final byte[] body = createBody( UrlRewriteResponseStream.PIPE_BUFFER_SIZE * 2 );
+      final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+      Thread writer = new Thread() {
+        @Override
+        public void run() {
+          try {
+            stream.write( body );
+            stream.close();
+          } catch( Throwable e ) {
+            failure.set( e );
+          }
+        }
+      };
+      writer.start();
+      writer.join( 500 );
+      // The writer waits for a pump instead of buffering the body.
+      assertThat( writer.isAlive(), is( true ) );
+      assertThat( stream.isPiped(), is( false ) );
+
+      // Finishing one of the busy bodies frees its pump for the waiting writer.
+      release.countDown();
+      busy.remove( 0 ).close();
+      writer.join( 10000 );
+      assertThat( writer.isAlive(), is( false ) );
+      assertThat( failure.get(), nullValue() );
+      assertThat( Arrays.equals( recorder.output.toByteArray(), body ), is( true ) );
+      assertThat( recorder.thread.get(), startsWith( "UrlRewriteResponseStream-" ) );
+    } finally {
+      release.countDown();
+      for( UrlRewriteResponseStream stream : busy ) {
+        stream.close();
+      }
+    }
+  }
+
+  private static byte[] createBody( int length ) {
+    byte[] body = new byte[ length ];
+    new Random( length ).nextBytes( body );
+    return body;
+  }
+
+  private static class Recorder {
+
+    private final GatewayResponse response;
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final AtomicReference<String> thread = new AtomicReference<String>();
+    private final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    private final CountDownLatch done = new CountDownLatch( 1 );
+
+    private Recorder( final CountDownLatch release, final IOException failure ) throws IOException {
+      response = EasyMock.createNiceMock( GatewayResponse.class );
+      response.streamResponse( EasyMock.anyObject( InputStream.class ) );
+      EasyMock.expectLastCall().andAnswer( new IAnswer<Object>() {
+        @Override
+        public Object answer() throws Throwable {
+          thread.set( Thread.currentThread().getName() );
+          try {
+            if( release != null ) {
+              assertTrue( release.await( 10, TimeUnit.SECONDS ) );
+            }
+            InputStream input = (InputStream)EasyMock.getCurrentArguments()[ 0 ];
+            if( failure != null ) {
+              input.read( new byte[ 1000 ] );
+              throw failure;
+            }
+            synchronized( output ) {
+              IOUtils.copy( input, output );
+            }
+            return null;
+          } catch( Throwable e ) {
+            error.set( e );
+            throw e;
+          } finally {
+            done.countDown();
+          }
+        }
+      } ).anyTimes();
+      EasyMock.replay( response );
+    }
+  }
+
+}
@@ -18,25 +18,35 @@
 package org.apache.hadoop.gateway.filter.rewrite.impl;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.gateway.dispatch.DefaultDispatch;
+import org.apache.hadoop.gateway.dispatch.DefaultHttpClientFactory;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteProcessor;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteServletContextListener;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteServletFilter;
+import org.apache.hadoop.test.mock.MockServer;
 import org.easymock.EasyMock;
 import org.junit.Test;
 
 import javax.activation.MimeTypeParseException;
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -116,6 +126,44 @@ public class UrlRewriteResponseTest {
     assertThat( path, hasItems( new String[]{ "/mock-path" } ) );
   }
 
+  @Test
+  public void testLocalHostNameResolvedOncePerTtl() throws Exception {
+    final AtomicInteger lookups = new AtomicInteger();
+    HostNameCache cache = new HostNameCache( new HostNameCache.Resolver() {
+      @Override
+      public String resolve( String name ) {
+        lookups.incrementAndGet();
+        return "resolved-" + name;
+      }
+    }, HostNameCache.DEFAULT_TTL, HostNameCache.DEFAULT_NEGATIVE_TTL, HostNameCache.DEFAULT_MAX_SIZE, null );
+    UrlRewriteResponse.setHostNameCache( cache );
+    try {
+      UrlRewriteProcessor rewriter = EasyMock.createNiceMock( UrlRewriteProcessor.class );
+
+      ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+      EasyMock.expect( context.getAttribute( UrlRewriteServletContextListener.PROCESSOR_ATTRIBUTE_NAME ) ).andReturn( rewriter ).anyTimes();
+
+      FilterConfig config = EasyMock.createNiceMock( FilterConfig.class );
+      EasyMock.expect( config.getServletContext() ).andReturn( context ).anyTimes();
+
+      HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+      EasyMock.expect( request.getLocalName() ).andReturn( "mock-host" ).anyTimes();
+      HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+
+      EasyMock.replay( rewriter, context, config, request, response );
+
+      for( int i = 0; i < 10; i++ ) {
+        UrlRewriteResponse rewriteResponse = new UrlRewriteResponse( config, request, response );
+        assertThat( rewriteResponse.resolve( "gateway.host" ), hasItems( new String[]{ "resolved-mock-host" } ) );
+      }
+      assertThat( lookups.get(), is( 1 ) );
+      assertThat( cache.getMissCount(), is( 1L ) );
+      assertThat( cache.getHitCount(), is( 9L ) );
+    } finally {
+      UrlRewriteResponse.setHostNameCache( HostNameCache.getInstance() );
+    }
+  }
+
   @Test
   public void testStreamResponse() throws IOException, MimeTypeParseException {
     UrlRewriteProcessor rewriter = EasyMock.createNiceMock( UrlRewriteProcessor.class );
@@ -140,6 +188,168 @@ public class UrlRewriteResponseTest {
     testStreamResponseGzip ( content, rewriteResponse, true );
   }
 
+  @Test
+  public void testStreamResponseRewritesGzipBody() throws Exception {
+    HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+    UrlRewriteResponse rewriteResponse = createStreamingResponse( "application/json", null, null, response );
+    rewriteResponse.addHeader( "Content-Encoding", "gzip" );
+
+    String content = "{\"name\":\"value\"}";
+    byte[] output = stream( rewriteResponse, gzip( content.getBytes( "UTF-8" ) ) );
+    assertThat( new String( gunzip( output ), "UTF-8" ), is( content ) );
+  }
+
+  @Test
+  public void testStreamResponsePassesThroughUnfilteredAndUnknownEncodings() throws Exception {
+    byte[] body = gzip( "{\"name\":\"value\"}".getBytes( "UTF-8" ) );
+
+    // No rewrite filter applies to the type so the compressed body is copied as is.
+    HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+    UrlRewriteResponse rewriteResponse = createStreamingResponse( "application/octet-stream", null, null, response );
+    rewriteResponse.addHeader( "Content-Encoding", "gzip" );
+    assertThat( stream( rewriteResponse, body ), is( body ) );
+
+    // The body can't be rewritten if it uses an encoding other than gzip.
+    response = EasyMock.createNiceMock( HttpServletResponse.class );
+    rewriteResponse = createStreamingResponse( "application/json", null, null, response );
+    rewriteResponse.setHeader( "Content-Encoding", "deflate" );
+    assertThat( stream( rewriteResponse, body ), is( body ) );
+  }
+
+  @Test
+  public void testStreamResponseCompressesForGzipClients() throws Exception {
+    String content = "{\"name\":\"value\"}";
+
+    HttpServletResponse response = EasyMock.createMock( HttpServletResponse.class );
+    EasyMock.expect( response.getCharacterEncoding() ).andReturn( null ).anyTimes();
+    EasyMock.expect( response.isCommitted() ).andReturn( false ).anyTimes();
+    response.setHeader( "Content-Encoding", "gzip" );
+    response.addHeader( "Vary", "Accept-Encoding" );
+    UrlRewriteResponse rewriteResponse = createStreamingResponse( "application/json", "deflate;q=0.5, gzip", "true", response );
+    assertThat( new String( gunzip( stream( rewriteResponse, content.getBytes( "UTF-8" ) ) ), "UTF-8" ), is( content ) );
+    EasyMock.verify( response );
+
+    // Clients that refuse gzip or filters without compression enabled get the plain body.
+    response = EasyMock.createNiceMock( HttpServletResponse.class );
+    rewriteResponse = createStreamingResponse( "application/json", "gzip;q=0", "true", response );
+    assertThat( new String( stream( rewriteResponse, content.getBytes( "UTF-8" ) ), "UTF-8" ), is( content ) );
+    response = EasyMock.createNiceMock( HttpServletResponse.class );
+    rewriteResponse = createStreamingResponse( "application/json", "gzip", null, response );
+    assertThat( new String( stream( rewriteResponse, content.getBytes( "UTF-8" ) ), "UTF-8" ), is( content ) );
+  }
+
+  // Dispatches to a backend that returns gzip bodies to make sure the Content-Encoding and the compressed body
+  // actually reach the rewriting instead of being decompressed by the HTTP client.
+  @Test
+  public void testDispatchedGzipBodyKeepsContentEncoding() throws Exception {
+    String content = "{\"name\":\"value\"}";
+    byte[] body = gzip( content.getBytes( "UTF-8" ) );
+    MockServer backend = new MockServer( "backend", true );
+    try {
+      backend.expect().method( "GET" ).header( "Accept-Encoding", "gzip" )
+          .respond().status( 200 ).contentType( "application/json" ).header( "Content-Encoding", "gzip" ).content( body );
+      backend.expect().method( "GET" ).header( "Accept-Encoding", "gzip" )
+          .respond().status( 200 ).contentType( "application/octet-stream" ).header( "Content-Encoding", "gzip" ).content( body );
+      DefaultDispatch dispatch = createDispatch();
+
+      // The rewritten JSON body is compressed again.
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      HttpServletResponse response = createDispatchResponse( output );
+      UrlRewriteResponse rewriteResponse = createStreamingResponse( "application/json", null, null, response );
+      dispatch.doGet( new URI( "http://localhost:" + backend.getPort() + "/json" ), createDispatchRequest( "gzip, deflate, br" ), rewriteResponse );
+      EasyMock.verify( response );
+      assertThat( new String( gunzip( output.toByteArray() ), "UTF-8" ), is( content ) );
+
+      // Bodies that are not rewritten are copied compressed.
+      output = new ByteArrayOutputStream();
+      response = createDispatchResponse( output );
+      rewriteResponse = createStreamingResponse( "application/octet-stream", null, null, response );
+      dispatch.doGet( new URI( "http://localhost:" + backend.getPort() + "/file" ), createDispatchRequest( "gzip, deflate, br" ), rewriteResponse );
+      EasyMock.verify( response );
+      assertThat( output.toByteArray(), is( body ) );
+      assertThat( backend.isEmpty(), is( true ) );
+    } finally {
+      backend.stop();
+    }
+  }
+
+  private static DefaultDispatch createDispatch() {
+    ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+    EasyMock.expect( context.getContextPath() ).andReturn( "/gateway/sandbox" ).anyTimes();
+    FilterConfig config = EasyMock.createNiceMock( FilterConfig.class );
+    EasyMock.expect( config.getServletContext() ).andReturn( context ).anyTimes();
+    EasyMock.expect( config.getFilterName() ).andReturn( "dispatch" ).anyTimes();
+    EasyMock.replay( context, config );
+    DefaultDispatch dispatch = new DefaultDispatch();
+    dispatch.setHttpClient( new DefaultHttpClientFactory().createHttpClient( config ) );
+    dispatch.init();
+    return dispatch;
+  }
+
+  private static HttpServletRequest createDispatchRequest( String acceptEncoding ) {
+    HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    EasyMock.expect( request.getHeaderNames() ).andReturn( Collections.enumeration( Arrays.asList( "Accept-Encoding" ) ) ).anyTimes();
+    EasyMock.expect( request.getHeader( "Accept-Encoding" ) ).andReturn( acceptEncoding ).anyTimes();
+    EasyMock.replay( request );
+    return request;
+  }
+
+  // Expects the Content-Encoding to be copied to the client response. The caller replays the mock.
+  private static HttpServletResponse createDispatchResponse( final ByteArrayOutputStream output ) throws IOException {
+    HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+    response.addHeader( "Content-Encoding", "gzip" );
+    EasyMock.expectLastCall().once();
+    EasyMock.expect( response.getOutputStream() ).andReturn( new ServletOutputStream() {
+      @Override
+      public void write( int b ) throws IOException {
+        output.write( b );
+      }
+      @Override
+      public void write( byte[] b, int off, int len ) throws IOException {
+        output.write( b, off, len );
+      }
+    } ).anyTimes();
+    return response;
+  }
+
+  private UrlRewriteResponse createStreamingResponse( String contentType, String acceptEncoding, String compress, HttpServletResponse response ) throws Exception {
+    UrlRewriteProcessor rewriter = EasyMock.createNiceMock( UrlRewriteProcessor.class );
+    EasyMock.expect( rewriter.getConfig() ).andReturn( null ).anyTimes();
+
+    ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+    EasyMock.expect( context.getAttribute( UrlRewriteServletContextListener.PROCESSOR_ATTRIBUTE_NAME ) ).andReturn( rewriter ).anyTimes();
+
+    FilterConfig config = EasyMock.createNiceMock( FilterConfig.class );
+    EasyMock.expect( config.getInitParameter( UrlRewriteServletFilter.RESPONSE_GZIP_COMPRESS_PARAM ) ).andReturn( compress ).anyTimes();
+    EasyMock.expect( config.getServletContext() ).andReturn( context ).anyTimes();
+
+    HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    EasyMock.expect( request.getHeaders( "Accept-Encoding" ) ).andReturn(
+        acceptEncoding == null ? null : Collections.enumeration( Arrays.asList( acceptEncoding ) ) ).anyTimes();
+    EasyMock.expect( response.getContentType() ).andReturn( contentType ).anyTimes();
+
+    EasyMock.replay( rewriter, context, config, request, response );
+    return new UrlRewriteResponse( config, request, response );
+  }
+
+  private static byte[] stream( UrlRewriteResponse rewriteResponse, byte[] body ) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    rewriteResponse.streamResponse( new ByteArrayInputStream( body ), output );
+    return output.toByteArray();
+  }
+
+  private static byte[] gzip( byte[] bytes ) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    GZIPOutputStream output = new GZIPOutputStream( buffer );
+    output.write( bytes );
+    output.close();
+    return buffer.toByteArray();
+  }
+
+  private static byte[] gunzip( byte[] bytes ) throws IOException {
+    return IOUtils.toByteArray( new GZIPInputStream( new ByteArrayInputStream( bytes ) ) );
+  }
+
   private void testStreamResponseGzip( String content, UrlRewriteResponse rewriteResponse , boolean isGzip ) throws IOException {
     File targetDir = new File( System.getProperty( "user.dir" ), "target" );
     File inputFile = new File( targetDir, "input.test" );
@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl;
+
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteEnvironment;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteRuleDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteRulesDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteRulesDescriptorFactory;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteStepDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.spi.UrlRewriteStepProcessor;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class UrlRewriteStepProcessorHolderTest {
+
+  private static final String RULES =
+      "<rules>" +
+      "  <rule name=\"test-rule\" flow=\"OR\">" +
+      "    <match pattern=\"*://*:*/~/{path=**}\">" +
+      "      <rewrite template=\"{$frontend[url]}/home/{path}\"/>" +
+      "    </match>" +
+      "    <control flow=\"AND\"/>" +
+      "  </rule>" +
+      "</rules>";
+
+  @Test
+  public void testBuiltInStepsAreCacheable() throws Exception {
+    UrlRewriteEnvironment environment = EasyMock.createNiceMock( UrlRewriteEnvironment.class );
+    EasyMock.replay( environment );
+    UrlRewriteRulesDescriptor rules = UrlRewriteRulesDescriptorFactory.load( "xml", new StringReader( RULES ) );
+
+    UrlRewriteRuleProcessorHolder holder = new UrlRewriteRuleProcessorHolder();
+    holder.initialize( environment, rules.getRule( "test-rule" ) );
+    assertThat( holder.isCacheable(), is( true ) );
+  }
+
+  @Test
+  public void testStepThatDoesNotOptInIsNotCacheable() throws Exception {
+    UrlRewriteEnvironment environment = EasyMock.createNiceMock( UrlRewriteEnvironment.class );
+    UrlRewriteStepDescriptor descriptor = EasyMock.createNiceMock( UrlRewriteStepDescriptor.class );
+    UrlRewriteStepProcessor processor = EasyMock.createNiceMock( UrlRewriteStepProcessor.class );
+    EasyMock.replay( environment, descriptor, processor );
+
+    UrlRewriteStepProcessorHolder holder = new UrlRewriteStepProcessorHolder();
+    holder.initialize( environment, descriptor, processor );
+    assertThat( holder.isCacheable(), is( false ) );
+  }
+
+  @Test
+  public void testFlowWithStepThatDoesNotOptInIsNotCacheable() throws Exception {
+    UrlRewriteEnvironment environment = EasyMock.createNiceMock( UrlRewriteEnvironment.class );
+    UrlRewriteStepProcessor processor = EasyMock.createNiceMock( UrlRewriteStepProcessor.class );
+    EasyMock.replay( environment, processor );
+    UrlRewriteRulesDescriptor rules = UrlRewriteRulesDescriptorFactory.load( "xml", new StringReader( RULES ) );
+    UrlRewriteRuleDescriptor rule = rules.getRule( "test-rule" );
+
+    // The nested steps are built in but the rule's own processor is not known to be cacheable.
+    UrlRewriteStepProcessorHolder holder = new UrlRewriteStepProcessorHolder();
+    holder.initialize( environment, rule, processor );
+    assertThat( holder.isCacheable(), is( false ) );
+  }
+
+}
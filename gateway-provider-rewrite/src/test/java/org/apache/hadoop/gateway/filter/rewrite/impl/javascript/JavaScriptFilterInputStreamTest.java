@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl.javascript;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.impl.UrlRewriteFilterContentDescriptorImpl;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class JavaScriptFilterInputStreamTest {
+
+  private static final Charset UTF8 = Charset.forName( "UTF-8" );
+  private static final Charset LATIN1 = Charset.forName( "ISO-8859-1" );
+
+  public static class MatchRuleJsFilterInputStream extends JavaScriptFilterInputStream {
+    private Map<String, Map<String,String>> rules;
+    public MatchRuleJsFilterInputStream( InputStream stream, String encoding, Map<String, Map<String,String>> rules, UrlRewriteFilterContentDescriptor config ) {
+      super( stream, encoding, config );
+      this.rules = rules;
+    }
+
+    @Override
+    public String filterValueString( String name, String value, String ruleName ) {
+      return filter( rules, value, ruleName );
+    }
+  }
+
+  public static class MatchRuleJsFilterReader extends JavaScriptFilterReader {
+    private Map<String, Map<String,String>> rules;
+    public MatchRuleJsFilterReader( StringReader reader, Map<String, Map<String,String>> rules, UrlRewriteFilterContentDescriptor config ) throws IOException {
+      super( reader, config );
+      this.rules = rules;
+    }
+
+    @Override
+    public String filterValueString( String name, String value, String ruleName ) {
+      return filter( rules, value, ruleName );
+    }
+  }
+
+  @Test
+  public void testSameOutputAsReader() throws IOException {
+    String[] inputs = new String[]{
+        "",
+        "function load_page() {}\n",
+        "var url = '/webhdfs/v1' + abs_path + '?op=GET_BLOCK_LOCATIONS';\n" +
+        "$.ajax({\"url\": url, \"crossDomain\": true}).done(function(data) {\n" +
+        "  var url = http://testhost:8088/cluster/app/application_1436831599487_0001;\n" +
+        "}).error(network_error_handler(url));\n",
+        "no trailing newline /webhdfs/v1",
+        "windows\r\nline\rendings /webhdfs/v1\r\n\r\n\n",
+        "var s = 'café'; var url = '/webhdfs/v1';\n// 漢字 http://testhost:8088/cluster/app\n",
+        "var unicode = '/unicode/path';\nvar url = '/webhdfs/v1';\n"
+    };
+    for( String input : inputs ) {
+      assertSameOutput( input, createConfig() );
+      assertSameOutput( input, new UrlRewriteFilterContentDescriptorImpl() );
+    }
+
+    StringBuilder large = new StringBuilder();
+    for( int i = 0; i < 2000; i++ ) {
+      large.append( "var url" ).append( i ).append( " = '/webhdfs/v1/" ).append( i ).append( "'; // " );
+      for( int j = 0; j < i % 50; j++ ) {
+        large.append( 'x' );
+      }
+      large.append( i % 3 == 0 ? "\r\n" : "\n" );
+    }
+    assertSameOutput( large.toString(), createConfig() );
+  }
+
+  @Test
+  public void testUntouchedBytesAreCopiedThrough() throws IOException {
+    // ISO-8859-1 bytes are never decoded so they come out exactly as they went in.
+    byte[] input = "var s = 'café'; var url = '/webhdfs/v1';\n".getBytes( LATIN1 );
+    InputStream stream = new MatchRuleJsFilterInputStream( new ByteArrayInputStream( input ), "ISO-8859-1", createRules(), createConfig() );
+    byte[] output = IOUtils.toByteArray( stream );
+    assertThat( Arrays.equals( output, "var s = 'café'; var url = 'https://knoxhost:8443/webhdfs/v1';\n".getBytes( LATIN1 ) ), is( true ) );
+  }
+
+  private static void assertSameOutput( String input, UrlRewriteFilterContentDescriptor config ) throws IOException {
+    Map<String, Map<String, String>> rules = createRules();
+    String expect = IOUtils.toString( new MatchRuleJsFilterReader( new StringReader( input ), rules, config ) );
+    InputStream stream = new MatchRuleJsFilterInputStream(
+        new ByteArrayInputStream( input.getBytes( UTF8 ) ), "UTF-8", rules, config );
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    // Read in small blocks so lines are handed out across many reads.
+    byte[] buffer = new byte[ 5 ];
+    int count = stream.read( buffer );
+    while( count >= 0 ) {
+      actual.write( buffer, 0, count );
+      count = stream.read( buffer );
+    }
+    stream.close();
+    assertThat( new String( actual.toByteArray(), UTF8 ), is( expect ) );
+  }
+
+  private static Map<String, Map<String, String>> createRules() {
+    Map<String, Map<String, String>> rules = new HashMap<String, Map<String, String>>();
+    Map<String, String> map = new HashMap<String, String>();
+    map.put( "(https?://[^/':,]+:[\\d]+)?/cluster/app", "https://knoxhost:8443/cluster/app" );
+    map.put( "/webhdfs/v1", "https://knoxhost:8443/webhdfs/v1" );
+    map.put( "/unicode/path", "https://knoxhost:8443/ünicode" );
+    rules.put( "test-rule", map );
+    return rules;
+  }
+
+  private static UrlRewriteFilterContentDescriptor createConfig() {
+    UrlRewriteFilterContentDescriptor config = new UrlRewriteFilterContentDescriptorImpl();
+    config.addApply( "(https?://[^/':,]+:[\\d]+)?/cluster/app", "test-rule" );
+    config.addApply( "/webhdfs/v1", "test-rule" );
+    config.addApply( "/unicode/path", "test-rule" );
+    config.addApply( "knoxhost", "test-rule" );
+    return config;
+  }
+
+  private static String filter( Map<String, Map<String,String>> rules, String value, String ruleName ) {
+    Map<String, String> rule = rules.get( ruleName );
+    if ( rule == null ) {
+      return value;
+    }
+    for ( Map.Entry<String, String> entry : rule.entrySet() ) {
+      if ( Pattern.compile( entry.getKey() ).matcher( value ).matches() ) {
+        return entry.getValue();
+      }
+    }
+    return value;
+  }
+
+}
@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter.rewrite.impl.json;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterBufferDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteRulesDescriptor;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteRulesDescriptorFactory;
+import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteStreamFilterFactory;
+import org.apache.hadoop.gateway.filter.rewrite.impl.ByteArrayBuffer;
+import org.apache.hadoop.test.TestUtils;
+import org.junit.Test;
+
+import javax.activation.MimeType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class JsonFilterInputStreamTest {
+
+  private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+  @Test
+  public void testSameOutputAsReader() throws Exception {
+    UrlRewriteRulesDescriptor rulesConfig = UrlRewriteRulesDescriptorFactory.create();
+    UrlRewriteFilterDescriptor filterConfig = rulesConfig.addFilter( "filter-1" );
+    UrlRewriteFilterContentDescriptor contentConfig = filterConfig.addContent( "text/json" );
+    contentConfig.addApply( "$.name<test-str>", "test-rule" );
+    UrlRewriteFilterBufferDescriptor bufferConfig = contentConfig.addBuffer( "$.name<properties>.*.name<property>" );
+    bufferConfig.addApply( "$.name<property-value>", "test-rule" );
+
+    assertSameOutput( resource( "simple-values.json" ), contentConfig );
+    assertSameOutput( resource( "properties.json" ), contentConfig );
+    assertSameOutput( "{ \"test-str\" : \"caf\u00e9 \u6f22\u5b57\", \"test-name\" : \"\\\"\\b\" }", contentConfig );
+    assertSameOutput( "[ 1, 2.5, true, null, { \"test-str\" : [ ] } ]", contentConfig );
+    assertSameOutput( "{}", null );
+  }
+
+  @Test
+  public void testFactoryPrefersByteFilter() throws Exception {
+    byte[] input = "{\"name\":\"value\"}".getBytes( UTF8 );
+
+    InputStream filtered = UrlRewriteStreamFilterFactory.create(
+        new MimeType( "application/json; charset=UTF-8" ), null, new ByteArrayInputStream( input ), null, null, null, null );
+    assertThat( filtered, instanceOf( JsonFilterInputStream.class ) );
+    assertThat( IOUtils.toString( filtered, "UTF-8" ), is( "{\"name\":\"value\"}" ) );
+
+    filtered = UrlRewriteStreamFilterFactory.create(
+        new MimeType( "application/json; charset=ISO-8859-1" ), null, new ByteArrayInputStream( input ), null, null, null, null );
+    assertThat( filtered, not( instanceOf( JsonFilterInputStream.class ) ) );
+    assertThat( IOUtils.toString( filtered, "UTF-8" ), is( "{\"name\":\"value\"}" ) );
+  }
+
+  @Test
+  public void testUndeclaredCharsetUsesReaderFilter() throws Exception {
+    // Not valid UTF-8, the reader filter decodes it with the default encoding instead of failing.
+    byte[] input = "{\"name\":\"caf\u00e9\"}".getBytes( "ISO-8859-1" );
+    InputStream filtered = UrlRewriteStreamFilterFactory.create(
+        new MimeType( "application/json" ), null, new ByteArrayInputStream( input ), null, null, null, null );
+    assertThat( filtered, not( instanceOf( JsonFilterInputStream.class ) ) );
+    assertThat( IOUtils.toString( filtered ), startsWith( "{\"name\":\"caf" ) );
+  }
+
+  private static void assertSameOutput( String input, UrlRewriteFilterContentDescriptor config ) throws IOException {
+    String expect = IOUtils.toString( new TestJsonFilterReader( new StringReader( input ), config ) );
+    InputStream stream = createStream( input.getBytes( UTF8 ), config );
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    // Read in small blocks so output is handed out across many reads.
+    byte[] buffer = new byte[ 7 ];
+    int count = stream.read( buffer );
+    while( count >= 0 ) {
+      actual.write( buffer, 0, count );
+      count = stream.read( buffer );
+    }
+    stream.close();
+    assertThat( new String( actual.toByteArray(), UTF8 ), is( expect ) );
+  }
+
+  private static InputStream createStream( byte[] input, UrlRewriteFilterContentDescriptor config ) throws IOException {
+    ByteArrayBuffer output = new ByteArrayBuffer();
+    return new JsonFilterInputStream( new TestJsonFilterReader( new ByteArrayInputStream( input ), output, config ), output );
+  }
+
+  private String resource( String name ) throws IOException {
+    return IOUtils.toString( TestUtils.getResourceStream( JsonFilterReaderTest.class, name ), UTF8 );
+  }
+
+}
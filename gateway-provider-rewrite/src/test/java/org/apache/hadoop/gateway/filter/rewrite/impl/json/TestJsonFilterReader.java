@@ -20,6 +20,8 @@ package org.apache.hadoop.gateway.filter.rewrite.impl.json;
 import org.apache.hadoop.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 
 public class TestJsonFilterReader extends JsonFilterReader {
@@ -28,6 +30,10 @@ public class TestJsonFilterReader extends JsonFilterReader {
     super( reader, config );
   }
 
+  public TestJsonFilterReader( InputStream stream, OutputStream output, UrlRewriteFilterContentDescriptor config ) throws IOException {
+    super( stream, output, config );
+  }
+
   protected String filterFieldName( String name ) {
     return "name<" + name + ">";
   }
@@ -77,6 +77,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 import static org.xmlmatchers.XmlMatchers.hasXPath;
 import static org.xmlmatchers.transform.XmlConverters.the;
@@ -950,12 +951,79 @@ public class XmlFilterReaderTest {
   }
 
 
+  @Test
+  public void testStreamingMatchesDom() throws Exception {
+    String elements = IOUtils.toString( TestUtils.getResourceStream( this.getClass(), "properties-elements.xml" ), Charset.forName( "UTF-8" ) );
+    String attributes = IOUtils.toString( TestUtils.getResourceStream( this.getClass(), "properties-attributes.xml" ), Charset.forName( "UTF-8" ) );
+    String mixed =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+        "<root xmlns:ns='http://hortonworks.com/xml/ns' url='root-url'>root-text-1" +
+        "<child url='child-url' ns:url='ns-url'>child-text<![CDATA[child-cdata]]></child>" +
+        "<!-- comment -->root-text-2<ns:child url='ns-child-url'>ns-child-text</ns:child>" +
+        "<other><child url='other-url'>other-text</child></other></root>";
+
+    String[] paths = new String[]{
+        "/properties/property/value/text()",
+        "/properties/property/value",
+        "/properties/property/@value",
+        "/properties/*/@name",
+        "/root/text()",
+        "/root/child/text()",
+        "/root/child/@url",
+        "/root/*/child/@url",
+        "/root/@url",
+        "/root" };
+    for( String path : paths ) {
+      UrlRewriteFilterContentDescriptor contentConfig = UrlRewriteRulesDescriptorFactory.create().addFilter( "filter-1" ).addContent( "text/xml" );
+      contentConfig.addApply( path, "test-rule" );
+      assertStreamingMatchesDom( path, elements, contentConfig );
+      assertStreamingMatchesDom( path, attributes, contentConfig );
+      assertStreamingMatchesDom( path, mixed, contentConfig );
+    }
+
+    UrlRewriteFilterContentDescriptor contentConfig = UrlRewriteRulesDescriptorFactory.create().addFilter( "filter-1" ).addContent( "text/xml" );
+    contentConfig.addApply( "/root/child/text()", "test-rule-1" );
+    UrlRewriteFilterBufferDescriptor bufferConfig = contentConfig.addBuffer( "/root/other/child" );
+    bufferConfig.addApply( "@url", "test-rule-2" );
+    assertStreamingMatchesDom( "multiple", mixed, contentConfig );
+
+    contentConfig = UrlRewriteRulesDescriptorFactory.create().addFilter( "filter-1" ).addContent( "text/xml" );
+    contentConfig.addApply( "/properties/property/@value", "test-rule-1" );
+    bufferConfig = contentConfig.addBuffer( "/properties/property" );
+    bufferConfig.addDetect( "name", "test-name-2" ).addApply( "value", "test-rule-2" );
+    assertStreamingMatchesDom( "buffered", elements, contentConfig );
+    assertStreamingMatchesDom( "buffered", attributes, contentConfig );
+  }
+
+  @Test
+  public void testUnsupportedStreamingPathFallsBackToDom() throws Exception {
+    String input = "<root><child><value>input-text</value></child></root>";
+
+    UrlRewriteFilterContentDescriptor contentConfig = UrlRewriteRulesDescriptorFactory.create().addFilter( "filter-1" ).addContent( "text/xml" );
+    contentConfig.addApply( "//value[../../child]/text()", "test-rule" );
+
+    XmlFilterReader filter = new TestXmlFilterReader( new StringReader( input ), contentConfig );
+    String output = IOUtils.toString( filter );
+
+    assertThat( the( output ), hasXPath( "/root/child/value/text()", equalTo( "text:test-rule{input-text}" ) ) );
+  }
+
+  private void assertStreamingMatchesDom( String message, String input, UrlRewriteFilterContentDescriptor contentConfig ) throws Exception {
+    String dom = IOUtils.toString( new TestXmlFilterReader( new StringReader( input ), contentConfig, false ) );
+    String streamed = IOUtils.toString( new TestXmlFilterReader( new StringReader( input ), contentConfig, true ) );
+    assertEquals( message, dom, streamed );
+  }
+
   private class TestXmlFilterReader extends XmlFilterReader {
 
     protected TestXmlFilterReader( Reader reader, UrlRewriteFilterContentDescriptor contentConfig ) throws IOException, ParserConfigurationException, XMLStreamException {
       super( reader, contentConfig );
     }
 
+    protected TestXmlFilterReader( Reader reader, UrlRewriteFilterContentDescriptor contentConfig, boolean streaming ) throws IOException, ParserConfigurationException, XMLStreamException {
+      super( reader, contentConfig, streaming );
+    }
+
     @Override
     protected String filterAttribute( QName elementName, QName attributeName, String attributeValue, String ruleName ) {
       return "attr:" + ruleName + "{" + attributeValue + "}";
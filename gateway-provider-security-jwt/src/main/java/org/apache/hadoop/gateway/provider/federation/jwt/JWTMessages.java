@@ -54,4 +54,10 @@ public interface JWTMessages {
 
   @Message( level = MessageLevel.DEBUG, text = "Audience claim has been validated." )
   void jwtAudienceValidated();
+
+  @Message( level = MessageLevel.DEBUG, text = "Verified token cache statistics: {0}" )
+  void verifiedTokenCacheStatistics(String statistics);
+
+  @Message( level = MessageLevel.WARN, text = "Ignoring invalid value {1} of verified token cache parameter {0}, using the default." )
+  void invalidVerifiedTokenCacheParameter(String name, String value);
 }
@@ -0,0 +1,229 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.provider.federation.jwt;
+
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.hadoop.gateway.services.GatewayServices;
+import org.apache.hadoop.gateway.services.security.token.JWTokenAuthority;
+import org.apache.hadoop.gateway.services.security.token.TokenServiceException;
+import org.apache.hadoop.gateway.services.security.token.impl.JWTToken;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the serialized tokens whose signature has already been verified so that a token presented
+ * over and over again, like the SSO cookie of a browser session, is only verified once.
+ * Entries are keyed by a SHA-256 hash of the serialized token and are kept until the token expires,
+ * but never longer than the configured max age.  Tokens without an expiration time are never cached.
+ * The least recently used entry is evicted once the cache is full.
+ * Only the signature verification is skipped; callers still check the expiration and audiences every time.
+ * Caches created for a filter are registered with {@link VerifiedTokenCaches} until {@link #close()}.
+ */
+public class VerifiedTokenCache {
+
+  public static final String MAX_SIZE_PARAM = "jwt.verified.token.cache.max.size";
+  public static final String MAX_AGE_PARAM = "jwt.verified.token.cache.max.age";
+
+  public static final int DEFAULT_MAX_SIZE = 1000;
+  public static final long DEFAULT_MAX_AGE = 10 * 60 * 1000;
+
+  private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+  private static final JWTMessages LOG = MessagesFactory.get( JWTMessages.class );
+
+  private String name;
+  private final int maxSize;
+  private final long maxAge;
+  private final Map<ByteBuffer,Long> entries;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * @param maxSize the maximum number of cached tokens, zero or less disables the cache
+   * @param maxAge the maximum number of milliseconds a token is cached regardless of its expiration time
+   */
+  public VerifiedTokenCache( int maxSize, long maxAge ) {
+    this.maxSize = maxSize;
+    this.maxAge = maxAge;
+    this.entries = new LinkedHashMap<ByteBuffer,Long>( 16, 0.75f, true );
+  }
+
+  /**
+   * Creates the cache of a filter and registers it with {@link VerifiedTokenCaches}.
+   * Invalid parameter values are logged and replaced by the defaults.
+   */
+  public static VerifiedTokenCache create( FilterConfig filterConfig ) {
+    int maxSize = getIntInitParameter( filterConfig, MAX_SIZE_PARAM, DEFAULT_MAX_SIZE );
+    long maxAge = getLongInitParameter( filterConfig, MAX_AGE_PARAM, DEFAULT_MAX_AGE );
+    VerifiedTokenCache cache = new VerifiedTokenCache( maxSize, maxAge );
+    String topology = null;
+    ServletContext context = filterConfig.getServletContext();
+    if( context != null ) {
+      topology = (String)context.getAttribute( GatewayServices.GATEWAY_CLUSTER_ATTRIBUTE );
+    }
+    cache.name = topology == null ? filterConfig.getFilterName() : topology + "/" + filterConfig.getFilterName();
+    VerifiedTokenCaches.register( cache );
+    return cache;
+  }
+
+  private static int getIntInitParameter( FilterConfig filterConfig, String name, int defaultValue ) {
+    String value = filterConfig.getInitParameter( name );
+    if( value != null ) {
+      try {
+        return Integer.parseInt( value.trim() );
+      } catch( NumberFormatException e ) {
+        LOG.invalidVerifiedTokenCacheParameter( name, value );
+      }
+    }
+    return defaultValue;
+  }
+
+  private static long getLongInitParameter( FilterConfig filterConfig, String name, long defaultValue ) {
+    String value = filterConfig.getInitParameter( name );
+    if( value != null ) {
+      try {
+        return Long.parseLong( value.trim() );
+      } catch( NumberFormatException e ) {
+        LOG.invalidVerifiedTokenCacheParameter( name, value );
+      }
+    }
+    return defaultValue;
+  }
+
+  /**
+   * Logs the statistics of the cache and removes it from {@link VerifiedTokenCaches}.
+   */
+  public void close() {
+    LOG.verifiedTokenCacheStatistics( toString() );
+    VerifiedTokenCaches.unregister( this );
+  }
+
+  /**
+   * Returns true if the token's signature is valid, either because it was verified before or because the authority
+   * verifies it now.
+   */
+  public boolean verifyToken( JWTokenAuthority authority, String serializedToken, JWTToken token ) throws TokenServiceException {
+    if( maxSize <= 0 ) {
+      return authority.verifyToken( token );
+    }
+    ByteBuffer key = hash( serializedToken );
+    if( contains( key ) ) {
+      hits.incrementAndGet();
+      return true;
+    }
+    misses.incrementAndGet();
+    boolean verified = authority.verifyToken( token );
+    if( verified ) {
+      put( key, token.getExpiresDate() );
+    }
+    return verified;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public long getMaxAge() {
+    return maxAge;
+  }
+
+  public synchronized int getSize() {
+    return entries.size();
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  @Override
+  public String toString() {
+    return "name=" + name + ", size=" + getSize() + ", maxSize=" + maxSize + ", hits=" + getHitCount() +
+        ", misses=" + getMissCount() + ", evictions=" + getEvictionCount();
+  }
+
+  private synchronized boolean contains( ByteBuffer key ) {
+    Long expires = entries.get( key );
+    if( expires == null ) {
+      return false;
+    }
+    if( expires <= System.currentTimeMillis() ) {
+      entries.remove( key );
+      return false;
+    }
+    return true;
+  }
+
+  private synchronized void put( ByteBuffer key, Date expiresDate ) {
+    if( expiresDate == null ) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    long expires = Math.min( expiresDate.getTime(), now + maxAge );
+    if( expires <= now ) {
+      return;
+    }
+    entries.put( key, expires );
+    if( entries.size() > maxSize ) {
+      // Drop whatever has expired before falling back to evicting the least recently used entry.
+      Iterator<Long> iterator = entries.values().iterator();
+      while( iterator.hasNext() ) {
+        if( iterator.next() <= now ) {
+          iterator.remove();
+        }
+      }
+      iterator = entries.values().iterator();
+      while( entries.size() > maxSize && iterator.hasNext() ) {
+        iterator.next();
+        iterator.remove();
+        evictions.incrementAndGet();
+      }
+    }
+  }
+
+  private static ByteBuffer hash( String serializedToken ) {
+    try {
+      return ByteBuffer.wrap( MessageDigest.getInstance( "SHA-256" ).digest( serializedToken.getBytes( UTF8 ) ) );
+    } catch( NoSuchAlgorithmException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
+}
@@ -0,0 +1,46 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.provider.federation.jwt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The verified token caches of all the JWT and SSO cookie federation filters in the gateway, so that their
+ * statistics can be reported.
+ */
+public final class VerifiedTokenCaches {
+
+  private static final List<VerifiedTokenCache> caches = new ArrayList<VerifiedTokenCache>();
+
+  private VerifiedTokenCaches() {
+  }
+
+  public static synchronized void register( VerifiedTokenCache cache ) {
+    caches.add( cache );
+  }
+
+  public static synchronized void unregister( VerifiedTokenCache cache ) {
+    caches.remove( cache );
+  }
+
+  public static synchronized List<VerifiedTokenCache> getCaches() {
+    return new ArrayList<VerifiedTokenCache>( caches );
+  }
+
+}
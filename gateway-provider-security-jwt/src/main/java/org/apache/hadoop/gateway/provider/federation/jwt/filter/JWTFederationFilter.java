@@ -20,6 +20,7 @@ package org.apache.hadoop.gateway.provider.federation.jwt.filter;
 import org.apache.commons.logging.Log;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.provider.federation.jwt.JWTMessages;
+import org.apache.hadoop.gateway.provider.federation.jwt.VerifiedTokenCache;
 import org.apache.hadoop.gateway.services.GatewayServices;
 import org.apache.hadoop.gateway.services.security.token.JWTokenAuthority;
 import org.apache.hadoop.gateway.services.security.token.TokenServiceException;
@@ -48,14 +49,20 @@ public class JWTFederationFilter implements Filter {
   private static final String BEARER = "Bearer ";
   private static JWTMessages log = MessagesFactory.get( JWTMessages.class );
   private JWTokenAuthority authority = null;
+  private VerifiedTokenCache tokenCache = null;
 
   @Override
   public void init( FilterConfig filterConfig ) throws ServletException {
     GatewayServices services = (GatewayServices) filterConfig.getServletContext().getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE);
     authority = (JWTokenAuthority) services.getService(GatewayServices.TOKEN_SERVICE);
+    tokenCache = VerifiedTokenCache.create(filterConfig);
   }
 
   public void destroy() {
+    if (tokenCache != null) {
+      tokenCache.close();
+      tokenCache = null;
+    }
   }
 
   public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) 
@@ -72,7 +79,7 @@ public class JWTFederationFilter implements Filter {
       }
       boolean verified = false;
       try {
-        verified = authority.verifyToken(token);
+        verified = tokenCache.verifyToken(authority, wireToken, token);
       } catch (TokenServiceException e) {
         log.unableToVerifyToken(e);
       }
@@ -42,6 +42,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.provider.federation.jwt.JWTMessages;
+import org.apache.hadoop.gateway.provider.federation.jwt.VerifiedTokenCache;
 import org.apache.hadoop.gateway.security.PrimaryPrincipal;
 import org.apache.hadoop.gateway.services.GatewayServices;
 import org.apache.hadoop.gateway.services.security.token.JWTokenAuthority;
@@ -60,6 +61,7 @@ public class SSOCookieFederationFilter implements Filter {
   private String cookieName = null;
   private List<String> audiences = null;
   private String authenticationProviderUrl = null;
+  private VerifiedTokenCache tokenCache = null;
 
   @Override
   public void init( FilterConfig filterConfig ) throws ServletException {
@@ -71,6 +73,8 @@ public class SSOCookieFederationFilter implements Filter {
       }
     }
     
+    tokenCache = VerifiedTokenCache.create(filterConfig);
+
     // configured cookieName
     cookieName = filterConfig.getInitParameter(SSO_COOKIE_NAME);
     if (cookieName == null) {
@@ -110,6 +114,10 @@ public class SSOCookieFederationFilter implements Filter {
   }
 
   public void destroy() {
+    if (tokenCache != null) {
+      tokenCache.close();
+      tokenCache = null;
+    }
   }
 
   public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) 
@@ -134,7 +142,7 @@ public class SSOCookieFederationFilter implements Filter {
       JWTToken token = new JWTToken(wireToken);
       boolean verified = false;
       try {
-        verified = authority.verifyToken(token);
+        verified = tokenCache.verifyToken(authority, wireToken, token);
         if (verified) {
           Date expires = token.getExpiresDate();
           if (expires != null && new Date().before(expires)) {
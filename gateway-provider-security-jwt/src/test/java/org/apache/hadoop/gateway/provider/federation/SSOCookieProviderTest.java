@@ -335,6 +335,33 @@ public class SSOCookieProviderTest  {
     }
   }
 
+  @Test
+  public void testVerifiedTokenIsCached() throws Exception {
+    Properties props = getProperties();
+    handler.init(new TestFilterConfig(props));
+    CountingJWTokenAuthority authority = new CountingJWTokenAuthority();
+    ((TestSSOCookieFederationProvider) handler).setTokenService(authority);
+
+    SignedJWT jwt = getJWT("alice", new Date(new Date().getTime() + 5000),
+        privateKey);
+    for (int i = 0; i < 3; i++) {
+      Cookie cookie = new Cookie("hadoop-jwt", jwt.serialize());
+      HttpServletRequest request = EasyMock.createNiceMock(HttpServletRequest.class);
+      EasyMock.expect(request.getCookies()).andReturn(new Cookie[] { cookie });
+      EasyMock.expect(request.getRequestURL()).andReturn(
+          new StringBuffer(SERVICE_URL));
+      HttpServletResponse response = EasyMock.createNiceMock(HttpServletResponse.class);
+      EasyMock.replay(request);
+
+      TestFilterChain chain = new TestFilterChain();
+      handler.doFilter(request, response, chain);
+      Assert.assertTrue("doFilterCalled should not be false.", chain.doFilterCalled == true);
+      Set<PrimaryPrincipal> principals = chain.subject.getPrincipals(PrimaryPrincipal.class);
+      Assert.assertEquals("Not the expected principal", "alice", ((Principal)principals.toArray()[0]).getName());
+    }
+    Assert.assertEquals("Token should only be verified once.", 1, authority.count);
+  }
+
   @Test
   public void testOrigURLWithQueryString() throws Exception {
     Properties props = getProperties();
@@ -532,6 +559,16 @@ public class SSOCookieProviderTest  {
     
   }
   
+  class CountingJWTokenAuthority extends TestJWTokenAuthority {
+    int count = 0;
+
+    @Override
+    public boolean verifyToken(JWTToken token) throws TokenServiceException {
+      count++;
+      return super.verifyToken(token);
+    }
+  }
+
   class TestFilterChain implements FilterChain {
     boolean doFilterCalled = false;
     Subject subject = null;
@@ -0,0 +1,166 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.provider.federation;
+
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.util.Date;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+
+import org.apache.hadoop.gateway.provider.federation.jwt.VerifiedTokenCache;
+import org.apache.hadoop.gateway.provider.federation.jwt.VerifiedTokenCaches;
+import org.apache.hadoop.gateway.services.GatewayServices;
+import org.apache.hadoop.gateway.services.security.token.JWTokenAuthority;
+import org.apache.hadoop.gateway.services.security.token.impl.JWTToken;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+public class VerifiedTokenCacheTest {
+
+  @Test
+  public void testHitsSkipVerification() throws Exception {
+    VerifiedTokenCache cache = new VerifiedTokenCache( 10, 60000 );
+    JWTToken token = createToken( new Date( System.currentTimeMillis() + 60000 ) );
+    JWTokenAuthority authority = createAuthority( token, true, 1 );
+
+    assertThat( cache.verifyToken( authority, "token-1", token ), is( true ) );
+    assertThat( cache.verifyToken( authority, "token-1", token ), is( true ) );
+    assertThat( cache.verifyToken( authority, "token-1", token ), is( true ) );
+    EasyMock.verify( authority );
+    assertThat( cache.getHitCount(), is( 2L ) );
+    assertThat( cache.getMissCount(), is( 1L ) );
+    assertThat( cache.getSize(), is( 1 ) );
+  }
+
+  @Test
+  public void testFailedAndUnboundedTokensAreNotCached() throws Exception {
+    VerifiedTokenCache cache = new VerifiedTokenCache( 10, 60000 );
+    JWTToken invalid = createToken( new Date( System.currentTimeMillis() + 60000 ) );
+    JWTokenAuthority authority = createAuthority( invalid, false, 2 );
+    assertThat( cache.verifyToken( authority, "invalid", invalid ), is( false ) );
+    assertThat( cache.verifyToken( authority, "invalid", invalid ), is( false ) );
+    EasyMock.verify( authority );
+
+    JWTToken unbounded = createToken( null );
+    authority = createAuthority( unbounded, true, 2 );
+    assertThat( cache.verifyToken( authority, "unbounded", unbounded ), is( true ) );
+    assertThat( cache.verifyToken( authority, "unbounded", unbounded ), is( true ) );
+    EasyMock.verify( authority );
+
+    JWTToken expired = createToken( new Date( System.currentTimeMillis() - 1000 ) );
+    authority = createAuthority( expired, true, 2 );
+    assertThat( cache.verifyToken( authority, "expired", expired ), is( true ) );
+    assertThat( cache.verifyToken( authority, "expired", expired ), is( true ) );
+    EasyMock.verify( authority );
+
+    assertThat( cache.getSize(), is( 0 ) );
+  }
+
+  @Test
+  public void testEntriesExpire() throws Exception {
+    VerifiedTokenCache cache = new VerifiedTokenCache( 10, 100 );
+    JWTToken token = createToken( new Date( System.currentTimeMillis() + 60000 ) );
+    JWTokenAuthority authority = createAuthority( token, true, 2 );
+    assertThat( cache.verifyToken( authority, "token-1", token ), is( true ) );
+    Thread.sleep( 200 );
+    assertThat( cache.verifyToken( authority, "token-1", token ), is( true ) );
+    EasyMock.verify( authority );
+  }
+
+  @Test
+  public void testLeastRecentlyUsedIsEvicted() throws Exception {
+    VerifiedTokenCache cache = new VerifiedTokenCache( 2, 60000 );
+    JWTToken token = createToken( new Date( System.currentTimeMillis() + 60000 ) );
+    JWTokenAuthority authority = createAuthority( token, true, 4 );
+    cache.verifyToken( authority, "token-1", token );
+    cache.verifyToken( authority, "token-2", token );
+    cache.verifyToken( authority, "token-1", token );
+    cache.verifyToken( authority, "token-3", token );
+    assertThat( cache.getSize(), is( 2 ) );
+    assertThat( cache.getEvictionCount(), is( 1L ) );
+    cache.verifyToken( authority, "token-1", token );
+    cache.verifyToken( authority, "token-2", token );
+    EasyMock.verify( authority );
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    VerifiedTokenCache cache = new VerifiedTokenCache( 0, 60000 );
+    JWTToken token = createToken( new Date( System.currentTimeMillis() + 60000 ) );
+    JWTokenAuthority authority = createAuthority( token, true, 2 );
+    cache.verifyToken( authority, "token-1", token );
+    cache.verifyToken( authority, "token-1", token );
+    EasyMock.verify( authority );
+    assertThat( cache.getSize(), is( 0 ) );
+  }
+
+  @Test
+  public void testCreateRegistersTheCacheUntilClosed() throws Exception {
+    VerifiedTokenCache cache = VerifiedTokenCache.create( createFilterConfig( "5", "1000" ) );
+    assertThat( cache.getName(), is( "sandbox/federation" ) );
+    assertThat( cache.getMaxSize(), is( 5 ) );
+    assertThat( cache.getMaxAge(), is( 1000L ) );
+    assertThat( VerifiedTokenCaches.getCaches(), hasItem( cache ) );
+    cache.close();
+    assertThat( VerifiedTokenCaches.getCaches(), not( hasItem( cache ) ) );
+  }
+
+  @Test
+  public void testInvalidParametersFallBackToDefaults() throws Exception {
+    VerifiedTokenCache cache = VerifiedTokenCache.create( createFilterConfig( "many", "1h" ) );
+    try {
+      assertThat( cache.getMaxSize(), is( VerifiedTokenCache.DEFAULT_MAX_SIZE ) );
+      assertThat( cache.getMaxAge(), is( VerifiedTokenCache.DEFAULT_MAX_AGE ) );
+    } finally {
+      cache.close();
+    }
+  }
+
+  private static FilterConfig createFilterConfig( String maxSize, String maxAge ) {
+    ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+    EasyMock.expect( context.getAttribute( GatewayServices.GATEWAY_CLUSTER_ATTRIBUTE ) ).andReturn( "sandbox" ).anyTimes();
+    EasyMock.replay( context );
+    FilterConfig config = EasyMock.createNiceMock( FilterConfig.class );
+    EasyMock.expect( config.getServletContext() ).andReturn( context ).anyTimes();
+    EasyMock.expect( config.getFilterName() ).andReturn( "federation" ).anyTimes();
+    EasyMock.expect( config.getInitParameter( VerifiedTokenCache.MAX_SIZE_PARAM ) ).andReturn( maxSize ).anyTimes();
+    EasyMock.expect( config.getInitParameter( VerifiedTokenCache.MAX_AGE_PARAM ) ).andReturn( maxAge ).anyTimes();
+    EasyMock.replay( config );
+    return config;
+  }
+
+  private static JWTToken createToken( Date expires ) {
+    JWTToken token = EasyMock.createNiceMock( JWTToken.class );
+    EasyMock.expect( token.getExpiresDate() ).andReturn( expires ).anyTimes();
+    EasyMock.replay( token );
+    return token;
+  }
+
+  private static JWTokenAuthority createAuthority( JWTToken token, boolean verified, int times ) throws Exception {
+    JWTokenAuthority authority = EasyMock.createMock( JWTokenAuthority.class );
+    EasyMock.expect( authority.verifyToken( token ) ).andReturn( verified ).times( times );
+    EasyMock.replay( authority );
+    return authority;
+  }
+
+}
@@ -32,6 +32,7 @@ import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.services.GatewayServices;
 import org.apache.hadoop.gateway.services.security.AliasService;
 import org.apache.hadoop.gateway.services.security.AliasServiceException;
+import org.apache.hadoop.gateway.shirorealm.impl.LdapContextPool;
 import org.apache.hadoop.gateway.util.KnoxCLI;
 import org.apache.shiro.realm.ldap.JndiLdapContextFactory;
 
@@ -42,6 +43,18 @@ import org.apache.shiro.realm.ldap.JndiLdapContextFactory;
  * 
  * <p>
  * See {@link IsisLdapRealm} for typical configuration within <tt>shiro.ini</tt>.
+ *
+ * <p>
+ * System contexts can optionally be taken from a pool of bound connections instead of opening
+ * and binding a new connection for every lookup:
+ * <pre>
+ * ldapRealm.contextFactory.systemPoolEnabled=true
+ * ldapRealm.contextFactory.systemPoolMinIdle=2
+ * ldapRealm.contextFactory.systemPoolMaxSize=16
+ * ldapRealm.contextFactory.systemPoolMaxWait=5000
+ * ldapRealm.contextFactory.systemPoolIdleTimeout=300000
+ * ldapRealm.contextFactory.systemPoolTestOnBorrow=true
+ * </pre>
  */
 public class KnoxLdapContextFactory extends JndiLdapContextFactory {
 
@@ -50,9 +63,80 @@ public class KnoxLdapContextFactory extends JndiLdapContextFactory {
     private String systemAuthenticationMechanism = "simple";
     private String clusterName = "";
 
+    private boolean systemPoolEnabled = false;
+    private final LdapContextPool systemPool = new LdapContextPool(new LdapContextPool.Factory() {
+      @Override
+      public LdapContext create() throws NamingException {
+        return KnoxLdapContextFactory.super.getSystemLdapContext();
+      }
+    });
+
     public KnoxLdapContextFactory() {
       setAuthenticationMechanism("simple");
     }
+
+    @Override
+    public LdapContext getSystemLdapContext() throws NamingException {
+      if (systemPoolEnabled) {
+        return systemPool.borrow();
+      }
+      return super.getSystemLdapContext();
+    }
+
+    public boolean isSystemPoolEnabled() {
+      return systemPoolEnabled;
+    }
+
+    public void setSystemPoolEnabled(boolean systemPoolEnabled) {
+      this.systemPoolEnabled = systemPoolEnabled;
+    }
+
+    public int getSystemPoolMinIdle() {
+      return systemPool.getMinIdle();
+    }
+
+    public void setSystemPoolMinIdle(int minIdle) {
+      systemPool.setMinIdle(minIdle);
+    }
+
+    public int getSystemPoolMaxSize() {
+      return systemPool.getMaxSize();
+    }
+
+    public void setSystemPoolMaxSize(int maxSize) {
+      systemPool.setMaxSize(maxSize);
+    }
+
+    public long getSystemPoolMaxWait() {
+      return systemPool.getMaxWait();
+    }
+
+    public void setSystemPoolMaxWait(long maxWait) {
+      systemPool.setMaxWait(maxWait);
+    }
+
+    public long getSystemPoolIdleTimeout() {
+      return systemPool.getIdleTimeout();
+    }
+
+    public void setSystemPoolIdleTimeout(long idleTimeout) {
+      systemPool.setIdleTimeout(idleTimeout);
+    }
+
+    public boolean isSystemPoolTestOnBorrow() {
+      return systemPool.isTestOnBorrow();
+    }
+
+    public void setSystemPoolTestOnBorrow(boolean testOnBorrow) {
+      systemPool.setTestOnBorrow(testOnBorrow);
+    }
+
+    /**
+     * @return the pool used for system contexts, mainly to expose its statistics.
+     */
+    public LdapContextPool getSystemPool() {
+      return systemPool;
+    }
     
     @SuppressWarnings({ "unchecked", "rawtypes" })
     @Override
@@ -71,8 +155,21 @@ public class KnoxLdapContextFactory extends JndiLdapContextFactory {
         this.systemAuthenticationMechanism = systemAuthenticationMechanism;
     }
     
+    @Override
+    public void setSystemUsername(String systemUsername) {
+      super.setSystemUsername(systemUsername);
+      systemPool.clear();
+    }
+
+    @Override
+    public void setUrl(String url) {
+      super.setUrl(url);
+      systemPool.clear();
+    }
+
     @Override
     public void setSystemPassword(String systemPass) {
+      systemPool.clear();
      
       if ( systemPass == null ) {
         return;
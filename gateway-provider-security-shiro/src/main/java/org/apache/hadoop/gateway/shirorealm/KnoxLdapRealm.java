@@ -48,6 +48,7 @@ import org.apache.hadoop.gateway.audit.api.Auditor;
 import org.apache.hadoop.gateway.audit.api.ResourceType;
 import org.apache.hadoop.gateway.audit.log4j.audit.AuditConstants;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.hadoop.gateway.shirorealm.impl.LdapLookupCache;
 import org.apache.hadoop.gateway.shirorealm.impl.i18n.KnoxShiroMessages;
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.authc.AuthenticationInfo;
@@ -94,6 +95,14 @@ import org.apache.shiro.util.StringUtils;
  * ldapRealm.contextFactory.systemUsername=uid=guest,ou=people,dc=hadoop,dc=apache,dc=org
  * ldapRealm.contextFactory.clusterName=sandbox
  * ldapRealm.contextFactory.systemPassword=S{ALIAS=ldcSystemPassword}
+ *
+ * # optional: let the LDAP server select the groups the user is a member of
+ * # instead of reading every group under the search base
+ * ldapRealm.groupSearchByMember=true
+ *
+ * # optional: cache looked up user DNs and groups for 5 minutes, up to 10000 users
+ * ldapRealm.lookupCacheTimeToLive=300000
+ * ldapRealm.lookupCacheMaxSize=10000
  * [urls]
  * **=authcBasic
  *
@@ -135,6 +144,8 @@ public class KnoxLdapRealm extends JndiLdapRealm {
 
     private static final String HASHING_ALGORITHM = "SHA-1";
 
+    private static final int DEFAULT_LOOKUP_CACHE_MAX_SIZE = 1000;
+
     static {
           SUBTREE_SCOPE.setSearchScope(SearchControls.SUBTREE_SCOPE);
           ONELEVEL_SCOPE.setSearchScope(SearchControls.ONELEVEL_SCOPE);
@@ -163,6 +174,13 @@ public class KnoxLdapRealm extends JndiLdapRealm {
     private String userSearchAttributeName;
     private String userObjectClass = "person";
 
+    private boolean groupSearchByMember;
+
+    private final LdapLookupCache<Memberships> membershipCache =
+        new LdapLookupCache<Memberships>(0, DEFAULT_LOOKUP_CACHE_MAX_SIZE);
+    private final LdapLookupCache<String> userDnCache =
+        new LdapLookupCache<String>(0, DEFAULT_LOOKUP_CACHE_MAX_SIZE);
+
     private HashService hashService = new DefaultHashService();
 
     public KnoxLdapRealm() {
@@ -215,67 +233,113 @@ public class KnoxLdapRealm extends JndiLdapRealm {
         final LdapContextFactory ldapContextFactory) throws NamingException {
         final String username = (String) getAvailablePrincipal(principals);
 
-        LdapContext systemLdapCtx = null;
+        Memberships memberships;
         try {
-            systemLdapCtx = ldapContextFactory.getSystemLdapContext();
-            return rolesFor(principals, username, systemLdapCtx, ldapContextFactory);
+            // Concurrent lookups for the same user share one search and the result is cached if enabled.
+            memberships = membershipCache.get(username, new LdapLookupCache.Loader<Memberships>() {
+              @Override
+              public Memberships load() throws NamingException {
+                LdapContext systemLdapCtx = null;
+                try {
+                  systemLdapCtx = ldapContextFactory.getSystemLdapContext();
+                  return membershipsFor(username, systemLdapCtx);
+                } finally {
+                  LdapUtils.closeContext(systemLdapCtx);
+                }
+              }
+            });
         } catch (AuthenticationException e) {
           LOG.failedToGetSystemLdapConnection(e);
           return Collections.emptySet();
-        } finally {
-            LdapUtils.closeContext(systemLdapCtx);
         }
+
+        final Set<String> roleNames = new HashSet<String>(memberships.roleNames);
+        final Set<String> groupNames = new HashSet<String>(memberships.groupNames);
+
+        // save role names and group names in session so that they can be easily looked up outside of this object
+        SecurityUtils.getSubject().getSession().setAttribute(SUBJECT_USER_ROLES, roleNames);
+        SecurityUtils.getSubject().getSession().setAttribute(SUBJECT_USER_GROUPS, groupNames);
+        if (!groupNames.isEmpty() && (principals instanceof MutablePrincipalCollection)) {
+          ((MutablePrincipalCollection)principals).addAll(groupNames, getName());
+        }
+        LOG.lookedUpUserRoles(roleNames, username);
+        return roleNames;
     }
 
-    private Set<String> rolesFor(PrincipalCollection principals, final String userName, final LdapContext ldapCtx,
-        final LdapContextFactory ldapContextFactory) throws NamingException {
-        final Set<String> roleNames = new HashSet();
-        final Set<String> groupNames = new HashSet();
+    // Every search for one user goes through the same system context.  Borrowing a second pooled context while
+    // holding this one would let concurrent lookups exhaust the pool waiting for each other.
+    private Memberships membershipsFor(final String userName, final LdapContext ldapCtx) throws NamingException {
+        final Set<String> roleNames = new HashSet<String>();
+        final Set<String> groupNames = new HashSet<String>();
         NamingEnumeration<SearchResult> searchResultEnum = null;
         try {
-          // ldapsearch -h localhost -p 33389 -D uid=guest,ou=people,dc=hadoop,dc=apache,dc=org -w  guest-password
-          //       -b dc=hadoop,dc=apache,dc=org -s sub '(objectclass=*)'
-          searchResultEnum = ldapCtx.search(
-              getGroupSearchBase(),
-              "objectClass=" + groupObjectClass,
-              SUBTREE_SCOPE);
-          
           String userDn = null;
           if (userSearchAttributeName == null || userSearchAttributeName.isEmpty()) {
             // memberAttributeValuePrefix and memberAttributeValueSuffix were computed from memberAttributeValueTemplate
             userDn = memberAttributeValuePrefix + userName + memberAttributeValueSuffix;
           } else {
-            userDn = getUserDn(userName);
-          }
-          while (searchResultEnum.hasMore()) { // searchResults contains all the groups in search scope
-              final SearchResult group = searchResultEnum.next();
-              addRoleIfMember(userDn, group, roleNames, groupNames, ldapContextFactory);
+            userDn = getUserDn(userName, ldapCtx);
           }
 
-          // save role names and group names in session so that they can be easily looked up outside of this object
-          SecurityUtils.getSubject().getSession().setAttribute(SUBJECT_USER_ROLES, roleNames);
-          SecurityUtils.getSubject().getSession().setAttribute(SUBJECT_USER_GROUPS, groupNames);
-          if (!groupNames.isEmpty() && (principals instanceof MutablePrincipalCollection)) {
-            ((MutablePrincipalCollection)principals).addAll(groupNames, getName());
+          if (groupSearchByMember && !memberAttribute.equalsIgnoreCase(MEMBER_URL)) {
+            // Only the groups listing the user as a member are returned and only their id attribute is needed.
+            SearchControls controls = new SearchControls();
+            controls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+            controls.setReturningAttributes(new String[] { groupIdAttribute });
+            searchResultEnum = ldapCtx.search(
+                getGroupSearchBase(),
+                "(&(objectClass=" + groupObjectClass + ")(" + memberAttribute + "={0}))",
+                new Object[] { userDn },
+                controls);
+            while (searchResultEnum.hasMore()) {
+              final SearchResult group = searchResultEnum.next();
+              addRole(group, roleNames, groupNames);
+            }
+          } else {
+            // ldapsearch -h localhost -p 33389 -D uid=guest,ou=people,dc=hadoop,dc=apache,dc=org -w  guest-password
+            //       -b dc=hadoop,dc=apache,dc=org -s sub '(objectclass=*)'
+            searchResultEnum = ldapCtx.search(
+                getGroupSearchBase(),
+                "objectClass=" + groupObjectClass,
+                SUBTREE_SCOPE);
+            LdapName userLdapDn = new LdapName(userDn);
+            while (searchResultEnum.hasMore()) { // searchResults contains all the groups in search scope
+                final SearchResult group = searchResultEnum.next();
+                addRoleIfMember(userLdapDn, group, roleNames, groupNames, ldapCtx);
+            }
           }
-          LOG.lookedUpUserRoles(roleNames, userName);
         }
         finally {
           if (searchResultEnum != null) {
             searchResultEnum.close();
           }
         }
-        return roleNames;
+        return new Memberships(roleNames, groupNames);
+    }
+
+  private void addRole(final SearchResult group, final Set<String> roleNames, final Set<String> groupNames)
+      throws NamingException {
+    Attribute attribute = group.getAttributes().get(getGroupIdAttribute());
+    if (attribute == null) {
+      return;
+    }
+    String groupName = attribute.get().toString();
+    groupNames.add(groupName);
+    String roleName = roleNameFor(groupName);
+    if (roleName != null) {
+      roleNames.add(roleName);
+    } else {
+      roleNames.add(groupName);
     }
+  }
 
-  private void addRoleIfMember(final String userDn, final SearchResult group,
+  private void addRoleIfMember(final LdapName userLdapDn, final SearchResult group,
       final Set<String> roleNames, final Set<String> groupNames,
-      final LdapContextFactory ldapContextFactory) throws NamingException {
+      final LdapContext ldapCtx) throws NamingException {
 
     NamingEnumeration<? extends Attribute> attributeEnum = null;
     NamingEnumeration<?> e = null;
     try {
-      LdapName userLdapDn = new LdapName(userDn);
       Attribute attribute = group.getAttributes().get(getGroupIdAttribute());
       String groupName = attribute.get().toString();
       
@@ -292,7 +356,7 @@ public class KnoxLdapRealm extends JndiLdapRealm {
           if (memberAttribute.equalsIgnoreCase(MEMBER_URL)) {
             boolean dynamicGroupMember = isUserMemberOfDynamicGroup(userLdapDn,
                 attrValue, // memberUrl value
-                ldapContextFactory);
+                ldapCtx);
             if (dynamicGroupMember) {
               groupNames.add(groupName);
               String roleName = roleNameFor(groupName);
@@ -450,6 +514,41 @@ public class KnoxLdapRealm extends JndiLdapRealm {
         this.userObjectClass = userObjectClass;
     }
 
+    public boolean isGroupSearchByMember() {
+      return groupSearchByMember;
+    }
+
+    /**
+     * When enabled the groups are selected by the LDAP server using a filter on the member attribute
+     * instead of reading every group under the group search base and checking its members here.
+     * Not used when the member attribute is memberUrl since dynamic groups must be evaluated per group.
+     */
+    public void setGroupSearchByMember(boolean groupSearchByMember) {
+      this.groupSearchByMember = groupSearchByMember;
+    }
+
+    public long getLookupCacheTimeToLive() {
+      return membershipCache.getTimeToLive();
+    }
+
+    /**
+     * Time in milliseconds that looked up user DNs and group memberships are cached.
+     * Zero, the default, disables caching.
+     */
+    public void setLookupCacheTimeToLive(long timeToLive) {
+      membershipCache.setTimeToLive(timeToLive);
+      userDnCache.setTimeToLive(timeToLive);
+    }
+
+    public int getLookupCacheMaxSize() {
+      return membershipCache.getMaxSize();
+    }
+
+    public void setLookupCacheMaxSize(int maxSize) {
+      membershipCache.setMaxSize(maxSize);
+      userDnCache.setMaxSize(maxSize);
+    }
+
     private Map<String, List<String>> parsePermissionByRoleString(String permissionsByRoleStr) {
       Map<String,List<String>> perms = new HashMap<String, List<String>>();
    
@@ -474,7 +573,7 @@ public class KnoxLdapRealm extends JndiLdapRealm {
   }
 
   boolean isUserMemberOfDynamicGroup(LdapName userLdapDn, String memberUrl,
-      final LdapContextFactory ldapContextFactory) throws NamingException {
+      final LdapContext ldapCtx) throws NamingException {
 
     // ldap://host:port/dn?attributes?scope?filter?extensions
 
@@ -508,11 +607,9 @@ public class KnoxLdapRealm extends JndiLdapRealm {
     }
     // search for the filter, substituting base with userDn
     // search for base_dn=userDn, scope=base, filter=filter
-    LdapContext systemLdapCtx = null;
-    systemLdapCtx = ldapContextFactory.getSystemLdapContext();
     NamingEnumeration<SearchResult> searchResultEnum = null;
     try {
-      searchResultEnum = systemLdapCtx
+      searchResultEnum = ldapCtx
         .search(userLdapDn, searchFilter,
             searchScope.equalsIgnoreCase("sub") ? SUBTREE_SCOPE
                 : ONELEVEL_SCOPE);
@@ -521,14 +618,9 @@ public class KnoxLdapRealm extends JndiLdapRealm {
       }
     }
     finally {
-        try {
-          if (searchResultEnum != null) {
-            searchResultEnum.close();
-          }
-        }
-        finally {
-          LdapUtils.closeContext(systemLdapCtx);
-        }
+      if (searchResultEnum != null) {
+        searchResultEnum.close();
+      }
     }
     return member;
   }
@@ -549,7 +641,12 @@ public class KnoxLdapRealm extends JndiLdapRealm {
      * @see LdapContextFactory#getLdapContext(Object, Object)
      */
     @Override
-    protected String getUserDn(String principal) throws IllegalArgumentException, IllegalStateException {
+    protected String getUserDn(final String principal) throws IllegalArgumentException, IllegalStateException {
+      return getUserDn(principal, null);
+    }
+
+    // Searches with the given system context if there is one, otherwise with a context of its own.
+    private String getUserDn(final String principal, final LdapContext ldapCtx) {
       String userDn = null;
       if (userSearchAttributeName == null || userSearchAttributeName.isEmpty()) {
         userDn = super.getUserDn(principal);
@@ -557,11 +654,28 @@ public class KnoxLdapRealm extends JndiLdapRealm {
         return userDn;
       }
 
+      try {
+        return userDnCache.get(principal, new LdapLookupCache.Loader<String>() {
+          @Override
+          public String load() {
+            return searchUserDn(principal, ldapCtx);
+          }
+        });
+      } catch (NamingException e) {
+        throw new IllegalArgumentException("Hit NamingException: " + e.getMessage(), e);
+      }
+    }
+
+    private String searchUserDn(String principal, LdapContext ldapCtx) throws IllegalArgumentException {
+      String userDn = null;
+
       // search for userDn and return
-      LdapContext systemLdapCtx = null;
+      LdapContext systemLdapCtx = ldapCtx;
       NamingEnumeration<SearchResult> searchResultEnum = null;
       try {
-        systemLdapCtx = getContextFactory().getSystemLdapContext();
+        if (systemLdapCtx == null) {
+          systemLdapCtx = getContextFactory().getSystemLdapContext();
+        }
         String searchFilter = String.format("(&(objectclass=%1$s)(%2$s=%3$s))",
             userObjectClass, userSearchAttributeName, principal);
         searchResultEnum = systemLdapCtx.search(
@@ -580,7 +694,7 @@ public class KnoxLdapRealm extends JndiLdapRealm {
         LOG.failedToGetSystemLdapConnection(e);
         throw new IllegalArgumentException("Illegal principal name: " + principal);
       } catch (NamingException e) {
-        throw new IllegalArgumentException("Hit NamingException: " + e.getMessage());
+        throw new IllegalArgumentException("Hit NamingException: " + e.getMessage(), e);
       } finally {
         try {
           if (searchResultEnum != null) {
@@ -589,7 +703,9 @@ public class KnoxLdapRealm extends JndiLdapRealm {
         } catch (NamingException e) {
         }
         finally {
-          LdapUtils.closeContext(systemLdapCtx);
+          if (ldapCtx == null) {
+            LdapUtils.closeContext(systemLdapCtx);
+          }
         }
       }
     }
@@ -600,4 +716,14 @@ public class KnoxLdapRealm extends JndiLdapRealm {
       Hash credentialsHash = hashService.computeHash(builder.setSource(token.getCredentials()).setAlgorithmName(HASHING_ALGORITHM).build());
       return new SimpleAuthenticationInfo(token.getPrincipal(), credentialsHash.toHex(), credentialsHash.getSalt(), getName());
     }
+
+    private static class Memberships {
+      private final Set<String> roleNames;
+      private final Set<String> groupNames;
+
+      private Memberships(Set<String> roleNames, Set<String> groupNames) {
+        this.roleNames = Collections.unmodifiableSet(roleNames);
+        this.groupNames = Collections.unmodifiableSet(groupNames);
+      }
+    }
 }
@@ -0,0 +1,400 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.hadoop.gateway.shirorealm.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.naming.CommunicationException;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.directory.SearchControls;
+import javax.naming.ldap.LdapContext;
+
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+import org.apache.hadoop.gateway.shirorealm.impl.i18n.KnoxShiroMessages;
+
+/**
+ * A bounded pool of bound {@link LdapContext}s.
+ * Contexts handed out by {@link #borrow()} are returned to the pool when they are closed.
+ * A context that failed with a communication error is discarded instead of being returned.
+ * Idle contexts beyond the minimum idle count are evicted once they have been idle for longer than the
+ * idle timeout.  Eviction happens as the pool is used so no background thread is required.
+ */
+public class LdapContextPool {
+
+  private static final KnoxShiroMessages LOG = MessagesFactory.get( KnoxShiroMessages.class );
+
+  public interface Factory {
+    LdapContext create() throws NamingException;
+  }
+
+  private static final SearchControls VALIDATION_CONTROLS = new SearchControls();
+  static {
+    VALIDATION_CONTROLS.setSearchScope( SearchControls.OBJECT_SCOPE );
+    VALIDATION_CONTROLS.setReturningAttributes( new String[]{ "1.1" } );
+    VALIDATION_CONTROLS.setCountLimit( 1 );
+  }
+
+  private final Factory factory;
+  private final LinkedList<Idle> idle = new LinkedList<Idle>();
+  private int minIdle = 0;
+  private int maxSize = 8;
+  private long maxWait = 5000;
+  private long idleTimeout = 5 * 60 * 1000;
+  private boolean testOnBorrow = true;
+
+  private int total;
+  private long created;
+  private long destroyed;
+  private long borrowed;
+  private long waits;
+  private long timeouts;
+  private long invalid;
+
+  public LdapContextPool( Factory factory ) {
+    this.factory = factory;
+  }
+
+  public synchronized int getMinIdle() {
+    return minIdle;
+  }
+
+  public synchronized void setMinIdle( int minIdle ) {
+    this.minIdle = minIdle;
+  }
+
+  public synchronized int getMaxSize() {
+    return maxSize;
+  }
+
+  public synchronized void setMaxSize( int maxSize ) {
+    this.maxSize = maxSize;
+    notifyAll();
+  }
+
+  public synchronized long getMaxWait() {
+    return maxWait;
+  }
+
+  /**
+   * Milliseconds to wait for a context when the pool is at its maximum size.
+   * Zero or less fails immediately.
+   */
+  public synchronized void setMaxWait( long maxWait ) {
+    this.maxWait = maxWait;
+  }
+
+  public synchronized long getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  public synchronized void setIdleTimeout( long idleTimeout ) {
+    this.idleTimeout = idleTimeout;
+  }
+
+  public synchronized boolean isTestOnBorrow() {
+    return testOnBorrow;
+  }
+
+  public synchronized void setTestOnBorrow( boolean testOnBorrow ) {
+    this.testOnBorrow = testOnBorrow;
+  }
+
+  public LdapContext borrow() throws NamingException {
+    while( true ) {
+      LdapContext context = null;
+      List<LdapContext> evicted = null;
+      try {
+        synchronized( this ) {
+          long now = System.currentTimeMillis();
+          long deadline = now + maxWait;
+          evicted = evict( now );
+          while( idle.isEmpty() && total >= maxSize ) {
+            long remaining = deadline - now;
+            if( remaining <= 0 ) {
+              timeouts++;
+              LOG.ldapContextPoolExhausted( toString() );
+              throw new ServiceUnavailableException( "Timed out waiting for a pooled LDAP connection" );
+            }
+            waits++;
+            try {
+              wait( remaining );
+            } catch( InterruptedException e ) {
+              Thread.currentThread().interrupt();
+              NamingException ne = new ServiceUnavailableException( "Interrupted waiting for a pooled LDAP connection" );
+              ne.setRootCause( e );
+              throw ne;
+            }
+            now = System.currentTimeMillis();
+          }
+          if( idle.isEmpty() ) {
+            total++;
+          } else {
+            context = idle.removeFirst().context;
+          }
+          borrowed++;
+        }
+      } finally {
+        destroy( evicted );
+      }
+
+      if( context == null ) {
+        try {
+          context = factory.create();
+        } catch( NamingException e ) {
+          discarded();
+          throw e;
+        } catch( RuntimeException e ) {
+          discarded();
+          throw e;
+        }
+        synchronized( this ) {
+          created++;
+        }
+      } else if( testOnBorrow && !isValid( context ) ) {
+        synchronized( this ) {
+          invalid++;
+        }
+        LOG.ldapContextPoolDiscardedInvalid( toString() );
+        close( context );
+        discarded();
+        continue;
+      }
+      return wrap( context );
+    }
+  }
+
+  /**
+   * Closes all idle contexts.  Contexts that are currently borrowed are returned to the pool as usual.
+   */
+  public void clear() {
+    List<LdapContext> contexts = new ArrayList<LdapContext>();
+    synchronized( this ) {
+      for( Idle entry : idle ) {
+        contexts.add( entry.context );
+      }
+      total -= idle.size();
+      destroyed += idle.size();
+      idle.clear();
+      notifyAll();
+    }
+    for( LdapContext context : contexts ) {
+      close( context );
+    }
+  }
+
+  public synchronized int getActive() {
+    return total - idle.size();
+  }
+
+  public synchronized int getIdle() {
+    return idle.size();
+  }
+
+  public synchronized long getCreated() {
+    return created;
+  }
+
+  public synchronized long getDestroyed() {
+    return destroyed;
+  }
+
+  public synchronized long getBorrowed() {
+    return borrowed;
+  }
+
+  public synchronized long getWaits() {
+    return waits;
+  }
+
+  public synchronized long getTimeouts() {
+    return timeouts;
+  }
+
+  public synchronized long getInvalid() {
+    return invalid;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "active=" + getActive() + ", idle=" + getIdle() + ", maxSize=" + maxSize +
+        ", created=" + created + ", destroyed=" + destroyed + ", borrowed=" + borrowed +
+        ", waits=" + waits + ", timeouts=" + timeouts + ", invalid=" + invalid;
+  }
+
+  private void release( LdapContext context, boolean broken ) {
+    List<LdapContext> evicted;
+    boolean keep;
+    synchronized( this ) {
+      keep = !broken && total <= maxSize;
+      if( keep ) {
+        idle.addFirst( new Idle( context, System.currentTimeMillis() ) );
+      } else {
+        total--;
+        destroyed++;
+      }
+      evicted = evict( System.currentTimeMillis() );
+      notifyAll();
+    }
+    if( !keep ) {
+      close( context );
+    }
+    destroy( evicted );
+  }
+
+  private synchronized void discarded() {
+    total--;
+    destroyed++;
+    notifyAll();
+  }
+
+  // The most recently used contexts are at the head so the ones that have been idle longest are at the tail.
+  private List<LdapContext> evict( long now ) {
+    List<LdapContext> evicted = null;
+    if( idleTimeout > 0 ) {
+      Iterator<Idle> iterator = idle.descendingIterator();
+      while( idle.size() > minIdle && iterator.hasNext() ) {
+        Idle entry = iterator.next();
+        if( now - entry.since < idleTimeout ) {
+          break;
+        }
+        iterator.remove();
+        total--;
+        destroyed++;
+        if( evicted == null ) {
+          evicted = new ArrayList<LdapContext>();
+        }
+        evicted.add( entry.context );
+      }
+    }
+    return evicted;
+  }
+
+  private static void destroy( List<LdapContext> contexts ) {
+    if( contexts != null ) {
+      for( LdapContext context : contexts ) {
+        close( context );
+      }
+    }
+  }
+
+  private static void close( LdapContext context ) {
+    try {
+      context.close();
+    } catch( NamingException e ) {
+      LOG.ldapContextPoolCloseFailed( e );
+    }
+  }
+
+  // Only failures to reach the server make a context invalid.  Other errors, for example an anonymous
+  // user not being allowed to read the root DSE, still prove the connection is usable.
+  private static boolean isValid( LdapContext context ) {
+    NamingEnumeration<?> results = null;
+    try {
+      results = context.search( "", "(objectClass=*)", VALIDATION_CONTROLS );
+      return true;
+    } catch( NamingException e ) {
+      return !isBroken( e );
+    } finally {
+      if( results != null ) {
+        try {
+          results.close();
+        } catch( NamingException e ) {
+          // Ignore.
+        }
+      }
+    }
+  }
+
+  private static boolean isBroken( Throwable e ) {
+    return e instanceof CommunicationException || e instanceof ServiceUnavailableException;
+  }
+
+  private LdapContext wrap( LdapContext context ) {
+    return (LdapContext)Proxy.newProxyInstance(
+        LdapContextPool.class.getClassLoader(),
+        new Class[]{ LdapContext.class },
+        new PooledContextHandler( context ) );
+  }
+
+  private class PooledContextHandler implements InvocationHandler {
+
+    private final LdapContext context;
+    private boolean closed;
+    private volatile boolean broken;
+
+    private PooledContextHandler( LdapContext context ) {
+      this.context = context;
+    }
+
+    @Override
+    public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+      String name = method.getName();
+      if( "close".equals( name ) && method.getParameterTypes().length == 0 ) {
+        boolean release;
+        synchronized( this ) {
+          release = !closed;
+          closed = true;
+        }
+        if( release ) {
+          LdapContextPool.this.release( context, broken );
+        }
+        return null;
+      } else if( "equals".equals( name ) && method.getParameterTypes().length == 1 ) {
+        return proxy == args[ 0 ];
+      } else if( "hashCode".equals( name ) && method.getParameterTypes().length == 0 ) {
+        return System.identityHashCode( proxy );
+      }
+      synchronized( this ) {
+        if( closed ) {
+          throw new NamingException( "Pooled LDAP context has been closed" );
+        }
+      }
+      try {
+        return method.invoke( context, args );
+      } catch( InvocationTargetException e ) {
+        Throwable cause = e.getCause();
+        if( isBroken( cause ) ) {
+          broken = true;
+        }
+        throw cause;
+      }
+    }
+  }
+
+  private static class Idle {
+    private final LdapContext context;
+    private final long since;
+
+    private Idle( LdapContext context, long since ) {
+      this.context = context;
+      this.since = since;
+    }
+  }
+
+}
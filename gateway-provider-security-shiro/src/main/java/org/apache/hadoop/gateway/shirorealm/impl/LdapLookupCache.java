@@ -0,0 +1,185 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.hadoop.gateway.shirorealm.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.naming.NamingException;
+
+/**
+ * Caches the results of LDAP lookups keyed by principal.
+ * Entries expire after the configured time to live and the least recently used entries are evicted
+ * once the configured size is reached.  Concurrent lookups of the same key that miss the cache
+ * share a single call to the loader.  Failed lookups are never cached.
+ * A time to live of zero or less disables caching but still coalesces concurrent lookups.
+ */
+public class LdapLookupCache<V> {
+
+  public interface Loader<V> {
+    V load() throws NamingException;
+  }
+
+  private volatile long timeToLive;
+  private volatile int maxSize;
+  private final Map<String,Entry<V>> entries;
+  private final ConcurrentMap<String,FutureTask<V>> pending;
+
+  public LdapLookupCache( long timeToLive, int maxSize ) {
+    this.timeToLive = timeToLive;
+    this.maxSize = maxSize;
+    this.entries = new LinkedHashMap<String,Entry<V>>( 16, 0.75f, true ) {
+      @Override
+      protected boolean removeEldestEntry( Map.Entry<String,Entry<V>> eldest ) {
+        return size() > LdapLookupCache.this.maxSize;
+      }
+    };
+    this.pending = new ConcurrentHashMap<String,FutureTask<V>>();
+  }
+
+  public long getTimeToLive() {
+    return timeToLive;
+  }
+
+  public void setTimeToLive( long timeToLive ) {
+    this.timeToLive = timeToLive;
+    clear();
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public void setMaxSize( int maxSize ) {
+    this.maxSize = maxSize;
+    clear();
+  }
+
+  public V get( String key, final Loader<V> loader ) throws NamingException {
+    V value = getCached( key );
+    if( value != null ) {
+      return value;
+    }
+    FutureTask<V> task = new FutureTask<V>( new Callable<V>() {
+      @Override
+      public V call() throws Exception {
+        return loader.load();
+      }
+    } );
+    FutureTask<V> running = pending.putIfAbsent( key, task );
+    if( running == null ) {
+      running = task;
+      try {
+        task.run();
+        putCached( key, task );
+      } finally {
+        pending.remove( key, task );
+      }
+    }
+    return await( running );
+  }
+
+  public void clear() {
+    synchronized( entries ) {
+      entries.clear();
+    }
+  }
+
+  public int size() {
+    synchronized( entries ) {
+      return entries.size();
+    }
+  }
+
+  private V getCached( String key ) {
+    if( timeToLive <= 0 ) {
+      return null;
+    }
+    synchronized( entries ) {
+      Entry<V> entry = entries.get( key );
+      if( entry == null ) {
+        return null;
+      } else if( entry.expires <= System.currentTimeMillis() ) {
+        entries.remove( key );
+        return null;
+      } else {
+        return entry.value;
+      }
+    }
+  }
+
+  private void putCached( String key, FutureTask<V> task ) {
+    if( timeToLive <= 0 || maxSize <= 0 ) {
+      return;
+    }
+    try {
+      V value = task.get();
+      if( value != null ) {
+        synchronized( entries ) {
+          entries.put( key, new Entry<V>( value, System.currentTimeMillis() + timeToLive ) );
+        }
+      }
+    } catch( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    } catch( ExecutionException e ) {
+      // Failures are reported to the callers by await and are not cached.
+    }
+  }
+
+  private static <V> V await( FutureTask<V> task ) throws NamingException {
+    try {
+      return task.get();
+    } catch( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      NamingException ne = new NamingException( "Interrupted waiting for LDAP lookup" );
+      ne.setRootCause( e );
+      throw ne;
+    } catch( ExecutionException e ) {
+      Throwable cause = e.getCause();
+      if( cause instanceof NamingException ) {
+        throw (NamingException)cause;
+      } else if( cause instanceof RuntimeException ) {
+        throw (RuntimeException)cause;
+      } else if( cause instanceof Error ) {
+        throw (Error)cause;
+      } else {
+        NamingException ne = new NamingException( String.valueOf( cause ) );
+        ne.setRootCause( cause );
+        throw ne;
+      }
+    }
+  }
+
+  private static class Entry<V> {
+    private final V value;
+    private final long expires;
+
+    private Entry( V value, long expires ) {
+      this.value = value;
+      this.expires = expires;
+    }
+  }
+
+}
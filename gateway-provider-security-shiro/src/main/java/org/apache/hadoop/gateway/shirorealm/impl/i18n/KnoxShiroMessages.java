@@ -41,4 +41,13 @@ public interface KnoxShiroMessages {
   @Message(level = MessageLevel.INFO, text = "Successfully logged in: {0}, {1}")
   void successfulLoginAttempt(Subject subject, AuthenticationToken authToken);
 
+  @Message(level = MessageLevel.WARN, text = "Timed out waiting for a pooled LDAP system connection: {0}")
+  void ldapContextPoolExhausted(String statistics);
+
+  @Message(level = MessageLevel.DEBUG, text = "Discarding invalid pooled LDAP system connection: {0}")
+  void ldapContextPoolDiscardedInvalid(String statistics);
+
+  @Message(level = MessageLevel.DEBUG, text = "Failed to close pooled LDAP system connection: {0}")
+  void ldapContextPoolCloseFailed(@StackTrace(level = MessageLevel.DEBUG) Exception e);
+
 }
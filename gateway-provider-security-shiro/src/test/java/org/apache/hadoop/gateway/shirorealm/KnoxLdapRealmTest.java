@@ -19,6 +19,33 @@
 
 package org.apache.hadoop.gateway.shirorealm;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.naming.Name;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.LdapContext;
+
+import org.apache.hadoop.gateway.shirorealm.impl.LdapContextPool;
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.mgt.DefaultSecurityManager;
+import org.apache.shiro.realm.ldap.JndiLdapContextFactory;
+import org.apache.shiro.subject.SimplePrincipalCollection;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -100,5 +127,166 @@ public class KnoxLdapRealmTest {
     realm.setSearchBase("dc=knox,dc=example,dc=com");
     assertEquals(realm.getGroupSearchBase(), "dc=knox,dc=example,dc=com");
   }
+
+  @Test
+  public void setGetGroupSearchByMember() {
+    KnoxLdapRealm realm = new KnoxLdapRealm();
+    assertFalse(realm.isGroupSearchByMember());
+    realm.setGroupSearchByMember(true);
+    assertTrue(realm.isGroupSearchByMember());
+  }
+
+  @Test
+  public void setGetLookupCache() {
+    KnoxLdapRealm realm = new KnoxLdapRealm();
+    assertEquals(realm.getLookupCacheTimeToLive(), 0L);
+    realm.setLookupCacheTimeToLive(300000L);
+    realm.setLookupCacheMaxSize(10);
+    assertEquals(realm.getLookupCacheTimeToLive(), 300000L);
+    assertEquals(realm.getLookupCacheMaxSize(), 10);
+  }
   
+  @Test
+  public void testConcurrentRoleLookupsShareOnePooledContext() throws Exception {
+    verifyConcurrentRoleLookups("member");
+  }
+
+  @Test
+  public void testConcurrentDynamicGroupLookupsShareOnePooledContext() throws Exception {
+    verifyConcurrentRoleLookups("memberUrl");
+  }
+
+  // More callers than pooled contexts look up their roles at the same time.  Each lookup must finish with the
+  // one context it borrowed, otherwise every pooled context ends up held by a caller waiting for another one.
+  private void verifyConcurrentRoleLookups(String memberAttribute) throws Exception {
+    final int callers = 8;
+    final LdapContextPool pool = new LdapContextPool(new LdapContextPool.Factory() {
+      @Override
+      public LdapContext create() throws NamingException {
+        // Connecting takes a while so the first callers all get a context of their own before any is released.
+        try {
+          Thread.sleep(20);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return createDirectory(callers);
+      }
+    });
+    pool.setMaxSize(2);
+    pool.setMaxWait(2000);
+    final JndiLdapContextFactory contextFactory = new JndiLdapContextFactory() {
+      @Override
+      public LdapContext getSystemLdapContext() throws NamingException {
+        return pool.borrow();
+      }
+    };
+    final KnoxLdapRealm realm = new KnoxLdapRealm();
+    realm.setContextFactory(contextFactory);
+    realm.setSearchBase("dc=hadoop,dc=apache,dc=org");
+    realm.setUserSearchAttributeName("uid");
+    realm.setMemberAttribute(memberAttribute);
+    realm.setAuthorizationEnabled(true);
+
+    SecurityUtils.setSecurityManager(new DefaultSecurityManager());
+    ExecutorService executor = Executors.newFixedThreadPool(callers);
+    try {
+      final CountDownLatch start = new CountDownLatch(1);
+      List<Future<AuthorizationInfo>> results = new ArrayList<Future<AuthorizationInfo>>();
+      for (int i = 0; i < callers; i++) {
+        final String user = "user" + i;
+        results.add(executor.submit(new Callable<AuthorizationInfo>() {
+          @Override
+          public AuthorizationInfo call() throws Exception {
+            start.await();
+            return realm.queryForAuthorizationInfo(
+                new SimplePrincipalCollection(user, realm.getName()), contextFactory);
+          }
+        }));
+      }
+      start.countDown();
+      for (Future<AuthorizationInfo> result : results) {
+        assertEquals(Collections.singleton("admin"), result.get().getRoles());
+      }
+    } finally {
+      executor.shutdownNow();
+      SecurityUtils.setSecurityManager(null);
+    }
+    assertEquals(0, pool.getTimeouts());
+    assertEquals(0, pool.getActive());
+    assertTrue(pool.getCreated() <= 2);
+  }
+
+  // A directory with the users user0 to userN under ou=people and one group, admin, that all of them belong to,
+  // both as static members and through a memberUrl.  Searches are slow enough for the callers to overlap.
+  private static LdapContext createDirectory(final int users) {
+    return (LdapContext)Proxy.newProxyInstance(
+        KnoxLdapRealmTest.class.getClassLoader(),
+        new Class[] { LdapContext.class },
+        new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!"search".equals(method.getName())) {
+              return null;
+            }
+            Thread.sleep(20);
+            List<SearchResult> found = new ArrayList<SearchResult>();
+            if (args[0] instanceof Name) {
+              // The dynamic group filter evaluated against the user entry.
+              found.add(new SearchResult(args[0].toString(), null, new BasicAttributes()));
+            } else if ("".equals(args[0])) {
+              // The pool validating a context.
+            } else if (args[1].toString().contains("(objectclass=person)")) {
+              String filter = args[1].toString();
+              String uid = filter.substring(filter.indexOf("(uid=") + 5, filter.indexOf(")", filter.indexOf("(uid=")));
+              SearchResult user = new SearchResult("uid=" + uid, null, new BasicAttributes());
+              user.setNameInNamespace("uid=" + uid + ",ou=people,dc=hadoop,dc=apache,dc=org");
+              found.add(user);
+            } else {
+              BasicAttributes attributes = new BasicAttributes(true);
+              attributes.put("cn", "admin");
+              BasicAttribute members = new BasicAttribute("member");
+              for (int i = 0; i < users; i++) {
+                members.add("uid=user" + i + ",ou=people,dc=hadoop,dc=apache,dc=org");
+              }
+              attributes.put(members);
+              attributes.put("memberUrl", "ldap:///ou=people,dc=hadoop,dc=apache,dc=org??sub?(objectclass=person)");
+              found.add(new SearchResult("cn=admin", null, attributes));
+            }
+            return new Results(found.iterator());
+          }
+        });
+  }
+
+  private static class Results implements NamingEnumeration<SearchResult> {
+    private final Iterator<SearchResult> iterator;
+
+    private Results(Iterator<SearchResult> iterator) {
+      this.iterator = iterator;
+    }
+
+    @Override
+    public SearchResult next() {
+      return iterator.next();
+    }
+
+    @Override
+    public boolean hasMore() {
+      return iterator.hasNext();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public boolean hasMoreElements() {
+      return iterator.hasNext();
+    }
+
+    @Override
+    public SearchResult nextElement() {
+      return iterator.next();
+    }
+  }
+
 }
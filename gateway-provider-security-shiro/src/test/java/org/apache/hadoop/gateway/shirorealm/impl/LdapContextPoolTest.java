@@ -0,0 +1,178 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.hadoop.gateway.shirorealm.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.naming.CommunicationException;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.directory.SearchControls;
+import javax.naming.ldap.LdapContext;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LdapContextPoolTest {
+
+  private static class MockFactory implements LdapContextPool.Factory {
+    private final List<LdapContext> contexts = new ArrayList<LdapContext>();
+
+    @Override
+    public LdapContext create() throws NamingException {
+      LdapContext context = EasyMock.createNiceMock(LdapContext.class);
+      EasyMock.replay(context);
+      contexts.add(context);
+      return context;
+    }
+  }
+
+  @Test
+  public void testContextReusedAfterClose() throws Exception {
+    MockFactory factory = new MockFactory();
+    LdapContextPool pool = new LdapContextPool(factory);
+
+    pool.borrow().close();
+    LdapContext context = pool.borrow();
+    context.getEnvironment();
+    context.close();
+    context.close();
+
+    assertEquals(1, factory.contexts.size());
+    assertEquals(1, pool.getCreated());
+    assertEquals(2, pool.getBorrowed());
+    assertEquals(0, pool.getActive());
+    assertEquals(1, pool.getIdle());
+  }
+
+  @Test
+  public void testClosedContextRejectsUse() throws Exception {
+    LdapContextPool pool = new LdapContextPool(new MockFactory());
+    LdapContext context = pool.borrow();
+    context.close();
+    try {
+      context.getEnvironment();
+      fail("Expected NamingException");
+    } catch (NamingException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testExhaustedPoolTimesOut() throws Exception {
+    LdapContextPool pool = new LdapContextPool(new MockFactory());
+    pool.setMaxSize(2);
+    pool.setMaxWait(50);
+    LdapContext first = pool.borrow();
+    pool.borrow();
+    try {
+      pool.borrow();
+      fail("Expected ServiceUnavailableException");
+    } catch (ServiceUnavailableException e) {
+      // Expected.
+    }
+    assertEquals(1, pool.getTimeouts());
+    first.close();
+    pool.borrow();
+    assertEquals(2, pool.getCreated());
+  }
+
+  @Test
+  public void testBrokenContextDiscarded() throws Exception {
+    final LdapContext broken = EasyMock.createNiceMock(LdapContext.class);
+    EasyMock.expect(broken.search(EasyMock.anyObject(String.class), EasyMock.anyObject(String.class),
+        EasyMock.anyObject(SearchControls.class))).andThrow(new CommunicationException("test-failure"));
+    EasyMock.replay(broken);
+
+    MockFactory factory = new MockFactory() {
+      @Override
+      public LdapContext create() throws NamingException {
+        return super.contexts.isEmpty() ? add(broken) : super.create();
+      }
+      private LdapContext add(LdapContext context) {
+        super.contexts.add(context);
+        return context;
+      }
+    };
+    LdapContextPool pool = new LdapContextPool(factory);
+
+    LdapContext context = pool.borrow();
+    try {
+      context.search("ou=groups,dc=hadoop,dc=apache,dc=org", "(objectClass=*)", new SearchControls());
+      fail("Expected CommunicationException");
+    } catch (CommunicationException e) {
+      // Expected.
+    }
+    context.close();
+    assertEquals(0, pool.getIdle());
+    assertEquals(1, pool.getDestroyed());
+
+    pool.borrow().close();
+    assertEquals(2, factory.contexts.size());
+  }
+
+  @Test
+  public void testInvalidIdleContextReplacedOnBorrow() throws Exception {
+    final LdapContext stale = EasyMock.createNiceMock(LdapContext.class);
+    EasyMock.expect(stale.search(EasyMock.eq(""), EasyMock.anyObject(String.class),
+        EasyMock.anyObject(SearchControls.class))).andThrow(new CommunicationException("test-failure"));
+    EasyMock.replay(stale);
+
+    final MockFactory delegate = new MockFactory();
+    LdapContextPool pool = new LdapContextPool(new LdapContextPool.Factory() {
+      private boolean first = true;
+      @Override
+      public LdapContext create() throws NamingException {
+        if (first) {
+          first = false;
+          return stale;
+        }
+        return delegate.create();
+      }
+    });
+
+    pool.borrow().close();
+    pool.borrow().close();
+
+    assertEquals(1, pool.getInvalid());
+    assertEquals(2, pool.getCreated());
+    assertEquals(1, pool.getIdle());
+  }
+
+  @Test
+  public void testIdleContextsEvicted() throws Exception {
+    LdapContextPool pool = new LdapContextPool(new MockFactory());
+    pool.setIdleTimeout(50);
+    pool.setMinIdle(1);
+    LdapContext first = pool.borrow();
+    LdapContext second = pool.borrow();
+    LdapContext third = pool.borrow();
+    first.close();
+    second.close();
+    assertEquals(2, pool.getIdle());
+    Thread.sleep(100);
+    third.close();
+    assertEquals(1, pool.getIdle());
+    assertEquals(2, pool.getDestroyed());
+  }
+
+}
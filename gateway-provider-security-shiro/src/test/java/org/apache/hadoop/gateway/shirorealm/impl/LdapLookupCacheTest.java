@@ -0,0 +1,157 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.hadoop.gateway.shirorealm.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.naming.NamingException;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LdapLookupCacheTest {
+
+  private static class CountingLoader implements LdapLookupCache.Loader<String> {
+    private final AtomicInteger count = new AtomicInteger();
+    private final String value;
+
+    private CountingLoader(String value) {
+      this.value = value;
+    }
+
+    @Override
+    public String load() throws NamingException {
+      count.incrementAndGet();
+      return value;
+    }
+  }
+
+  @Test
+  public void testCachedUntilExpired() throws Exception {
+    LdapLookupCache<String> cache = new LdapLookupCache<String>(200, 10);
+    CountingLoader loader = new CountingLoader("uid=guest,ou=people,dc=hadoop,dc=apache,dc=org");
+    assertEquals("uid=guest,ou=people,dc=hadoop,dc=apache,dc=org", cache.get("guest", loader));
+    assertEquals("uid=guest,ou=people,dc=hadoop,dc=apache,dc=org", cache.get("guest", loader));
+    assertEquals(1, loader.count.get());
+    Thread.sleep(300);
+    cache.get("guest", loader);
+    assertEquals(2, loader.count.get());
+  }
+
+  @Test
+  public void testDisabledWithoutTimeToLive() throws Exception {
+    LdapLookupCache<String> cache = new LdapLookupCache<String>(0, 10);
+    CountingLoader loader = new CountingLoader("value");
+    cache.get("guest", loader);
+    cache.get("guest", loader);
+    assertEquals(2, loader.count.get());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEvicted() throws Exception {
+    LdapLookupCache<String> cache = new LdapLookupCache<String>(60000, 2);
+    CountingLoader loader = new CountingLoader("value");
+    cache.get("user1", loader);
+    cache.get("user2", loader);
+    cache.get("user1", loader);
+    cache.get("user3", loader);
+    assertEquals(3, loader.count.get());
+    assertEquals(2, cache.size());
+    cache.get("user1", loader);
+    assertEquals(3, loader.count.get());
+    cache.get("user2", loader);
+    assertEquals(4, loader.count.get());
+  }
+
+  @Test
+  public void testFailuresNotCached() throws Exception {
+    LdapLookupCache<String> cache = new LdapLookupCache<String>(60000, 10);
+    try {
+      cache.get("guest", new LdapLookupCache.Loader<String>() {
+        @Override
+        public String load() throws NamingException {
+          throw new NamingException("test-failure");
+        }
+      });
+      fail("Expected NamingException");
+    } catch (NamingException e) {
+      assertEquals("test-failure", e.getMessage());
+    }
+    CountingLoader loader = new CountingLoader("value");
+    assertEquals("value", cache.get("guest", loader));
+    assertEquals(1, loader.count.get());
+  }
+
+  @Test
+  public void testConcurrentLookupsShareOneLoad() throws Exception {
+    final LdapLookupCache<String> cache = new LdapLookupCache<String>(0, 10);
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger loads = new AtomicInteger();
+    final LdapLookupCache.Loader<String> loader = new LdapLookupCache.Loader<String>() {
+      @Override
+      public String load() throws NamingException {
+        loads.incrementAndGet();
+        started.countDown();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          throw new NamingException(e.getMessage());
+        }
+        return "value";
+      }
+    };
+
+    final String[] results = new String[8];
+    Thread[] threads = new Thread[results.length];
+    for (int i = 0; i < threads.length; i++) {
+      final int index = i;
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            results[index] = cache.get("guest", loader);
+          } catch (NamingException e) {
+            results[index] = e.getMessage();
+          }
+        }
+      };
+    }
+    threads[0].start();
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    for (int i = 1; i < threads.length; i++) {
+      threads[i].start();
+    }
+    Thread.sleep(200);
+    release.countDown();
+    for (Thread thread : threads) {
+      thread.join(10000);
+    }
+
+    assertEquals(1, loads.get());
+    for (String result : results) {
+      assertEquals("value", result);
+    }
+  }
+
+}
@@ -19,6 +19,7 @@ package org.apache.hadoop.gateway;
 
 import org.apache.hadoop.gateway.audit.api.Action;
 import org.apache.hadoop.gateway.audit.api.ActionOutcome;
+import org.apache.hadoop.gateway.audit.api.AuditContext;
 import org.apache.hadoop.gateway.audit.api.AuditService;
 import org.apache.hadoop.gateway.audit.api.AuditServiceFactory;
 import org.apache.hadoop.gateway.audit.api.Auditor;
@@ -31,6 +32,8 @@ import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.hadoop.gateway.i18n.resources.ResourcesFactory;
 import org.apache.hadoop.gateway.services.GatewayServices;
 
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.Filter;
 import javax.servlet.FilterConfig;
 import javax.servlet.Servlet;
@@ -132,14 +135,62 @@ public class GatewayServlet implements Servlet {
       } else {
         ((HttpServletResponse)servletResponse).setStatus( HttpServletResponse.SC_SERVICE_UNAVAILABLE );
       }
-      String requestUri = (String)servletRequest.getAttribute( AbstractGatewayFilter.SOURCE_REQUEST_CONTEXT_URL_ATTRIBUTE_NAME );
-      int status = ((HttpServletResponse)servletResponse).getStatus();
-      auditor.audit( Action.ACCESS, requestUri, ResourceType.URI, ActionOutcome.SUCCESS, res.responseStatus( status ) );
+      if( servletRequest.isAsyncStarted() ) {
+        // The response is still being written by an asynchronous dispatch so audit its status once it completes.
+        servletRequest.getAsyncContext().addListener(
+            new AuditListener( auditService.getContext(), servletRequest, servletResponse ) );
+      } else {
+        auditAccess( servletRequest, servletResponse );
+      }
     } finally {
       auditService.detachContext();
     }
   }
 
+  private static void auditAccess( ServletRequest servletRequest, ServletResponse servletResponse ) {
+    String requestUri = (String)servletRequest.getAttribute( AbstractGatewayFilter.SOURCE_REQUEST_CONTEXT_URL_ATTRIBUTE_NAME );
+    int status = ((HttpServletResponse)servletResponse).getStatus();
+    auditor.audit( Action.ACCESS, requestUri, ResourceType.URI, ActionOutcome.SUCCESS, res.responseStatus( status ) );
+  }
+
+  private static class AuditListener implements AsyncListener {
+
+    private final AuditContext auditContext;
+    private final ServletRequest request;
+    private final ServletResponse response;
+
+    private AuditListener( AuditContext auditContext, ServletRequest request, ServletResponse response ) {
+      this.auditContext = auditContext;
+      this.request = request;
+      this.response = response;
+    }
+
+    @Override
+    public void onComplete( AsyncEvent event ) throws IOException {
+      AuditContext previous = auditService.detachContext();
+      auditService.attachContext( auditContext );
+      try {
+        auditAccess( request, response );
+      } finally {
+        auditService.detachContext();
+        auditService.attachContext( previous );
+      }
+    }
+
+    @Override
+    public void onTimeout( AsyncEvent event ) throws IOException {
+    }
+
+    @Override
+    public void onError( AsyncEvent event ) throws IOException {
+    }
+
+    @Override
+    public void onStartAsync( AsyncEvent event ) throws IOException {
+    }
+
+  }
+
   @Override
   public String getServletInfo() {
     return res.gatewayServletInfo();
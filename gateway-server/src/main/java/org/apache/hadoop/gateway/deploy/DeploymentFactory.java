@@ -242,7 +242,7 @@ public abstract class DeploymentFactory {
     WebAppDescriptor wad = context.getWebAppDescriptor();
     String servletName = context.getTopology().getName();
     String servletClass = GatewayServlet.class.getName();
-    wad.createServlet().servletName( servletName ).servletClass( servletClass );
+    wad.createServlet().servletName( servletName ).servletClass( servletClass ).asyncSupported( true );
     wad.createServletMapping().servletName( servletName ).urlPattern( "/*" );
     if (gatewayServices != null) {
       gatewayServices.initializeContribution(context);
@@ -24,8 +24,10 @@ import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.Signature;
 import java.security.SignatureException;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.hadoop.gateway.GatewayMessages;
 import org.apache.hadoop.gateway.config.GatewayConfig;
@@ -43,7 +45,7 @@ public class DefaultCryptoService implements CryptoService {
 
   private AliasService as = null;
   private KeystoreService ks = null;
-  private HashMap<String,AESEncryptor> encryptorCache = new HashMap<String,AESEncryptor>();
+  private ConcurrentMap<String,CachedEncryptor> encryptorCache = new ConcurrentHashMap<String,CachedEncryptor>();
 
   public void setKeystoreService(KeystoreService ks) {
     this.ks = ks;
@@ -94,7 +96,7 @@ public class DefaultCryptoService implements CryptoService {
     }
     if (password != null) {
       try {
-        return getEncryptor(clusterName,password).encrypt( clear );
+        return getEncryptor(clusterName, alias, password).encrypt( clear );
       } catch (NoSuchAlgorithmException e1) {
         LOG.failedToEncryptPasswordForCluster( clusterName, e1 );
       } catch (InvalidKeyException e) {
@@ -122,7 +124,7 @@ public class DefaultCryptoService implements CryptoService {
       final char[] password = as.getPasswordFromAliasForCluster(clusterName, alias);
       if (password != null) {
         try {
-          return getEncryptor(clusterName,password ).decrypt( salt, iv, cipherText);
+          return getEncryptor(clusterName, alias, password).decrypt( salt, iv, cipherText);
         } catch (Exception e) {
           LOG.failedToDecryptPasswordForCluster( clusterName, e );
         }
@@ -186,16 +188,26 @@ public class DefaultCryptoService implements CryptoService {
     return null;
   }
 
-  // The assumption here is that lock contention will be less of a performance issue than the cost of object creation.
   // We have seen via profiling that AESEncryptor instantiation is very expensive.
-  private final AESEncryptor getEncryptor( final String clusterName, final char[] password ) {
-    synchronized( encryptorCache ) {
-      AESEncryptor encryptor = encryptorCache.get( clusterName );
-      if( encryptor == null ) {
-        encryptor = new AESEncryptor( String.valueOf( password ) );
-        encryptorCache.put( clusterName, encryptor );
-      }
-      return encryptor;
+  // Encryptors are thread safe and cache the keys they derive so one is kept per cluster and alias.
+  // It is replaced if the password for the alias changes.
+  private final AESEncryptor getEncryptor( final String clusterName, final String alias, final char[] password ) {
+    final String key = clusterName + "/" + alias;
+    CachedEncryptor cached = encryptorCache.get( key );
+    if( cached == null || !Arrays.equals( cached.password, password ) ) {
+      cached = new CachedEncryptor( password );
+      encryptorCache.put( key, cached );
+    }
+    return cached.encryptor;
+  }
+
+  private static class CachedEncryptor {
+    private final char[] password;
+    private final AESEncryptor encryptor;
+
+    private CachedEncryptor( char[] password ) {
+      this.password = password.clone();
+      this.encryptor = new AESEncryptor( String.valueOf( password ) );
     }
   }
 
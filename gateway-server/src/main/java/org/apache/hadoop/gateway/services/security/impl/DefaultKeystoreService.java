@@ -42,6 +42,7 @@ import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.text.MessageFormat;
+import java.util.Arrays;
 import java.util.Map;
 
 public class DefaultKeystoreService extends BaseKeystoreService implements KeystoreService, Service {
@@ -83,8 +84,12 @@ public class DefaultKeystoreService extends BaseKeystoreService implements Keyst
 
   @Override
   public KeyStore getKeystoreForGateway() throws KeystoreServiceException {
+    return getCachedKeystoreForGateway().getKeyStore();
+  }
+
+  private CachedKeystore getCachedKeystoreForGateway() throws KeystoreServiceException {
     final File  keyStoreFile = new File( keyStoreDir + GATEWAY_KEYSTORE  );
-    return getKeystore(keyStoreFile, "JKS");
+    return getCachedKeystore(keyStoreFile, "JKS");
   }
   
   @Override
@@ -174,14 +179,23 @@ public class DefaultKeystoreService extends BaseKeystoreService implements Keyst
   @Override
   public Key getKeyForGateway(String alias, char[] passphrase) throws KeystoreServiceException {
     Key key = null;
-    KeyStore ks = getKeystoreForGateway();
+    CachedKeystore cached = getCachedKeystoreForGateway();
+    KeyStore ks = cached.getKeyStore();
     if (passphrase == null) {
       passphrase = masterService.getMasterSecret();
       LOG.assumingKeyPassphraseIsMaster();
     }
+    String entryName = "key:" + alias;
+    CachedKey cachedKey = (CachedKey)cached.getEntry(entryName);
+    if (cachedKey != null && Arrays.equals(cachedKey.passphrase, passphrase)) {
+      return cachedKey.key;
+    }
     if (ks != null) {
       try {
         key = ks.getKey(alias, passphrase);
+        if (key != null) {
+          cached.putEntry(entryName, new CachedKey(key, passphrase));
+        }
       } catch (UnrecoverableKeyException e) {
         LOG.failedToGetKeyForGateway( alias, e );
       } catch (KeyStoreException e) {
@@ -195,8 +209,13 @@ public class DefaultKeystoreService extends BaseKeystoreService implements Keyst
   
   public KeyStore getCredentialStoreForCluster(String clusterName) 
       throws KeystoreServiceException {
+    return getCachedCredentialStoreForCluster(clusterName).getKeyStore();
+  }
+
+  private CachedKeystore getCachedCredentialStoreForCluster(String clusterName)
+      throws KeystoreServiceException {
     final File  keyStoreFile = new File( keyStoreDir + clusterName + CREDENTIALS_SUFFIX  );
-    return getKeystore(keyStoreFile, "JCEKS");
+    return getCachedKeystore(keyStoreFile, "JCEKS");
   }
 
   public void addCredentialForCluster(String clusterName, String alias, String value) 
@@ -221,7 +240,14 @@ public class DefaultKeystoreService extends BaseKeystoreService implements Keyst
   public char[] getCredentialForCluster(String clusterName, String alias) 
       throws KeystoreServiceException {
     char[] credential = null;
-    KeyStore ks = getCredentialStoreForCluster(clusterName);
+    CachedKeystore cached = getCachedCredentialStoreForCluster(clusterName);
+    KeyStore ks = cached.getKeyStore();
+    String entryName = "credential:" + alias;
+    char[] cachedCredential = (char[])cached.getEntry(entryName);
+    if (cachedCredential != null) {
+      // Hand out a copy so that callers clearing the returned array don't affect the cache.
+      return cachedCredential.clone();
+    }
     if (ks != null) {
       try {
         char[] masterSecret = masterService.getMasterSecret();
@@ -230,6 +256,7 @@ public class DefaultKeystoreService extends BaseKeystoreService implements Keyst
           byte[] credentialBytes = credentialKey.getEncoded();
           String credentialString = new String( credentialBytes );
           credential = credentialString.toCharArray();
+          cached.putEntry(entryName, credential.clone());
         }
       } catch (UnrecoverableKeyException e) {
         LOG.failedToGetCredentialForCluster( clusterName, e );
@@ -262,4 +289,14 @@ public class DefaultKeystoreService extends BaseKeystoreService implements Keyst
       LOG.failedToRemoveCredentialForCluster(clusterName, e);
     }
   }
+
+  private static class CachedKey {
+    private final Key key;
+    private final char[] passphrase;
+
+    private CachedKey(Key key, char[] passphrase) {
+      this.key = key;
+      this.passphrase = passphrase.clone();
+    }
+  }
 }
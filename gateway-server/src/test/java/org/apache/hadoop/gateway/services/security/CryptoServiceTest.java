@@ -27,9 +27,14 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
 import java.security.cert.Certificate;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -160,4 +165,64 @@ public class CryptoServiceTest {
     byte[] decryptedQueryString = cs.decryptForCluster("Test", alias, result.cipher, result.iv, result.salt);
     assertEquals(queryString.getBytes("UTF8").length, decryptedQueryString.length);
   }
+
+  @Test
+  public void testConcurrentDecryption() throws Exception {
+    final String alias = "encrypt-url";
+    final String queryString = "url=http://localhost:50070/api/v1/blahblah";
+    final EncryptionResult result = cs.encryptForCluster("Test", alias, queryString.getBytes("UTF8"));
+    final AtomicInteger failures = new AtomicInteger();
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread() {
+        public void run() {
+          try {
+            for (int i = 0; i < 1000; i++) {
+              byte[] decrypted = cs.decryptForCluster("Test", alias, result.cipher, result.iv, result.salt);
+              if (!queryString.equals(new String(decrypted, "UTF8"))) {
+                failures.incrementAndGet();
+              }
+            }
+          } catch (Exception e) {
+            failures.incrementAndGet();
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, failures.get());
+  }
+
+  @Test
+  public void testDecryptionPerformance() throws Exception {
+    String alias = "encrypt-url";
+    String queryString = "host=datanode.example.com&port=50075&path=/webhdfs/v1/tmp/file";
+    EncryptionResult result = cs.encryptForCluster("Test", alias, queryString.getBytes("UTF8"));
+    char[] password = as.getPasswordFromAliasForCluster("Test", alias);
+    AESEncryptor aes = new AESEncryptor(new String(password));
+    int iterations = 100;
+
+    // The key used to be derived from the password and salt for every decryption.
+    long before = System.currentTimeMillis();
+    for (int i = 0; i < iterations; i++) {
+      SecretKey key = new SecretKeySpec(aes.getKeyFromPassword(new String(password), result.salt).getEncoded(), "AES");
+      Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+      cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(result.iv));
+      cipher.doFinal(result.cipher);
+    }
+    long derivedTime = System.currentTimeMillis() - before;
+
+    before = System.currentTimeMillis();
+    for (int i = 0; i < iterations; i++) {
+      cs.decryptForCluster("Test", alias, result.cipher, result.iv, result.salt);
+    }
+    long cachedTime = System.currentTimeMillis() - before;
+
+    System.out.println( String.format( "Perf: derived=%.1f/s, cached=%.1f/s, cnt=%d",
+        iterations * 1000.0 / Math.max( 1, derivedTime ), iterations * 1000.0 / Math.max( 1, cachedTime ), iterations ) );
+    assertTrue(cachedTime <= derivedTime);
+  }
 }
@@ -0,0 +1,186 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.service.admin;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.apache.hadoop.gateway.dispatch.ConnectionPool;
+import org.apache.hadoop.gateway.dispatch.ConnectionPools;
+import org.apache.http.pool.PoolStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static javax.ws.rs.core.MediaType.APPLICATION_XML;
+import static javax.ws.rs.core.Response.ok;
+
+/**
+ * Reports the live statistics of the dispatch connection pools so that pool starvation can be spotted.
+ */
+@Path( "/api/v1" )
+public class ConnectionPoolsResource {
+
+  @GET
+  @Produces({APPLICATION_JSON, APPLICATION_XML})
+  @Path( "connectionpools" )
+  public Response getConnectionPools() {
+    ConnectionPoolList list = new ConnectionPoolList();
+    for( ConnectionPool pool : ConnectionPools.getPools() ) {
+      list.pools.add( new ConnectionPoolInfo( pool ) );
+    }
+    return ok( list ).build();
+  }
+
+  @XmlRootElement(name="connectionPools")
+  @XmlAccessorType(XmlAccessType.FIELD)
+  public static class ConnectionPoolList {
+
+    @XmlElement(name="pool")
+    private List<ConnectionPoolInfo> pools = new ArrayList<ConnectionPoolInfo>();
+
+    public List<ConnectionPoolInfo> getPools() {
+      return pools;
+    }
+  }
+
+  @XmlAccessorType(XmlAccessType.FIELD)
+  public static class ConnectionPoolInfo {
+
+    @XmlElement
+    private String name;
+    @XmlElement
+    private boolean shared;
+    @XmlElement
+    private int leased;
+    @XmlElement
+    private int pending;
+    @XmlElement
+    private int available;
+    @XmlElement
+    private int max;
+    @XmlElement
+    private int maxPerRoute;
+    @XmlElement(name="route")
+    @XmlElementWrapper(name="routes")
+    private List<RouteInfo> routes = new ArrayList<RouteInfo>();
+
+    public ConnectionPoolInfo() { }
+
+    public ConnectionPoolInfo( ConnectionPool pool ) {
+      PoolStats stats = pool.getTotalStats();
+      this.name = pool.getName();
+      this.shared = pool.isShared();
+      this.leased = stats.getLeased();
+      this.pending = stats.getPending();
+      this.available = stats.getAvailable();
+      this.max = stats.getMax();
+      this.maxPerRoute = pool.getDefaultMaxPerRoute();
+      for( Map.Entry<String,PoolStats> route : pool.getRouteStats().entrySet() ) {
+        routes.add( new RouteInfo( route.getKey(), route.getValue() ) );
+      }
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public boolean isShared() {
+      return shared;
+    }
+
+    public int getLeased() {
+      return leased;
+    }
+
+    public int getPending() {
+      return pending;
+    }
+
+    public int getAvailable() {
+      return available;
+    }
+
+    public int getMax() {
+      return max;
+    }
+
+    public int getMaxPerRoute() {
+      return maxPerRoute;
+    }
+
+    public List<RouteInfo> getRoutes() {
+      return routes;
+    }
+  }
+
+  @XmlAccessorType(XmlAccessType.FIELD)
+  public static class RouteInfo {
+
+    @XmlElement
+    private String target;
+    @XmlElement
+    private int leased;
+    @XmlElement
+    private int pending;
+    @XmlElement
+    private int available;
+    @XmlElement
+    private int max;
+
+    public RouteInfo() { }
+
+    public RouteInfo( String target, PoolStats stats ) {
+      this.target = target;
+      this.leased = stats.getLeased();
+      this.pending = stats.getPending();
+      this.available = stats.getAvailable();
+      this.max = stats.getMax();
+    }
+
+    public String getTarget() {
+      return target;
+    }
+
+    public int getLeased() {
+      return leased;
+    }
+
+    public int getPending() {
+      return pending;
+    }
+
+    public int getAvailable() {
+      return available;
+    }
+
+    public int getMax() {
+      return max;
+    }
+  }
+
+}
@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.service.admin;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.apache.hadoop.gateway.provider.federation.jwt.VerifiedTokenCache;
+import org.apache.hadoop.gateway.provider.federation.jwt.VerifiedTokenCaches;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static javax.ws.rs.core.MediaType.APPLICATION_XML;
+import static javax.ws.rs.core.Response.ok;
+
+/**
+ * Reports the live statistics of the verified token caches of the JWT and SSO cookie federation providers.
+ */
+@Path( "/api/v1" )
+public class VerifiedTokenCachesResource {
+
+  @GET
+  @Produces({APPLICATION_JSON, APPLICATION_XML})
+  @Path( "tokencaches" )
+  public Response getTokenCaches() {
+    TokenCacheList list = new TokenCacheList();
+    for( VerifiedTokenCache cache : VerifiedTokenCaches.getCaches() ) {
+      list.caches.add( new TokenCacheInfo( cache ) );
+    }
+    return ok( list ).build();
+  }
+
+  @XmlRootElement(name="tokenCaches")
+  @XmlAccessorType(XmlAccessType.FIELD)
+  public static class TokenCacheList {
+
+    @XmlElement(name="cache")
+    private List<TokenCacheInfo> caches = new ArrayList<TokenCacheInfo>();
+
+    public List<TokenCacheInfo> getCaches() {
+      return caches;
+    }
+  }
+
+  @XmlAccessorType(XmlAccessType.FIELD)
+  public static class TokenCacheInfo {
+
+    @XmlElement
+    private String name;
+    @XmlElement
+    private int size;
+    @XmlElement
+    private int maxSize;
+    @XmlElement
+    private long maxAge;
+    @XmlElement
+    private long hits;
+    @XmlElement
+    private long misses;
+    @XmlElement
+    private long evictions;
+
+    public TokenCacheInfo() { }
+
+    public TokenCacheInfo( VerifiedTokenCache cache ) {
+      this.name = cache.getName();
+      this.size = cache.getSize();
+      this.maxSize = cache.getMaxSize();
+      this.maxAge = cache.getMaxAge();
+      this.hits = cache.getHitCount();
+      this.misses = cache.getMissCount();
+      this.evictions = cache.getEvictionCount();
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getSize() {
+      return size;
+    }
+
+    public int getMaxSize() {
+      return maxSize;
+    }
+
+    public long getMaxAge() {
+      return maxAge;
+    }
+
+    public long getHits() {
+      return hits;
+    }
+
+    public long getMisses() {
+      return misses;
+    }
+
+    public long getEvictions() {
+      return evictions;
+    }
+  }
+
+}
@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.service.admin;
+
+import org.apache.hadoop.gateway.dispatch.ConnectionPool;
+import org.apache.hadoop.gateway.dispatch.ConnectionPools;
+import org.apache.hadoop.gateway.service.admin.ConnectionPoolsResource.ConnectionPoolInfo;
+import org.apache.hadoop.gateway.service.admin.ConnectionPoolsResource.ConnectionPoolList;
+import org.apache.hadoop.gateway.service.admin.ConnectionPoolsResource.RouteInfo;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ConnectionPoolsResourceTest {
+
+  @Test
+  public void testRouteStatistics() throws Exception {
+    PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager();
+    manager.setMaxTotal( 10 );
+    manager.setDefaultMaxPerRoute( 2 );
+    ConnectionPool pool = new ConnectionPool( "test-resource", false, 0, manager );
+    ConnectionPools.register( pool );
+    try {
+      HttpRoute route = new HttpRoute( new HttpHost( "datanode1", 50075 ) );
+      HttpClientConnection first = pool.requestConnection( route, null ).get( 1, TimeUnit.SECONDS );
+      HttpClientConnection second = pool.requestConnection( route, null ).get( 1, TimeUnit.SECONDS );
+      // Never opened so it is discarded on release and the route has no available connection.
+      pool.releaseConnection( second, null, 0, TimeUnit.MILLISECONDS );
+
+      ConnectionPoolInfo info = findPool(
+          (ConnectionPoolList)new ConnectionPoolsResource().getConnectionPools().getEntity(), "test-resource" );
+      assertThat( info, notNullValue() );
+      assertThat( info.isShared(), is( false ) );
+      assertThat( info.getMax(), is( 10 ) );
+      assertThat( info.getMaxPerRoute(), is( 2 ) );
+      assertThat( info.getLeased(), is( 1 ) );
+      assertThat( info.getRoutes().size(), is( 1 ) );
+      RouteInfo routeInfo = info.getRoutes().get( 0 );
+      assertThat( routeInfo.getTarget(), is( "http://datanode1:50075" ) );
+      assertThat( routeInfo.getLeased(), is( 1 ) );
+      assertThat( routeInfo.getPending(), is( 0 ) );
+      assertThat( routeInfo.getAvailable(), is( 0 ) );
+      assertThat( routeInfo.getMax(), is( 2 ) );
+
+      pool.releaseConnection( first, null, 0, TimeUnit.MILLISECONDS );
+    } finally {
+      pool.shutdown();
+    }
+    assertThat( findPool(
+        (ConnectionPoolList)new ConnectionPoolsResource().getConnectionPools().getEntity(), "test-resource" ),
+        nullValue() );
+  }
+
+  private static ConnectionPoolInfo findPool( ConnectionPoolList list, String name ) {
+    for( ConnectionPoolInfo info : list.getPools() ) {
+      if( info.getName().equals( name ) ) {
+        return info;
+      }
+    }
+    return null;
+  }
+
+}
@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.service.admin;
+
+import org.apache.hadoop.gateway.provider.federation.jwt.VerifiedTokenCache;
+import org.apache.hadoop.gateway.provider.federation.jwt.VerifiedTokenCaches;
+import org.apache.hadoop.gateway.service.admin.VerifiedTokenCachesResource.TokenCacheInfo;
+import org.apache.hadoop.gateway.service.admin.VerifiedTokenCachesResource.TokenCacheList;
+import org.apache.hadoop.gateway.services.security.token.JWTokenAuthority;
+import org.apache.hadoop.gateway.services.security.token.impl.JWTToken;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class VerifiedTokenCachesResourceTest {
+
+  @Test
+  public void testTokenCacheStatistics() throws Exception {
+    JWTToken token = EasyMock.createNiceMock( JWTToken.class );
+    EasyMock.expect( token.getExpiresDate() ).andReturn( new Date( System.currentTimeMillis() + 60000 ) ).anyTimes();
+    JWTokenAuthority authority = EasyMock.createNiceMock( JWTokenAuthority.class );
+    EasyMock.expect( authority.verifyToken( token ) ).andReturn( true ).anyTimes();
+    EasyMock.replay( token, authority );
+
+    VerifiedTokenCache cache = new VerifiedTokenCache( 10, 60000 );
+    VerifiedTokenCaches.register( cache );
+    try {
+      cache.verifyToken( authority, "token-1", token );
+      cache.verifyToken( authority, "token-1", token );
+      cache.verifyToken( authority, "token-1", token );
+
+      TokenCacheList list = (TokenCacheList)new VerifiedTokenCachesResource().getTokenCaches().getEntity();
+      TokenCacheInfo info = null;
+      for( TokenCacheInfo candidate : list.getCaches() ) {
+        if( candidate.getMaxSize() == 10 && candidate.getMisses() == 1 ) {
+          info = candidate;
+        }
+      }
+      assertThat( info, notNullValue() );
+      assertThat( info.getSize(), is( 1 ) );
+      assertThat( info.getMaxAge(), is( 60000L ) );
+      assertThat( info.getHits(), is( 2L ) );
+      assertThat( info.getEvictions(), is( 0L ) );
+    } finally {
+      VerifiedTokenCaches.unregister( cache );
+    }
+  }
+
+}
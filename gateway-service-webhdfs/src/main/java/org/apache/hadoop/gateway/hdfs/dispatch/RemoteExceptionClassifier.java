@@ -0,0 +1,203 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.hdfs.dispatch;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Classifies WebHDFS error responses by the RemoteException they carry, for example
+ * <pre>{"RemoteException":{"exception":"StandbyException","javaClassName":"org.apache.hadoop.ipc.StandbyException","message":"..."}}</pre>
+ * Only the first {@link #SCAN_LIMIT} bytes of the body are read. They are put back in front of the
+ * rest of the body so the response can still be streamed to the client unchanged.
+ */
+class RemoteExceptionClassifier {
+
+  static final int SCAN_LIMIT = 4096;
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+  enum Kind {
+    STANDBY, SAFE_MODE, OTHER
+  }
+
+  static Kind classify(HttpResponse response) throws IOException {
+    HttpEntity entity = response.getEntity();
+    if (entity == null) {
+      return Kind.OTHER;
+    }
+    InputStream stream = entity.getContent();
+    if (stream == null) {
+      return Kind.OTHER;
+    }
+    byte[] prefix = new byte[SCAN_LIMIT];
+    int length = 0;
+    int count;
+    while (length < prefix.length && (count = stream.read(prefix, length, prefix.length - length)) != -1) {
+      length += count;
+    }
+    response.setEntity(new PrefixedEntity(entity, prefix, length, stream));
+    Header encoding = entity.getContentEncoding();
+    if (encoding != null && "gzip".equalsIgnoreCase(encoding.getValue().trim())) {
+      // The body is passed on compressed so only the scanned bytes are decompressed.
+      byte[] body = new byte[SCAN_LIMIT];
+      return classify(body, gunzip(prefix, length, body));
+    }
+    return classify(prefix, length);
+  }
+
+  /**
+   * Decompresses as much of the gzip data as the scanned bytes hold into body and returns the length.
+   */
+  private static int gunzip(byte[] prefix, int length, byte[] body) {
+    int total = 0;
+    try {
+      InputStream input = new GZIPInputStream(new ByteArrayInputStream(prefix, 0, length));
+      int count;
+      while (total < body.length && (count = input.read(body, total, body.length - total)) != -1) {
+        total += count;
+      }
+    } catch (IOException e) {
+      // Not gzip after all or cut off by the scan limit, classify what was decompressed.
+    }
+    return total;
+  }
+
+  static Kind classify(byte[] body, int length) {
+    String exception = null;
+    try {
+      exception = readRemoteException(body, length);
+    } catch (IOException e) {
+      // Not JSON or cut off by the scan limit before the exception field.
+    }
+    if (exception != null) {
+      return classify(exception);
+    }
+    // Fall back to looking for the exception names anywhere in the scanned part of the body.
+    return classify(new String(body, 0, length, LATIN1));
+  }
+
+  private static Kind classify(String text) {
+    if (text.contains("StandbyException")) {
+      return Kind.STANDBY;
+    }
+    if (text.contains("SafeModeException") || text.contains("RetriableException")) {
+      return Kind.SAFE_MODE;
+    }
+    return Kind.OTHER;
+  }
+
+  /**
+   * Returns the exception, or failing that the javaClassName, field of the top level RemoteException object.
+   */
+  private static String readRemoteException(byte[] body, int length) throws IOException {
+    JsonParser parser = JSON_FACTORY.createParser(body, 0, length);
+    try {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return null;
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        if (parser.nextToken() == JsonToken.START_OBJECT && "RemoteException".equals(name)) {
+          String className = null;
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.VALUE_STRING) {
+              if ("exception".equals(field)) {
+                return parser.getText();
+              }
+              if ("javaClassName".equals(field)) {
+                className = parser.getText();
+              }
+            } else {
+              parser.skipChildren();
+            }
+          }
+          return className;
+        }
+        parser.skipChildren();
+      }
+      return null;
+    } finally {
+      parser.close();
+    }
+  }
+
+  /**
+   * The original entity with the scanned bytes put back in front of its remaining content.
+   */
+  private static class PrefixedEntity extends HttpEntityWrapper {
+
+    private final InputStream content;
+
+    PrefixedEntity(HttpEntity entity, byte[] prefix, int length, InputStream rest) {
+      super(entity);
+      content = new SequenceInputStream(new ByteArrayInputStream(prefix, 0, length), rest);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+      return false;
+    }
+
+    @Override
+    public boolean isStreaming() {
+      return true;
+    }
+
+    @Override
+    public InputStream getContent() {
+      return content;
+    }
+
+    @Override
+    public void writeTo(OutputStream stream) throws IOException {
+      byte[] buffer = new byte[SCAN_LIMIT];
+      int count;
+      try {
+        while ((count = content.read(buffer)) != -1) {
+          stream.write(buffer, 0, count);
+        }
+      } finally {
+        content.close();
+      }
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void consumeContent() throws IOException {
+      content.close();
+    }
+  }
+}
@@ -18,31 +18,69 @@
 package org.apache.hadoop.gateway.hdfs.dispatch;
 
 import org.apache.hadoop.gateway.config.Configure;
+import org.apache.hadoop.gateway.config.Optional;
+import org.apache.hadoop.gateway.dispatch.DispatchThreadContext;
 import org.apache.hadoop.gateway.filter.AbstractGatewayFilter;
+import org.apache.hadoop.gateway.filter.RequestUrl;
 import org.apache.hadoop.gateway.ha.provider.HaProvider;
 import org.apache.hadoop.gateway.ha.provider.HaServiceConfig;
+import org.apache.hadoop.gateway.ha.provider.HealthAwareHaProvider;
 import org.apache.hadoop.gateway.ha.provider.impl.HaServiceConfigConstants;
 import org.apache.hadoop.gateway.hdfs.i18n.WebHdfsMessages;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.util.EntityUtils;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URI;
+import java.security.PrivilegedExceptionAction;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * HA dispatch for WebHDFS that fails over on standby NameNodes and retries on NameNodes in safe mode.
+ * <p>
+ * When the container supports asynchronous requests the failover and retry sleeps do not park the
+ * request thread. The request is switched to asynchronous mode and a single timer thread hands it to the
+ * re-dispatch pool once the sleep has elapsed, so the blocking backend call never runs on the timer.
+ * Otherwise the request thread sleeps as before.
+ * <p>
+ * At most redispatchQueueSize re-dispatches wait for a pool thread, further ones are rejected with 503.
+ * A request that has not completed within redispatchTimeout milliseconds of going asynchronous is answered
+ * with 504, a redispatchTimeout below zero disables the timeout.
+ */
 public class WebHdfsHaDispatch extends HdfsHttpClientDispatch {
 
   private static final String FAILOVER_COUNTER_ATTRIBUTE = "dispatch.ha.failover.counter";
 
    private static final String RETRY_COUNTER_ATTRIBUTE = "dispatch.ha.retry.counter";
 
+   private static final String REDISPATCH_ATTRIBUTE = "dispatch.ha.redispatch";
+
+   private static final int REDISPATCH_THREADS = 32;
+
+   public static final int DEFAULT_REDISPATCH_QUEUE_SIZE = 1024;
+
+   public static final long DEFAULT_REDISPATCH_TIMEOUT = 5 * 60 * 1000;
+
+   private static final AtomicInteger POOLS = new AtomicInteger();
+
    public static final String RESOURCE_ROLE = "WEBHDFS";
 
    private static final WebHdfsMessages LOG = MessagesFactory.get(WebHdfsMessages.class);
@@ -57,6 +95,19 @@ public class WebHdfsHaDispatch extends HdfsHttpClientDispatch {
 
    private HaProvider haProvider;
 
+   // Missing numeric parameters are injected as zero so zero selects the default.
+   @Optional
+   @Configure
+   private int redispatchQueueSize;
+
+   @Optional
+   @Configure
+   private long redispatchTimeout;
+
+   private ScheduledExecutorService timer;
+
+   private ThreadPoolExecutor redispatcher;
+
    /**
    * @throws javax.servlet.ServletException
    */
@@ -74,8 +125,59 @@ public class WebHdfsHaDispatch extends HdfsHttpClientDispatch {
        maxRetryAttempts = serviceConfig.getMaxRetryAttempts();
        retrySleep = serviceConfig.getRetrySleep();
      }
+     String name = "WebHdfsHaDispatch-" + POOLS.incrementAndGet();
+     timer = Executors.newSingleThreadScheduledExecutor(createThreadFactory(name + "-timer"));
+     // Asynchronous requests no longer hold container threads so the container does not bound them.
+     redispatcher = new ThreadPoolExecutor(REDISPATCH_THREADS, REDISPATCH_THREADS, 60, TimeUnit.SECONDS,
+         new LinkedBlockingQueue<Runnable>(getRedispatchQueueSize()), createThreadFactory(name));
+     redispatcher.allowCoreThreadTimeOut(true);
    }
 
+   private static ThreadFactory createThreadFactory(final String name) {
+     return new ThreadFactory() {
+       private final AtomicInteger count = new AtomicInteger();
+       @Override
+       public Thread newThread(Runnable runnable) {
+         Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+         thread.setDaemon(true);
+         return thread;
+       }
+     };
+   }
+
+   @Override
+   public void destroy() {
+     // Re-dispatches that are still scheduled are rejected with 503 so their requests complete.
+     if (timer != null) {
+       timer.shutdown();
+       timer = null;
+     }
+     if (redispatcher != null) {
+       redispatcher.shutdown();
+       redispatcher = null;
+     }
+     super.destroy();
+   }
+
+  public int getRedispatchQueueSize() {
+    return redispatchQueueSize > 0 ? redispatchQueueSize : DEFAULT_REDISPATCH_QUEUE_SIZE;
+  }
+
+  public void setRedispatchQueueSize(int redispatchQueueSize) {
+    this.redispatchQueueSize = redispatchQueueSize;
+  }
+
+  public long getRedispatchTimeout() {
+    if (redispatchTimeout == 0) {
+      return DEFAULT_REDISPATCH_TIMEOUT;
+    }
+    return redispatchTimeout < 0 ? 0 : redispatchTimeout;
+  }
+
+  public void setRedispatchTimeout(long redispatchTimeout) {
+    this.redispatchTimeout = redispatchTimeout;
+  }
+
   public HaProvider getHaProvider() {
     return haProvider;
   }
@@ -91,6 +193,9 @@ public class WebHdfsHaDispatch extends HdfsHttpClientDispatch {
       try {
          inboundResponse = executeOutboundRequest(outboundRequest);
          writeOutboundResponse(outboundRequest, inboundRequest, outboundResponse, inboundResponse);
+         if (haProvider instanceof HealthAwareHaProvider) {
+            ((HealthAwareHaProvider) haProvider).markSucceededURL(RESOURCE_ROLE, outboundRequest.getURI().toString());
+         }
       } catch (StandbyException e) {
          LOG.errorReceivedFromStandbyNode(e);
          failoverRequest(outboundRequest, inboundRequest, outboundResponse, inboundResponse, e);
@@ -109,16 +214,13 @@ public class WebHdfsHaDispatch extends HdfsHttpClientDispatch {
    @Override
    protected void writeOutboundResponse(HttpUriRequest outboundRequest, HttpServletRequest inboundRequest, HttpServletResponse outboundResponse, HttpResponse inboundResponse) throws IOException {
       if (inboundResponse.getStatusLine().getStatusCode() == 403) {
-         BufferedHttpEntity entity = new BufferedHttpEntity(inboundResponse.getEntity());
-         inboundResponse.setEntity(entity);
-         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-         inboundResponse.getEntity().writeTo(outputStream);
-         String body = new String(outputStream.toByteArray());
-         if (body.contains("StandbyException")) {
-            throw new StandbyException();
-         }
-         if (body.contains("SafeModeException") || body.contains("RetriableException")) {
-            throw new SafeModeException();
+         switch (RemoteExceptionClassifier.classify(inboundResponse)) {
+            case STANDBY:
+               throw new StandbyException();
+            case SAFE_MODE:
+               throw new SafeModeException();
+            default:
+               break;
          }
       }
       super.writeOutboundResponse(outboundRequest, inboundRequest, outboundResponse, inboundResponse);
@@ -135,9 +237,13 @@ public class WebHdfsHaDispatch extends HdfsHttpClientDispatch {
          haProvider.markFailedURL(RESOURCE_ROLE, outboundRequest.getURI().toString());
          //null out target url so that rewriters run again
          inboundRequest.setAttribute(AbstractGatewayFilter.TARGET_REQUEST_URL_ATTRIBUTE_NAME, null);
-         URI uri = getDispatchUrl(inboundRequest);
+         URI uri = RequestUrl.getDispatchUrl(inboundRequest);
          ((HttpRequestBase) outboundRequest).setURI(uri);
+         releaseResponse(inboundResponse, exception);
          if (failoverSleep > 0) {
+            if (redispatch(failoverSleep, outboundRequest, inboundRequest, outboundResponse)) {
+               return;
+            }
             try {
                Thread.sleep(failoverSleep);
             } catch (InterruptedException e) {
@@ -148,7 +254,7 @@ public class WebHdfsHaDispatch extends HdfsHttpClientDispatch {
       } else {
          LOG.maxFailoverAttemptsReached(maxFailoverAttempts, RESOURCE_ROLE);
          if (inboundResponse != null) {
-            writeOutboundResponse(outboundRequest, inboundRequest, outboundResponse, inboundResponse);
+            super.writeOutboundResponse(outboundRequest, inboundRequest, outboundResponse, inboundResponse);
          } else {
             throw new IOException(exception);
          }
@@ -163,7 +269,11 @@ public class WebHdfsHaDispatch extends HdfsHttpClientDispatch {
       }
       inboundRequest.setAttribute(RETRY_COUNTER_ATTRIBUTE, counter);
       if (counter.incrementAndGet() <= maxRetryAttempts) {
+         releaseResponse(inboundResponse, exception);
          if (retrySleep > 0) {
+            if (redispatch(retrySleep, outboundRequest, inboundRequest, outboundResponse)) {
+               return;
+            }
             try {
                Thread.sleep(retrySleep);
             } catch (InterruptedException e) {
@@ -174,22 +284,179 @@ public class WebHdfsHaDispatch extends HdfsHttpClientDispatch {
       } else {
          LOG.maxRetryAttemptsReached(maxRetryAttempts, RESOURCE_ROLE, outboundRequest.getURI().toString());
          if (inboundResponse != null) {
-            writeOutboundResponse(outboundRequest, inboundRequest, outboundResponse, inboundResponse);
+            super.writeOutboundResponse(outboundRequest, inboundRequest, outboundResponse, inboundResponse);
          } else {
             throw new IOException(exception);
          }
       }
    }
 
-  private static URI getDispatchUrl(HttpServletRequest request) {
-    StringBuffer str = request.getRequestURL();
-    String query = request.getQueryString();
-    if ( query != null ) {
-      str.append('?');
-      str.append(query);
-    }
-    URI url = URI.create(str.toString());
-    return url;
-  }
+   /**
+    * Releases the connection of a standby or safe mode response that is not going to be written to the client.
+    * Only the small error body is left to read.
+    */
+   private static void releaseResponse(HttpResponse inboundResponse, Exception exception) {
+      if (inboundResponse != null && (exception instanceof StandbyException || exception instanceof SafeModeException)) {
+         EntityUtils.consumeQuietly(inboundResponse.getEntity());
+      }
+   }
+
+   /**
+    * Schedules the request to be executed again after the delay without holding the request thread.
+    *
+    * @return false if the request has to be executed again on the calling thread
+    */
+   private boolean redispatch(long delay, HttpUriRequest outboundRequest, HttpServletRequest inboundRequest, HttpServletResponse outboundResponse) {
+      ScheduledExecutorService timer = this.timer;
+      ExecutorService executor = redispatcher;
+      if (timer == null || executor == null) {
+         return false;
+      }
+      Redispatch redispatch = (Redispatch) inboundRequest.getAttribute(REDISPATCH_ATTRIBUTE);
+      if (redispatch == null) {
+         if (!inboundRequest.isAsyncSupported() || inboundRequest.isAsyncStarted()) {
+            return false;
+         }
+         AsyncContext asyncContext = inboundRequest.startAsync(inboundRequest, outboundResponse);
+         asyncContext.setTimeout(getRedispatchTimeout());
+         redispatch = new Redispatch(asyncContext, outboundRequest, inboundRequest, outboundResponse);
+         asyncContext.addListener(redispatch);
+         inboundRequest.setAttribute(REDISPATCH_ATTRIBUTE, redispatch);
+      }
+      redispatch.schedule(timer, executor, delay);
+      return true;
+   }
+
+   /**
+    * Executes a request again on the re-dispatch pool and completes it once no further re-dispatch is pending.
+    * The thread bound state of the request is captured when the request goes asynchronous and restored for
+    * every execution.
+    */
+   private class Redispatch implements Runnable, AsyncListener {
+
+      private final AsyncContext asyncContext;
+      private final HttpUriRequest outboundRequest;
+      private final HttpServletRequest inboundRequest;
+      private final HttpServletResponse outboundResponse;
+      private final DispatchThreadContext context;
+      private final AtomicInteger scheduled = new AtomicInteger();
+      private final AtomicBoolean completed = new AtomicBoolean();
+      private volatile boolean timedOut;
+
+      private Redispatch(AsyncContext asyncContext, HttpUriRequest outboundRequest, HttpServletRequest inboundRequest, HttpServletResponse outboundResponse) {
+         this.asyncContext = asyncContext;
+         this.outboundRequest = outboundRequest;
+         this.inboundRequest = inboundRequest;
+         this.outboundResponse = outboundResponse;
+         this.context = DispatchThreadContext.capture();
+      }
+
+      private void schedule(ScheduledExecutorService timer, final ExecutorService executor, long delay) {
+         if (completed.get()) {
+            // Timed out while the backend was called, nobody is waiting for another attempt.
+            return;
+         }
+         scheduled.incrementAndGet();
+         try {
+            timer.schedule(new Runnable() {
+               @Override
+               public void run() {
+                  try {
+                     executor.execute(Redispatch.this);
+                  } catch (RejectedExecutionException e) {
+                     // The pool is full or the dispatch was destroyed after the request was scheduled.
+                     LOG.redispatchRejected(RESOURCE_ROLE, String.valueOf(executor));
+                     reject();
+                  }
+               }
+            }, delay, TimeUnit.MILLISECONDS);
+         } catch (RejectedExecutionException e) {
+            // The dispatch is being destroyed, fail the request rather than dispatching to a stopped pool.
+            failed(e);
+            complete();
+         }
+      }
+
+      @Override
+      public void run() {
+         if (completed.get()) {
+            return;
+         }
+         int generation = scheduled.get();
+         try {
+            context.execute(new PrivilegedExceptionAction<Void>() {
+               @Override
+               public Void run() throws IOException {
+                  executeRequest(outboundRequest, inboundRequest, outboundResponse);
+                  return null;
+               }
+            });
+         } catch (Throwable e) {
+            failed(e);
+         } finally {
+            // A failover or retry during this execution scheduled another one that completes the request.
+            if (scheduled.get() == generation) {
+               complete();
+            }
+         }
+      }
+
+      private void reject() {
+         sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+         complete();
+      }
+
+      private void failed(Throwable e) {
+         if (!timedOut) {
+            LOG.failedToRedispatch(RESOURCE_ROLE, e);
+            sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+         }
+      }
+
+      private void sendError(int status) {
+         if (!outboundResponse.isCommitted()) {
+            try {
+               outboundResponse.sendError(status);
+            } catch (IOException e) {
+               // The client is gone, there is nobody left to tell.
+            } catch (IllegalStateException e) {
+               // The response was committed concurrently.
+            }
+         }
+      }
+
+      private void complete() {
+         if (completed.compareAndSet(false, true)) {
+            try {
+               asyncContext.complete();
+            } catch (IllegalStateException e) {
+               // The container already completed the request.
+            }
+         }
+      }
+
+      @Override
+      public void onError(AsyncEvent event) throws IOException {
+         outboundRequest.abort();
+         complete();
+      }
+
+      @Override
+      public void onTimeout(AsyncEvent event) throws IOException {
+         timedOut = true;
+         LOG.redispatchTimeout(RESOURCE_ROLE, getRedispatchTimeout(), outboundRequest.getURI().toString());
+         outboundRequest.abort();
+         sendError(HttpServletResponse.SC_GATEWAY_TIMEOUT);
+         complete();
+      }
+
+      @Override
+      public void onComplete(AsyncEvent event) throws IOException {
+      }
+
+      @Override
+      public void onStartAsync(AsyncEvent event) throws IOException {
+      }
+   }
 
 }
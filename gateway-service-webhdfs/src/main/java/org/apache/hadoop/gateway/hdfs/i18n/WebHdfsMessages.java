@@ -40,4 +40,13 @@ public interface WebHdfsMessages extends HaDispatchMessages {
 
   @Message(level = MessageLevel.INFO, text = "Error occurred while trying to sleep for retry : {0} {1}")
    void retrySleepFailed(String service, @StackTrace(level = MessageLevel.DEBUG) Exception e);
+
+  @Message(level = MessageLevel.ERROR, text = "Failed to dispatch request again for service {0}: {1}")
+   void failedToRedispatch(String service, @StackTrace(level = MessageLevel.DEBUG) Throwable e);
+
+  @Message(level = MessageLevel.WARN, text = "Re-dispatch pool for service {0} is full, rejecting the request: {1}")
+   void redispatchRejected(String service, String pool);
+
+  @Message(level = MessageLevel.WARN, text = "Re-dispatched request for service {0} timed out after {1}ms: {2}")
+   void redispatchTimeout(String service, long timeout, String uri);
 }
@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.hdfs.dispatch;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class RemoteExceptionClassifierTest {
+
+   @Test
+   public void testClassifyRemoteException() throws IOException {
+      assertEquals(RemoteExceptionClassifier.Kind.STANDBY, classify(
+            "{\"RemoteException\":{\"exception\":\"StandbyException\",\"javaClassName\":\"org.apache.hadoop.ipc.StandbyException\"," +
+            "\"message\":\"Operation category READ is not supported in state standby\"}}"));
+      assertEquals(RemoteExceptionClassifier.Kind.SAFE_MODE, classify(
+            "{\"RemoteException\":{\"exception\":\"RetriableException\",\"javaClassName\":\"org.apache.hadoop.ipc.RetriableException\"," +
+            "\"message\":\"org.apache.hadoop.hdfs.server.namenode.SafeModeException: Cannot create directory /tmp. Name node is in safe mode.\"}}"));
+      assertEquals(RemoteExceptionClassifier.Kind.SAFE_MODE, classify(
+            "{\"RemoteException\":{\"message\":\"Name node is in safe mode.\",\"javaClassName\":\"org.apache.hadoop.hdfs.server.namenode.SafeModeException\"}}"));
+      assertEquals(RemoteExceptionClassifier.Kind.OTHER, classify(
+            "{\"RemoteException\":{\"exception\":\"AccessControlException\",\"javaClassName\":\"org.apache.hadoop.security.AccessControlException\"," +
+            "\"message\":\"Permission denied: user=guest, access=WRITE, inode=\\\"/StandbyException\\\"\"}}"));
+   }
+
+   @Test
+   public void testClassifyNonJsonBody() throws IOException {
+      assertEquals(RemoteExceptionClassifier.Kind.STANDBY, classify("<html>org.apache.hadoop.ipc.StandbyException</html>"));
+      assertEquals(RemoteExceptionClassifier.Kind.OTHER, classify("Forbidden"));
+      assertEquals(RemoteExceptionClassifier.Kind.OTHER, classify(""));
+   }
+
+   @Test
+   public void testOnlyPrefixIsScannedAndBodyIsPreserved() throws IOException {
+      StringBuilder body = new StringBuilder("{\"RemoteException\":{\"message\":\"");
+      while (body.length() < RemoteExceptionClassifier.SCAN_LIMIT * 3) {
+         body.append("0123456789");
+      }
+      body.append("\",\"exception\":\"StandbyException\"}}");
+      HttpResponse response = createResponse(body.toString());
+      assertEquals(RemoteExceptionClassifier.Kind.OTHER, RemoteExceptionClassifier.classify(response));
+      assertEquals(body.toString(), EntityUtils.toString(response.getEntity()));
+   }
+
+   @Test
+   public void testClassifyGzipBody() throws IOException {
+      String body = "{\"RemoteException\":{\"exception\":\"StandbyException\",\"javaClassName\":\"org.apache.hadoop.ipc.StandbyException\"}}";
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      GZIPOutputStream output = new GZIPOutputStream(buffer);
+      output.write(body.getBytes());
+      output.close();
+      byte[] bytes = buffer.toByteArray();
+      HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 403, "Forbidden");
+      InputStreamEntity entity = new InputStreamEntity(new ByteArrayInputStream(bytes), bytes.length, ContentType.APPLICATION_JSON);
+      entity.setContentEncoding("gzip");
+      response.setEntity(entity);
+      assertEquals(RemoteExceptionClassifier.Kind.STANDBY, RemoteExceptionClassifier.classify(response));
+      assertArrayEquals(bytes, EntityUtils.toByteArray(response.getEntity()));
+   }
+
+   private static RemoteExceptionClassifier.Kind classify(String body) throws IOException {
+      HttpResponse response = createResponse(body);
+      RemoteExceptionClassifier.Kind kind = RemoteExceptionClassifier.classify(response);
+      assertEquals(body, EntityUtils.toString(response.getEntity()));
+      return kind;
+   }
+
+   private static HttpResponse createResponse(String body) {
+      HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 403, "Forbidden");
+      byte[] bytes = body.getBytes();
+      response.setEntity(new InputStreamEntity(new ByteArrayInputStream(bytes), bytes.length, ContentType.APPLICATION_JSON));
+      return response;
+   }
+}
@@ -31,6 +31,8 @@ import org.easymock.IAnswer;
 import org.junit.Assert;
 import org.junit.Test;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletOutputStream;
@@ -39,7 +41,15 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class WebHdfsHaDispatchTest {
 
@@ -102,4 +112,231 @@ public class WebHdfsHaDispatchTest {
       //test to make sure the sleep took place
       Assert.assertTrue(elapsedTime > 1000);
    }
+
+   @Test
+   public void testFailoverIsRedispatchedAsynchronously() throws Exception {
+      String serviceName = "WEBHDFS";
+      HaDescriptor descriptor = HaDescriptorFactory.createDescriptor();
+      descriptor.addServiceConfig(HaDescriptorFactory.createServiceConfig(serviceName, "true", "1", "1000", "2", "1000", null, null));
+      HaProvider provider = new DefaultHaProvider(descriptor);
+      URI uri1 = new URI( "http://unreachable-host" );
+      URI uri2 = new URI( "http://reachable-host" );
+      ArrayList<String> urlList = new ArrayList<String>();
+      urlList.add(uri1.toString());
+      urlList.add(uri2.toString());
+      provider.addHaService(serviceName, urlList);
+
+      BasicHttpParams params = new BasicHttpParams();
+      HttpUriRequest outboundRequest = EasyMock.createNiceMock(HttpRequestBase.class);
+      EasyMock.expect(outboundRequest.getMethod()).andReturn( "GET" ).anyTimes();
+      final URI uri = uri1;
+      final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+      EasyMock.expect(outboundRequest.getURI()).andAnswer(new IAnswer<URI>() {
+         @Override
+         public URI answer() throws Throwable {
+            threads.add(Thread.currentThread().getName());
+            return uri;
+         }
+      }).anyTimes();
+      EasyMock.expect(outboundRequest.getParams()).andReturn( params ).anyTimes();
+
+      final CountDownLatch completed = new CountDownLatch(1);
+      AsyncContext asyncContext = EasyMock.createNiceMock(AsyncContext.class);
+      asyncContext.complete();
+      EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+         @Override
+         public Object answer() throws Throwable {
+            completed.countDown();
+            return null;
+         }
+      }).once();
+
+      HttpServletResponse outboundResponse = EasyMock.createNiceMock(HttpServletResponse.class);
+
+      final Map<String, Object> attributes = new HashMap<String, Object>();
+      HttpServletRequest inboundRequest = EasyMock.createNiceMock(HttpServletRequest.class);
+      EasyMock.expect(inboundRequest.getRequestURL()).andReturn( new StringBuffer(uri2.toString()) ).anyTimes();
+      EasyMock.expect(inboundRequest.isAsyncSupported()).andReturn(true).anyTimes();
+      EasyMock.expect(inboundRequest.startAsync(inboundRequest, outboundResponse)).andReturn(asyncContext).once();
+      EasyMock.expect(inboundRequest.getAttribute(EasyMock.anyObject(String.class))).andAnswer(new IAnswer<Object>() {
+         @Override
+         public Object answer() throws Throwable {
+            return attributes.get(EasyMock.getCurrentArguments()[0]);
+         }
+      }).anyTimes();
+      inboundRequest.setAttribute(EasyMock.anyObject(String.class), EasyMock.anyObject());
+      EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+         @Override
+         public Object answer() throws Throwable {
+            attributes.put((String) EasyMock.getCurrentArguments()[0], EasyMock.getCurrentArguments()[1]);
+            return null;
+         }
+      }).anyTimes();
+
+      EasyMock.replay(outboundRequest, asyncContext, outboundResponse, inboundRequest);
+      WebHdfsHaDispatch dispatch = new WebHdfsHaDispatch();
+      dispatch.setHttpClient(new DefaultHttpClient());
+      dispatch.setHaProvider(provider);
+      dispatch.init();
+      try {
+         long startTime = System.currentTimeMillis();
+         dispatch.executeRequest(outboundRequest, inboundRequest, outboundResponse);
+         //the request thread is released before the failover sleep is over
+         Assert.assertTrue(System.currentTimeMillis() - startTime < 1000);
+         Assert.assertEquals(uri2.toString(), provider.getActiveURL(serviceName));
+         Assert.assertTrue(completed.await(10, TimeUnit.SECONDS));
+         Assert.assertTrue(System.currentTimeMillis() - startTime >= 1000);
+         //the backend is called from the re-dispatch pool and never from the timer thread
+         boolean redispatched = false;
+         synchronized (threads) {
+            for (String thread : threads) {
+               Assert.assertFalse(thread, thread.contains("-timer-"));
+               redispatched |= thread.matches("WebHdfsHaDispatch-\\d+-\\d+");
+            }
+         }
+         Assert.assertTrue(threads.toString(), redispatched);
+         EasyMock.verify(inboundRequest, asyncContext);
+      } finally {
+         dispatch.destroy();
+      }
+   }
+
+   @Test
+   public void testRedispatchIsRejectedWhenThePoolIsGone() throws Exception {
+      HaProvider provider = createProvider();
+      HttpUriRequest outboundRequest = createOutboundRequest(new URI("http://unreachable-host"));
+      final CountDownLatch completed = new CountDownLatch(1);
+      AsyncContext asyncContext = createAsyncContext(completed);
+      asyncContext.setTimeout(WebHdfsHaDispatch.DEFAULT_REDISPATCH_TIMEOUT);
+      EasyMock.expectLastCall().once();
+      HttpServletResponse outboundResponse = EasyMock.createNiceMock(HttpServletResponse.class);
+      outboundResponse.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      EasyMock.expectLastCall().once();
+      HttpServletRequest inboundRequest = createAsyncInboundRequest(asyncContext, outboundResponse, null);
+
+      EasyMock.replay(outboundRequest, asyncContext, outboundResponse, inboundRequest);
+      WebHdfsHaDispatch dispatch = new WebHdfsHaDispatch();
+      dispatch.setHttpClient(new DefaultHttpClient());
+      dispatch.setHaProvider(provider);
+      dispatch.init();
+      dispatch.executeRequest(outboundRequest, inboundRequest, outboundResponse);
+      //the scheduled re-dispatch finds the pool shut down and answers 503 instead of calling the backend
+      dispatch.destroy();
+      Assert.assertTrue(completed.await(10, TimeUnit.SECONDS));
+      EasyMock.verify(asyncContext, outboundResponse);
+   }
+
+   @Test
+   public void testRedispatchTimesOut() throws Exception {
+      HaProvider provider = createProvider();
+      final URI uri = new URI("http://unreachable-host");
+      final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+      HttpUriRequest outboundRequest = EasyMock.createNiceMock(HttpRequestBase.class);
+      EasyMock.expect(outboundRequest.getMethod()).andReturn( "GET" ).anyTimes();
+      EasyMock.expect(outboundRequest.getURI()).andAnswer(new IAnswer<URI>() {
+         @Override
+         public URI answer() throws Throwable {
+            threads.add(Thread.currentThread().getName());
+            return uri;
+         }
+      }).anyTimes();
+      EasyMock.expect(outboundRequest.getParams()).andReturn( new BasicHttpParams() ).anyTimes();
+      final CountDownLatch completed = new CountDownLatch(1);
+      AsyncContext asyncContext = createAsyncContext(completed);
+      asyncContext.setTimeout(100);
+      EasyMock.expectLastCall().once();
+      HttpServletResponse outboundResponse = EasyMock.createNiceMock(HttpServletResponse.class);
+      outboundResponse.sendError(HttpServletResponse.SC_GATEWAY_TIMEOUT);
+      EasyMock.expectLastCall().once();
+      final AtomicReference<AsyncListener> listener = new AtomicReference<AsyncListener>();
+      HttpServletRequest inboundRequest = createAsyncInboundRequest(asyncContext, outboundResponse, listener);
+
+      EasyMock.replay(outboundRequest, asyncContext, outboundResponse, inboundRequest);
+      WebHdfsHaDispatch dispatch = new WebHdfsHaDispatch();
+      dispatch.setHttpClient(new DefaultHttpClient());
+      dispatch.setHaProvider(provider);
+      dispatch.setRedispatchTimeout(100);
+      dispatch.init();
+      try {
+         dispatch.executeRequest(outboundRequest, inboundRequest, outboundResponse);
+         //the container reports the timeout before the failover sleep is over
+         listener.get().onTimeout(null);
+         Assert.assertTrue(completed.await(10, TimeUnit.SECONDS));
+         //the scheduled re-dispatch does not call the backend for a request that is already answered
+         Thread.sleep(1500);
+         synchronized (threads) {
+            for (String thread : threads) {
+               Assert.assertFalse(thread, thread.matches("WebHdfsHaDispatch-\\d+-\\d+"));
+            }
+         }
+         EasyMock.verify(asyncContext, outboundResponse);
+      } finally {
+         dispatch.destroy();
+      }
+   }
+
+   private static HaProvider createProvider() throws Exception {
+      HaDescriptor descriptor = HaDescriptorFactory.createDescriptor();
+      descriptor.addServiceConfig(HaDescriptorFactory.createServiceConfig("WEBHDFS", "true", "1", "1000", "2", "1000", null, null));
+      HaProvider provider = new DefaultHaProvider(descriptor);
+      ArrayList<String> urlList = new ArrayList<String>();
+      urlList.add("http://unreachable-host");
+      urlList.add("http://other-unreachable-host");
+      provider.addHaService("WEBHDFS", urlList);
+      return provider;
+   }
+
+   private static HttpUriRequest createOutboundRequest(URI uri) {
+      HttpUriRequest outboundRequest = EasyMock.createNiceMock(HttpRequestBase.class);
+      EasyMock.expect(outboundRequest.getMethod()).andReturn( "GET" ).anyTimes();
+      EasyMock.expect(outboundRequest.getURI()).andReturn( uri ).anyTimes();
+      EasyMock.expect(outboundRequest.getParams()).andReturn( new BasicHttpParams() ).anyTimes();
+      return outboundRequest;
+   }
+
+   private static AsyncContext createAsyncContext(final CountDownLatch completed) {
+      AsyncContext asyncContext = EasyMock.createNiceMock(AsyncContext.class);
+      asyncContext.complete();
+      EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+         @Override
+         public Object answer() throws Throwable {
+            completed.countDown();
+            return null;
+         }
+      }).once();
+      return asyncContext;
+   }
+
+   private static HttpServletRequest createAsyncInboundRequest(AsyncContext asyncContext, HttpServletResponse outboundResponse, final AtomicReference<AsyncListener> listener) {
+      if (listener != null) {
+         asyncContext.addListener(EasyMock.anyObject(AsyncListener.class));
+         EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+               listener.set((AsyncListener) EasyMock.getCurrentArguments()[0]);
+               return null;
+            }
+         }).once();
+      }
+      final Map<String, Object> attributes = new HashMap<String, Object>();
+      HttpServletRequest inboundRequest = EasyMock.createNiceMock(HttpServletRequest.class);
+      EasyMock.expect(inboundRequest.getRequestURL()).andReturn( new StringBuffer("http://other-unreachable-host") ).anyTimes();
+      EasyMock.expect(inboundRequest.isAsyncSupported()).andReturn(true).anyTimes();
+      EasyMock.expect(inboundRequest.startAsync(inboundRequest, outboundResponse)).andReturn(asyncContext).once();
+      EasyMock.expect(inboundRequest.getAttribute(EasyMock.anyObject(String.class))).andAnswer(new IAnswer<Object>() {
+         @Override
+         public Object answer() throws Throwable {
+            return attributes.get(EasyMock.getCurrentArguments()[0]);
+         }
+      }).anyTimes();
+      inboundRequest.setAttribute(EasyMock.anyObject(String.class), EasyMock.anyObject());
+      EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+         @Override
+         public Object answer() throws Throwable {
+            attributes.put((String) EasyMock.getCurrentArguments()[0], EasyMock.getCurrentArguments()[1]);
+            return null;
+         }
+      }).anyTimes();
+      return inboundRequest;
+   }
 }
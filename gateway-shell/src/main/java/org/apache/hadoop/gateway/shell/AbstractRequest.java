@@ -24,6 +24,7 @@ import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
@@ -47,6 +48,15 @@ public abstract class AbstractRequest<T> {
     return session.executeNow( request );
   }
 
+  /**
+   * Consumes the response carried by an error status so that its connection goes back to the pool.
+   */
+  protected static void consumeQuietly( Exception e ) {
+    if( e instanceof ErrorResponse ) {
+      EntityUtils.consumeQuietly( ((ErrorResponse)e).getReponse().getEntity() );
+    }
+  }
+
   protected URIBuilder uri( String... parts ) throws URISyntaxException {
     return new URIBuilder( session.base() + StringUtils.join( parts ) );
   }
@@ -49,6 +49,13 @@ import java.util.concurrent.TimeoutException;
 
 public class Hadoop {
 
+  /**
+   * Every request goes to the gateway so the per route limit is what bounds concurrent requests,
+   * including the parts of parallel HDFS transfers.
+   */
+  public static final int MAX_CONNECTIONS_PER_ROUTE = 32;
+  public static final int MAX_CONNECTIONS = 64;
+
   String base;
   HttpHost host;
   DefaultHttpClient client;
@@ -91,6 +98,8 @@ public class Hadoop {
     registry.register( new Scheme( "https", 443, socketFactory ) );
     registry.register( new Scheme( "http", 80, new PlainSocketFactory() ) );
     PoolingClientConnectionManager mgr = new PoolingClientConnectionManager( registry );
+    mgr.setMaxTotal( MAX_CONNECTIONS );
+    mgr.setDefaultMaxPerRoute( MAX_CONNECTIONS_PER_ROUTE );
     DefaultHttpClient client = new DefaultHttpClient( mgr, new DefaultHttpClient().getParams() );
     return client;
   }
@@ -0,0 +1,170 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.shell.hdfs;
+
+import groovy.lang.Closure;
+import org.apache.hadoop.gateway.shell.AbstractRequest;
+import org.apache.hadoop.gateway.shell.Hadoop;
+import org.apache.hadoop.gateway.shell.HadoopException;
+
+import java.io.File;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Copies a local directory tree to HDFS.
+ * Files are uploaded with {@link Put} on the session executor with up to {@code threads} uploads in flight, which
+ * keeps the connection pool busy when copying many small files.  Empty directories are created with {@link Mkdir}.
+ */
+class CopyFromLocal {
+
+  static final int DEFAULT_THREADS = 8;
+
+  static class Request extends AbstractRequest<Response> {
+
+    private String from;
+    private String to;
+    private int threads = DEFAULT_THREADS;
+    private long partSize;
+    private Closure<?> progress;
+
+    Request( Hadoop session ) {
+      super( session );
+    }
+
+    public Request from( String dir ) {
+      this.from = dir;
+      return this;
+    }
+
+    public Request to( String dir ) {
+      this.to = dir;
+      return this;
+    }
+
+    public Request threads( int threads ) {
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * Uploads files larger than the part size in parts, see {@link Put.Request#partSize(long)}.
+     */
+    public Request partSize( long bytes ) {
+      this.partSize = bytes;
+      return this;
+    }
+
+    /**
+     * The closure is called with the HDFS path of every file once it has been copied.
+     */
+    public Request progress( Closure<?> closure ) {
+      this.progress = closure;
+      return this;
+    }
+
+    protected Callable<Response> callable() {
+      return new Callable<Response>() {
+        @Override
+        public Response call() throws Exception {
+          File root = new File( from );
+          if( !root.isDirectory() ) {
+            throw new HadoopException( "Not a directory: " + from );
+          }
+          Response response = new Response();
+          LinkedList<Future<String>> window = new LinkedList<Future<String>>();
+          try {
+            copy( root, to, response, window );
+            while( !window.isEmpty() ) {
+              completed( window.removeFirst(), response );
+            }
+          } finally {
+            for( Future<String> future : window ) {
+              future.cancel( true );
+            }
+          }
+          return response;
+        }
+      };
+    }
+
+    private void copy( File dir, String path, Response response, LinkedList<Future<String>> window ) throws Exception {
+      File[] children = dir.listFiles();
+      if( children == null || children.length == 0 ) {
+        // CREATE makes the parents of files, only empty directories need to be made.
+        new Mkdir.Request( hadoop() ).dir( path ).now();
+        return;
+      }
+      for( File child : children ) {
+        String target = path + "/" + child.getName();
+        if( child.isDirectory() ) {
+          copy( child, target, response, window );
+        } else {
+          if( window.size() >= Math.max( 1, threads ) ) {
+            completed( window.removeFirst(), response );
+          }
+          window.add( upload( child, target ) );
+          response.bytes += child.length();
+        }
+      }
+    }
+
+    private Future<String> upload( final File file, final String target ) {
+      final Put.Request put = new Put.Request( hadoop() ).file( file.getPath() ).to( target ).partSize( partSize );
+      return hadoop().executeLater( new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          put.callable().call();
+          return target;
+        }
+      } );
+    }
+
+    private void completed( Future<String> future, Response response ) throws Exception {
+      String target;
+      try {
+        target = future.get();
+      } catch( ExecutionException e ) {
+        throw e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+      }
+      response.files++;
+      if( progress != null ) {
+        progress.call( target );
+      }
+    }
+
+  }
+
+  static class Response {
+
+    private int files;
+    private long bytes;
+
+    public int getFileCount() {
+      return files;
+    }
+
+    public long getByteCount() {
+      return bytes;
+    }
+
+  }
+
+}
@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.shell.hdfs;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * Sends a region of a file, reporting the bytes written to a {@link Transfer}.
+ * The entity is repeatable and a repeated write first takes back the progress of the previous one.
+ */
+class FileRegionEntity extends AbstractHttpEntity {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final File file;
+  private final long offset;
+  private final long length;
+  private final Transfer transfer;
+  private long written;
+
+  FileRegionEntity( File file, long offset, long length, Transfer transfer ) {
+    this.file = file;
+    this.offset = offset;
+    this.length = length;
+    this.transfer = transfer;
+    setContentType( ContentType.APPLICATION_OCTET_STREAM.toString() );
+  }
+
+  @Override
+  public boolean isRepeatable() {
+    return true;
+  }
+
+  @Override
+  public long getContentLength() {
+    return length;
+  }
+
+  /**
+   * Returns a new stream over the region.  Unlike {@link #writeTo} it does not report progress.
+   */
+  @Override
+  public InputStream getContent() throws IOException {
+    FileInputStream input = new FileInputStream( file );
+    try {
+      input.getChannel().position( offset );
+    } catch( IOException e ) {
+      input.close();
+      throw e;
+    }
+    return new BoundedInputStream( input, length );
+  }
+
+  @Override
+  public void writeTo( OutputStream stream ) throws IOException {
+    rollback();
+    RandomAccessFile input = new RandomAccessFile( file, "r" );
+    try {
+      input.seek( offset );
+      byte[] buffer = new byte[ (int)Math.min( BUFFER_SIZE, Math.max( length, 1 ) ) ];
+      long remaining = length;
+      while( remaining > 0 ) {
+        int count = input.read( buffer, 0, (int)Math.min( buffer.length, remaining ) );
+        if( count < 0 ) {
+          throw new IOException( "Unexpected end of file " + file );
+        }
+        stream.write( buffer, 0, count );
+        remaining -= count;
+        written += count;
+        if( transfer != null ) {
+          transfer.progress( count );
+        }
+      }
+      stream.flush();
+    } finally {
+      input.close();
+    }
+  }
+
+  /**
+   * Takes back the progress reported by a write that did not complete.
+   */
+  void rollback() {
+    if( transfer != null && written > 0 ) {
+      transfer.progress( -written );
+    }
+    written = 0;
+  }
+
+  @Override
+  public boolean isStreaming() {
+    return false;
+  }
+
+}
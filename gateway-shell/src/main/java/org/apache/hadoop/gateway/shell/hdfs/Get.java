@@ -17,6 +17,8 @@
  */
 package org.apache.hadoop.gateway.shell.hdfs;
 
+import com.jayway.jsonpath.JsonPath;
+import groovy.lang.Closure;
 import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.gateway.shell.AbstractRequest;
 import org.apache.hadoop.gateway.shell.BasicResponse;
@@ -24,9 +26,14 @@ import org.apache.hadoop.gateway.shell.Hadoop;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.util.EntityUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 public class Get {
@@ -35,6 +42,10 @@ public class Get {
 
     private String from;
     private String to;
+    private long partSize;
+    private int threads = Transfer.DEFAULT_THREADS;
+    private int retries = Transfer.DEFAULT_RETRIES;
+    private Closure<?> progress;
 
     Request( Hadoop session ) {
       super( session );
@@ -50,11 +61,40 @@ public class Get {
       return this;
     }
 
+    /**
+     * Downloads files larger than the part size to the local file as ranges read in parallel.
+     * A failed range is resumed from the last byte received.
+     */
+    public Request partSize( long bytes ) {
+      this.partSize = bytes;
+      return this;
+    }
+
+    public Request threads( int threads ) {
+      this.threads = threads;
+      return this;
+    }
+
+    public Request retries( int retries ) {
+      this.retries = retries;
+      return this;
+    }
+
+    /**
+     * The closure is called with the bytes received so far and the total bytes, only when downloading to a file.
+     */
+    public Request progress( Closure<?> closure ) {
+      this.progress = closure;
+      return this;
+    }
 
     protected Callable<Response> callable() {
       return new Callable<Response>() {
         @Override
         public Response call() throws Exception {
+          if( to != null && ( partSize > 0 || progress != null ) ) {
+            return getParts();
+          }
           URIBuilder uri = uri( Hdfs.SERVICE_PATH, from );
           addQueryParam( uri, "op", "OPEN" );
           HttpGet request = new HttpGet( uri.build() );
@@ -63,6 +103,83 @@ public class Get {
       };
     }
 
+    private Response getParts() throws Exception {
+      URIBuilder uri = uri( Hdfs.SERVICE_PATH, from );
+      addQueryParam( uri, "op", "GETFILESTATUS" );
+      HttpResponse status = execute( new HttpGet( uri.build() ) );
+      Number number = JsonPath.read( EntityUtils.toString( status.getEntity() ), "$.FileStatus.length" );
+      final long length = number.longValue();
+      final File file = new File( to );
+      RandomAccessFile output = new RandomAccessFile( file, "rw" );
+      try {
+        output.setLength( length );
+      } finally {
+        output.close();
+      }
+      long size = partSize > 0 ? partSize : Math.max( length, 1 );
+      List<Transfer.Part> parts = new ArrayList<Transfer.Part>();
+      for( long offset = 0; offset < length; offset += size ) {
+        parts.add( new Range( file, offset, Math.min( size, length - offset ) ) );
+      }
+      Transfer transfer = new Transfer( hadoop(), length, progress );
+      transfer.run( parts, threads, retries );
+      Response response = new Response( status, null );
+      response.consume();
+      return response;
+    }
+
+    /**
+     * Reads a range of the file with an offset based OPEN and writes it at the same position of the local file.
+     */
+    private class Range implements Transfer.Part {
+
+      private final File file;
+      private final long offset;
+      private final long length;
+      private long received;
+
+      private Range( File file, long offset, long length ) {
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+      }
+
+      @Override
+      public void transfer( Transfer transfer ) throws Exception {
+        URIBuilder uri = uri( Hdfs.SERVICE_PATH, from );
+        addQueryParam( uri, "op", "OPEN" );
+        addQueryParam( uri, "offset", offset + received );
+        addQueryParam( uri, "length", length - received );
+        HttpResponse response;
+        try {
+          response = execute( new HttpGet( uri.build() ) );
+        } catch( RuntimeException e ) {
+          // Releases the connection before the range is retried.
+          consumeQuietly( e );
+          throw e;
+        }
+        RandomAccessFile output = new RandomAccessFile( file, "rw" );
+        InputStream input = response.getEntity().getContent();
+        try {
+          output.seek( offset + received );
+          byte[] buffer = new byte[ 64 * 1024 ];
+          int count;
+          while( received < length && ( count = input.read( buffer, 0, (int)Math.min( buffer.length, length - received ) ) ) != -1 ) {
+            output.write( buffer, 0, count );
+            received += count;
+            transfer.progress( count );
+          }
+          if( received < length ) {
+            throw new IOException( "Premature end of range " + offset + "-" + ( offset + length ) + " of " + from );
+          }
+        } finally {
+          output.close();
+          input.close();
+        }
+      }
+
+    }
+
   }
 
   static class Response extends BasicResponse {
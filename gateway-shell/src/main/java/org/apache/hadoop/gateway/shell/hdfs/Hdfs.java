@@ -43,4 +43,8 @@ public class Hdfs {
     return new Mkdir.Request( session );
   }
 
+  public static CopyFromLocal.Request copyFromLocal( Hadoop session ) {
+    return new CopyFromLocal.Request( session );
+  }
+
 }
@@ -17,6 +17,8 @@
  */
 package org.apache.hadoop.gateway.shell.hdfs;
 
+import com.jayway.jsonpath.JsonPath;
+import groovy.lang.Closure;
 import org.apache.hadoop.gateway.shell.AbstractRequest;
 import org.apache.hadoop.gateway.shell.EmptyResponse;
 import org.apache.hadoop.gateway.shell.Hadoop;
@@ -25,22 +27,35 @@ import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.entity.FileEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.util.EntityUtils;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 class Put {
 
+  /**
+   * Suffix of the temporary files holding the parts of a chunked upload until they are concatenated.
+   */
+  static final String PART_SUFFIX = "._part";
+
   static class Request extends AbstractRequest<Response> {
 
     private String text;
     private String file;
     private String to;
+    private long partSize;
+    private int threads = Transfer.DEFAULT_THREADS;
+    private int retries = Transfer.DEFAULT_RETRIES;
+    private boolean resume;
+    private Closure<?> progress;
 
     Request( Hadoop session ) {
       super( session );
@@ -61,36 +76,165 @@ class Put {
       return this;
     }
 
+    /**
+     * Uploads files larger than the part size as parts in parallel and concatenates them with the CONCAT
+     * operation.  Before Hadoop 2.7 CONCAT requires the part size to be a multiple of the block size.
+     */
+    public Request partSize( long bytes ) {
+      this.partSize = bytes;
+      return this;
+    }
+
+    public Request threads( int threads ) {
+      this.threads = threads;
+      return this;
+    }
+
+    public Request retries( int retries ) {
+      this.retries = retries;
+      return this;
+    }
+
+    /**
+     * Skips parts that are already uploaded with the expected length, for example by an earlier attempt
+     * that failed.
+     */
+    public Request resume() {
+      this.resume = true;
+      return this;
+    }
+
+    /**
+     * The closure is called with the bytes sent so far and the total bytes.
+     */
+    public Request progress( Closure<?> closure ) {
+      this.progress = closure;
+      return this;
+    }
+
     protected Callable<Response> callable() {
       return new Callable<Response>() {
         @Override
         public Response call() throws Exception {
-          URIBuilder uri = uri( Hdfs.SERVICE_PATH, to );
-          addQueryParam( uri, "op", "CREATE" );
-          HttpPut nn = new HttpPut( uri.build() );
-          HttpResponse r = execute( nn );
-          if( r.getStatusLine().getStatusCode() != HttpStatus.SC_TEMPORARY_REDIRECT ) {
-            throw new HadoopException( r.getStatusLine().toString() );
-          }
-          EntityUtils.consumeQuietly( r.getEntity() );
-          Header[] h = r.getHeaders( "Location" );
-          if( h == null || h.length != 1 ) {
-            throw new HadoopException( "Invalid Location header." );
+          if( text == null && file != null ) {
+            File source = new File( file );
+            long length = source.length();
+            Transfer transfer = new Transfer( hadoop(), length, progress );
+            if( partSize > 0 && length > partSize ) {
+              return putParts( source, length, transfer );
+            }
+            return new Response( create( to, new FileRegionEntity( source, 0, length, transfer ), false ) );
           }
-          String loc = h[0].getValue();
-          HttpPut dn = new HttpPut( loc );
           HttpEntity e = null;
           if( text != null ) {
             e = new StringEntity( text );
-          } else if( file != null ) {
-            e = new FileEntity( new File( file ) );
           }
-          dn.setEntity( e );
-          return new Response( execute( dn ) );
+          return new Response( create( to, e, false ) );
         }
       };
     }
 
+    private Response putParts( final File source, long length, Transfer transfer ) throws Exception {
+      if( resume && length == getFileLength( to ) ) {
+        // Uploaded and concatenated by an earlier attempt.
+        transfer.progress( length );
+        return new Response( execute( new HttpGet( status( to ).build() ) ) );
+      }
+      int count = (int)( ( length + partSize - 1 ) / partSize );
+      List<Transfer.Part> parts = new ArrayList<Transfer.Part>( count );
+      final List<String> sources = new ArrayList<String>( count - 1 );
+      for( int i = 0; i < count; i++ ) {
+        final boolean temporary = i > 0;
+        final String path = temporary ? String.format( "%s%s%05d", to, PART_SUFFIX, i ) : to;
+        final long offset = i * partSize;
+        final long size = Math.min( partSize, length - offset );
+        if( temporary ) {
+          sources.add( path );
+        }
+        parts.add( new Transfer.Part() {
+          private boolean retry;
+          @Override
+          public void transfer( Transfer transfer ) throws Exception {
+            if( resume && !retry && size == getFileLength( path ) ) {
+              transfer.progress( size );
+              return;
+            }
+            FileRegionEntity entity = new FileRegionEntity( source, offset, size, transfer );
+            try {
+              // A retry replaces whatever the failed attempt left behind.
+              EntityUtils.consumeQuietly( create( path, entity, retry || temporary ).getEntity() );
+            } catch( Exception e ) {
+              consumeQuietly( e );
+              entity.rollback();
+              retry = true;
+              throw e;
+            }
+          }
+        } );
+      }
+      transfer.run( parts, threads, retries );
+      URIBuilder uri = uri( Hdfs.SERVICE_PATH, to );
+      addQueryParam( uri, "op", "CONCAT" );
+      addQueryParam( uri, "sources", join( sources ) );
+      HttpPost concat = new HttpPost( uri.build() );
+      return new Response( execute( concat ) );
+    }
+
+    private URIBuilder status( String path ) throws Exception {
+      URIBuilder uri = uri( Hdfs.SERVICE_PATH, path );
+      addQueryParam( uri, "op", "GETFILESTATUS" );
+      return uri;
+    }
+
+    private HttpResponse create( String path, HttpEntity entity, boolean overwrite ) throws Exception {
+      URIBuilder uri = uri( Hdfs.SERVICE_PATH, path );
+      addQueryParam( uri, "op", "CREATE" );
+      if( overwrite ) {
+        addQueryParam( uri, "overwrite", "true" );
+      }
+      HttpPut nn = new HttpPut( uri.build() );
+      HttpResponse r = execute( nn );
+      if( r.getStatusLine().getStatusCode() != HttpStatus.SC_TEMPORARY_REDIRECT ) {
+        EntityUtils.consumeQuietly( r.getEntity() );
+        throw new HadoopException( r.getStatusLine().toString() );
+      }
+      EntityUtils.consumeQuietly( r.getEntity() );
+      Header[] h = r.getHeaders( "Location" );
+      if( h == null || h.length != 1 ) {
+        throw new HadoopException( "Invalid Location header." );
+      }
+      String loc = h[0].getValue();
+      HttpPut dn = new HttpPut( loc );
+      dn.setEntity( entity );
+      return execute( dn );
+    }
+
+    /**
+     * Returns the length of the file or -1 if it does not exist.
+     */
+    private long getFileLength( String path ) throws Exception {
+      try {
+        HttpResponse r = execute( new HttpGet( status( path ).build() ) );
+        Number length = JsonPath.read( EntityUtils.toString( r.getEntity() ), "$.FileStatus.length" );
+        return length.longValue();
+      } catch( RuntimeException e ) {
+        // Any error status, typically 404 for a part that was never uploaded.
+        consumeQuietly( e );
+        return -1;
+      }
+    }
+
+  }
+
+  private static String join( List<String> paths ) {
+    StringBuilder builder = new StringBuilder();
+    for( String path : paths ) {
+      if( builder.length() > 0 ) {
+        builder.append( ',' );
+      }
+      builder.append( path );
+    }
+    return builder.toString();
   }
 
   static class Response extends EmptyResponse {
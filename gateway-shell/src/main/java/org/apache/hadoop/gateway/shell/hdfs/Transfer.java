@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.shell.hdfs;
+
+import groovy.lang.Closure;
+import org.apache.hadoop.gateway.shell.Hadoop;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the parts of a chunked HDFS transfer on the session executor.
+ * At most {@code threads} parts are in flight and each part is retried on its own, so a failure only repeats
+ * that part.  The optional progress closure is called with the bytes transferred so far and the total.
+ */
+class Transfer {
+
+  static final int DEFAULT_THREADS = 4;
+  static final int DEFAULT_RETRIES = 3;
+
+  interface Part {
+
+    /**
+     * Transfers the part.  Called again after a failure, implementations continue from where they stopped when
+     * they can.
+     */
+    void transfer( Transfer transfer ) throws Exception;
+
+  }
+
+  private final Hadoop session;
+  private final long total;
+  private final Closure<?> progress;
+  private final AtomicLong transferred = new AtomicLong();
+  private volatile boolean failed;
+
+  Transfer( Hadoop session, long total, Closure<?> progress ) {
+    this.session = session;
+    this.total = total;
+    this.progress = progress;
+  }
+
+  long getTransferred() {
+    return transferred.get();
+  }
+
+  void progress( long bytes ) {
+    long done = transferred.addAndGet( bytes );
+    if( progress != null ) {
+      synchronized( progress ) {
+        progress.call( done, total );
+      }
+    }
+  }
+
+  void run( List<? extends Part> parts, int threads, final int retries ) throws Exception {
+    final ConcurrentLinkedQueue<Part> queue = new ConcurrentLinkedQueue<Part>( parts );
+    List<Future<Void>> workers = new ArrayList<Future<Void>>();
+    int count = Math.max( 1, Math.min( threads, parts.size() ) );
+    for( int i = 0; i < count; i++ ) {
+      workers.add( session.executeLater( new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          Part part;
+          while( !failed && ( part = queue.poll() ) != null ) {
+            transfer( part, retries );
+          }
+          return null;
+        }
+      } ) );
+    }
+    Exception failure = null;
+    for( Future<Void> worker : workers ) {
+      try {
+        worker.get();
+      } catch( ExecutionException e ) {
+        failed = true;
+        if( failure == null ) {
+          failure = e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+        }
+      }
+    }
+    if( failure != null ) {
+      throw failure;
+    }
+  }
+
+  private void transfer( Part part, int retries ) throws Exception {
+    for( int attempt = 0; ; attempt++ ) {
+      try {
+        part.transfer( this );
+        return;
+      } catch( Exception e ) {
+        if( failed || attempt >= retries ) {
+          failed = true;
+          throw e;
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.shell.hdfs;
+
+import groovy.lang.Closure;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.gateway.shell.Hadoop;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CopyFromLocalTest {
+
+  private static final int PART_SIZE = 1000;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private WebHdfsStub hdfs;
+  private Hadoop session;
+
+  @Before
+  public void setUp() throws Exception {
+    hdfs = new WebHdfsStub();
+    session = hdfs.login();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    session.shutdown();
+    hdfs.stop();
+  }
+
+  @Test
+  public void testTreeIsCopied() throws Exception {
+    File root = folder.newFolder( "root" );
+    byte[] small = PutTest.createContent( 10 );
+    byte[] large = PutTest.createContent( PART_SIZE * 2 + 1 );
+    FileUtils.writeByteArrayToFile( new File( root, "small" ), small );
+    FileUtils.writeByteArrayToFile( new File( root, "dir/large" ), large );
+    new File( root, "empty" ).mkdirs();
+    final Set<String> copied = Collections.synchronizedSet( new HashSet<String>() );
+
+    CopyFromLocal.Response response = Hdfs.copyFromLocal( session ).from( root.getPath() ).to( "/tmp/root" )
+        .partSize( PART_SIZE ).threads( 2 ).progress( new Closure<Void>( this ) {
+          @Override
+          public Void call( Object... args ) {
+            copied.add( (String)args[ 0 ] );
+            return null;
+          }
+        } ).now();
+
+    assertEquals( 2, response.getFileCount() );
+    assertEquals( small.length + large.length, response.getByteCount() );
+    assertEquals( new HashSet<String>( Arrays.asList( "/tmp/root/small", "/tmp/root/dir/large" ) ), copied );
+    assertEquals( new HashSet<String>( Arrays.asList( "/tmp/root/small", "/tmp/root/dir/large" ) ), hdfs.files.keySet() );
+    assertArrayEquals( small, hdfs.files.get( "/tmp/root/small" ) );
+    assertArrayEquals( large, hdfs.files.get( "/tmp/root/dir/large" ) );
+    assertEquals( Collections.singleton( "/tmp/root/empty" ), hdfs.dirs );
+    // The large file went up in parts that were concatenated in order.
+    assertEquals( Arrays.asList( "POST /tmp/root/dir/large?op=CONCAT&sources=%2Ftmp%2Froot%2Fdir%2Flarge._part00001%2C%2Ftmp%2Froot%2Fdir%2Flarge._part00002" ),
+        hdfs.getRequests( "POST", "/tmp/root/dir/large", "CONCAT" ) );
+  }
+
+}
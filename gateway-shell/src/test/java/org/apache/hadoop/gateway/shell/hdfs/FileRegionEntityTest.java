@@ -0,0 +1,77 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.shell.hdfs;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FileRegionEntityTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testContentIsTheRegion() throws Exception {
+    byte[] content = PutTest.createContent( 1000 );
+    File file = folder.newFile();
+    FileUtils.writeByteArrayToFile( file, content );
+    FileRegionEntity entity = new FileRegionEntity( file, 100, 250, null );
+
+    InputStream input = entity.getContent();
+    try {
+      assertArrayEquals( Arrays.copyOfRange( content, 100, 350 ), IOUtils.toByteArray( input ) );
+    } finally {
+      input.close();
+    }
+    // Every call returns a new stream.
+    input = entity.getContent();
+    try {
+      assertArrayEquals( Arrays.copyOfRange( content, 100, 350 ), IOUtils.toByteArray( input ) );
+    } finally {
+      input.close();
+    }
+  }
+
+  @Test
+  public void testRepeatedWriteTakesBackProgress() throws Exception {
+    byte[] content = PutTest.createContent( 1000 );
+    File file = folder.newFile();
+    FileUtils.writeByteArrayToFile( file, content );
+    Transfer transfer = new Transfer( null, 500, null );
+    FileRegionEntity entity = new FileRegionEntity( file, 500, 500, transfer );
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    entity.writeTo( output );
+    entity.writeTo( output );
+
+    assertEquals( 500, transfer.getTransferred() );
+    assertArrayEquals( Arrays.copyOfRange( content, 500, 1000 ), Arrays.copyOfRange( output.toByteArray(), 500, 1000 ) );
+  }
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.shell.hdfs;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.gateway.shell.Hadoop;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GetTest {
+
+  private static final int PART_SIZE = 1000;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private WebHdfsStub hdfs;
+  private Hadoop session;
+
+  @Before
+  public void setUp() throws Exception {
+    hdfs = new WebHdfsStub();
+    session = hdfs.login();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    session.shutdown();
+    hdfs.stop();
+  }
+
+  @Test
+  public void testFileIsReadInRanges() throws Exception {
+    byte[] content = PutTest.createContent( PART_SIZE * 2 + PART_SIZE / 2 );
+    hdfs.files.put( "/tmp/file", content );
+    File file = new File( folder.getRoot(), "file" );
+
+    Hdfs.get( session ).from( "/tmp/file" ).file( file.getPath() ).partSize( PART_SIZE ).threads( 2 ).now();
+
+    assertArrayEquals( content, FileUtils.readFileToByteArray( file ) );
+    assertEquals( 3, hdfs.getRequests( "GET", "/tmp/file", "OPEN" ).size() );
+    assertTrue( hdfs.getRequests( "GET", "/tmp/file", "OPEN" ).contains( "GET /tmp/file?op=OPEN&offset=2000&length=500" ) );
+  }
+
+  @Test
+  public void testShortRangeIsContinuedFromTheLastByteReceived() throws Exception {
+    byte[] content = PutTest.createContent( PART_SIZE * 3 );
+    hdfs.files.put( "/tmp/file", content );
+    hdfs.truncateNextRead( PART_SIZE );
+    File file = new File( folder.getRoot(), "file" );
+
+    Hdfs.get( session ).from( "/tmp/file" ).file( file.getPath() ).partSize( PART_SIZE ).threads( 1 ).now();
+
+    assertArrayEquals( content, FileUtils.readFileToByteArray( file ) );
+    assertEquals( Arrays.asList(
+        "GET /tmp/file?op=OPEN&offset=0&length=1000",
+        "GET /tmp/file?op=OPEN&offset=1000&length=1000",
+        "GET /tmp/file?op=OPEN&offset=1500&length=500",
+        "GET /tmp/file?op=OPEN&offset=2000&length=1000" ), hdfs.getRequests( "GET", "/tmp/file", "OPEN" ) );
+  }
+
+  @Test
+  public void testEmptyFile() throws Exception {
+    hdfs.files.put( "/tmp/file", new byte[ 0 ] );
+    File file = new File( folder.getRoot(), "file" );
+
+    Hdfs.get( session ).from( "/tmp/file" ).file( file.getPath() ).partSize( PART_SIZE ).now();
+
+    assertTrue( file.exists() );
+    assertEquals( 0, file.length() );
+    assertTrue( hdfs.getRequests( "GET", "/tmp/file", "OPEN" ).isEmpty() );
+  }
+
+}
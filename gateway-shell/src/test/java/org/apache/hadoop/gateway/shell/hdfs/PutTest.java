@@ -0,0 +1,203 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.shell.hdfs;
+
+import groovy.lang.Closure;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.gateway.shell.Hadoop;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PutTest {
+
+  private static final int PART_SIZE = 1000;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private WebHdfsStub hdfs;
+  private Hadoop session;
+
+  @Before
+  public void setUp() throws Exception {
+    hdfs = new WebHdfsStub();
+    session = hdfs.login();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    session.shutdown();
+    hdfs.stop();
+  }
+
+  @Test
+  public void testSmallFileIsUploadedWhole() throws Exception {
+    byte[] content = createContent( PART_SIZE );
+    File file = createFile( content );
+
+    Hdfs.put( session ).file( file.getPath() ).to( "/tmp/file" ).partSize( PART_SIZE ).now();
+
+    assertArrayEquals( content, hdfs.files.get( "/tmp/file" ) );
+    assertEquals( 1, hdfs.getRequests( "UPLOAD", "/tmp/file", "CREATE" ).size() );
+    assertTrue( hdfs.getRequests( "POST", "/tmp/file", "CONCAT" ).isEmpty() );
+  }
+
+  @Test
+  public void testLargeFileIsSplitIntoPartsAndConcatenated() throws Exception {
+    byte[] content = createContent( PART_SIZE * 2 + PART_SIZE / 2 );
+    File file = createFile( content );
+    final AtomicLong progress = new AtomicLong();
+    final AtomicLong total = new AtomicLong();
+
+    Hdfs.put( session ).file( file.getPath() ).to( "/tmp/file" ).partSize( PART_SIZE ).threads( 2 ).progress( new Closure<Void>( this ) {
+      @Override
+      public Void call( Object... args ) {
+        progress.set( (Long)args[ 0 ] );
+        total.set( (Long)args[ 1 ] );
+        return null;
+      }
+    } ).now();
+
+    assertArrayEquals( content, hdfs.files.get( "/tmp/file" ) );
+    assertEquals( Arrays.asList( "/tmp/file" ), Arrays.asList( hdfs.files.keySet().toArray() ) );
+    assertEquals( 1, hdfs.getRequests( "UPLOAD", "/tmp/file", "CREATE" ).size() );
+    assertEquals( 1, hdfs.getRequests( "UPLOAD", "/tmp/file._part00001", "CREATE" ).size() );
+    assertEquals( 1, hdfs.getRequests( "UPLOAD", "/tmp/file._part00002", "CREATE" ).size() );
+    assertEquals( Arrays.asList( "POST /tmp/file?op=CONCAT&sources=%2Ftmp%2Ffile._part00001%2C%2Ftmp%2Ffile._part00002" ),
+        hdfs.getRequests( "POST", "/tmp/file", "CONCAT" ) );
+    assertEquals( content.length, progress.get() );
+    assertEquals( content.length, total.get() );
+  }
+
+  @Test
+  public void testResumeSkipsUploadedParts() throws Exception {
+    byte[] content = createContent( PART_SIZE * 3 );
+    File file = createFile( content );
+    // An earlier attempt uploaded the second part before it failed.
+    hdfs.files.put( "/tmp/file._part00001", Arrays.copyOfRange( content, PART_SIZE, PART_SIZE * 2 ) );
+
+    Hdfs.put( session ).file( file.getPath() ).to( "/tmp/file" ).partSize( PART_SIZE ).resume().now();
+
+    assertArrayEquals( content, hdfs.files.get( "/tmp/file" ) );
+    assertEquals( 1, hdfs.getRequests( "UPLOAD", "/tmp/file", "CREATE" ).size() );
+    assertTrue( hdfs.getRequests( "UPLOAD", "/tmp/file._part00001", "CREATE" ).isEmpty() );
+    assertEquals( 1, hdfs.getRequests( "UPLOAD", "/tmp/file._part00002", "CREATE" ).size() );
+  }
+
+  @Test( timeout = 30000 )
+  public void testResumeWithMorePartsMissingThanConnections() throws Exception {
+    int count = Hadoop.MAX_CONNECTIONS_PER_ROUTE + 8;
+    byte[] content = createContent( 100 * count );
+    File file = createFile( content );
+
+    Hdfs.put( session ).file( file.getPath() ).to( "/tmp/file" ).partSize( 100 ).resume().now();
+
+    assertArrayEquals( content, hdfs.files.get( "/tmp/file" ) );
+    assertEquals( 1, hdfs.getRequests( "UPLOAD", String.format( "/tmp/file._part%05d", count - 1 ), "CREATE" ).size() );
+  }
+
+  @Test
+  public void testResumeReuploadsPartsOfTheWrongLength() throws Exception {
+    byte[] content = createContent( PART_SIZE * 2 );
+    File file = createFile( content );
+    hdfs.files.put( "/tmp/file._part00001", new byte[ PART_SIZE / 2 ] );
+
+    Hdfs.put( session ).file( file.getPath() ).to( "/tmp/file" ).partSize( PART_SIZE ).resume().now();
+
+    assertArrayEquals( content, hdfs.files.get( "/tmp/file" ) );
+    assertEquals( 1, hdfs.getRequests( "UPLOAD", "/tmp/file._part00001", "CREATE" ).size() );
+  }
+
+  @Test
+  public void testResumeOfConcatenatedFileUploadsNothing() throws Exception {
+    byte[] content = createContent( PART_SIZE * 2 );
+    File file = createFile( content );
+    hdfs.files.put( "/tmp/file", content );
+
+    Hdfs.put( session ).file( file.getPath() ).to( "/tmp/file" ).partSize( PART_SIZE ).resume().now();
+
+    assertTrue( hdfs.getRequests( "PUT", "/tmp/file", "CREATE" ).isEmpty() );
+    assertTrue( hdfs.getRequests( "POST", "/tmp/file", "CONCAT" ).isEmpty() );
+  }
+
+  @Test
+  public void testFailedPartIsRetriedOnItsOwn() throws Exception {
+    byte[] content = createContent( PART_SIZE * 3 );
+    File file = createFile( content );
+    hdfs.failNextUpload( "/tmp/file._part00002" );
+    hdfs.failNextUpload( "/tmp/file" );
+    final AtomicLong progress = new AtomicLong();
+
+    Hdfs.put( session ).file( file.getPath() ).to( "/tmp/file" ).partSize( PART_SIZE ).threads( 1 ).progress( new Closure<Void>( this ) {
+      @Override
+      public Void call( Object... args ) {
+        progress.set( (Long)args[ 0 ] );
+        return null;
+      }
+    } ).now();
+
+    assertArrayEquals( content, hdfs.files.get( "/tmp/file" ) );
+    assertEquals( 1, hdfs.getRequests( "UPLOAD", "/tmp/file._part00001", "CREATE" ).size() );
+    assertEquals( 2, hdfs.getRequests( "UPLOAD", "/tmp/file._part00002", "CREATE" ).size() );
+    // The first part is the target file itself and is only overwritten when it is retried.
+    assertEquals( Arrays.asList( "UPLOAD /tmp/file?op=CREATE", "UPLOAD /tmp/file?op=CREATE&overwrite=true" ),
+        hdfs.getRequests( "UPLOAD", "/tmp/file", "CREATE" ) );
+    // The progress of the failed attempts is taken back.
+    assertEquals( content.length, progress.get() );
+  }
+
+  @Test
+  public void testPartIsNotRetriedPastTheLimit() throws Exception {
+    File file = createFile( createContent( PART_SIZE * 2 ) );
+    hdfs.failNextUpload( "/tmp/file._part00001" );
+
+    try {
+      Hdfs.put( session ).file( file.getPath() ).to( "/tmp/file" ).partSize( PART_SIZE ).retries( 0 ).now();
+    } catch( RuntimeException e ) {
+      // Expected.
+    }
+    assertFalse( hdfs.files.containsKey( "/tmp/file._part00001" ) );
+    assertTrue( hdfs.getRequests( "POST", "/tmp/file", "CONCAT" ).isEmpty() );
+  }
+
+  private File createFile( byte[] content ) throws Exception {
+    File file = folder.newFile();
+    FileUtils.writeByteArrayToFile( file, content );
+    return file;
+  }
+
+  static byte[] createContent( int length ) {
+    byte[] content = new byte[ length ];
+    new Random( length ).nextBytes( content );
+    return content;
+  }
+
+}
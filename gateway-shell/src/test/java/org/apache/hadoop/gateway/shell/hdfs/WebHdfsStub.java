@@ -0,0 +1,196 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.shell.hdfs;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.gateway.shell.Hadoop;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A WebHDFS server that keeps its files in memory, for testing the HDFS requests of the shell.
+ * CREATE is redirected to a data node path on the same server.  Failures can be injected into the next upload of
+ * a file and into the next read at an offset.  Every request is recorded as {@code METHOD path?query}.
+ */
+class WebHdfsStub {
+
+  static final String CLUSTER_PATH = "/gateway/sandbox";
+
+  private static final String NAME_NODE_PATH = CLUSTER_PATH + Hdfs.SERVICE_PATH;
+  private static final String DATA_NODE_PATH = "/datanode" + Hdfs.SERVICE_PATH;
+
+  final Map<String, byte[]> files = new ConcurrentHashMap<String, byte[]>();
+  final Set<String> dirs = Collections.synchronizedSet( new HashSet<String>() );
+  final List<String> requests = Collections.synchronizedList( new ArrayList<String>() );
+
+  private final Set<String> failUploads = Collections.synchronizedSet( new HashSet<String>() );
+  private final Set<Long> truncateReads = Collections.synchronizedSet( new HashSet<Long>() );
+  private final HttpServer server;
+
+  WebHdfsStub() throws IOException {
+    server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 );
+    server.createContext( "/", new HttpHandler() {
+      @Override
+      public void handle( HttpExchange exchange ) throws IOException {
+        try {
+          WebHdfsStub.this.handle( exchange );
+        } finally {
+          exchange.close();
+        }
+      }
+    } );
+    server.start();
+  }
+
+  Hadoop login() throws URISyntaxException {
+    return Hadoop.login( "http://localhost:" + server.getAddress().getPort() + CLUSTER_PATH, "guest", "guest-password" );
+  }
+
+  void stop() {
+    server.stop( 0 );
+  }
+
+  /**
+   * Fails the next upload of the file after its body has been read.
+   */
+  void failNextUpload( String path ) {
+    failUploads.add( path );
+  }
+
+  /**
+   * Sends only half of the requested bytes for the next read at the offset.
+   */
+  void truncateNextRead( long offset ) {
+    truncateReads.add( offset );
+  }
+
+  List<String> getRequests( String method, String path, String op ) {
+    List<String> matches = new ArrayList<String>();
+    synchronized( requests ) {
+      for( String request : requests ) {
+        if( request.startsWith( method + " " + path + "?" ) && request.contains( "op=" + op ) ) {
+          matches.add( request );
+        }
+      }
+    }
+    return matches;
+  }
+
+  private void handle( HttpExchange exchange ) throws IOException {
+    URI uri = exchange.getRequestURI();
+    String method = exchange.getRequestMethod();
+    boolean dataNode = uri.getPath().startsWith( DATA_NODE_PATH );
+    String path = uri.getPath().substring( dataNode ? DATA_NODE_PATH.length() : NAME_NODE_PATH.length() );
+    Map<String, String> query = parseQuery( uri.getRawQuery() );
+    String op = query.get( "op" );
+    if( !dataNode ) {
+      requests.add( method + " " + path + "?" + uri.getRawQuery() );
+    }
+
+    if( "PUT".equals( method ) && "CREATE".equals( op ) ) {
+      if( !dataNode ) {
+        exchange.getResponseHeaders().add( "Location",
+            "http://localhost:" + server.getAddress().getPort() + DATA_NODE_PATH + path + "?" + uri.getRawQuery() );
+        exchange.sendResponseHeaders( 307, -1 );
+        return;
+      }
+      byte[] body = IOUtils.toByteArray( exchange.getRequestBody() );
+      requests.add( "UPLOAD " + path + "?" + uri.getRawQuery() );
+      if( failUploads.remove( path ) ) {
+        exchange.sendResponseHeaders( 500, -1 );
+      } else if( files.containsKey( path ) && !"true".equals( query.get( "overwrite" ) ) ) {
+        exchange.sendResponseHeaders( 403, -1 );
+      } else {
+        files.put( path, body );
+        exchange.sendResponseHeaders( 201, -1 );
+      }
+    } else if( "PUT".equals( method ) && "MKDIRS".equals( op ) ) {
+      dirs.add( path );
+      send( exchange, 200, "{\"boolean\":true}".getBytes( "UTF-8" ) );
+    } else if( "GET".equals( method ) && "GETFILESTATUS".equals( op ) ) {
+      byte[] file = files.get( path );
+      if( file == null ) {
+        send( exchange, 404, "{\"RemoteException\":{\"exception\":\"FileNotFoundException\"}}".getBytes( "UTF-8" ) );
+      } else {
+        send( exchange, 200, ( "{\"FileStatus\":{\"length\":" + file.length + ",\"type\":\"FILE\"}}" ).getBytes( "UTF-8" ) );
+      }
+    } else if( "GET".equals( method ) && "OPEN".equals( op ) ) {
+      byte[] file = files.get( path );
+      if( file == null ) {
+        exchange.sendResponseHeaders( 404, -1 );
+        return;
+      }
+      int offset = query.containsKey( "offset" ) ? Integer.parseInt( query.get( "offset" ) ) : 0;
+      int length = query.containsKey( "length" ) ? Integer.parseInt( query.get( "length" ) ) : file.length - offset;
+      length = Math.min( length, file.length - offset );
+      if( truncateReads.remove( (long)offset ) ) {
+        length = length / 2;
+      }
+      send( exchange, 200, Arrays.copyOfRange( file, offset, offset + length ) );
+    } else if( "POST".equals( method ) && "CONCAT".equals( op ) ) {
+      byte[] target = files.get( path );
+      for( String source : query.get( "sources" ).split( "," ) ) {
+        byte[] append = files.remove( source );
+        byte[] joined = Arrays.copyOf( target, target.length + append.length );
+        System.arraycopy( append, 0, joined, target.length, append.length );
+        target = joined;
+      }
+      files.put( path, target );
+      exchange.sendResponseHeaders( 200, -1 );
+    } else {
+      exchange.sendResponseHeaders( 400, -1 );
+    }
+  }
+
+  private static void send( HttpExchange exchange, int status, byte[] body ) throws IOException {
+    // Chunked so a shortened body ends cleanly instead of breaking the connection.
+    exchange.sendResponseHeaders( status, 0 );
+    OutputStream output = exchange.getResponseBody();
+    output.write( body );
+    output.close();
+  }
+
+  private static Map<String, String> parseQuery( String query ) throws IOException {
+    Map<String, String> params = new HashMap<String, String>();
+    if( query != null ) {
+      for( String param : query.split( "&" ) ) {
+        int equals = param.indexOf( '=' );
+        params.put( URLDecoder.decode( param.substring( 0, equals ), "UTF-8" ), URLDecoder.decode( param.substring( equals + 1 ), "UTF-8" ) );
+      }
+    }
+    return params;
+  }
+
+}
@@ -55,4 +55,19 @@ public interface SpiGatewayMessages {
   @Message( level = MessageLevel.WARN, text = "Skipping unencodable parameter {0}={1}, {2}: {3}" )
   void skippingUnencodableParameter( String name, String value, String encoding, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
 
+  @Message( level = MessageLevel.ERROR, text = "Failed to dispatch request asynchronously: {0}" )
+  void failedToDispatchAsync( @StackTrace( level = MessageLevel.DEBUG ) Throwable e );
+
+  @Message( level = MessageLevel.WARN, text = "Asynchronous dispatch timed out after {0}ms: {1} {2}" )
+  void asyncDispatchTimeout( long timeout, String method, URI uri );
+
+  @Message( level = MessageLevel.WARN, text = "Asynchronous dispatch pool is full, rejecting the request: {0}" )
+  void asyncDispatchRejected( String pool );
+
+  @Message( level = MessageLevel.WARN, text = "Failed to close idle connections of pool {0}: {1}" )
+  void failedToReapConnectionPool( String pool, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
+
+  @Message( level = MessageLevel.WARN, text = "Ignoring invalid value {1} of HTTP client parameter {0}" )
+  void invalidHttpClientParameter( String name, String value );
+
 }
@@ -32,12 +32,18 @@ import java.net.URISyntaxException;
 import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Locale;
 
 public abstract class AbstractGatewayDispatch implements Dispatch {
 
   private static int STREAM_COPY_BUFFER_SIZE = 4096;
   private static final List<String> EXCLUDE_HEADERS = Arrays.asList( "Host", "Authorization", "Content-Length", "Transfer-Encoding" );
 
+  // The backend response body is passed on as it was encoded, see DefaultHttpClientFactory.
+  // Only ask for the content codings that the response body rewriting can decode.
+  private static final String ACCEPT_ENCODING = "Accept-Encoding";
+  private static final List<String> ACCEPT_ENCODINGS = Arrays.asList( "gzip", "identity" );
+
   protected  HttpClient client;
 
   protected void writeResponse( HttpServletRequest request, HttpServletResponse response, InputStream stream )
@@ -100,9 +106,35 @@ public abstract class AbstractGatewayDispatch implements Dispatch {
       if ( !outboundRequest.containsHeader( name )
           && !EXCLUDE_HEADERS.contains( name ) ) {
         String value = inboundRequest.getHeader( name );
+        if ( ACCEPT_ENCODING.equalsIgnoreCase( name ) ) {
+          value = filterAcceptEncoding( value );
+          if ( value == null ) {
+            continue;
+          }
+        }
         outboundRequest.addHeader( name, value );
       }
     }
   }
 
+  /**
+   * Returns the Accept-Encoding value with only the gzip and identity codings left,
+   * or null if none of them were accepted.
+   */
+  static String filterAcceptEncoding( String value ) {
+    StringBuilder filtered = new StringBuilder();
+    if ( value != null ) {
+      for ( String coding : value.split( "," ) ) {
+        String name = coding.split( ";" )[ 0 ].trim().toLowerCase( Locale.ROOT );
+        if ( ACCEPT_ENCODINGS.contains( name ) ) {
+          if ( filtered.length() > 0 ) {
+            filtered.append( ", " );
+          }
+          filtered.append( coding.trim() );
+        }
+      }
+    }
+    return filtered.length() > 0 ? filtered.toString() : null;
+  }
+
 }
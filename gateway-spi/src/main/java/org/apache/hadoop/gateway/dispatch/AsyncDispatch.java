@@ -0,0 +1,263 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.dispatch;
+
+import org.apache.hadoop.gateway.config.Configure;
+import org.apache.hadoop.gateway.config.Optional;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.security.PrivilegedExceptionAction;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A dispatch that acts as a bulkhead for a service.
+ * The inbound request is switched to asynchronous mode and handed to a bounded pool owned by the dispatch,
+ * which executes the outbound request and streams its response back.  This is not non-blocking I/O: each request
+ * still holds a pool thread while the blocking HTTP client waits for the backend.  What it buys is isolation.
+ * A slow service can occupy at most asyncMaxThreads threads and asyncQueueSize queued requests, and further
+ * requests are rejected with 503 instead of taking container threads away from the other services.
+ * The response is written by {@link #writeOutboundResponse} so headers and rewriting behave exactly as they do
+ * for {@link DefaultDispatch}.  Requests run on the calling thread when the container does not support
+ * asynchronous requests.
+ * <p>
+ * Select it for a service with {@code <dispatch classname="org.apache.hadoop.gateway.dispatch.AsyncDispatch"/>}
+ * and size it with the asyncMaxThreads, asyncQueueSize and asyncTimeout service parameters.
+ * Every service that uses it has its own pool so the defaults should be lowered when many services do.
+ * An asyncTimeout below zero disables the timeout.
+ */
+public class AsyncDispatch extends DefaultDispatch {
+
+  public static final int DEFAULT_MAX_THREADS = 64;
+  public static final int DEFAULT_QUEUE_SIZE = 1024;
+  public static final long DEFAULT_TIMEOUT = 5 * 60 * 1000;
+
+  private static final AtomicInteger POOLS = new AtomicInteger();
+
+  // Missing numeric parameters are injected as zero so zero selects the default.
+  @Optional
+  @Configure
+  private int asyncMaxThreads;
+
+  @Optional
+  @Configure
+  private int asyncQueueSize;
+
+  @Optional
+  @Configure
+  private long asyncTimeout;
+
+  private ThreadPoolExecutor executor;
+
+  @Override
+  public void init() {
+    super.init();
+    final String name = "AsyncDispatch-" + POOLS.incrementAndGet();
+    int threads = getAsyncMaxThreads();
+    executor = new ThreadPoolExecutor( threads, threads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>( getAsyncQueueSize() ),
+        new ThreadFactory() {
+          private final AtomicInteger count = new AtomicInteger();
+          @Override
+          public Thread newThread( Runnable runnable ) {
+            Thread thread = new Thread( runnable, name + "-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+          }
+        } );
+    executor.allowCoreThreadTimeOut( true );
+  }
+
+  @Override
+  public void destroy() {
+    if( executor != null ) {
+      executor.shutdown();
+      executor = null;
+    }
+    super.destroy();
+  }
+
+  public int getAsyncMaxThreads() {
+    return asyncMaxThreads > 0 ? asyncMaxThreads : DEFAULT_MAX_THREADS;
+  }
+
+  public void setAsyncMaxThreads( int asyncMaxThreads ) {
+    this.asyncMaxThreads = asyncMaxThreads;
+  }
+
+  public int getAsyncQueueSize() {
+    return asyncQueueSize > 0 ? asyncQueueSize : DEFAULT_QUEUE_SIZE;
+  }
+
+  public void setAsyncQueueSize( int asyncQueueSize ) {
+    this.asyncQueueSize = asyncQueueSize;
+  }
+
+  public long getAsyncTimeout() {
+    if( asyncTimeout == 0 ) {
+      return DEFAULT_TIMEOUT;
+    }
+    return asyncTimeout < 0 ? 0 : asyncTimeout;
+  }
+
+  public void setAsyncTimeout( long asyncTimeout ) {
+    this.asyncTimeout = asyncTimeout;
+  }
+
+  @Override
+  protected void executeRequest(
+      HttpUriRequest outboundRequest,
+      HttpServletRequest inboundRequest,
+      HttpServletResponse outboundResponse )
+      throws IOException {
+    ThreadPoolExecutor executor = this.executor;
+    if( executor == null || !inboundRequest.isAsyncSupported() || inboundRequest.isAsyncStarted() ) {
+      super.executeRequest( outboundRequest, inboundRequest, outboundResponse );
+      return;
+    }
+    AsyncContext asyncContext = inboundRequest.startAsync( inboundRequest, outboundResponse );
+    asyncContext.setTimeout( getAsyncTimeout() );
+    Exchange exchange = new Exchange( asyncContext, outboundRequest, inboundRequest, outboundResponse );
+    asyncContext.addListener( exchange );
+    try {
+      executor.execute( exchange );
+    } catch( RejectedExecutionException e ) {
+      LOG.asyncDispatchRejected( String.valueOf( executor ) );
+      exchange.reject();
+    }
+  }
+
+  private void executeExchange(
+      HttpUriRequest outboundRequest,
+      HttpServletRequest inboundRequest,
+      HttpServletResponse outboundResponse )
+      throws IOException {
+    super.executeRequest( outboundRequest, inboundRequest, outboundResponse );
+  }
+
+  /**
+   * Carries the state of one request from the container thread to the dispatch thread.
+   * The thread bound state of the request is captured when the exchange is created and restored while it runs.
+   */
+  private class Exchange implements Runnable, AsyncListener {
+
+    private final AsyncContext asyncContext;
+    private final HttpUriRequest outboundRequest;
+    private final HttpServletRequest inboundRequest;
+    private final HttpServletResponse outboundResponse;
+    private final DispatchThreadContext context;
+    private final AtomicBoolean completed = new AtomicBoolean();
+    private volatile boolean timedOut;
+
+    private Exchange( AsyncContext asyncContext, HttpUriRequest outboundRequest,
+        HttpServletRequest inboundRequest, HttpServletResponse outboundResponse ) {
+      this.asyncContext = asyncContext;
+      this.outboundRequest = outboundRequest;
+      this.inboundRequest = inboundRequest;
+      this.outboundResponse = outboundResponse;
+      this.context = DispatchThreadContext.capture();
+    }
+
+    @Override
+    public void run() {
+      try {
+        context.execute( new PrivilegedExceptionAction<Void>() {
+          @Override
+          public Void run() throws IOException {
+            executeExchange( outboundRequest, inboundRequest, outboundResponse );
+            return null;
+          }
+        } );
+      } catch( Throwable e ) {
+        failed( e );
+      } finally {
+        complete();
+      }
+    }
+
+    private void reject() {
+      sendError( HttpServletResponse.SC_SERVICE_UNAVAILABLE );
+      complete();
+    }
+
+    private void failed( Throwable e ) {
+      if( !timedOut ) {
+        LOG.failedToDispatchAsync( e );
+        sendError( HttpServletResponse.SC_INTERNAL_SERVER_ERROR );
+      }
+    }
+
+    private void sendError( int status ) {
+      if( !outboundResponse.isCommitted() ) {
+        try {
+          outboundResponse.sendError( status );
+        } catch( IOException e ) {
+          // The client is gone, there is nobody left to tell.
+        } catch( IllegalStateException e ) {
+          // The response was committed concurrently.
+        }
+      }
+    }
+
+    private void complete() {
+      if( completed.compareAndSet( false, true ) ) {
+        try {
+          asyncContext.complete();
+        } catch( IllegalStateException e ) {
+          // The container already completed the request, for example after a timeout.
+        }
+      }
+    }
+
+    @Override
+    public void onTimeout( AsyncEvent event ) throws IOException {
+      timedOut = true;
+      LOG.asyncDispatchTimeout( getAsyncTimeout(), outboundRequest.getMethod(), outboundRequest.getURI() );
+      outboundRequest.abort();
+      sendError( HttpServletResponse.SC_GATEWAY_TIMEOUT );
+      complete();
+    }
+
+    @Override
+    public void onError( AsyncEvent event ) throws IOException {
+      outboundRequest.abort();
+      complete();
+    }
+
+    @Override
+    public void onComplete( AsyncEvent event ) throws IOException {
+    }
+
+    @Override
+    public void onStartAsync( AsyncEvent event ) throws IOException {
+    }
+
+  }
+
+}
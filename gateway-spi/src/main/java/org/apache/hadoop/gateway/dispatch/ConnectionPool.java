@@ -0,0 +1,188 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.dispatch;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A named connection pool used by the HTTP clients of dispatch filters.
+ * The pool keeps track of the routes it has served so that per route statistics can be reported and it is
+ * registered with {@link ConnectionPools} which closes its expired and idle connections in the background.
+ * A shared pool is used by several clients and is only shut down once every one of them has shut it down.
+ */
+public class ConnectionPool implements HttpClientConnectionManager {
+
+  private final String name;
+  private final boolean shared;
+  private final long idleTimeout;
+  private final PoolingHttpClientConnectionManager manager;
+  // The time each route last requested a connection.
+  private final ConcurrentMap<HttpRoute,Long> routes = new ConcurrentHashMap<HttpRoute,Long>();
+  private final AtomicInteger references = new AtomicInteger( 1 );
+
+  public ConnectionPool( String name, boolean shared, long idleTimeout, PoolingHttpClientConnectionManager manager ) {
+    this.name = name;
+    this.shared = shared;
+    this.idleTimeout = idleTimeout;
+    this.manager = manager;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public boolean isShared() {
+    return shared;
+  }
+
+  /**
+   * Milliseconds a connection may stay idle in the pool before it is closed.  Zero or less keeps idle connections.
+   */
+  public long getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  public int getMaxTotal() {
+    return manager.getMaxTotal();
+  }
+
+  public int getDefaultMaxPerRoute() {
+    return manager.getDefaultMaxPerRoute();
+  }
+
+  public PoolStats getTotalStats() {
+    return manager.getTotalStats();
+  }
+
+  /**
+   * Returns the statistics of every route that has connections or has recently requested one
+   * keyed by the route's target host.
+   */
+  public Map<String,PoolStats> getRouteStats() {
+    Map<String,PoolStats> stats = new TreeMap<String,PoolStats>();
+    for( HttpRoute route : routes.keySet() ) {
+      stats.put( route.getTargetHost().toURI(), manager.getStats( route ) );
+    }
+    return stats;
+  }
+
+  /**
+   * Adds a user to a shared pool.
+   * @return false if the pool has already been shut down by its last user
+   */
+  boolean retain() {
+    while( true ) {
+      int count = references.get();
+      if( count <= 0 ) {
+        return false;
+      }
+      if( references.compareAndSet( count, count + 1 ) ) {
+        return true;
+      }
+    }
+  }
+
+  void reap() {
+    reap( System.currentTimeMillis() );
+  }
+
+  // Routes are forgotten once they have had no connections for a whole reap interval.
+  void reap( long now ) {
+    manager.closeExpiredConnections();
+    if( idleTimeout > 0 ) {
+      manager.closeIdleConnections( idleTimeout, TimeUnit.MILLISECONDS );
+    }
+    Iterator<Map.Entry<HttpRoute,Long>> iterator = routes.entrySet().iterator();
+    while( iterator.hasNext() ) {
+      Map.Entry<HttpRoute,Long> entry = iterator.next();
+      if( now - entry.getValue() > ConnectionPools.REAP_INTERVAL ) {
+        PoolStats stats = manager.getStats( entry.getKey() );
+        if( stats.getLeased() == 0 && stats.getAvailable() == 0 && stats.getPending() == 0 ) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  @Override
+  public ConnectionRequest requestConnection( HttpRoute route, Object state ) {
+    routes.put( route, System.currentTimeMillis() );
+    return manager.requestConnection( route, state );
+  }
+
+  @Override
+  public void releaseConnection( HttpClientConnection connection, Object newState, long validDuration, TimeUnit timeUnit ) {
+    manager.releaseConnection( connection, newState, validDuration, timeUnit );
+  }
+
+  @Override
+  public void connect( HttpClientConnection connection, HttpRoute route, int connectTimeout, HttpContext context ) throws IOException {
+    manager.connect( connection, route, connectTimeout, context );
+  }
+
+  @Override
+  public void upgrade( HttpClientConnection connection, HttpRoute route, HttpContext context ) throws IOException {
+    manager.upgrade( connection, route, context );
+  }
+
+  @Override
+  public void routeComplete( HttpClientConnection connection, HttpRoute route, HttpContext context ) throws IOException {
+    manager.routeComplete( connection, route, context );
+  }
+
+  @Override
+  public void closeIdleConnections( long idleTime, TimeUnit timeUnit ) {
+    manager.closeIdleConnections( idleTime, timeUnit );
+  }
+
+  @Override
+  public void closeExpiredConnections() {
+    manager.closeExpiredConnections();
+  }
+
+  @Override
+  public void shutdown() {
+    if( references.decrementAndGet() == 0 ) {
+      ConnectionPools.unregister( this );
+      manager.shutdown();
+    }
+  }
+
+  @Override
+  public String toString() {
+    PoolStats stats = getTotalStats();
+    return name + " [leased: " + stats.getLeased() + "; pending: " + stats.getPending() +
+        "; available: " + stats.getAvailable() + "; max: " + stats.getMax() + "]";
+  }
+
+}
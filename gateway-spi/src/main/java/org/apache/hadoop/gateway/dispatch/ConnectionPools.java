@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.dispatch;
+
+import org.apache.hadoop.gateway.SpiGatewayMessages;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The connection pools of all the dispatch HTTP clients in the gateway.
+ * While any pool is registered a single daemon thread periodically closes expired and idle connections.
+ */
+public final class ConnectionPools {
+
+  private static final SpiGatewayMessages LOG = MessagesFactory.get( SpiGatewayMessages.class );
+
+  static final long REAP_INTERVAL = 5000;
+
+  private static final List<ConnectionPool> pools = new ArrayList<ConnectionPool>();
+  private static final Map<String,ConnectionPool> shared = new HashMap<String,ConnectionPool>();
+  private static Thread reaper;
+
+  private ConnectionPools() {
+  }
+
+  /**
+   * Returns the live shared pool with the given name after adding the caller as one of its users.
+   * The caller must shut the pool down once it no longer needs it.
+   */
+  public static synchronized ConnectionPool getShared( String name ) {
+    ConnectionPool pool = shared.get( name );
+    if( pool != null && pool.retain() ) {
+      return pool;
+    }
+    return null;
+  }
+
+  public static synchronized void register( ConnectionPool pool ) {
+    pools.add( pool );
+    if( pool.isShared() ) {
+      shared.put( pool.getName(), pool );
+    }
+    if( reaper == null ) {
+      reaper = new Thread( new Reaper(), "ConnectionPoolReaper" );
+      reaper.setDaemon( true );
+      reaper.start();
+    }
+  }
+
+  static synchronized void unregister( ConnectionPool pool ) {
+    pools.remove( pool );
+    if( shared.get( pool.getName() ) == pool ) {
+      shared.remove( pool.getName() );
+    }
+  }
+
+  public static synchronized List<ConnectionPool> getPools() {
+    return new ArrayList<ConnectionPool>( pools );
+  }
+
+  private static synchronized List<ConnectionPool> getPoolsOrStop() {
+    if( pools.isEmpty() ) {
+      reaper = null;
+      return null;
+    }
+    return new ArrayList<ConnectionPool>( pools );
+  }
+
+  private static class Reaper implements Runnable {
+    @Override
+    public void run() {
+      try {
+        List<ConnectionPool> current;
+        while( ( current = getPoolsOrStop() ) != null ) {
+          for( ConnectionPool pool : current ) {
+            try {
+              pool.reap();
+            } catch( RuntimeException e ) {
+              LOG.failedToReapConnectionPool( pool.getName(), e );
+            }
+          }
+          Thread.sleep( REAP_INTERVAL );
+        }
+      } catch( InterruptedException e ) {
+        synchronized( ConnectionPools.class ) {
+          reaper = null;
+        }
+      }
+    }
+  }
+
+}
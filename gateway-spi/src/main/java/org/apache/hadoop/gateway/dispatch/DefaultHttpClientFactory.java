@@ -17,8 +17,11 @@
  */
 package org.apache.hadoop.gateway.dispatch;
 
+import org.apache.hadoop.gateway.SpiGatewayMessages;
 import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.HttpResponse;
 import org.apache.http.ProtocolException;
 import org.apache.http.auth.AuthSchemeProvider;
@@ -30,9 +33,14 @@ import org.apache.http.client.HttpClient;
 import org.apache.http.client.HttpRequestRetryHandler;
 import org.apache.http.client.RedirectStrategy;
 import org.apache.http.client.config.AuthSchemes;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.cookie.Cookie;
 import org.apache.http.impl.DefaultConnectionReuseStrategy;
 import org.apache.http.impl.auth.SPNegoSchemeFactory;
@@ -40,6 +48,7 @@ import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.protocol.HttpContext;
 
 import javax.servlet.FilterConfig;
@@ -51,10 +60,26 @@ import java.util.List;
 
 public class DefaultHttpClientFactory implements HttpClientFactory {
 
+  public static final String MAX_CONNECTIONS_PARAM = "httpclient.maxConnections";
+  public static final String MAX_CONNECTIONS_PER_ROUTE_PARAM = "httpclient.maxConnectionsPerRoute";
+  public static final String CONNECTION_TIMEOUT_PARAM = "httpclient.connectionTimeout";
+  public static final String SOCKET_TIMEOUT_PARAM = "httpclient.socketTimeout";
+  public static final String CONNECTION_REQUEST_TIMEOUT_PARAM = "httpclient.connectionRequestTimeout";
+  public static final String IDLE_TIMEOUT_PARAM = "httpclient.idleTimeout";
+  public static final String SHARED_POOL_PARAM = "httpclient.sharedPool";
+
+  static final int DEFAULT_IDLE_TIMEOUT = 60 * 1000;
+
+  private static final SpiGatewayMessages LOG = MessagesFactory.get( SpiGatewayMessages.class );
+
   @Override
   public HttpClient createHttpClient(FilterConfig filterConfig) {
     HttpClientBuilder builder = HttpClients.custom();
 
+    // Leave the response body as the backend encoded it so compressed bodies can be passed through to the client.
+    // Otherwise the client would decompress the body and remove the Content-Encoding header.
+    builder.disableContentCompression();
+
     if ( "true".equals(System.getProperty(GatewayConfig.HADOOP_KERBEROS_SECURED)) ) {
       CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
       credentialsProvider.setCredentials(AuthScope.ANY, new UseJaasCredentials());
@@ -73,9 +98,11 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
     builder.setKeepAliveStrategy( DefaultConnectionKeepAliveStrategy.INSTANCE );
     builder.setConnectionReuseStrategy( DefaultConnectionReuseStrategy.INSTANCE );
 
-    int maxConnections = getMaxConnections( filterConfig );
-    builder.setMaxConnTotal( maxConnections );
-    builder.setMaxConnPerRoute( maxConnections );
+    builder.setConnectionManager( getConnectionPool( filterConfig ) );
+
+    RequestConfig requestConfig = getRequestConfig( filterConfig );
+    builder.setDefaultRequestConfig( requestConfig );
+    builder.addInterceptorLast( new DefaultTimeoutsInterceptor( requestConfig ) );
 
     return builder
         .setRedirectStrategy(new NeverRedirectStrategy())
@@ -138,6 +165,82 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
 
   }
 
+  /**
+   * Applies the configured timeouts to requests whose own configuration leaves them unset.
+   * Requests that carry legacy parameters, for example the redirect handling set for GET by {@link DefaultDispatch},
+   * get a request configuration built from those parameters only and would otherwise run without timeouts.
+   */
+  private static class DefaultTimeoutsInterceptor implements HttpRequestInterceptor {
+
+    private final RequestConfig defaults;
+
+    private DefaultTimeoutsInterceptor( RequestConfig defaults ) {
+      this.defaults = defaults;
+    }
+
+    @Override
+    public void process( HttpRequest request, HttpContext context ) {
+      HttpClientContext clientContext = HttpClientContext.adapt( context );
+      RequestConfig config = clientContext.getRequestConfig();
+      if( config == defaults ) {
+        return;
+      }
+      RequestConfig.Builder builder = RequestConfig.copy( config );
+      boolean changed = false;
+      if( config.getConnectTimeout() <= 0 && defaults.getConnectTimeout() > 0 ) {
+        builder.setConnectTimeout( defaults.getConnectTimeout() );
+        changed = true;
+      }
+      if( config.getSocketTimeout() <= 0 && defaults.getSocketTimeout() > 0 ) {
+        builder.setSocketTimeout( defaults.getSocketTimeout() );
+        changed = true;
+      }
+      if( config.getConnectionRequestTimeout() <= 0 && defaults.getConnectionRequestTimeout() > 0 ) {
+        builder.setConnectionRequestTimeout( defaults.getConnectionRequestTimeout() );
+        changed = true;
+      }
+      if( changed ) {
+        clientContext.setRequestConfig( builder.build() );
+      }
+    }
+  }
+
+  /**
+   * Creates the connection pool of the client or, when httpclient.sharedPool is true, joins the pool shared by all
+   * the dispatch filters of the topology.  A shared pool keeps the settings of the filter that created it.
+   */
+  private ConnectionPool getConnectionPool( FilterConfig filterConfig ) {
+    String contextPath = filterConfig.getServletContext().getContextPath();
+    boolean shared = Boolean.parseBoolean( filterConfig.getInitParameter( SHARED_POOL_PARAM ) );
+    String name = shared ? contextPath : contextPath + "/" + filterConfig.getFilterName();
+    synchronized( ConnectionPools.class ) {
+      ConnectionPool pool = shared ? ConnectionPools.getShared( name ) : null;
+      if( pool == null ) {
+        int maxConnections = getMaxConnections( filterConfig );
+        int maxConnectionsPerRoute = getIntParameter( filterConfig, MAX_CONNECTIONS_PER_ROUTE_PARAM, maxConnections );
+        Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+            .register( "http", PlainConnectionSocketFactory.getSocketFactory() )
+            .register( "https", SSLConnectionSocketFactory.getSocketFactory() )
+            .build();
+        PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager( socketFactoryRegistry );
+        manager.setMaxTotal( maxConnections );
+        manager.setDefaultMaxPerRoute( maxConnectionsPerRoute );
+        long idleTimeout = getIntParameter( filterConfig, IDLE_TIMEOUT_PARAM, DEFAULT_IDLE_TIMEOUT );
+        pool = new ConnectionPool( name, shared, idleTimeout, manager );
+        ConnectionPools.register( pool );
+      }
+      return pool;
+    }
+  }
+
+  private RequestConfig getRequestConfig( FilterConfig filterConfig ) {
+    return RequestConfig.custom()
+        .setConnectTimeout( getIntParameter( filterConfig, CONNECTION_TIMEOUT_PARAM, -1 ) )
+        .setSocketTimeout( getIntParameter( filterConfig, SOCKET_TIMEOUT_PARAM, -1 ) )
+        .setConnectionRequestTimeout( getIntParameter( filterConfig, CONNECTION_REQUEST_TIMEOUT_PARAM, -1 ) )
+        .build();
+  }
+
   private int getMaxConnections( FilterConfig filterConfig ) {
     int maxConnections = 32;
     GatewayConfig config =
@@ -145,15 +248,20 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
     if( config != null ) {
       maxConnections = config.getHttpClientMaxConnections();
     }
-    String str = filterConfig.getInitParameter( "httpclient.maxConnections" );
+    return getIntParameter( filterConfig, MAX_CONNECTIONS_PARAM, maxConnections );
+  }
+
+  private static int getIntParameter( FilterConfig filterConfig, String name, int defaultValue ) {
+    int value = defaultValue;
+    String str = filterConfig.getInitParameter( name );
     if( str != null ) {
       try {
-        maxConnections = Integer.parseInt( str );
+        value = Integer.parseInt( str.trim() );
       } catch ( NumberFormatException e ) {
-        // Ignore it and use the default.
+        LOG.invalidHttpClientParameter( name, str );
       }
     }
-    return maxConnections;
+    return value;
   }
 
 }
@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.dispatch;
+
+import org.apache.hadoop.gateway.audit.api.AuditContext;
+import org.apache.hadoop.gateway.audit.api.AuditService;
+import org.apache.hadoop.gateway.audit.api.AuditServiceFactory;
+import org.apache.hadoop.gateway.audit.api.CorrelationContext;
+import org.apache.hadoop.gateway.audit.api.CorrelationService;
+import org.apache.hadoop.gateway.audit.api.CorrelationServiceFactory;
+
+import javax.security.auth.Subject;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+
+/**
+ * The thread bound state of a request that a dispatch continues on another thread.
+ * The audit and correlation contexts and the authenticated subject are captured on the request thread and
+ * restored around every {@link #execute} on the dispatch thread, after which the thread's own state is put back.
+ */
+public class DispatchThreadContext {
+
+  private static AuditService auditService = AuditServiceFactory.getAuditService();
+  private static CorrelationService correlationService = CorrelationServiceFactory.getCorrelationService();
+
+  private final AuditContext auditContext;
+  private final CorrelationContext correlationContext;
+  private final Subject subject;
+
+  private DispatchThreadContext() {
+    this.auditContext = auditService.getContext();
+    this.correlationContext = correlationService.getContext();
+    this.subject = Subject.getSubject( AccessController.getContext() );
+  }
+
+  /**
+   * Captures the state of the calling thread.
+   */
+  public static DispatchThreadContext capture() {
+    return new DispatchThreadContext();
+  }
+
+  /**
+   * Runs the action with the captured state, as the captured subject if there is one.
+   * Exceptions thrown by the action are rethrown as they are.
+   */
+  public void execute( PrivilegedExceptionAction<Void> action ) throws Exception {
+    AuditContext previousAuditContext = auditService.detachContext();
+    CorrelationContext previousCorrelationContext = correlationService.detachContext();
+    auditService.attachContext( auditContext );
+    correlationService.attachContext( correlationContext );
+    try {
+      if( subject == null ) {
+        action.run();
+      } else {
+        Subject.doAs( subject, action );
+      }
+    } catch( PrivilegedActionException e ) {
+      throw e.getException();
+    } finally {
+      auditService.detachContext();
+      correlationService.detachContext();
+      auditService.attachContext( previousAuditContext );
+      correlationService.attachContext( previousCorrelationContext );
+    }
+  }
+
+}
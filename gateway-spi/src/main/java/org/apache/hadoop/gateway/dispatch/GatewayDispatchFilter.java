@@ -19,6 +19,7 @@ package org.apache.hadoop.gateway.dispatch;
 
 import org.apache.hadoop.gateway.SpiGatewayMessages;
 import org.apache.hadoop.gateway.filter.AbstractGatewayFilter;
+import org.apache.hadoop.gateway.filter.RequestUrl;
 import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.http.client.HttpClient;
 import org.apache.http.impl.client.CloseableHttpClient;
@@ -113,14 +114,7 @@ public class GatewayDispatchFilter extends AbstractGatewayFilter {
   }
 
   protected static URI getDispatchUrl(HttpServletRequest request) {
-    StringBuffer str = request.getRequestURL();
-    String query = request.getQueryString();
-    if ( query != null ) {
-      str.append('?');
-      str.append(query);
-    }
-    URI url = URI.create(str.toString());
-    return url;
+    return RequestUrl.getDispatchUrl(request);
   }
 
   private interface Adapter {
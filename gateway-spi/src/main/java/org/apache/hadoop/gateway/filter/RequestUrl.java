@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter;
+
+import org.apache.hadoop.gateway.util.urltemplate.Template;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import java.net.URI;
+
+/**
+ * The rewritten target URL of a request together with the strings derived from it.
+ * The instance is kept in the request attributes next to the target URL template so that
+ * rewrite, identity assertion and dispatch share one rendering of the template instead of
+ * rebuilding and splitting it on every call.  Replacing or clearing the target URL template
+ * (e.g. on HA failover) invalidates the cached instance.
+ */
+public class RequestUrl {
+
+  public static final String TARGET_REQUEST_URL_VIEW_ATTRIBUTE_NAME = "targetRequestUrlView";
+
+  private final Template template;
+  private String url;
+  private String path;
+  private String query;
+  private URI uri;
+
+  public RequestUrl( Template template ) {
+    this.template = template;
+  }
+
+  /**
+   * Returns the view of the current target URL of the request, creating it if the target URL changed.
+   *
+   * @param request The request holding the target URL template.
+   * @return The target URL view or null if the request has no target URL yet.
+   */
+  public static RequestUrl getTargetUrl( ServletRequest request ) {
+    Template template = (Template)request.getAttribute( AbstractGatewayFilter.TARGET_REQUEST_URL_ATTRIBUTE_NAME );
+    if( template == null ) {
+      return null;
+    }
+    RequestUrl view = (RequestUrl)request.getAttribute( TARGET_REQUEST_URL_VIEW_ATTRIBUTE_NAME );
+    if( view == null || view.template != template ) {
+      view = new RequestUrl( template );
+      request.setAttribute( TARGET_REQUEST_URL_VIEW_ATTRIBUTE_NAME, view );
+    }
+    return view;
+  }
+
+  /**
+   * Builds the URL a request is dispatched to from its request URL and query string.
+   * When neither was changed by a request wrapper since the URL was rewritten the URI of the
+   * cached target URL view is returned and no string is built or parsed again.
+   *
+   * @param request The inbound request.
+   * @return The URI to dispatch the request to.
+   */
+  public static URI getDispatchUrl( HttpServletRequest request ) {
+    String path = request.getRequestURI();
+    String query = request.getQueryString();
+    RequestUrl target = getTargetUrl( request );
+    if( target != null && target.getTemplate().hasScheme()
+        && target.getPath().equals( path ) && equals( target.getQuery(), query ) ) {
+      return target.toURI();
+    }
+    StringBuffer str = request.getRequestURL();
+    if( query != null ) {
+      str.append( '?' );
+      str.append( query );
+    }
+    return URI.create( str.toString() );
+  }
+
+  public Template getTemplate() {
+    return template;
+  }
+
+  /**
+   * @return The complete URL, rendered from the template once.
+   */
+  @Override
+  public String toString() {
+    if( url == null ) {
+      url = template.toString();
+    }
+    return url;
+  }
+
+  /**
+   * @return The part of the URL before the query string.
+   */
+  public String getPath() {
+    if( path == null ) {
+      split();
+    }
+    return path;
+  }
+
+  /**
+   * @return The query string without the leading '?' or null if the URL has no or an empty query string.
+   */
+  public String getQuery() {
+    if( path == null ) {
+      split();
+    }
+    return query;
+  }
+
+  public URI toURI() {
+    if( uri == null ) {
+      uri = URI.create( toString() );
+    }
+    return uri;
+  }
+
+  private void split() {
+    String s = toString();
+    int i = s.indexOf( '?' );
+    if( i < 0 ) {
+      query = null;
+      path = s;
+    } else {
+      query = i + 1 < s.length() ? s.substring( i + 1 ) : null;
+      path = s.substring( 0, i );
+    }
+  }
+
+  private static boolean equals( String a, String b ) {
+    return a == null ? b == null : a.equals( b );
+  }
+
+}
@@ -17,13 +17,16 @@
  */
 package org.apache.hadoop.gateway.services.security.impl;
 
-import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.InvalidParameterSpecException;
 import java.security.spec.KeySpec;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.crypto.Cipher;
 import javax.crypto.NoSuchPaddingException;
@@ -42,12 +45,26 @@ public class AESEncryptor {
   
   private static final int ITERATION_COUNT = 65536;
   private static final int KEY_LENGTH = 128;
+  private static final int KEY_CACHE_SIZE = 64;
+  private static final String TRANSFORMATION = "AES/CBC/PKCS5Padding";
   
-  private Cipher ecipher;
-  private Cipher dcipher;
   private SecretKey secret;
+  private byte[] iv = null;
   private byte[] salt = null;
   private char[] passPhrase = null;
+
+  // Ciphers are not thread safe so each thread gets its own pair.
+  private final ThreadLocal<Cipher> ecipher = new ThreadLocal<Cipher>();
+  private final ThreadLocal<Cipher> dcipher = new ThreadLocal<Cipher>();
+
+  // Deriving a key with PBKDF2 is deliberately expensive so keys derived for a given salt are kept.
+  private final Map<SaltKey,SecretKey> keyCache = Collections.synchronizedMap(
+      new LinkedHashMap<SaltKey,SecretKey>( KEY_CACHE_SIZE, 0.75f, true ) {
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<SaltKey,SecretKey> eldest ) {
+          return size() > KEY_CACHE_SIZE;
+        }
+      } );
  
   public AESEncryptor(String passPhrase) {
       try {
@@ -58,13 +75,12 @@ public class AESEncryptor {
         
         SecretKey tmp = getKeyFromPassword(passPhrase);
         secret = new SecretKeySpec (tmp.getEncoded(), "AES");
- 
-        ecipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-        ecipher.init(Cipher.ENCRYPT_MODE, secret);
-       
-        dcipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-        byte[] iv = ecipher.getParameters().getParameterSpec(IvParameterSpec.class).getIV();
-        dcipher.init(Cipher.DECRYPT_MODE, secret, new IvParameterSpec(iv));
+        keyCache.put(new SaltKey(salt), secret);
+
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, secret);
+        iv = cipher.getParameters().getParameterSpec(IvParameterSpec.class).getIV();
+        ecipher.set(cipher);
       } catch (NoSuchAlgorithmException e) {
         LOG.failedToEncryptPassphrase( e );
       } catch (NoSuchPaddingException e) {
@@ -73,8 +89,6 @@ public class AESEncryptor {
         LOG.failedToEncryptPassphrase( e );
       } catch (InvalidParameterSpecException e) {
         LOG.failedToEncryptPassphrase( e );
-      } catch (InvalidAlgorithmParameterException e) {
-        LOG.failedToEncryptPassphrase( e );
       }
   }
   
@@ -82,12 +96,10 @@ public class AESEncryptor {
     try {
       this.secret = new SecretKeySpec (secret.getEncoded(), "AES");
 
-      ecipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-      ecipher.init(Cipher.ENCRYPT_MODE, secret);
-     
-      dcipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-      byte[] iv = ecipher.getParameters().getParameterSpec(IvParameterSpec.class).getIV();
-      dcipher.init(Cipher.DECRYPT_MODE, secret, new IvParameterSpec(iv));
+      Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+      cipher.init(Cipher.ENCRYPT_MODE, secret);
+      iv = cipher.getParameters().getParameterSpec(IvParameterSpec.class).getIV();
+      ecipher.set(cipher);
     } catch (NoSuchAlgorithmException e) {
       LOG.failedToEncryptPassphrase( e );
     } catch (NoSuchPaddingException e) {
@@ -96,8 +108,6 @@ public class AESEncryptor {
       LOG.failedToEncryptPassphrase( e );
     } catch (InvalidParameterSpecException e) {
       LOG.failedToEncryptPassphrase( e );
-    } catch (InvalidAlgorithmParameterException e) {
-      LOG.failedToEncryptPassphrase( e );
     }
   }
 
@@ -121,6 +131,37 @@ public class AESEncryptor {
     return key;
   }
 
+  private SecretKey getKeyForSalt(byte[] salt) {
+    SaltKey saltKey = new SaltKey(salt);
+    SecretKey key = keyCache.get(saltKey);
+    if (key == null) {
+      // Concurrent misses for the same salt may both derive the key which is harmless.
+      SecretKey tmp = getKeyFromPassword(new String(passPhrase), salt);
+      key = new SecretKeySpec(tmp.getEncoded(), "AES");
+      keyCache.put(saltKey, key);
+    }
+    return key;
+  }
+
+  private Cipher getEncryptCipher() throws Exception {
+    Cipher cipher = ecipher.get();
+    if (cipher == null) {
+      cipher = Cipher.getInstance(TRANSFORMATION);
+      cipher.init(Cipher.ENCRYPT_MODE, secret, new IvParameterSpec(iv));
+      ecipher.set(cipher);
+    }
+    return cipher;
+  }
+
+  private Cipher getDecryptCipher() throws Exception {
+    Cipher cipher = dcipher.get();
+    if (cipher == null) {
+      cipher = Cipher.getInstance(TRANSFORMATION);
+      dcipher.set(cipher);
+    }
+    return cipher;
+  }
+
   public EncryptionResult encrypt(String encrypt) throws Exception {
       byte[] bytes = encrypt.getBytes("UTF8");
       EncryptionResult atom = encrypt(bytes);
@@ -128,7 +169,7 @@ public class AESEncryptor {
   }
 
   public EncryptionResult encrypt(byte[] plain) throws Exception {
-    EncryptionResult atom = new EncryptionResult(salt, ecipher.getParameters().getParameterSpec(IvParameterSpec.class).getIV(), ecipher.doFinal(plain));
+    EncryptionResult atom = new EncryptionResult(salt, iv.clone(), getEncryptCipher().doFinal(plain));
     return atom;
   }
 
@@ -138,15 +179,34 @@ public class AESEncryptor {
   }
 
   public byte[] decrypt(byte[] salt, byte[] iv, byte[] encrypt) throws Exception {
-    SecretKey tmp = getKeyFromPassword(new String(passPhrase), salt);
-    secret = new SecretKeySpec(tmp.getEncoded(), "AES");
-    
-    dcipher.init(Cipher.DECRYPT_MODE, secret, new IvParameterSpec(iv));
-    return dcipher.doFinal(encrypt);
+    Cipher cipher = getDecryptCipher();
+    cipher.init(Cipher.DECRYPT_MODE, getKeyForSalt(salt), new IvParameterSpec(iv));
+    return cipher.doFinal(encrypt);
   }
   
   public byte[] decrypt(byte[] encrypt) throws Exception {
-    dcipher.init(Cipher.DECRYPT_MODE, secret);
-    return dcipher.doFinal(encrypt);
+    Cipher cipher = getDecryptCipher();
+    cipher.init(Cipher.DECRYPT_MODE, secret);
+    return cipher.doFinal(encrypt);
+  }
+
+  private static class SaltKey {
+    private final byte[] salt;
+    private final int hash;
+
+    private SaltKey(byte[] salt) {
+      this.salt = salt.clone();
+      this.hash = Arrays.hashCode(salt);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return (obj instanceof SaltKey) && Arrays.equals(salt, ((SaltKey)obj).salt);
+    }
   }
 }
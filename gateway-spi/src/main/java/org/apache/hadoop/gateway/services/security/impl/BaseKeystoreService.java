@@ -38,6 +38,8 @@ import java.security.UnrecoverableKeyException;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class BaseKeystoreService {
   private static GatewaySpiMessages LOG = MessagesFactory.get( GatewaySpiMessages.class );
@@ -45,6 +47,10 @@ public class BaseKeystoreService {
   protected MasterService masterService;
   protected String keyStoreDir;
 
+  // Loaded keystores keyed by absolute file path.  An entry is only used while the file's
+  // modification time and length are unchanged and is dropped whenever this service writes the file.
+  private final Map<String,CachedKeystore> keystoreCache = new ConcurrentHashMap<String,CachedKeystore>();
+
   private static KeyStore loadKeyStore(final File keyStoreFile, final char[] masterPassword, String storeType)
       throws CertificateException, IOException, KeyStoreException,
       NoSuchAlgorithmException {     
@@ -95,6 +101,7 @@ public class BaseKeystoreService {
       ks.load( null, null );  
       ks.store( out, masterService.getMasterSecret() );
       out.close();
+      invalidateKeystore( new File( filename ) );
     } catch (KeyStoreException e) {
       LOG.failedToCreateKeystore( filename, keystoreType, e );
       throw new KeystoreServiceException(e);
@@ -145,6 +152,31 @@ public class BaseKeystoreService {
   }
 
   protected KeyStore getKeystore(final File keyStoreFile, String storeType) throws KeystoreServiceException {
+    return getCachedKeystore( keyStoreFile, storeType ).getKeyStore();
+  }
+
+  protected CachedKeystore getCachedKeystore(final File keyStoreFile, String storeType) throws KeystoreServiceException {
+    String path = keyStoreFile.getAbsolutePath();
+    // Read the file attributes before loading so that a concurrent write is picked up by the next call.
+    long lastModified = keyStoreFile.lastModified();
+    long length = keyStoreFile.length();
+    CachedKeystore cached = keystoreCache.get( path );
+    if( cached != null && cached.isCurrent( storeType, lastModified, length ) ) {
+      return cached;
+    }
+    cached = new CachedKeystore( loadKeystore( keyStoreFile, storeType ), storeType, lastModified, length );
+    // A keystore that doesn't exist on disk yet is never cached.
+    if( lastModified != 0L ) {
+      keystoreCache.put( path, cached );
+    }
+    return cached;
+  }
+
+  protected void invalidateKeystore(final File keyStoreFile) {
+    keystoreCache.remove( keyStoreFile.getAbsolutePath() );
+  }
+
+  private KeyStore loadKeystore(final File keyStoreFile, String storeType) throws KeystoreServiceException {
     KeyStore credStore = null;
     try {
       credStore = loadKeyStore( keyStoreFile, masterService.getMasterSecret(), storeType);
@@ -230,10 +262,50 @@ public class BaseKeystoreService {
      }
      finally {
          out.close();
+         // The cached instance may have been modified by the caller so drop it even if the write failed.
+         invalidateKeystore( file );
      }
   }
 
   public void setMasterService(MasterService ms) {
     this.masterService = ms;
   }
+
+  /**
+   * A loaded keystore along with values derived from it.
+   * The derived values are discarded along with the keystore when the file changes.
+   */
+  protected static class CachedKeystore {
+
+    private final KeyStore keyStore;
+    private final String storeType;
+    private final long lastModified;
+    private final long length;
+    private final Map<String,Object> entries = new ConcurrentHashMap<String,Object>();
+
+    private CachedKeystore( KeyStore keyStore, String storeType, long lastModified, long length ) {
+      this.keyStore = keyStore;
+      this.storeType = storeType;
+      this.lastModified = lastModified;
+      this.length = length;
+    }
+
+    private boolean isCurrent( String storeType, long lastModified, long length ) {
+      return this.storeType.equals( storeType ) && this.lastModified == lastModified && this.length == length;
+    }
+
+    public KeyStore getKeyStore() {
+      return keyStore;
+    }
+
+    public Object getEntry( String name ) {
+      return entries.get( name );
+    }
+
+    public void putEntry( String name, Object value ) {
+      entries.put( name, value );
+    }
+
+  }
+
 }
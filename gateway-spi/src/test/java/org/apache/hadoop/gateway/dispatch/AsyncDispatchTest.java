@@ -0,0 +1,263 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.dispatch;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Test;
+
+public class AsyncDispatchTest {
+
+  @Test
+  public void testResponseIsWrittenOnDispatchThread() throws Exception {
+    HttpClient client = createClient( null );
+    CapturingOutputStream output = new CapturingOutputStream();
+    final CountDownLatch completed = new CountDownLatch( 1 );
+
+    AsyncContext asyncContext = EasyMock.createNiceMock( AsyncContext.class );
+    asyncContext.complete();
+    EasyMock.expectLastCall().andAnswer( new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        completed.countDown();
+        return null;
+      }
+    } ).once();
+
+    HttpServletRequest inboundRequest = createAsyncRequest( asyncContext, null );
+    HttpServletResponse outboundResponse = createResponse( output, null );
+    EasyMock.replay( client, asyncContext, inboundRequest, outboundResponse );
+
+    AsyncDispatch dispatch = new AsyncDispatch();
+    dispatch.setHttpClient( client );
+    dispatch.init();
+    try {
+      dispatch.executeRequest( new HttpGet( "http://localhost/test" ), inboundRequest, outboundResponse );
+      assertTrue( completed.await( 10, TimeUnit.SECONDS ) );
+    } finally {
+      dispatch.destroy();
+    }
+
+    assertThat( output.toString( "UTF-8" ), is( "test-content" ) );
+    assertThat( output.thread.get(), startsWith( "AsyncDispatch-" ) );
+    EasyMock.verify( asyncContext );
+  }
+
+  @Test
+  public void testSynchronousWhenAsyncIsNotSupported() throws Exception {
+    HttpClient client = createClient( null );
+    CapturingOutputStream output = new CapturingOutputStream();
+
+    HttpServletRequest inboundRequest = EasyMock.createNiceMock( HttpServletRequest.class );
+    EasyMock.expect( inboundRequest.isAsyncSupported() ).andReturn( false ).anyTimes();
+    HttpServletResponse outboundResponse = createResponse( output, null );
+    EasyMock.replay( client, inboundRequest, outboundResponse );
+
+    AsyncDispatch dispatch = new AsyncDispatch();
+    dispatch.setHttpClient( client );
+    dispatch.init();
+    try {
+      dispatch.executeRequest( new HttpGet( "http://localhost/test" ), inboundRequest, outboundResponse );
+    } finally {
+      dispatch.destroy();
+    }
+
+    assertThat( output.toString( "UTF-8" ), is( "test-content" ) );
+    assertThat( output.thread.get(), is( Thread.currentThread().getName() ) );
+  }
+
+  @Test
+  public void testTimeoutAbortsOutboundRequest() throws Exception {
+    CountDownLatch release = new CountDownLatch( 1 );
+    final CountDownLatch executing = new CountDownLatch( 1 );
+    HttpClient client = createClient( new CountDownLatch[]{ executing, release } );
+    CapturingOutputStream output = new CapturingOutputStream();
+    final AtomicInteger completions = new AtomicInteger();
+    AtomicInteger errorStatus = new AtomicInteger();
+
+    AsyncContext asyncContext = EasyMock.createNiceMock( AsyncContext.class );
+    asyncContext.complete();
+    EasyMock.expectLastCall().andAnswer( new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        completions.incrementAndGet();
+        return null;
+      }
+    } ).anyTimes();
+
+    Capture<AsyncListener> listener = new Capture<AsyncListener>();
+    HttpServletRequest inboundRequest = createAsyncRequest( asyncContext, listener );
+    HttpServletResponse outboundResponse = createResponse( output, errorStatus );
+    EasyMock.replay( client, asyncContext, inboundRequest, outboundResponse );
+
+    AsyncDispatch dispatch = new AsyncDispatch();
+    dispatch.setHttpClient( client );
+    dispatch.setAsyncTimeout( 1000 );
+    dispatch.init();
+    try {
+      HttpGet outboundRequest = new HttpGet( "http://localhost/test" );
+      dispatch.executeRequest( outboundRequest, inboundRequest, outboundResponse );
+      assertTrue( executing.await( 10, TimeUnit.SECONDS ) );
+
+      listener.getValue().onTimeout( null );
+
+      assertThat( outboundRequest.isAborted(), is( true ) );
+      assertThat( errorStatus.get(), is( HttpServletResponse.SC_GATEWAY_TIMEOUT ) );
+      assertThat( completions.get(), is( 1 ) );
+    } finally {
+      release.countDown();
+      dispatch.destroy();
+    }
+  }
+
+  @Test
+  public void testRejectedWhenPoolIsFull() throws Exception {
+    CountDownLatch release = new CountDownLatch( 1 );
+    final CountDownLatch executing = new CountDownLatch( 1 );
+    HttpClient client = createClient( new CountDownLatch[]{ executing, release } );
+    EasyMock.replay( client );
+
+    AsyncDispatch dispatch = new AsyncDispatch();
+    dispatch.setHttpClient( client );
+    dispatch.setAsyncMaxThreads( 1 );
+    dispatch.setAsyncQueueSize( 1 );
+    dispatch.init();
+    try {
+      // One request runs and one waits in the queue.
+      for( int i = 0; i < 2; i++ ) {
+        AsyncContext asyncContext = EasyMock.createNiceMock( AsyncContext.class );
+        HttpServletRequest inboundRequest = createAsyncRequest( asyncContext, null );
+        HttpServletResponse outboundResponse = createResponse( new CapturingOutputStream(), null );
+        EasyMock.replay( asyncContext, inboundRequest, outboundResponse );
+        dispatch.executeRequest( new HttpGet( "http://localhost/test" ), inboundRequest, outboundResponse );
+      }
+      assertTrue( executing.await( 10, TimeUnit.SECONDS ) );
+
+      AsyncContext asyncContext = EasyMock.createNiceMock( AsyncContext.class );
+      asyncContext.complete();
+      EasyMock.expectLastCall().once();
+      CapturingOutputStream output = new CapturingOutputStream();
+      AtomicInteger errorStatus = new AtomicInteger();
+      HttpServletRequest inboundRequest = createAsyncRequest( asyncContext, null );
+      HttpServletResponse outboundResponse = createResponse( output, errorStatus );
+      EasyMock.replay( asyncContext, inboundRequest, outboundResponse );
+      dispatch.executeRequest( new HttpGet( "http://localhost/test" ), inboundRequest, outboundResponse );
+
+      assertThat( errorStatus.get(), is( HttpServletResponse.SC_SERVICE_UNAVAILABLE ) );
+      assertThat( output.toString( "UTF-8" ), is( "" ) );
+      EasyMock.verify( asyncContext );
+    } finally {
+      release.countDown();
+      dispatch.destroy();
+    }
+  }
+
+  private static HttpClient createClient( final CountDownLatch[] latches ) throws IOException {
+    HttpClient client = EasyMock.createNiceMock( HttpClient.class );
+    EasyMock.expect( client.execute( EasyMock.anyObject( HttpUriRequest.class ) ) ).andAnswer( new IAnswer<HttpResponse>() {
+      @Override
+      public HttpResponse answer() throws Throwable {
+        if( latches != null ) {
+          latches[ 0 ].countDown();
+          latches[ 1 ].await( 10, TimeUnit.SECONDS );
+        }
+        BasicHttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+        response.setEntity( new StringEntity( "test-content" ) );
+        return response;
+      }
+    } ).anyTimes();
+    return client;
+  }
+
+  private static HttpServletRequest createAsyncRequest( AsyncContext asyncContext, Capture<AsyncListener> listener ) {
+    HttpServletRequest inboundRequest = EasyMock.createNiceMock( HttpServletRequest.class );
+    EasyMock.expect( inboundRequest.isAsyncSupported() ).andReturn( true ).anyTimes();
+    EasyMock.expect( inboundRequest.isAsyncStarted() ).andReturn( false ).anyTimes();
+    EasyMock.expect( inboundRequest.startAsync(
+        EasyMock.same( inboundRequest ), EasyMock.anyObject( HttpServletResponse.class ) ) ).andReturn( asyncContext ).once();
+    if( listener != null ) {
+      asyncContext.addListener( EasyMock.capture( listener ) );
+      EasyMock.expectLastCall().once();
+    }
+    return inboundRequest;
+  }
+
+  private static HttpServletResponse createResponse( final ServletOutputStream output, final AtomicInteger errorStatus ) throws IOException {
+    HttpServletResponse outboundResponse = EasyMock.createNiceMock( HttpServletResponse.class );
+    EasyMock.expect( outboundResponse.getOutputStream() ).andReturn( output ).anyTimes();
+    if( errorStatus != null ) {
+      outboundResponse.sendError( EasyMock.anyInt() );
+      EasyMock.expectLastCall().andAnswer( new IAnswer<Object>() {
+        @Override
+        public Object answer() throws Throwable {
+          errorStatus.set( (Integer)EasyMock.getCurrentArguments()[ 0 ] );
+          return null;
+        }
+      } ).anyTimes();
+    }
+    return outboundResponse;
+  }
+
+  private static class CapturingOutputStream extends ServletOutputStream {
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final AtomicReference<String> thread = new AtomicReference<String>();
+
+    @Override
+    public void write( int b ) throws IOException {
+      thread.compareAndSet( null, Thread.currentThread().getName() );
+      synchronized( buffer ) {
+        buffer.write( b );
+      }
+    }
+
+    public String toString( String encoding ) throws IOException {
+      synchronized( buffer ) {
+        return buffer.toString( encoding );
+      }
+    }
+
+  }
+
+}
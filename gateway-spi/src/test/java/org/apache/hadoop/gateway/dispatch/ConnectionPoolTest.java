@@ -0,0 +1,177 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.dispatch;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+public class ConnectionPoolTest {
+
+  @Test
+  public void testRouteStats() throws Exception {
+    PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager();
+    manager.setMaxTotal( 10 );
+    manager.setDefaultMaxPerRoute( 3 );
+    ConnectionPool pool = new ConnectionPool( "test-route-stats", false, 0, manager );
+    ConnectionPools.register( pool );
+    try {
+      HttpRoute route = new HttpRoute( new HttpHost( "datanode1", 50075 ) );
+      ConnectionRequest request = pool.requestConnection( route, null );
+      HttpClientConnection connection = request.get( 1, TimeUnit.SECONDS );
+
+      Map<String,PoolStats> stats = pool.getRouteStats();
+      assertThat( stats.keySet(), hasItem( "http://datanode1:50075" ) );
+      assertThat( stats.get( "http://datanode1:50075" ).getLeased(), is( 1 ) );
+      assertThat( stats.get( "http://datanode1:50075" ).getMax(), is( 3 ) );
+      assertThat( pool.getTotalStats().getLeased(), is( 1 ) );
+      assertThat( pool.getTotalStats().getMax(), is( 10 ) );
+
+      // The connection was never opened so it is discarded rather than kept in the pool.
+      pool.releaseConnection( connection, null, 0, TimeUnit.MILLISECONDS );
+      pool.reap();
+      assertThat( pool.getRouteStats().keySet(), hasItem( "http://datanode1:50075" ) );
+      pool.reap( System.currentTimeMillis() + ConnectionPools.REAP_INTERVAL + 1 );
+      assertThat( pool.getRouteStats().isEmpty(), is( true ) );
+    } finally {
+      pool.shutdown();
+    }
+    assertThat( ConnectionPools.getPools(), not( hasItem( pool ) ) );
+  }
+
+  @Test
+  public void testSharedPoolShutsDownAfterLastUser() throws Exception {
+    ConnectionPool pool = new ConnectionPool( "test-shared", true, 0, new PoolingHttpClientConnectionManager() );
+    ConnectionPools.register( pool );
+
+    ConnectionPool other = ConnectionPools.getShared( "test-shared" );
+    assertThat( other, sameInstance( pool ) );
+
+    pool.shutdown();
+    assertThat( ConnectionPools.getPools(), hasItem( pool ) );
+
+    other.shutdown();
+    assertThat( ConnectionPools.getPools(), not( hasItem( pool ) ) );
+    assertThat( ConnectionPools.getShared( "test-shared" ), nullValue() );
+  }
+
+  @Test
+  public void testFactoryPoolSettings() throws Exception {
+    Map<String,String> params = new HashMap<String,String>();
+    params.put( DefaultHttpClientFactory.MAX_CONNECTIONS_PARAM, "20" );
+    params.put( DefaultHttpClientFactory.MAX_CONNECTIONS_PER_ROUTE_PARAM, "4" );
+    params.put( DefaultHttpClientFactory.IDLE_TIMEOUT_PARAM, "1000" );
+
+    CloseableHttpClient client = (CloseableHttpClient)new DefaultHttpClientFactory()
+        .createHttpClient( createFilterConfig( "/gateway/test-settings", "webhdfs", params ) );
+    try {
+      ConnectionPool pool = findPool( "/gateway/test-settings/webhdfs" );
+      assertThat( pool.getMaxTotal(), is( 20 ) );
+      assertThat( pool.getDefaultMaxPerRoute(), is( 4 ) );
+      assertThat( pool.getIdleTimeout(), is( 1000L ) );
+      assertThat( pool.isShared(), is( false ) );
+    } finally {
+      client.close();
+    }
+    assertThat( findPool( "/gateway/test-settings/webhdfs" ), nullValue() );
+  }
+
+  @Test
+  public void testFactoryIgnoresInvalidSettings() throws Exception {
+    Map<String,String> params = new HashMap<String,String>();
+    params.put( DefaultHttpClientFactory.MAX_CONNECTIONS_PARAM, "20" );
+    params.put( DefaultHttpClientFactory.MAX_CONNECTIONS_PER_ROUTE_PARAM, "four" );
+    params.put( DefaultHttpClientFactory.IDLE_TIMEOUT_PARAM, "1m" );
+
+    CloseableHttpClient client = (CloseableHttpClient)new DefaultHttpClientFactory()
+        .createHttpClient( createFilterConfig( "/gateway/test-invalid", "webhdfs", params ) );
+    try {
+      ConnectionPool pool = findPool( "/gateway/test-invalid/webhdfs" );
+      assertThat( pool.getMaxTotal(), is( 20 ) );
+      assertThat( pool.getDefaultMaxPerRoute(), is( 20 ) );
+      assertThat( pool.getIdleTimeout(), is( (long)DefaultHttpClientFactory.DEFAULT_IDLE_TIMEOUT ) );
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test
+  public void testFactorySharedPool() throws Exception {
+    Map<String,String> params = new HashMap<String,String>();
+    params.put( DefaultHttpClientFactory.SHARED_POOL_PARAM, "true" );
+
+    DefaultHttpClientFactory factory = new DefaultHttpClientFactory();
+    CloseableHttpClient first = (CloseableHttpClient)factory
+        .createHttpClient( createFilterConfig( "/gateway/test-shared", "webhdfs", params ) );
+    CloseableHttpClient second = (CloseableHttpClient)factory
+        .createHttpClient( createFilterConfig( "/gateway/test-shared", "hive", params ) );
+
+    ConnectionPool pool = findPool( "/gateway/test-shared" );
+    assertThat( pool.isShared(), is( true ) );
+    assertThat( ConnectionPools.getShared( "/gateway/test-shared" ), sameInstance( pool ) );
+    pool.shutdown();
+
+    first.close();
+    assertThat( findPool( "/gateway/test-shared" ), sameInstance( pool ) );
+    second.close();
+    assertThat( findPool( "/gateway/test-shared" ), nullValue() );
+  }
+
+  private static ConnectionPool findPool( String name ) {
+    for( ConnectionPool pool : ConnectionPools.getPools() ) {
+      if( pool.getName().equals( name ) ) {
+        return pool;
+      }
+    }
+    return null;
+  }
+
+  private static FilterConfig createFilterConfig( String contextPath, String filterName, Map<String,String> params ) {
+    ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+    EasyMock.expect( context.getContextPath() ).andReturn( contextPath ).anyTimes();
+    FilterConfig config = EasyMock.createNiceMock( FilterConfig.class );
+    EasyMock.expect( config.getServletContext() ).andReturn( context ).anyTimes();
+    EasyMock.expect( config.getFilterName() ).andReturn( filterName ).anyTimes();
+    for( Map.Entry<String,String> param : params.entrySet() ) {
+      EasyMock.expect( config.getInitParameter( param.getKey() ) ).andReturn( param.getValue() ).anyTimes();
+    }
+    EasyMock.replay( context, config );
+    return config;
+  }
+
+}
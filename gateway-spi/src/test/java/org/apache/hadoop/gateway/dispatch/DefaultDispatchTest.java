@@ -20,7 +20,9 @@ package org.apache.hadoop.gateway.dispatch;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
@@ -29,6 +31,8 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
 
 import javax.servlet.ServletInputStream;
 import javax.servlet.ServletOutputStream;
@@ -36,7 +40,9 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.hadoop.gateway.config.GatewayConfig;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.params.BasicHttpParams;
@@ -102,4 +108,27 @@ public class DefaultDispatchTest {
         (httpEntity instanceof CappedBufferHttpEntity));
   }
 
+  // The backend response body is passed on as it was encoded so only ask for codings the rewriting can decode.
+  @Test
+  public void testCopyRequestHeaderFieldsFiltersAcceptEncoding() {
+    assertThat( copyAcceptEncoding( "gzip, deflate, br" ), is( "gzip" ) );
+    assertThat( copyAcceptEncoding( "deflate;q=1.0, GZIP;q=0.5, identity" ), is( "GZIP;q=0.5, identity" ) );
+    assertThat( copyAcceptEncoding( "br" ), nullValue() );
+    assertThat( copyAcceptEncoding( "*" ), nullValue() );
+  }
+
+  private static String copyAcceptEncoding( String acceptEncoding ) {
+    HttpServletRequest inboundRequest = EasyMock.createNiceMock( HttpServletRequest.class );
+    EasyMock.expect( inboundRequest.getHeaderNames() ).andReturn(
+        Collections.enumeration( Arrays.asList( "Accept-Encoding", "Accept" ) ) ).anyTimes();
+    EasyMock.expect( inboundRequest.getHeader( "Accept-Encoding" ) ).andReturn( acceptEncoding ).anyTimes();
+    EasyMock.expect( inboundRequest.getHeader( "Accept" ) ).andReturn( "*/*" ).anyTimes();
+    EasyMock.replay( inboundRequest );
+    HttpGet outboundRequest = new HttpGet( "http://localhost/" );
+    AbstractGatewayDispatch.copyRequestHeaderFields( outboundRequest, inboundRequest );
+    assertThat( outboundRequest.getFirstHeader( "Accept" ).getValue(), is( "*/*" ) );
+    Header header = outboundRequest.getFirstHeader( "Accept-Encoding" );
+    return header == null ? null : header.getValue();
+  }
+
 }
@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.gateway.filter;
+
+import org.apache.hadoop.gateway.util.urltemplate.Parser;
+import org.apache.hadoop.gateway.util.urltemplate.Template;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class RequestUrlTest {
+
+  @Test
+  public void testSplit() throws Exception {
+    RequestUrl url = new RequestUrl( Parser.parseLiteral( "http://host:42/path/file?op=OPEN&user.name=hdfs" ) );
+    assertThat( url.toString(), is( "http://host:42/path/file?op=OPEN&user.name=hdfs" ) );
+    assertThat( url.getPath(), is( "http://host:42/path/file" ) );
+    assertThat( url.getQuery(), is( "op=OPEN&user.name=hdfs" ) );
+    assertThat( url.toURI(), is( URI.create( "http://host:42/path/file?op=OPEN&user.name=hdfs" ) ) );
+    assertThat( url.toURI(), sameInstance( url.toURI() ) );
+
+    url = new RequestUrl( Parser.parseLiteral( "http://host:42/path" ) );
+    assertThat( url.getPath(), is( "http://host:42/path" ) );
+    assertThat( url.getQuery(), nullValue() );
+  }
+
+  @Test
+  public void testTargetUrlFollowsTemplate() throws Exception {
+    TestRequest request = new TestRequest();
+    assertThat( RequestUrl.getTargetUrl( request ), nullValue() );
+
+    Template template = Parser.parseLiteral( "http://host:42/path?op=LISTSTATUS" );
+    request.setAttribute( AbstractGatewayFilter.TARGET_REQUEST_URL_ATTRIBUTE_NAME, template );
+    RequestUrl url = RequestUrl.getTargetUrl( request );
+    assertThat( url, notNullValue() );
+    assertThat( url.getTemplate(), sameInstance( template ) );
+    assertThat( RequestUrl.getTargetUrl( request ), sameInstance( url ) );
+
+    // Rewriting the request again, e.g. on failover, must not reuse the previous view.
+    request.setAttribute( AbstractGatewayFilter.TARGET_REQUEST_URL_ATTRIBUTE_NAME, Parser.parseLiteral( "http://other:42/path?op=LISTSTATUS" ) );
+    assertThat( RequestUrl.getTargetUrl( request ).getPath(), is( "http://other:42/path" ) );
+
+    request.setAttribute( AbstractGatewayFilter.TARGET_REQUEST_URL_ATTRIBUTE_NAME, null );
+    assertThat( RequestUrl.getTargetUrl( request ), nullValue() );
+  }
+
+  @Test
+  public void testDispatchUrl() throws Exception {
+    TestRequest request = new TestRequest();
+    request.url = "http://gateway:8443/gateway/sandbox/webhdfs/v1/path";
+    request.uri = "/gateway/sandbox/webhdfs/v1/path";
+    request.query = "op=OPEN";
+    assertThat( RequestUrl.getDispatchUrl( request ), is( URI.create( "http://gateway:8443/gateway/sandbox/webhdfs/v1/path?op=OPEN" ) ) );
+
+    RequestUrl target = new RequestUrl( Parser.parseLiteral( "http://host:42/webhdfs/v1/path?op=OPEN" ) );
+    request.setAttribute( AbstractGatewayFilter.TARGET_REQUEST_URL_ATTRIBUTE_NAME, target.getTemplate() );
+    request.setAttribute( RequestUrl.TARGET_REQUEST_URL_VIEW_ATTRIBUTE_NAME, target );
+    request.url = target.getPath();
+    request.uri = target.getPath();
+    request.query = target.getQuery();
+    assertThat( RequestUrl.getDispatchUrl( request ), sameInstance( target.toURI() ) );
+
+    // A wrapper that changes the query string, e.g. identity assertion, must be honored.
+    request.query = "op=OPEN&user.name=hdfs";
+    assertThat( RequestUrl.getDispatchUrl( request ), is( URI.create( "http://host:42/webhdfs/v1/path?op=OPEN&user.name=hdfs" ) ) );
+  }
+
+  private static class TestRequest extends HttpServletRequestWrapper {
+
+    private Map<String,Object> attributes = new HashMap<String,Object>();
+    private String url;
+    private String uri;
+    private String query;
+
+    private TestRequest() {
+      super( EasyMock.createNiceMock( HttpServletRequest.class ) );
+    }
+
+    @Override
+    public Object getAttribute( String name ) {
+      return attributes.get( name );
+    }
+
+    @Override
+    public void setAttribute( String name, Object value ) {
+      attributes.put( name, value );
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+      return new StringBuffer( url );
+    }
+
+    @Override
+    public String getRequestURI() {
+      return uri;
+    }
+
+    @Override
+    public String getQueryString() {
+      return query;
+    }
+
+  }
+
+}
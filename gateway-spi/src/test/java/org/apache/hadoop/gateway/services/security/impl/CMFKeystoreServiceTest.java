@@ -32,6 +32,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -159,4 +161,21 @@ public class CMFKeystoreServiceTest {
       certificateFile.deleteOnExit();
     }
   }
+
+  @Test
+  public void testLoadedKeyStoreIsCachedUntilWritten() throws KeystoreServiceException {
+    try {
+      ks.createCredentialStore();
+      KeyStore first = ks.getCredentialStore();
+      assertSame("Credential store should be served from the cache", first, ks.getCredentialStore());
+      ks.addCredential(aliasName, "firstValue");
+      KeyStore second = ks.getCredentialStore();
+      assertNotSame("Credential store should be reloaded after a write", first, second);
+      assertTrue("Written credential not visible", new String(ks.getCredential(aliasName)).equals("firstValue"));
+      ks.addCredential(aliasName, "secondValue");
+      assertTrue("Updated credential not visible", new String(ks.getCredential(aliasName)).equals("secondValue"));
+    } finally {
+      credentialsStoreFile.deleteOnExit();
+    }
+  }
 }
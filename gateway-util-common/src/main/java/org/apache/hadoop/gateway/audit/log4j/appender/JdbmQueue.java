@@ -23,7 +23,11 @@ import jdbm.htree.HTree;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 
 public class JdbmQueue<E> {
@@ -36,6 +40,12 @@ public class JdbmQueue<E> {
   private HTree data;
   private boolean open;
 
+  // Group commit state.  Events from concurrent enqueue calls are collected into the current batch while
+  // another batch is being written.  The writer of the next batch commits all of them with a single commit.
+  private final Object batchLock = new Object();
+  private Batch<E> collecting = new Batch<E>();
+  private boolean writing;
+
   public JdbmQueue( File file ) throws IOException {
     Properties props = new Properties();
     db = RecordManagerFactory.createRecordManager( file.getAbsolutePath(), props );
@@ -45,16 +55,67 @@ public class JdbmQueue<E> {
     open = true;
   }
 
-  public synchronized void enqueue( E e ) throws IOException {
+  /**
+   * Adds an event to the queue.  The event is committed to the store before this method returns.
+   * Concurrent callers share commits: while one batch is being written the events of other callers are
+   * collected and then written by one of them with a single commit.
+   */
+  public void enqueue( E e ) throws IOException {
+    Batch<E> batch;
+    synchronized( batchLock ) {
+      batch = collecting;
+      batch.events.add( e );
+    }
+    while( true ) {
+      Batch<E> write;
+      synchronized( batchLock ) {
+        while( !batch.done && writing ) {
+          try {
+            batchLock.wait();
+          } catch( InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+          }
+        }
+        if( batch.done ) {
+          break;
+        }
+        // The batch containing this event has not been taken by a writer so this caller becomes the writer.
+        writing = true;
+        write = collecting;
+        collecting = new Batch<E>();
+      }
+      try {
+        write( write.events );
+      } catch( IOException ioe ) {
+        write.failure = ioe;
+      } catch( RuntimeException re ) {
+        write.failure = new IOException( re );
+      } finally {
+        synchronized( batchLock ) {
+          write.done = true;
+          writing = false;
+          batchLock.notifyAll();
+        }
+      }
+    }
+    if( batch.failure != null ) {
+      throw new IOException( batch.failure );
+    }
+  }
+
+  private synchronized void write( List<E> events ) throws IOException {
     boolean committed = false;
     try {
       Stat stat = getStat();
-      stat.lastEnqueue++;
+      for( E e : events ) {
+        stat.lastEnqueue++;
+        data.put( stat.lastEnqueue, e );
+      }
       setStat( stat );
-      data.put( stat.lastEnqueue, e );
       db.commit();
       committed = true;
-      notify();
+      notifyAll();
     } finally {
       if( !committed ) {
         db.rollback();
@@ -112,6 +173,64 @@ public class JdbmQueue<E> {
     return committed;
   }
 
+  /**
+   * Passes up to max events to the consumer.  The events the consumer reports as consumed are only removed from
+   * the store, with a single commit, once it has returned.  Events that were not consumed, because the consumer
+   * stopped early or failed, are passed again by the next call.
+   * The store is not locked while the consumer runs so enqueue is not blocked by slow forwarding.
+   * Only a single thread may process batches.
+   * Once the queue is stopped and empty the consumer is called with null.
+   */
+  public boolean process( BatchConsumer<E> consumer, int max ) throws IOException {
+    List<E> events = null;
+    long first;
+    synchronized( this ) {
+      try {
+        Stat s = getStat();
+        while( open && s.size() == 0 ) {
+          wait();
+          s = getStat();
+        }
+        first = s.nextDequeue + 1;
+        int count = (int)Math.min( s.size(), (long)max );
+        if( count > 0 ) {
+          events = new ArrayList<E>( count );
+          for( int i = 0; i < count; i++ ) {
+            @SuppressWarnings("unchecked")
+            E e = (E)data.get( Long.valueOf( first + i ) );
+            events.add( e );
+          }
+        }
+      } catch( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
+    int consumed = consumer.consume( events == null ? null : Collections.unmodifiableList( events ) );
+    if( events == null || consumed <= 0 ) {
+      return false;
+    }
+    consumed = Math.min( consumed, events.size() );
+    synchronized( this ) {
+      boolean committed = false;
+      try {
+        for( int i = 0; i < consumed; i++ ) {
+          data.remove( Long.valueOf( first + i ) );
+        }
+        Stat s = getStat();
+        s.nextDequeue = first + consumed - 1;
+        db.update( stat, s );
+        db.commit();
+        committed = true;
+      } finally {
+        if( !committed ) {
+          db.rollback();
+        }
+      }
+    }
+    return true;
+  }
+
   public synchronized void stop() {
     open = false;
     notifyAll();
@@ -173,4 +292,17 @@ public class JdbmQueue<E> {
     boolean consume( E e );
   }
 
+  public interface BatchConsumer<E> {
+    /**
+     * @return the number of events at the head of the list that were consumed
+     */
+    int consume( List<E> events );
+  }
+
+  private static final class Batch<E> {
+    private final List<E> events = new ArrayList<E>();
+    private boolean done;
+    private IOException failure;
+  }
+
 }
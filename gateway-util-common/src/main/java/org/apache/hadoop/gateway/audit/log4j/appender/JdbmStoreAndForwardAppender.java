@@ -19,19 +19,29 @@ package org.apache.hadoop.gateway.audit.log4j.appender;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.hadoop.gateway.i18n.GatewayUtilCommonMessages;
+import org.apache.hadoop.gateway.i18n.messages.MessagesFactory;
 import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.Logger;
 import org.apache.log4j.spi.LoggingEvent;
 
 public class JdbmStoreAndForwardAppender extends AppenderSkeleton {
 
+  private static final GatewayUtilCommonMessages LOG = MessagesFactory.get( GatewayUtilCommonMessages.class );
+
   private File file;
   private Thread forwarder;
   private JdbmQueue<LoggingEvent> queue;
   private Logger forward;
   private boolean fetchLocationInfo = true;
+  private int batchSize = 100;
+  private long retryInterval = 1000;
+  private int maxRetries = 60;
+  private final Object retry = new Object();
+  private boolean closing;
 
   @Override
   public boolean requiresLayout() {
@@ -50,6 +60,37 @@ public class JdbmStoreAndForwardAppender extends AppenderSkeleton {
     return fetchLocationInfo;
   }
 
+  public void setBatchSize( int batchSize ) {
+    this.batchSize = Math.max( 1, batchSize );
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Milliseconds to wait before an event that could not be forwarded is forwarded again.
+   */
+  public void setRetryInterval( long retryInterval ) {
+    this.retryInterval = Math.max( 0, retryInterval );
+  }
+
+  public long getRetryInterval() {
+    return retryInterval;
+  }
+
+  /**
+   * Times an event that could not be forwarded is forwarded again before it is logged and dropped, so that an
+   * event the forward appenders always reject does not hold back the events stored after it.
+   */
+  public void setMaxRetries( int maxRetries ) {
+    this.maxRetries = Math.max( 0, maxRetries );
+  }
+
+  public int getMaxRetries() {
+    return maxRetries;
+  }
+
   @Override
   public void activateOptions() {
     try {
@@ -79,6 +120,10 @@ public class JdbmStoreAndForwardAppender extends AppenderSkeleton {
   @Override
   public void close() {
     try {
+      synchronized( retry ) {
+        closing = true;
+        retry.notifyAll();
+      }
       queue.stop();
       forwarder.join();
       queue.close();
@@ -91,30 +136,63 @@ public class JdbmStoreAndForwardAppender extends AppenderSkeleton {
 
   private class Forwarder extends Thread {
 
+    // Failed attempts to forward the event at the head of the store.  It is only accessed by this thread.
+    private int attempts;
+
     public void run() {
       final AtomicBoolean done = new AtomicBoolean( false );
+      final AtomicBoolean failed = new AtomicBoolean( false );
       while( !done.get() ) {
         try {
-          queue.process( new JdbmQueue.Consumer<LoggingEvent>() {
+          failed.set( false );
+          queue.process( new JdbmQueue.BatchConsumer<LoggingEvent>() {
             @Override
-            public boolean consume( LoggingEvent event ) {
-              try {
-                if( event == null ) {
-                  done.set( true );
-                } else {
-                  forward.callAppenders( event );
+            public int consume( List<LoggingEvent> events ) {
+              int forwarded = 0;
+              if( events == null ) {
+                done.set( true );
+              } else {
+                // An event that cannot be forwarded stays in the store, together with the rest of the batch
+                // after it, and is forwarded again later.  It is the first event of the next batch.
+                for( LoggingEvent event : events ) {
+                  try {
+                    forward.callAppenders( event );
+                    forwarded++;
+                    attempts = 0;
+                  } catch ( Exception e ) {
+                    attempts++;
+                    if( attempts > maxRetries ) {
+                      LOG.droppedAuditEvent( attempts, event.getRenderedMessage(), e );
+                      forwarded++;
+                      attempts = 0;
+                      continue;
+                    }
+                    if( attempts == 1 ) {
+                      LOG.failedToForwardAuditEvent( maxRetries, e );
+                    }
+                    failed.set( true );
+                    break;
+                  }
                 }
-                return true;
-              } catch ( Exception e ) {
-                e.printStackTrace();
-                return false;
+              }
+              return forwarded;
+            }
+          }, batchSize );
+          if( failed.get() ) {
+            // Events that are still stored when the appender closes are forwarded after the next start.
+            synchronized( retry ) {
+              if( !closing ) {
+                retry.wait( retryInterval );
+              }
+              if( closing ) {
+                done.set( true );
               }
             }
-          } );
+          }
         } catch ( ThreadDeath e ) {
           throw e;
         } catch ( Throwable t ) {
-          t.printStackTrace();
+          LOG.failedToProcessAuditStore( t );
         }
       }
     }
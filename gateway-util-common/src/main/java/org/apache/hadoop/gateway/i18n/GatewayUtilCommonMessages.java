@@ -33,4 +33,13 @@ public interface GatewayUtilCommonMessages {
   @Message( level = MessageLevel.ERROR, text = "Failed to get map from Json string {0}: {1}" )
   void failedToGetMapFromJsonString( String json, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
 
+  @Message( level = MessageLevel.WARN, text = "Failed to forward audit event, retrying up to {0} times: {1}" )
+  void failedToForwardAuditEvent( int retries, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
+
+  @Message( level = MessageLevel.ERROR, text = "Dropped audit event after {0} failed attempts to forward it, message {1}: {2}" )
+  void droppedAuditEvent( int attempts, String message, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
+
+  @Message( level = MessageLevel.ERROR, text = "Failed to process the audit store: {0}" )
+  void failedToProcessAuditStore( @StackTrace( level = MessageLevel.DEBUG ) Throwable t );
+
 }
@@ -28,7 +28,10 @@ import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -95,6 +98,82 @@ public class JdbmQueueTest {
     assertThat( counter.get(), is( 1 ) );
   }
 
+  @Test
+  public void testBatchProcess() throws IOException, InterruptedException {
+    System.out.println( "Running " + Thread.currentThread().getStackTrace()[1].getClassName() + "#" + Thread.currentThread().getStackTrace()[1].getMethodName() );
+    for( int i = 1; i <= 5; i++ ) {
+      queue.enqueue( Integer.toString( i ) );
+    }
+    final List<String> consumed = new ArrayList<String>();
+
+    // A rejected batch must be offered again.
+    queue.process( new JdbmQueue.BatchConsumer<String>() {
+      @Override
+      public int consume( List<String> events ) {
+        return 0;
+      }
+    }, 3 );
+
+    // Only the consumed head of a batch is removed, the rest is offered again.
+    queue.process( new JdbmQueue.BatchConsumer<String>() {
+      @Override
+      public int consume( List<String> events ) {
+        consumed.add( events.toString() );
+        return 1;
+      }
+    }, 3 );
+
+    JdbmQueue.BatchConsumer<String> consumer = new JdbmQueue.BatchConsumer<String>() {
+      @Override
+      public int consume( List<String> events ) {
+        consumed.add( events.toString() );
+        return events.size();
+      }
+    };
+    queue.process( consumer, 3 );
+    queue.process( consumer, 3 );
+    assertThat( consumed.toString(), is( "[[1, 2, 3], [2, 3, 4], [5]]" ) );
+
+    queue.enqueue( "6" );
+    assertThat( queue.dequeue(), is( "6" ) );
+
+    queue.stop();
+    final AtomicBoolean done = new AtomicBoolean( false );
+    queue.process( new JdbmQueue.BatchConsumer<String>() {
+      @Override
+      public int consume( List<String> events ) {
+        done.set( events == null );
+        return 0;
+      }
+    }, 3 );
+    assertThat( done.get(), is( true ) );
+  }
+
+  @Test( timeout=120000 )
+  public void testConcurrentBatchProcessor() throws InterruptedException, IOException {
+    System.out.println( "Running " + Thread.currentThread().getStackTrace()[1].getClassName() + "#" + Thread.currentThread().getStackTrace()[1].getMethodName() );
+
+    int iterations = 100;
+    Set<String> consumed = Collections.synchronizedSet( new HashSet<String>() );
+    BatchProcessor consumer = new BatchProcessor( consumed );
+    consumer.start();
+    List<Producer> producers = new ArrayList<Producer>();
+    for( int i = 0; i < 8; i++ ) {
+      Producer producer = new Producer( iterations );
+      producer.start();
+      producers.add( producer );
+    }
+    for( Producer producer : producers ) {
+      producer.join();
+    }
+    while (consumed.size() < iterations * producers.size()) {
+      Thread.sleep( 5 );
+    }
+    queue.stop();
+    consumer.join();
+    assertThat( consumed, hasSize( iterations * producers.size() ) );
+  }
+
   @Ignore
   @Test
   public void testPerformanceAndStorageFootprint() throws IOException, InterruptedException {
@@ -278,6 +357,38 @@ public class JdbmQueueTest {
     }
   }
 
+  public class BatchProcessor extends Thread {
+    public Set<String> consumed;
+    public BatchProcessor( Set<String> consumed ) {
+      this.consumed = consumed;
+    }
+    public void run() {
+      try {
+        final AtomicBoolean done = new AtomicBoolean( false );
+        while( !done.get() ) {
+          queue.process( new JdbmQueue.BatchConsumer<String>() {
+            @Override
+            public int consume( List<String> events ) {
+              if( events == null ) {
+                done.set( true );
+              } else {
+                for( String s : events ) {
+                  if( !consumed.add( s ) ) {
+                    System.out.println( "DUPLICATE " + s );
+                    System.exit( 1 );
+                  }
+                }
+              }
+              return events == null ? 0 : events.size();
+            }
+          }, 100 );
+        }
+      } catch ( Throwable t ) {
+        t.printStackTrace();
+      }
+    }
+  }
+
   public static String humanReadableSize( long size ) {
     if(size <= 0) return "0";
     final String[] units = new String[] { "B", "KB", "MB", "GB", "TB" };
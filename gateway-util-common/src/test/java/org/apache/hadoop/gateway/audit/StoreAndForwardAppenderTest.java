@@ -17,16 +17,23 @@
  */
 package org.apache.hadoop.gateway.audit;
 
+import org.apache.hadoop.gateway.audit.log4j.appender.JdbmStoreAndForwardAppender;
 import org.apache.hadoop.test.log.CollectAppender;
+import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
+import org.apache.log4j.spi.LoggingEvent;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -68,4 +75,84 @@ public class StoreAndForwardAppenderTest {
     assertThat( CollectAppender.queue.size(), is( iterations ) );
   }
 
+  @Test(timeout = 500000)
+  public void testEventThatFailsToForwardIsRetried() throws Exception {
+    System.out.println( "Running " + Thread.currentThread().getStackTrace()[1].getClassName() + "#" + Thread.currentThread().getStackTrace()[1].getMethodName() );
+
+    ( (JdbmStoreAndForwardAppender)Logger.getLogger( "audit.store" ).getAppender( "audit-store" ) ).setRetryInterval( 10 );
+    final List<String> forwarded = Collections.synchronizedList( new ArrayList<String>() );
+    Logger forward = Logger.getLogger( "audit.forward" );
+    forward.removeAllAppenders();
+    forward.addAppender( new AppenderSkeleton() {
+      private boolean failed;
+      @Override
+      protected void append( LoggingEvent event ) {
+        if( !failed && "2".equals( event.getMessage() ) ) {
+          failed = true;
+          throw new IllegalStateException( "test-failure" );
+        }
+        forwarded.add( event.getMessage().toString() );
+      }
+      @Override
+      public boolean requiresLayout() {
+        return false;
+      }
+      @Override
+      public void close() {
+      }
+    } );
+
+    int iterations = 5;
+    Logger logger = Logger.getLogger( "audit.store" );
+    for( int i = 1; i <= iterations; i++ ) {
+      logger.info( Integer.toString( i ) );
+    }
+    while( forwarded.size() < iterations ) {
+      Thread.sleep( 20 );
+    }
+    assertThat( forwarded.toString(), is( "[1, 2, 3, 4, 5]" ) );
+  }
+
+  @Test(timeout = 500000)
+  public void testEventThatAlwaysFailsToForwardIsDropped() throws Exception {
+    System.out.println( "Running " + Thread.currentThread().getStackTrace()[1].getClassName() + "#" + Thread.currentThread().getStackTrace()[1].getMethodName() );
+
+    JdbmStoreAndForwardAppender appender = (JdbmStoreAndForwardAppender)Logger.getLogger( "audit.store" ).getAppender( "audit-store" );
+    appender.setRetryInterval( 10 );
+    appender.setMaxRetries( 2 );
+    final List<String> forwarded = Collections.synchronizedList( new ArrayList<String>() );
+    final AtomicInteger rejected = new AtomicInteger();
+    Logger forward = Logger.getLogger( "audit.forward" );
+    forward.removeAllAppenders();
+    forward.addAppender( new AppenderSkeleton() {
+      @Override
+      protected void append( LoggingEvent event ) {
+        if( "2".equals( event.getMessage() ) ) {
+          rejected.incrementAndGet();
+          throw new IllegalStateException( "test-failure" );
+        }
+        forwarded.add( event.getMessage().toString() );
+      }
+      @Override
+      public boolean requiresLayout() {
+        return false;
+      }
+      @Override
+      public void close() {
+      }
+    } );
+
+    int iterations = 5;
+    Logger logger = Logger.getLogger( "audit.store" );
+    for( int i = 1; i <= iterations; i++ ) {
+      logger.info( Integer.toString( i ) );
+    }
+    while( forwarded.size() < iterations - 1 ) {
+      Thread.sleep( 20 );
+    }
+    // The first attempt and two retries, after which the events stored behind it are forwarded.
+    assertThat( forwarded.toString(), is( "[1, 3, 4, 5]" ) );
+    assertThat( rejected.get(), is( 3 ) );
+  }
+
 }
\ No newline at end of file
@@ -18,9 +18,10 @@
 package org.apache.hadoop.gateway.util.urltemplate;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -121,7 +122,8 @@ public class Matcher<V> {
 
   public Match match( Template input ) {
     Status status = new Status();
-    status.candidates.add( new MatchSegment( null, root, null, null ) );
+    status.add( root, -1, null );
+    status.nextLevel();
     boolean matches = true;
     // Separate &= statements for debugability.
     matches &= matchScheme( input, status );
@@ -151,11 +153,9 @@ public class Matcher<V> {
   }
 
   private boolean matchPath( Template input, Status status ) {
-    Path segment;
-    Iterator<Path> segments = input.getPath().iterator();
-    while( segments.hasNext() && status.hasCandidates() ) {
-      segment = segments.next();
-      pickMatchingChildren( segment, status );
+    List<Path> segments = input.getPath();
+    for( int i = 0, n = segments.size(); i < n && status.hasCandidates(); i++ ) {
+      pickMatchingChildren( segments.get( i ), status );
     }
     return status.hasCandidates();
   }
@@ -165,56 +165,88 @@ public class Matcher<V> {
     return status.hasCandidates();
   }
 
+  // The matching children of each candidate must be added in the same order as they were added to the tree.
+  // The best match selection picks the first of several equally good candidates so the order affects the result.
   private void pickMatchingChildren( Segment segment, Status status ) {
     if( segment != null ) {
-      for( MatchSegment parent : status.candidates ) {
-        if( parent.pathNode.hasGlob() ) {
-          status.matches.add( new MatchSegment( parent, parent.pathNode, parent.pathNode.segment, segment ) );
+      String literal = getSingleStaticPattern( segment );
+      for( int c = status.first, last = status.last; c < last; c++ ) {
+        PathNode parent = status.nodes[ c ];
+        if( parent.glob ) {
+          status.add( parent, c, segment );
         }
-        if( parent.pathNode.children != null ) {
-          for( PathNode node : parent.pathNode.children.values() ) {
-            if( node.matches( segment ) ) {
-              status.matches.add( new MatchSegment( parent, node, node.segment, segment ) );
+        if( parent.children != null ) {
+          if( literal == null ) {
+            for( PathNode node : parent.ordered ) {
+              if( node.matches( segment ) ) {
+                status.add( node, c, segment );
+              }
             }
+          } else {
+            pickIndexedChildren( parent, c, literal, segment, status );
           }
         }
       }
-      status.swapMatchesToCandidates();
+      status.nextLevel();
+    }
+  }
+
+  // Merges the static children found via the index with the dynamic children in insertion order.
+  private void pickIndexedChildren( PathNode parent, int c, String literal, Segment segment, Status status ) {
+    List<PathNode> statics = parent.statics == null ? null : parent.statics.get( literal );
+    List<PathNode> dynamics = parent.dynamics;
+    int s = 0, sn = ( statics == null ) ? 0 : statics.size();
+    int d = 0, dn = ( dynamics == null ) ? 0 : dynamics.size();
+    while( s < sn || d < dn ) {
+      PathNode node;
+      if( d >= dn || ( s < sn && statics.get( s ).ordinal < dynamics.get( d ).ordinal ) ) {
+        node = statics.get( s++ );
+      } else {
+        node = dynamics.get( d++ );
+      }
+      if( node.matches( segment ) ) {
+        status.add( node, c, segment );
+      }
+    }
+  }
+
+  // Returns the pattern used to lookup static children or null if the indexes cannot be used for this segment.
+  private static String getSingleStaticPattern( Segment segment ) {
+    String pattern = null;
+    Collection<Segment.Value> values = segment.getValues();
+    if( values.size() == 1 ) {
+      pattern = values.iterator().next().getOriginalPattern();
     }
+    return pattern;
   }
 
   private Match pickBestMatch( Template input, Status status ) {
-    Match bestMatch = new Match( null, null );
     PathNode bestPath = null;
     QueryNode bestQuery = null;
-    MatchSegment bestMatchSegment = null;
-    for( MatchSegment matchSegment: status.candidates ) {
-      PathNode pathNode = matchSegment.pathNode;
+    int bestMatchSegment = -1;
+    for( int c = status.first; c < status.last; c++ ) {
+      PathNode pathNode = status.nodes[ c ];
       if( ( bestPath == null ) || // If we don't have anything at all pick the pathNode.
           ( pathNode.depth > bestPath.depth ) || // If the pathNode is deeper than the best pathNode, pick it.
           // If the pathNode is the same depth as current best but is static and the best isn't then pick it.
-          ( ( pathNode.depth == bestPath.depth ) && ( pathNode.getType() < bestPath.getType() ) ) ) {
+          ( ( pathNode.depth == bestPath.depth ) && ( pathNode.type < bestPath.type ) ) ) {
         // If the path node has a template then assume we will pick the path node.
         if( pathNode.template != null ) {
           bestPath = pathNode;
           bestQuery = null;
-          bestMatch.template = pathNode.template;
-          bestMatch.value = pathNode.value;
-          bestMatchSegment = matchSegment;
+          bestMatchSegment = c;
         }
         // If the path node has queries see if one is better match than the path node itself.
         if( pathNode.hasQueries() ) {
           bestQuery = pickBestQueryMatch( input, pathNode );
           if( bestQuery != null && bestQuery.template != null ) {
             bestPath = pathNode;
-            bestMatch.template = bestQuery.template;
-            bestMatch.value = bestQuery.value;
-            bestMatchSegment = matchSegment;
+            bestMatchSegment = c;
           }
         }
       }
     }
-    Match match = createMatch( bestMatchSegment, bestPath, bestQuery, input );
+    Match match = createMatch( status, bestMatchSegment, bestPath, bestQuery, input );
     return match;
   }
 
@@ -254,7 +286,7 @@ public class Matcher<V> {
     return matchCount;
   }
 
-  private Match createMatch( MatchSegment bestMatchSegment, PathNode bestPath, QueryNode bestQuery, Template input ) {
+  private Match createMatch( Status status, int bestMatchSegment, PathNode bestPath, QueryNode bestQuery, Template input ) {
     Match match = null;
 
     if( bestPath != null ) { //&& ( bestQuery != null || !bestPath.hasQueries() ) ) {
@@ -298,10 +330,10 @@ public class Matcher<V> {
       }
 
       // Walk back up the matching segment tree.
-      MatchSegment matchSegment = bestMatchSegment;
-      while( matchSegment != null && matchSegment.pathNode.depth > 0 ) {
-        extractSegmentParams( matchSegment.templateSegment, matchSegment.inputSegment, matchParams );
-        matchSegment = matchSegment.parentMatch;
+      int matchSegment = bestMatchSegment;
+      while( matchSegment >= 0 && status.nodes[ matchSegment ].depth > 0 ) {
+        extractSegmentParams( status.nodes[ matchSegment ].segment, status.inputs[ matchSegment ], matchParams );
+        matchSegment = status.parents[ matchSegment ];
       }
       match.params = matchParams;
     }
@@ -319,33 +351,38 @@ public class Matcher<V> {
     }
   }
 
+  // Records every matching step in a flat trace instead of allocating an object per candidate.
+  // The candidates for the current level are always the contiguous range [first,last) at the end of the trace.
+  // Each entry refers to the entry for its parent so that the params can be extracted once a winner is picked.
   private class Status {
 
-    List<MatchSegment> candidates = new ArrayList<MatchSegment>();
-    List<MatchSegment> matches = new ArrayList<MatchSegment>();
-    List<MatchSegment> temp;
-
-    private void swapMatchesToCandidates() {
-      temp = candidates; candidates = matches; matches = temp;
-      matches.clear();
+    PathNode[] nodes = new Matcher.PathNode[ 16 ];
+    int[] parents = new int[ 16 ];
+    Segment[] inputs = new Segment[ 16 ];
+    int first = 0;
+    int last = 0;
+    int size = 0;
+
+    private void add( PathNode node, int parent, Segment input ) {
+      if( size == nodes.length ) {
+        int capacity = size * 2;
+        nodes = Arrays.copyOf( nodes, capacity );
+        parents = Arrays.copyOf( parents, capacity );
+        inputs = Arrays.copyOf( inputs, capacity );
+      }
+      nodes[ size ] = node;
+      parents[ size ] = parent;
+      inputs[ size ] = input;
+      size++;
     }
 
-    private boolean hasCandidates() {
-      return !candidates.isEmpty();
+    private void nextLevel() {
+      first = last;
+      last = size;
     }
-  }
-
-  private class MatchSegment {
-    private MatchSegment parentMatch;
-    private PathNode pathNode;
-    private Segment templateSegment;
-    private Segment inputSegment;
 
-    private MatchSegment( MatchSegment parent, PathNode node, Segment templateSegment, Segment inputSegment ) {
-      this.parentMatch = parent;
-      this.pathNode = node;
-      this.templateSegment = templateSegment;
-      this.inputSegment = inputSegment;
+    private boolean hasCandidates() {
+      return last > first;
     }
   }
 
@@ -410,24 +447,54 @@ public class Matcher<V> {
   private class PathNode extends Node {
 
     int depth; // Zero based depth of the pathNode for "best pathNode" calculation.
+    int ordinal; // Zero based position of the pathNode within its parent's children.
+    int type; // The most specific value type of the segment.
+    boolean glob; // True if any of the segment's values is a glob.
     Segment segment;
     Map<Segment,PathNode> children;
+    List<PathNode> ordered; // All children in the order they were added.
+    Map<String,List<PathNode>> statics; // Children with only static values indexed by pattern.
+    List<PathNode> dynamics; // Children with any non-static value in the order they were added.
     Set<QueryNode> queries;
 
     private PathNode( PathNode parent, Segment segment ) {
       super( null, null );
       this.depth = ( parent == null ) ? 0 : parent.depth+1;
+      this.ordinal = ( parent == null || parent.children == null ) ? 0 : parent.children.size();
       this.segment = segment;
+      this.type = calcType( segment );
+      this.glob = calcGlob( segment );
       this.children = null;
       this.queries = null;
     }
 
     private PathNode addPath( Segment path ) {
       if( children == null ) {
-        children = new LinkedHashMap<Segment,PathNode>();
+        children = new HashMap<Segment,PathNode>();
+        ordered = new ArrayList<PathNode>();
       }
       PathNode child = new PathNode( this, path );
       children.put( path, child );
+      ordered.add( child );
+      Set<String> patterns = getStaticPatterns( path );
+      if( patterns == null ) {
+        if( dynamics == null ) {
+          dynamics = new ArrayList<PathNode>();
+        }
+        dynamics.add( child );
+      } else {
+        if( statics == null ) {
+          statics = new HashMap<String,List<PathNode>>();
+        }
+        for( String pattern : patterns ) {
+          List<PathNode> nodes = statics.get( pattern );
+          if( nodes == null ) {
+            nodes = new ArrayList<PathNode>( 1 );
+            statics.put( pattern, nodes );
+          }
+          nodes.add( child );
+        }
+      }
       return child;
     }
 
@@ -440,40 +507,53 @@ public class Matcher<V> {
       return query;
     }
 
-    private int getType() {
-      int type = Segment.UNKNOWN;
-      if( segment != null ) {
-        for( Segment.Value value: segment.getValues() ) {
-          int vType = value.getType();
-          type = type < vType ? type : vType;
-          if( type == Segment.STATIC ) {
-            break;
-          }
-        }
-      }
-      return type;
+    private boolean hasQueries() {
+      return( queries != null && queries.size() > 0 );
     }
 
-    private boolean hasGlob() {
-      boolean is = false;
-      if( segment != null ) {
-        for( Segment.Value value: segment.getValues() ) {
-          if( Segment.GLOB == value.getType() ) {
-            is = true;
-          }
+    private boolean matches( Segment segment ) {
+      return( this.segment.matches( segment ) );
+    }
+
+  }
+
+  private static int calcType( Segment segment ) {
+    int type = Segment.UNKNOWN;
+    if( segment != null ) {
+      for( Segment.Value value: segment.getValues() ) {
+        int vType = value.getType();
+        type = type < vType ? type : vType;
+        if( type == Segment.STATIC ) {
+          break;
         }
       }
-      return is;
     }
+    return type;
+  }
 
-    private boolean hasQueries() {
-      return( queries != null && queries.size() > 0 );
+  private static boolean calcGlob( Segment segment ) {
+    boolean is = false;
+    if( segment != null ) {
+      for( Segment.Value value: segment.getValues() ) {
+        if( Segment.GLOB == value.getType() ) {
+          is = true;
+        }
+      }
     }
+    return is;
+  }
 
-    private boolean matches( Segment segment ) {
-      return( this.segment.matches( segment ) );
+  // Returns the patterns of a segment that can only match statically or null if any value is not static.
+  private static Set<String> getStaticPatterns( Segment segment ) {
+    Set<String> patterns = new HashSet<String>();
+    for( Segment.Value value: segment.getValues() ) {
+      String pattern = value.getOriginalPattern();
+      if( value.getType() != Segment.STATIC || pattern == null ) {
+        return null;
+      }
+      patterns.add( pattern );
     }
-
+    return patterns;
   }
 
   private class QueryNode extends Node {
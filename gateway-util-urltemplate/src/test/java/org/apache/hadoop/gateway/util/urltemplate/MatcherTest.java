@@ -975,4 +975,50 @@ public class MatcherTest {
     assertThat( expandedStr, containsString( "&" ) );
   }
 
+  @Test
+  public void testStaticAndDynamicSiblingsKeepInsertionOrder() throws Exception {
+    Matcher<String> matcher;
+
+    // When equally good candidates are found the first one added wins.
+    matcher = new Matcher<String>();
+    addTemplate( matcher, "/{a}/bar" );
+    addTemplate( matcher, "/foo/bar" );
+    assertValidMatch( matcher, "/foo/bar", "/{a}/bar" );
+    assertValidMatch( matcher, "/other/bar", "/{a}/bar" );
+
+    matcher = new Matcher<String>();
+    addTemplate( matcher, "/foo/bar" );
+    addTemplate( matcher, "/{a}/bar" );
+    assertValidMatch( matcher, "/foo/bar", "/foo/bar" );
+    assertValidMatch( matcher, "/other/bar", "/{a}/bar" );
+
+    // Static segments with the same pattern but different param names are separate children.
+    matcher = new Matcher<String>();
+    addTemplate( matcher, "/{x=foo}/one" );
+    addTemplate( matcher, "/foo/two" );
+    addTemplate( matcher, "/{y=foo}/one" );
+    assertValidMatch( matcher, "/foo/one", "/{x=foo}/one" );
+    assertValidMatch( matcher, "/foo/two", "/foo/two" );
+    assertValidMatch( matcher, "/bar/one", null );
+  }
+
+  @Test
+  public void testManyStaticRoutes() throws Exception {
+    Matcher<String> matcher = new Matcher<String>();
+    for( int i = 0; i < 200; i++ ) {
+      addTemplate( matcher, "/gateway/sandbox/service" + i + "/{path=**}" );
+    }
+    addTemplate( matcher, "/gateway/sandbox/service*/static" );
+    addTemplate( matcher, "/gateway/{topology}/{**}" );
+
+    Matcher<String>.Match match = matcher.match( Parser.parseLiteral( "/gateway/sandbox/service42/a/b" ) );
+    assertThat( match, notNullValue() );
+    assertThat( match.getValue(), is( "/gateway/sandbox/service42/{path=**}" ) );
+    assertThat( match.getParams().resolve( "path" ), hasItems( "a", "b" ) );
+
+    assertValidMatch( matcher, "/gateway/sandbox/service7/static", "/gateway/sandbox/service*/static" );
+    assertValidMatch( matcher, "/gateway/sandbox/serviceX/static", "/gateway/sandbox/service*/static" );
+    assertValidMatch( matcher, "/gateway/other/unknown", "/gateway/{topology}/{**}" );
+  }
+
 }